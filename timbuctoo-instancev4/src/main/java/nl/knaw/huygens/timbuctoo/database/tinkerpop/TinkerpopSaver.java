@@ -32,11 +32,14 @@ public class TinkerpopSaver implements AutoCloseable, Saver<Vertex> {
   public static final String VALUE_PREFIX = "value:";
   public static final String ERROR_PREFIX = "error:";
   public static final String SAVED_MAPPING_STATE = "savedMappingState";
+  //the amount of raw items of the last upload, stored on the vre so a mapping doesn't have to count them
+  public static final String RAW_ITEM_COUNT = "rawItemCount";
   private final GraphWrapper graphWrapper;
   private final Vertex vre;
   private final int maxVerticesPerTransaction;
   private final VreIniter vreIniter;
   private int saveCounter;
+  private long itemCount;
   private Transaction tx;
   private Vertex curCollection;
   private Vertex lastVertex;
@@ -72,6 +75,7 @@ public class TinkerpopSaver implements AutoCloseable, Saver<Vertex> {
 
     addToLastItemOfCollection(rawCollection, result);
     addToCollection(rawCollection, result);
+    itemCount++;
 
     return result;
   }
@@ -110,7 +114,9 @@ public class TinkerpopSaver implements AutoCloseable, Saver<Vertex> {
 
       final GraphTraversal<Vertex, Vertex> vreT = vreIniter.getVreTraversal(vreName);
       if (vreT.hasNext()) {
-        vreT.next().property(Vre.PUBLISH_STATE_PROPERTY_NAME, publishState.toString());
+        Vertex vreVertex = vreT.next();
+        vreVertex.property(Vre.PUBLISH_STATE_PROPERTY_NAME, publishState.toString());
+        vreVertex.property(RAW_ITEM_COUNT, itemCount);
       }
       tx.commit();
     }
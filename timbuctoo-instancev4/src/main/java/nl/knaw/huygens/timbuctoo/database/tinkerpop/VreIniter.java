@@ -27,6 +27,9 @@ public class VreIniter {
         if (result.property(TinkerpopSaver.SAVED_MAPPING_STATE).isPresent()) {
           result.property(TinkerpopSaver.SAVED_MAPPING_STATE).remove();
         }
+        if (result.property(TinkerpopSaver.RAW_ITEM_COUNT).isPresent()) {
+          result.property(TinkerpopSaver.RAW_ITEM_COUNT).remove();
+        }
         wrapper.getGraph().traversal().V(result.id())
           .out(TinkerpopSaver.RAW_COLLECTION_EDGE_NAME)
           .union(
@@ -6,4 +6,10 @@ public interface DataSource {
   Stream<Row> getRows(ErrorHandler defaultErrorHandler);
 
   void willBeJoinedOn(String fieldName, String referenceJoinValue, String uri, String outputFieldName);
+
+  /**
+   * Called when the mapping that uses this data source has been executed.
+   */
+  default void close() {
+  }
 }
@@ -28,4 +28,10 @@ public interface JoinHandler {
    */
   void willBeJoinedOn(String fieldName, String referenceJoinValue, String uri, String outputFieldName);
 
+  /**
+   * Releases the resources that were used to store the join values. Called when the mapping has been executed.
+   */
+  default void close() {
+  }
+
 }
@@ -10,7 +10,6 @@ import org.apache.commons.jexl3.JexlBuilder;
 import org.apache.commons.jexl3.JexlContext;
 import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.JexlExpression;
-import org.apache.commons.jexl3.MapContext;
 import org.slf4j.Logger;
 
 import java.util.HashMap;
@@ -69,6 +68,7 @@ public class JexlRowFactory implements RowFactory {
     private final Map<String, List<String>> joinedData;
     private final ErrorHandler errorHandler;
     private final Map<String, JexlExpression> expressions;
+    private Map<String, String> evaluated;
 
     public MapBasedRow(Map<String, String> data, Map<String, List<String>> joinedData, ErrorHandler errorHandler,
                        Map<String, JexlExpression> expressions) {
@@ -82,25 +82,36 @@ public class JexlRowFactory implements RowFactory {
     public String getRawValue(String key) {
       if (data.containsKey(key)) {
         return data.get(key);
-      } else if (expressions.containsKey(key)) {
-        try {
-          JexlContext jexlContext = new MapContext();
-          jexlContext.set("v", data);
-          Object result = expressions.get(key).evaluate(jexlContext);
-          if (result != null) {
-            return result.toString();
-          } else {
-            return null;
-          }
-        } catch (Throwable throwable) {
-          LOG.info("Error during mapping", throwable);
-          errorHandler.valueGenerateFailed(
-            key,
-            String.format("Could not execute expression '%s' for row with values: '%s.", expressions.get(key), data)
-          );
+      }
+      JexlExpression expression = expressions.get(key);
+      if (expression == null) {
+        return null;
+      }
+      //a template and a predicate object map often use the same custom field
+      if (evaluated == null) {
+        evaluated = new HashMap<>();
+      } else if (evaluated.containsKey(key)) {
+        return evaluated.get(key);
+      }
+      String value = evaluate(key, expression);
+      evaluated.put(key, value);
+      return value;
+    }
+
+    private String evaluate(String key, JexlExpression expression) {
+      try {
+        Object result = expression.evaluate(new RowContext(data));
+        if (result != null) {
+          return result.toString();
+        } else {
           return null;
         }
-      } else {
+      } catch (Throwable throwable) {
+        LOG.info("Error during mapping", throwable);
+        errorHandler.valueGenerateFailed(
+          key,
+          String.format("Could not execute expression '%s' for row with values: '%s.", expression, data)
+        );
         return null;
       }
     }
@@ -136,4 +147,38 @@ public class JexlRowFactory implements RowFactory {
       return Objects.hash(this.data, this.joinedData, this.expressions);
     }
   }
+
+  /**
+   * Makes the values of the row available as "v" without copying them into a MapContext. Variables that an expression
+   * sets are only visible to that expression.
+   */
+  private static class RowContext implements JexlContext {
+    private final Map<String, String> data;
+    private Map<String, Object> variables;
+
+    RowContext(Map<String, String> data) {
+      this.data = data;
+    }
+
+    @Override
+    public Object get(String name) {
+      if ("v".equals(name)) {
+        return data;
+      }
+      return variables == null ? null : variables.get(name);
+    }
+
+    @Override
+    public void set(String name, Object value) {
+      if (variables == null) {
+        variables = new HashMap<>();
+      }
+      variables.put(name, value);
+    }
+
+    @Override
+    public boolean has(String name) {
+      return "v".equals(name) || variables != null && variables.containsKey(name);
+    }
+  }
 }
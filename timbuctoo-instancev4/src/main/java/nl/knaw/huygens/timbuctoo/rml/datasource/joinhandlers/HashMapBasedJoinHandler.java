@@ -46,7 +46,7 @@ public class HashMapBasedJoinHandler implements JoinHandler {
    * @param valueMap the valueMap for the current row from DataSource
    */
   @Override
-  public Map<String, List<String>> resolveReferences(Map<String, String> valueMap) {
+  public synchronized Map<String, List<String>> resolveReferences(Map<String, String> valueMap) {
     Map<String, List<String>> result = new HashMap<>();
     for (Map.Entry<String, Tuple<String, Map<String, List<String>>>> stringMapEntry : cachedUris.entrySet()) {
       final Tuple<String, Map<String, List<String>>> stringMapTuple = stringMapEntry.getValue();
@@ -87,7 +87,8 @@ public class HashMapBasedJoinHandler implements JoinHandler {
    * @param outputFieldName the key that the referencing ObjectMap will use to look up the uri
    */
   @Override
-  public void willBeJoinedOn(String fieldName, String referenceJoinValue, String uri, String outputFieldName) {
+  public synchronized void willBeJoinedOn(String fieldName, String referenceJoinValue, String uri,
+                                          String outputFieldName) {
     if (referenceJoinValue != null) {
       cachedUris.computeIfAbsent(outputFieldName, x -> Tuple.tuple(fieldName, new HashMap<>()))
         .getRight()
@@ -0,0 +1,16 @@
+package nl.knaw.huygens.timbuctoo.rml.rmldata;
+
+/**
+ * Is told how far the execution of each triples map is. The triples maps can run at the same time, so the methods can
+ * be called from several threads.
+ */
+public interface ExecutionProgress {
+  void triplesMapStarted(String uri);
+
+  /**
+   * Called every 100,000 quads of a triples map.
+   */
+  void triplesMapProgressed(String uri, long quadCount);
+
+  void triplesMapFinished(String uri, long quadCount);
+}
@@ -0,0 +1,135 @@
+package nl.knaw.huygens.timbuctoo.rml.rmldata;
+
+import nl.knaw.huygens.timbuctoo.rml.ErrorHandler;
+import nl.knaw.huygens.timbuctoo.rml.dto.Quad;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs the triples maps of a mapping document on an executor. A triples map starts as soon as the triples maps that
+ * publish the subjects it joins on are done, so the triples maps that do not depend on each other run at the same
+ * time. The quads are handed to the sink in batches, one batch at a time.
+ *
+ * <p>When a triples map fails, the triples maps that did not start yet stop right away and the running ones stop at
+ * their next quad. The first failure is rethrown once all triples maps have stopped, so the data sources can be
+ * closed safely afterwards.</p>
+ */
+class ParallelTriplesMapExecutor {
+  static final int PROGRESS_INTERVAL = 100_000;
+  private static final int BATCH_SIZE = 1_000;
+  private final List<RrTriplesMap> triplesMaps;
+  private final Map<RrTriplesMap, List<RrTriplesMap>> dependencies;
+
+  ParallelTriplesMapExecutor(List<RrTriplesMap> triplesMaps) {
+    this.triplesMaps = triplesMaps;
+    this.dependencies = findDependencies(triplesMaps);
+  }
+
+  /**
+   * Returns for each triples map the triples maps whose subjects it joins on. The triples maps are sorted
+   * topologically, so a triples map only depends on the ones before it. A join on a triples map that comes later is
+   * not resolved when the maps are executed one by one either, so it is ignored. That also keeps the graph acyclic.
+   */
+  static Map<RrTriplesMap, List<RrTriplesMap>> findDependencies(List<RrTriplesMap> triplesMaps) {
+    Map<RrTriplesMap, List<RrTriplesMap>> result = new HashMap<>();
+    for (int i = 0; i < triplesMaps.size(); i++) {
+      final RrTriplesMap triplesMap = triplesMaps.get(i);
+      List<RrTriplesMap> parents = new ArrayList<>();
+      for (int j = 0; j < i; j++) {
+        if (triplesMaps.get(j).getJoiningDataSources().contains(triplesMap.getDataSource())) {
+          parents.add(triplesMaps.get(j));
+        }
+      }
+      result.put(triplesMap, parents);
+    }
+    return result;
+  }
+
+  void execute(ErrorHandler errorHandler, Executor executor, Consumer<Quad> sink, ExecutionProgress progress) {
+    final Object sinkLock = new Object();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    //the runs are never cancelled, so a run is only done when its triples map has stopped or could not start
+    Map<RrTriplesMap, CompletableFuture<Void>> runs = new HashMap<>();
+    for (RrTriplesMap triplesMap : triplesMaps) {
+      CompletableFuture<?>[] parents = dependencies.get(triplesMap).stream()
+        .map(runs::get)
+        .toArray(CompletableFuture[]::new);
+      runs.put(triplesMap, CompletableFuture.allOf(parents).thenRunAsync(
+        () -> {
+          try {
+            run(triplesMap, errorHandler, sink, sinkLock, progress, failure);
+          } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+            throw e;
+          }
+        },
+        executor
+      ));
+    }
+    try {
+      CompletableFuture.allOf(runs.values().toArray(new CompletableFuture[runs.size()])).join();
+    } catch (CompletionException | CancellationException e) {
+      final Throwable cause = failure.get() == null ? unwrap(e) : failure.get();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new CompletionException(cause);
+    }
+  }
+
+  private static Throwable unwrap(Throwable exception) {
+    return exception instanceof CompletionException && exception.getCause() != null ? exception.getCause() : exception;
+  }
+
+  private void run(RrTriplesMap triplesMap, ErrorHandler errorHandler, Consumer<Quad> sink, Object sinkLock,
+                   ExecutionProgress progress, AtomicReference<Throwable> failure) {
+    final String uri = triplesMap.getUri();
+    stopWhenFailed(uri, failure);
+    progress.triplesMapStarted(uri);
+    long quadCount = 0;
+    List<Quad> batch = new ArrayList<>(BATCH_SIZE);
+    try (Stream<Quad> quads = triplesMap.getItems(errorHandler)) {
+      Iterator<Quad> iterator = quads.iterator();
+      while (iterator.hasNext()) {
+        stopWhenFailed(uri, failure);
+        batch.add(iterator.next());
+        if (batch.size() == BATCH_SIZE) {
+          send(batch, sink, sinkLock);
+        }
+        if (++quadCount % PROGRESS_INTERVAL == 0) {
+          progress.triplesMapProgressed(uri, quadCount);
+        }
+      }
+    }
+    stopWhenFailed(uri, failure);
+    send(batch, sink, sinkLock);
+    progress.triplesMapFinished(uri, quadCount);
+  }
+
+  private static void stopWhenFailed(String uri, AtomicReference<Throwable> failure) {
+    if (failure.get() != null) {
+      throw new CancellationException("Stopped mapping " + uri + " because another triples map failed");
+    }
+  }
+
+  private void send(List<Quad> batch, Consumer<Quad> sink, Object sinkLock) {
+    synchronized (sinkLock) {
+      batch.forEach(sink);
+    }
+    batch.clear();
+  }
+}
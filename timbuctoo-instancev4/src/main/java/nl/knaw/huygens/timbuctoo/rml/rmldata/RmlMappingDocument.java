@@ -5,6 +5,8 @@ import nl.knaw.huygens.timbuctoo.rml.dto.Quad;
 import nl.knaw.huygens.timbuctoo.rml.rmldata.builders.MappingDocumentBuilder;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
@@ -19,11 +21,35 @@ public class RmlMappingDocument {
     this.errors = errors;
   }
 
+  /**
+   * Returns the quads of all triples maps. Close the stream when it is consumed, so the data sources can release the
+   * values that they kept for the joins.
+   */
   public Stream<Quad> execute(ErrorHandler defaultErrorHandler) {
     if (errors.size() > 0) {
       throw new RuntimeException("Mapping contains errors");
     }
-    return triplesMaps.stream().flatMap(map -> map.getItems(defaultErrorHandler));
+    return triplesMaps.stream()
+      .flatMap(map -> map.getItems(defaultErrorHandler))
+      .onClose(() -> triplesMaps.forEach(map -> map.getDataSource().close()));
+  }
+
+  /**
+   * Runs the triples maps on the executor and hands their quads to the sink. The triples maps that do not join on each
+   * other run at the same time, a triples map that joins on others starts when those are done. The sink is called by
+   * one thread at a time. Returns when all triples maps are done. When a triples map fails, the others are stopped and
+   * its exception is rethrown.
+   */
+  public void execute(ErrorHandler defaultErrorHandler, Executor executor, Consumer<Quad> sink,
+                      ExecutionProgress progress) {
+    if (errors.size() > 0) {
+      throw new RuntimeException("Mapping contains errors");
+    }
+    try {
+      new ParallelTriplesMapExecutor(triplesMaps).execute(defaultErrorHandler, executor, sink, progress);
+    } finally {
+      triplesMaps.forEach(map -> map.getDataSource().close());
+    }
   }
 
   public static MappingDocumentBuilder rmlMappingDocument() {
@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -74,6 +75,16 @@ public class RrTriplesMap {
     return dataSource;
   }
 
+  /**
+   * The data sources of the triples maps that join on the subjects of this map. Those triples maps can only run when
+   * this one is done.
+   */
+  Set<DataSource> getJoiningDataSources() {
+    return subscriptions.stream()
+      .map(subscription -> subscription.getLeft().getDataSource())
+      .collect(Collectors.toSet());
+  }
+
   @Override
   public String toString() {
     return String.format("  TriplesMap: \n  uri: %s\n  datasource:\n%s  subjectMap:\n%s  predicateObjectMaps:\n%s",
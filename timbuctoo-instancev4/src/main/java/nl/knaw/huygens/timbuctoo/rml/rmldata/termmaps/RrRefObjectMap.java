@@ -50,6 +50,10 @@ public class RrRefObjectMap {
     dataSource.willBeJoinedOn(rrJoinCondition.getChildField(), value, subject.getContent(), outputField);
   }
 
+  public DataSource getDataSource() {
+    return dataSource;
+  }
+
 
   @Override
   public String toString() {
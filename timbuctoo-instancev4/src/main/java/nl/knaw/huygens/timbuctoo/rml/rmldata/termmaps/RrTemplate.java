@@ -10,21 +10,27 @@ import org.slf4j.Logger;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * The template is split into its literal parts and the names of the columns in between once, so generating a value
+ * for a row only has to concatenate the parts and the values of the columns.
+ */
 public class RrTemplate implements RrTermMap {
-  private final String template;
   private final TermType termType;
   private final String dataType;
-  private final Pattern pattern;
+  //literals has one more item than columns: the text after the last column
+  private final String[] literals;
+  private final String[] columns;
   private static final Logger LOG = getLogger(RrTemplate.class);
 
   public RrTemplate(String template, TermType termType, String dataType) {
-    this.template = template;
     this.termType = termType;
     this.dataType = dataType;
     //regex can be tested by going to https://regex101.com/r/fV1zJ1/1
@@ -54,17 +60,28 @@ public class RrTemplate implements RrTermMap {
     // nothing matches an odd number of slashes so \\} is matched in two steps: first \\ is matched as "an even number
     // of slashes" then the } is matched as the end of the regex. On the other hand \\\} is has the first two slashes
     // matched by the even number of slashes matcher and the remaining \} matched by the "exact combination \}" matcher
-    pattern = Pattern.compile(
+    Pattern pattern = Pattern.compile(
       "(?<!\\\\)(?:\\\\\\\\)*\\{((?:[^\\\\\\}]|(?:(?<!\\\\)(?:\\\\\\\\)+)|(?:\\\\\\})+)+)\\}"
     );
+    List<String> literals = new ArrayList<>();
+    List<String> columns = new ArrayList<>();
+    Matcher regexMatcher = pattern.matcher(template);
+    int literalStart = 0;
+    while (regexMatcher.find()) {
+      literals.add(template.substring(literalStart, regexMatcher.start()));
+      columns.add(regexMatcher.group(1));
+      literalStart = regexMatcher.end();
+    }
+    literals.add(template.substring(literalStart));
+    this.literals = literals.toArray(new String[literals.size()]);
+    this.columns = columns.toArray(new String[columns.size()]);
   }
 
   @Override
   public Optional<QuadPart> generateValue(Row input) {
-    Matcher regexMatcher = pattern.matcher(template);
-    StringBuffer resultString = new StringBuffer();
-    while (regexMatcher.find()) {
-      String value = input.getRawValue(regexMatcher.group(1));
+    StringBuilder resultString = new StringBuilder();
+    for (int i = 0; i < columns.length; i++) {
+      String value = input.getRawValue(columns[i]);
       if (value == null) {
         return Optional.empty();
       } else {
@@ -76,15 +93,15 @@ public class RrTemplate implements RrTermMap {
             throw new RuntimeException(e);
           }
         }
-        regexMatcher.appendReplacement(resultString, value);
+        resultString.append(literals[i]).append(value);
       }
     }
 
-    if (StringUtils.isBlank(resultString.toString())) {
+    if (StringUtils.isBlank(resultString)) {
       return Optional.empty();
     }
 
-    regexMatcher.appendTail(resultString);
+    resultString.append(literals[columns.length]);
 
     switch (termType) {
       case IRI:
@@ -101,12 +118,11 @@ public class RrTemplate implements RrTermMap {
 
   @Override
   public String toString() {
-    Matcher regexMatcher = pattern.matcher(template);
-    StringBuffer resultString = new StringBuffer();
-    while (regexMatcher.find()) {
-      regexMatcher.appendReplacement(resultString, "«" + regexMatcher.group(1) + "»");
+    StringBuilder resultString = new StringBuilder();
+    for (int i = 0; i < columns.length; i++) {
+      resultString.append(literals[i]).append("«").append(columns[i]).append("»");
     }
-    regexMatcher.appendTail(resultString);
+    resultString.append(literals[columns.length]);
 
     return String.format("      Template: %s (%s)\n",
       resultString,
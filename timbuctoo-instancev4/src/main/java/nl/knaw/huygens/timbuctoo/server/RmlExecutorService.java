@@ -17,7 +17,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Clock;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 import static nl.knaw.huygens.timbuctoo.core.TransactionState.commit;
@@ -47,6 +49,14 @@ public class RmlExecutorService {
   }
 
   public void execute(Consumer<String> statusUpdate) {
+    execute(statusUpdate, () -> false);
+  }
+
+  /**
+   * Executes the mapping and imports the result. When isCancelled returns true a CancellationException is thrown, so
+   * the import is rolled back.
+   */
+  public void execute(Consumer<String> statusUpdate, BooleanSupplier isCancelled) {
     transactionEnforcer.execute(timbuctooActions -> {
       timbuctooActions.setVrePublishState(vreName, Vre.PublishState.MAPPING_EXECUTION);
 
@@ -77,6 +87,9 @@ public class RmlExecutorService {
         //generate and import rdf
         rmlMappingDocument.execute(new LoggingErrorHandler()).forEach(
           (quad) -> {
+            if (isCancelled.getAsBoolean()) {
+              throw new CancellationException("The mapping of vre '" + vreName + "' was cancelled");
+            }
             reportTripleCount(tripleCount, curtime, statusUpdate);
             Node object;
             final QuadPart sourceObject = quad.getObject();
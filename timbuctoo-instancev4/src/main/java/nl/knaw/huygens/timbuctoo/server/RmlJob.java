@@ -0,0 +1,156 @@
+package nl.knaw.huygens.timbuctoo.server;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+
+/**
+ * An rml mapping that is executed by the {@link RmlJobExecutor}. The smaller mappings (by the amount of rows of their
+ * data) are run first, mappings of the same size in the order in which they were submitted.
+ */
+public class RmlJob implements Runnable, Comparable<RmlJob> {
+  private static final Logger LOG = LoggerFactory.getLogger(RmlJob.class);
+
+  public enum State {
+    QUEUED,
+    RUNNING,
+    FINISHED,
+    FAILED,
+    CANCELLED
+  }
+
+  public interface Body {
+    /**
+     * Executes the mapping. Check {@link RmlJob#isCancelRequested()} regularly and throw a CancellationException when
+     * it returns true. Any other exception marks the job as failed.
+     */
+    void execute(RmlJob job);
+  }
+
+  private final UUID id;
+  private final String vreName;
+  private final long size;
+  private final long sequence;
+  private final Body body;
+  private final Runnable onCancelledWhileQueued;
+  private final Instant queuedAt;
+  private volatile Instant startedAt;
+  private volatile Instant finishedAt;
+  private volatile State state;
+  private volatile String status;
+  private volatile boolean cancelRequested;
+
+  RmlJob(String vreName, long size, long sequence, Body body, Runnable onCancelledWhileQueued) {
+    this.id = UUID.randomUUID();
+    this.vreName = vreName;
+    this.size = size;
+    this.sequence = sequence;
+    this.body = body;
+    this.onCancelledWhileQueued = onCancelledWhileQueued;
+    this.queuedAt = Instant.now();
+    this.state = State.QUEUED;
+    this.status = "Waiting for other mappings to finish";
+  }
+
+  @Override
+  public void run() {
+    synchronized (this) {
+      if (state != State.QUEUED) {
+        return;
+      }
+      state = State.RUNNING;
+      startedAt = Instant.now();
+    }
+    //a job that finished before it saw the cancel request has imported its data, so it counts as finished
+    boolean cancelled = false;
+    boolean completed = false;
+    try {
+      body.execute(this);
+      completed = true;
+    } catch (CancellationException e) {
+      cancelled = true;
+    } catch (RuntimeException e) {
+      LOG.error("Rml job " + id + " for vre '" + vreName + "' failed", e);
+      status = e.getMessage() == null ? e.toString() : e.getMessage();
+    } finally {
+      finishedAt = Instant.now();
+      state = cancelled ? State.CANCELLED : completed ? State.FINISHED : State.FAILED;
+    }
+  }
+
+  /**
+   * Cancels the job. A job that is still waiting in the queue is cancelled right away, so it will not run at all. A
+   * running job stops when its body sees that a cancel is requested. Returns false when the job has already ended.
+   */
+  synchronized boolean cancel() {
+    if (state == State.QUEUED) {
+      cancelRequested = true;
+      state = State.CANCELLED;
+      finishedAt = Instant.now();
+      onCancelledWhileQueued.run();
+      return true;
+    }
+    if (state == State.RUNNING) {
+      cancelRequested = true;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public int compareTo(RmlJob other) {
+    if (size != other.size) {
+      return Long.compare(size, other.size);
+    }
+    return Long.compare(sequence, other.sequence);
+  }
+
+  public UUID getId() {
+    return id;
+  }
+
+  public String getVreName() {
+    return vreName;
+  }
+
+  /**
+   * The amount of rows in the data of the mapping.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public void setStatus(String status) {
+    this.status = status;
+  }
+
+  public Instant getQueuedAt() {
+    return queuedAt;
+  }
+
+  public Optional<Instant> getStartedAt() {
+    return Optional.ofNullable(startedAt);
+  }
+
+  public Optional<Instant> getFinishedAt() {
+    return Optional.ofNullable(finishedAt);
+  }
+
+  @JsonIgnore
+  public boolean isCancelRequested() {
+    return cancelRequested;
+  }
+}
@@ -0,0 +1,95 @@
+package nl.knaw.huygens.timbuctoo.server;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs at most maxParallelJobs rml mappings at the same time. The other mappings wait in a queue in which the smaller
+ * mappings go first, so a small mapping is not stuck behind a huge one. A huge mapping can therefore keep waiting
+ * while smaller ones keep coming in.
+ *
+ * <p>The finished jobs can be looked up for an hour.</p>
+ */
+public class RmlJobExecutor implements Managed {
+  private static final Duration KEEP_FINISHED_JOBS = Duration.ofHours(1);
+  private final ThreadPoolExecutor executor;
+  private final Map<UUID, RmlJob> jobs = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+
+  public RmlJobExecutor(int maxParallelJobs) {
+    //only RmlJobs are put on the queue, they are compared by their size
+    executor = new ThreadPoolExecutor(maxParallelJobs, maxParallelJobs, 0, TimeUnit.MILLISECONDS,
+      new PriorityBlockingQueue<>(), new ThreadFactoryBuilder().setNameFormat("rml-job-%d").build());
+  }
+
+  /**
+   * Queues the mapping. onCancelledWhileQueued is called instead of the body when the job is cancelled before it
+   * started.
+   */
+  public RmlJob submit(String vreName, long size, RmlJob.Body body, Runnable onCancelledWhileQueued) {
+    removeOldJobs();
+    RmlJob job = new RmlJob(vreName, size, sequence.getAndIncrement(), body, onCancelledWhileQueued);
+    jobs.put(job.getId(), job);
+    executor.execute(job);
+    return job;
+  }
+
+  public Optional<RmlJob> getJob(UUID id) {
+    return Optional.ofNullable(jobs.get(id));
+  }
+
+  /**
+   * The jobs in the order in which they were submitted.
+   */
+  public List<RmlJob> getJobs() {
+    List<RmlJob> result = new ArrayList<>(jobs.values());
+    result.sort(Comparator.comparing(RmlJob::getQueuedAt));
+    return result;
+  }
+
+  /**
+   * Cancels the job. A queued job is removed from the queue, a running job stops at the next quad it generates.
+   * Returns false if there is no such job or if it has already ended.
+   */
+  public boolean cancel(UUID id) {
+    RmlJob job = jobs.get(id);
+    if (job == null || !job.cancel()) {
+      return false;
+    }
+    //a running job is not in the queue anymore, so this only removes queued jobs
+    executor.remove(job);
+    return true;
+  }
+
+  private void removeOldJobs() {
+    Instant threshold = Instant.now().minus(KEEP_FINISHED_JOBS);
+    jobs.values().removeIf(job -> job.getFinishedAt().map(finished -> finished.isBefore(threshold)).orElse(false));
+  }
+
+  @Override
+  public void start() throws Exception {
+  }
+
+  @Override
+  public void stop() throws Exception {
+    for (RmlJob job : getJobs()) {
+      job.cancel();
+    }
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+  }
+}
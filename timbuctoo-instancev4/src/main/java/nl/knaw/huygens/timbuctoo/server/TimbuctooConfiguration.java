@@ -138,6 +138,31 @@ public abstract class TimbuctooConfiguration extends Configuration implements Ac
     return false;
   }
 
+  /**
+   * The amount of v2.1 rml mappings that are executed at the same time. The other mappings wait in a queue.
+   */
+  @Value.Default
+  public int getMaxParallelRmlJobs() {
+    return 2;
+  }
+
+  /**
+   * The amount of GraphQL queries whose rows are streamed at the same time.
+   */
+  @Value.Default
+  public int getMaxParallelStreamingQueries() {
+    return 16;
+  }
+
+  /**
+   * The amount of streamed GraphQL queries that may wait for one of the running ones to finish. The queries that
+   * arrive when the queue is full are rejected with a 503.
+   */
+  @Value.Default
+  public int getMaxQueuedStreamingQueries() {
+    return 16;
+  }
+
 
   //DROPWIZARD DEFAULT PROPERTIES:
   //Required to make immutables generate json-deserializers for the default properties
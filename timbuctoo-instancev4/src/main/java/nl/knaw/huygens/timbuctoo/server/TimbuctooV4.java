@@ -1,5 +1,6 @@
 package nl.knaw.huygens.timbuctoo.server;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxAttributeGauge;
 import com.codahale.metrics.health.HealthCheck;
 import com.fasterxml.jackson.databind.module.SimpleModule;
@@ -10,6 +11,7 @@ import io.dropwizard.client.HttpClientBuilder;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
 import io.dropwizard.forms.MultiPartBundle;
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.lifecycle.ServerLifecycleListener;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
@@ -60,6 +62,7 @@ import nl.knaw.huygens.timbuctoo.server.endpoints.v2.bulkupload.BulkUploadVre;
 import nl.knaw.huygens.timbuctoo.server.endpoints.v2.bulkupload.DataSourceFactory;
 import nl.knaw.huygens.timbuctoo.server.endpoints.v2.bulkupload.ExecuteRml;
 import nl.knaw.huygens.timbuctoo.server.endpoints.v2.bulkupload.RawCollection;
+import nl.knaw.huygens.timbuctoo.server.endpoints.v2.bulkupload.RmlJobs;
 import nl.knaw.huygens.timbuctoo.server.endpoints.v2.bulkupload.SaveRml;
 import nl.knaw.huygens.timbuctoo.server.endpoints.v2.domain.Autocomplete;
 import nl.knaw.huygens.timbuctoo.server.endpoints.v2.domain.Index;
@@ -81,14 +84,21 @@ import nl.knaw.huygens.timbuctoo.server.migration.MetaDataMigration;
 import nl.knaw.huygens.timbuctoo.server.security.LocalUserCreator;
 import nl.knaw.huygens.timbuctoo.server.security.OldStyleSecurityFactoryConfiguration;
 import nl.knaw.huygens.timbuctoo.server.security.UserPermissionChecker;
+import nl.knaw.huygens.timbuctoo.server.tasks.BdbCacheTask;
+import nl.knaw.huygens.timbuctoo.server.tasks.BdbCursorsTask;
 import nl.knaw.huygens.timbuctoo.server.tasks.BdbDumpTask;
 import nl.knaw.huygens.timbuctoo.server.tasks.DatabaseValidationTask;
 import nl.knaw.huygens.timbuctoo.server.tasks.DbLogCreatorTask;
+import nl.knaw.huygens.timbuctoo.server.tasks.RmlJobsTask;
 import nl.knaw.huygens.timbuctoo.server.tasks.UserCreationTask;
 import nl.knaw.huygens.timbuctoo.solr.Webhooks;
 import nl.knaw.huygens.timbuctoo.util.UriHelper;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbPersistentEnvironmentCreator;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.CursorTracker;
 import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository;
 import nl.knaw.huygens.timbuctoo.v5.dropwizard.DataSetRepositoryManager;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.DataSetUsageFilter;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.GraphQlSchemaManager;
 import nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes.CsvWriter;
 import nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes.GraphVizWriter;
 import nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes.JsonLdWriter;
@@ -118,14 +128,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.management.ObjectName;
+import javax.servlet.DispatcherType;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.channels.ServerSocketChannel;
 import java.time.Clock;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 
 import static com.codahale.metrics.MetricRegistry.name;
@@ -288,7 +301,14 @@ public class TimbuctooV4 extends Application<TimbuctooConfiguration> {
     );
 
 
+    //managed before the repository, so the parser threads are stopped after the imports that use them
+    if (configuration.getDataSetConfiguration().getRdfIo() instanceof Managed) {
+      environment.lifecycle().manage((Managed) configuration.getDataSetConfiguration().getRdfIo());
+    }
     environment.lifecycle().manage(new DataSetRepositoryManager(dataSetRepository));
+    //the data sets that a request uses are not closed as idle data sets until the response is written
+    environment.servlets().addFilter("dataSetUsage", new DataSetUsageFilter(dataSetRepository))
+      .addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), true, "/*");
 
     ErrorResponseHelper errorResponseHelper = new ErrorResponseHelper();
     AuthCheck authCheck = new AuthCheck(
@@ -305,10 +325,12 @@ public class TimbuctooV4 extends Application<TimbuctooConfiguration> {
       errorResponseHelper
     ));
 
+    final int rmlThreads = configuration.getDataSetConfiguration().getRmlThreads();
     register(environment, new Rml(
       dataSetRepository,
       errorResponseHelper,
-      securityConfig.getUserValidator()
+      securityConfig.getUserValidator(),
+      environment.lifecycle().executorService("rml").minThreads(rmlThreads).maxThreads(rmlThreads).build()
     ));
 
     SerializerWriterRegistry serializerWriterRegistry = new SerializerWriterRegistry(
@@ -318,20 +340,38 @@ public class TimbuctooV4 extends Application<TimbuctooConfiguration> {
       new GraphVizWriter()
     );
 
-    final PaginationArgumentsHelper argHelper = new PaginationArgumentsHelper(configuration.getCollectionFilters());
+    final int filterThreads = Runtime.getRuntime().availableProcessors();
+    final PaginationArgumentsHelper argHelper = new PaginationArgumentsHelper(
+      configuration.getCollectionFilters(),
+      environment.lifecycle().executorService("collection-filter")
+        .minThreads(filterThreads)
+        .maxThreads(filterThreads)
+        .build(),
+      dataSetRepository
+    );
+    final RootQuery rootQuery = new RootQuery(
+      dataSetRepository,
+      serializerWriterRegistry,
+      configuration.getArchetypesSchema(),
+      new RdfWiringFactory(dataSetRepository, argHelper),
+      new DerivedSchemaTypeGenerator(argHelper),
+      environment.getObjectMapper(),
+      environment.lifecycle().executorService("schema-rebuild").build()
+    );
+    environment.lifecycle().manage(new GraphQlSchemaManager(rootQuery));
     final GraphQl graphQlEndpoint = new GraphQl(
-      new RootQuery(
-        dataSetRepository,
-        serializerWriterRegistry,
-        configuration.getArchetypesSchema(),
-        new RdfWiringFactory(dataSetRepository, argHelper),
-        new DerivedSchemaTypeGenerator(argHelper),
-        environment.getObjectMapper()
-      ),
+      rootQuery,
       serializerWriterRegistry,
       securityConfig.getUserValidator(),
       uriHelper,
-      securityConfig.getPermissionFetcher(),dataSetRepository
+      securityConfig.getPermissionFetcher(),dataSetRepository,
+      //a streamed query runs as long as its client is reading, so the amount of them is limited. The queries that do
+      //not fit in the queue are rejected
+      environment.lifecycle().executorService("graphql-streaming")
+        .minThreads(configuration.getMaxParallelStreamingQueries())
+        .maxThreads(configuration.getMaxParallelStreamingQueries())
+        .workQueue(new ArrayBlockingQueue<>(configuration.getMaxQueuedStreamingQueries()))
+        .build()
     );
     register(environment, graphQlEndpoint);
 
@@ -378,9 +418,14 @@ public class TimbuctooV4 extends Application<TimbuctooConfiguration> {
     );
     RawCollection rawCollection = new RawCollection(graphManager, uriHelper, permissionChecker, errorResponseHelper);
     register(environment, rawCollection);
+    final RmlJobExecutor rmlJobExecutor = new RmlJobExecutor(configuration.getMaxParallelRmlJobs());
+    environment.lifecycle().manage(rmlJobExecutor);
+    environment.admin().addTask(new RmlJobsTask(rmlJobExecutor));
+    RmlJobs rmlJobs = new RmlJobs(uriHelper, permissionChecker, rmlJobExecutor);
+    register(environment, rmlJobs);
     ExecuteRml executeRml = new ExecuteRml(uriHelper, graphManager, vres, new JenaBasedReader(), permissionChecker,
       new DataSourceFactory(graphManager), transactionEnforcer,
-      webhooks
+      webhooks, rmlJobExecutor, rmlJobs
     );
     register(environment, executeRml);
     SaveRml saveRml = new SaveRml(uriHelper, permissionChecker, transactionEnforcer);
@@ -446,6 +491,21 @@ public class TimbuctooV4 extends Application<TimbuctooConfiguration> {
     );
     environment.admin().addTask(new DbLogCreatorTask(graphManager));
     environment.admin().addTask(new BdbDumpTask(configuration.getDatabases()));
+    final CursorTracker cursorTracker = configuration.getDatabases().getCursorTracker();
+    environment.admin().addTask(new BdbCursorsTask(cursorTracker));
+    environment.admin().addTask(new BdbCacheTask(configuration.getDatabases()));
+    environment.metrics().register(
+      name(BdbPersistentEnvironmentCreator.class, "sharedCacheBytes"),
+      (Gauge<Long>) configuration.getDatabases()::getSharedCacheBytes
+    );
+    environment.metrics().register(
+      name(CursorTracker.class, "openCursors"),
+      (Gauge<Integer>) cursorTracker::getOpenCursorCount
+    );
+    environment.metrics().register(
+      name(CursorTracker.class, "oldestCursorAge"),
+      (Gauge<Long>) cursorTracker::getOldestCursorAge
+    );
     if (configuration.getDatabaseBackupper().isPresent()) {
       environment.admin().addTask(new StagingBackup(configuration.getDatabaseBackupper().get().create(
         configuration.getDatabaseConfiguration().getDatabasePath(),
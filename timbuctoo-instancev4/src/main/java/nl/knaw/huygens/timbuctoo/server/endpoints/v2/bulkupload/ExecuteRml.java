@@ -4,6 +4,8 @@ import nl.knaw.huygens.timbuctoo.core.TransactionEnforcer;
 import nl.knaw.huygens.timbuctoo.model.vre.Vre;
 import nl.knaw.huygens.timbuctoo.model.vre.Vres;
 import nl.knaw.huygens.timbuctoo.server.RmlExecutorService;
+import nl.knaw.huygens.timbuctoo.server.RmlJob;
+import nl.knaw.huygens.timbuctoo.server.RmlJobExecutor;
 import nl.knaw.huygens.timbuctoo.rml.jena.JenaBasedReader;
 import nl.knaw.huygens.timbuctoo.rml.rmldata.RmlMappingDocument;
 import nl.knaw.huygens.timbuctoo.server.TinkerPopGraphManager;
@@ -17,6 +19,7 @@ import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.Transaction;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
 import org.glassfish.jersey.server.ChunkedOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,8 +38,10 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 
 import static nl.knaw.huygens.timbuctoo.database.tinkerpop.TinkerpopSaver.RAW_COLLECTION_EDGE_NAME;
+import static nl.knaw.huygens.timbuctoo.database.tinkerpop.TinkerpopSaver.RAW_ITEM_COUNT;
 import static nl.knaw.huygens.timbuctoo.core.TransactionState.commit;
 
 @Path("/v2.1/bulk-upload/{vre}/rml/execute")
@@ -50,10 +55,13 @@ public class ExecuteRml {
   private final DataSourceFactory dataSourceFactory;
   private final TransactionEnforcer transactionEnforcer;
   private final Webhooks webhooks;
+  private final RmlJobExecutor rmlJobExecutor;
+  private final RmlJobs rmlJobs;
 
   public ExecuteRml(UriHelper uriHelper, TinkerPopGraphManager graphWrapper, Vres vres, JenaBasedReader rmlBuilder,
                     UserPermissionChecker permissionChecker, DataSourceFactory dataSourceFactory,
-                    TransactionEnforcer transactionEnforcer, Webhooks webhooks) {
+                    TransactionEnforcer transactionEnforcer, Webhooks webhooks, RmlJobExecutor rmlJobExecutor,
+                    RmlJobs rmlJobs) {
     this.uriHelper = uriHelper;
     this.graphWrapper = graphWrapper;
     this.vres = vres;
@@ -62,6 +70,8 @@ public class ExecuteRml {
     this.dataSourceFactory = dataSourceFactory;
     this.transactionEnforcer = transactionEnforcer;
     this.webhooks = webhooks;
+    this.rmlJobExecutor = rmlJobExecutor;
+    this.rmlJobs = rmlJobs;
   }
 
   public URI makeUri(String vreName) {
@@ -104,6 +114,7 @@ public class ExecuteRml {
     }
 
     Graph graph = graphWrapper.getGraph();
+    final long size;
     try (Transaction transaction = graph.tx()) {
       GraphTraversal<Vertex, Vertex> vreT =
         graph.traversal().V().hasLabel(Vre.DATABASE_LABEL).has(Vre.VRE_NAME_PROPERTY_NAME, vreName);
@@ -119,61 +130,117 @@ public class ExecuteRml {
           .entity("failure: The VRE is missing raw collections to map.")
           .build();
       }
+      //the amount of rows decides which of the waiting mappings goes first. Vres that were uploaded before the amount
+      //was stored are queued after the others, counting their rows would keep this request busy for a long time.
+      VertexProperty<Object> rawItemCount = vreVertex.property(RAW_ITEM_COUNT);
+      size = rawItemCount.isPresent() ? ((Number) rawItemCount.value()).longValue() : Long.MAX_VALUE;
       transaction.close();
     }
 
     final ChunkedOutput<String> output = new ChunkedOutput<>(String.class);
 
-    new Thread() {
-      public void run() {
-        try {
-          new RmlExecutorService(transactionEnforcer, vreName, graphWrapper, model, rmlMappingDocument, vres)
-            .execute(msg -> {
-              try {
-                output.write(msg + "\n");
-              } catch (IOException e) {
-                LOG.error("Could not write to output stream", e);
-              }
-            });
-        } catch (Exception e) {
-          LOG.error("An unexpected exception occurred", e);
-        } finally {
+    //the output is locked until the id of the job is written, so that is the first line the client reads. The client
+    //reads the result at the end of the output, so it can ignore this line.
+    synchronized (output) {
+      RmlJob rmlJob = rmlJobExecutor.submit(vreName, size, job -> executeJob(
+        job, vreName, model, rmlMappingDocument, output
+      ), () -> {
+        synchronized (output) {
           try {
-            transactionEnforcer.execute(timbuctooActions -> {
-              try {
-                if (timbuctooActions.hasMappingErrors(vreName)) {
-                  if (LOG.isDebugEnabled()) {
-                    Map<String, Map<String, String>> mappingErrors = timbuctooActions.getMappingErrors(vreName);
-                    for (Map.Entry<String, Map<String, String>> vertex : mappingErrors.entrySet()) {
-                      LOG.debug(vertex.getKey());
-                      for (Map.Entry<String, String> error : vertex.getValue().entrySet()) {
-                        LOG.debug("  " + error.getKey() + ": " + error.getValue());
-                      }
-                    }
-                  }
-                  timbuctooActions.setVrePublishState(vreName, Vre.PublishState.MAPPING_CREATION_AFTER_ERRORS);
-                  output.write("failure");
-                } else {
-                  timbuctooActions.setVrePublishState(vreName, Vre.PublishState.AVAILABLE);
-                  webhooks.startIndexingForVre(vreName);
-                  output.write("success");
-                }
-              } catch (IOException e) {
-                LOG.error("Could not write to output stream", e);
-              } catch (Exception e) {
-                LOG.error("An unexpected exception occurred", e);
-              }
-              return commit();
-            });
+            output.write("cancelled\n");
             output.close();
-            LOG.info("Finished RML import");
           } catch (IOException e) {
             LOG.error("Couldn't close the output stream", e);
           }
         }
+      });
+      try {
+        output.write(String.format("Queued as job %s, see %s\n",
+          rmlJob.getId(),
+          rmlJobs.makeUri(vreName, rmlJob.getId())
+        ));
+      } catch (IOException e) {
+        LOG.error("Could not write to output stream", e);
       }
-    }.start();
+    }
 
     return Response.ok().entity(output).build();
   }
+
+  private void executeJob(RmlJob job, String vreName, Model model, RmlMappingDocument rmlMappingDocument,
+                          ChunkedOutput<String> output) {
+    synchronized (output) {
+      job.setStatus("Started");
+    }
+    boolean cancelled = false;
+    RuntimeException failure = null;
+    try {
+      new RmlExecutorService(transactionEnforcer, vreName, graphWrapper, model, rmlMappingDocument, vres)
+        .execute(msg -> {
+          job.setStatus(msg);
+          try {
+            output.write(msg + "\n");
+          } catch (IOException e) {
+            LOG.error("Could not write to output stream", e);
+          }
+        }, job::isCancelRequested);
+    } catch (CancellationException e) {
+      LOG.info("The RML import of '{}' was cancelled", vreName);
+      cancelled = true;
+      failure = e;
+    } catch (RuntimeException e) {
+      LOG.error("The RML import of '" + vreName + "' failed", e);
+      failure = e;
+    } finally {
+      try {
+        if (cancelled) {
+          //the import was rolled back, so the vre keeps its publish state
+          job.setStatus("cancelled");
+          output.write("cancelled\n");
+        } else if (failure != null) {
+          //the import was rolled back as well
+          job.setStatus("failure");
+          output.write("failure");
+        } else {
+          transactionEnforcer.execute(timbuctooActions -> {
+            try {
+              if (timbuctooActions.hasMappingErrors(vreName)) {
+                if (LOG.isDebugEnabled()) {
+                  Map<String, Map<String, String>> mappingErrors = timbuctooActions.getMappingErrors(vreName);
+                  for (Map.Entry<String, Map<String, String>> vertex : mappingErrors.entrySet()) {
+                    LOG.debug(vertex.getKey());
+                    for (Map.Entry<String, String> error : vertex.getValue().entrySet()) {
+                      LOG.debug("  " + error.getKey() + ": " + error.getValue());
+                    }
+                  }
+                }
+                timbuctooActions.setVrePublishState(vreName, Vre.PublishState.MAPPING_CREATION_AFTER_ERRORS);
+                job.setStatus("failure");
+                output.write("failure");
+              } else {
+                timbuctooActions.setVrePublishState(vreName, Vre.PublishState.AVAILABLE);
+                webhooks.startIndexingForVre(vreName);
+                job.setStatus("success");
+                output.write("success");
+              }
+            } catch (IOException e) {
+              LOG.error("Could not write to output stream", e);
+            } catch (Exception e) {
+              LOG.error("An unexpected exception occurred", e);
+            }
+            return commit();
+          });
+        }
+        output.close();
+        LOG.info("Finished RML import");
+      } catch (IOException e) {
+        LOG.error("Couldn't close the output stream", e);
+      }
+    }
+    //let the job know whether it was cancelled or failed
+    if (failure != null) {
+      throw failure;
+    }
+  }
 }
+
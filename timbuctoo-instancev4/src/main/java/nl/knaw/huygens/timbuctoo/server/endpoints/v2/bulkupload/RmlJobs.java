@@ -0,0 +1,98 @@
+package nl.knaw.huygens.timbuctoo.server.endpoints.v2.bulkupload;
+
+import io.dropwizard.jersey.params.UUIDParam;
+import nl.knaw.huygens.timbuctoo.server.RmlJob;
+import nl.knaw.huygens.timbuctoo.server.RmlJobExecutor;
+import nl.knaw.huygens.timbuctoo.server.security.UserPermissionChecker;
+import nl.knaw.huygens.timbuctoo.util.UriHelper;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Shows the status of the rml mappings of a vre that are queued or running, and cancels them.
+ */
+@Path("/v2.1/bulk-upload/{vre}/rml/jobs")
+@Produces(MediaType.APPLICATION_JSON)
+public class RmlJobs {
+  private final UriHelper uriHelper;
+  private final UserPermissionChecker permissionChecker;
+  private final RmlJobExecutor rmlJobExecutor;
+
+  public RmlJobs(UriHelper uriHelper, UserPermissionChecker permissionChecker, RmlJobExecutor rmlJobExecutor) {
+    this.uriHelper = uriHelper;
+    this.permissionChecker = permissionChecker;
+    this.rmlJobExecutor = rmlJobExecutor;
+  }
+
+  public URI makeUri(String vreName, UUID jobId) {
+    URI resourceUri = UriBuilder.fromResource(RmlJobs.class)
+      .path("{jobId}")
+      .resolveTemplate("vre", vreName)
+      .resolveTemplate("jobId", jobId)
+      .build();
+    return uriHelper.fromResourceUri(resourceUri);
+  }
+
+  @GET
+  public Response getJobs(@PathParam("vre") String vreName,
+                          @HeaderParam("Authorization") String authorizationHeader) {
+    Optional<Response> filterResponse = permissionChecker.checkPermissionWithResponse(vreName, authorizationHeader);
+    if (filterResponse.isPresent()) {
+      return filterResponse.get();
+    }
+    List<RmlJob> jobs = rmlJobExecutor.getJobs().stream()
+      .filter(job -> job.getVreName().equals(vreName))
+      .collect(toList());
+    return Response.ok(jobs).build();
+  }
+
+  @GET
+  @Path("{jobId}")
+  public Response getJob(@PathParam("vre") String vreName, @PathParam("jobId") UUIDParam jobId,
+                         @HeaderParam("Authorization") String authorizationHeader) {
+    Optional<Response> filterResponse = permissionChecker.checkPermissionWithResponse(vreName, authorizationHeader);
+    if (filterResponse.isPresent()) {
+      return filterResponse.get();
+    }
+    Optional<RmlJob> job = findJob(vreName, jobId.get());
+    if (job.isPresent()) {
+      return Response.ok(job.get()).build();
+    }
+    return Response.status(Response.Status.NOT_FOUND).build();
+  }
+
+  @DELETE
+  @Path("{jobId}")
+  public Response cancel(@PathParam("vre") String vreName, @PathParam("jobId") UUIDParam jobId,
+                         @HeaderParam("Authorization") String authorizationHeader) {
+    Optional<Response> filterResponse = permissionChecker.checkPermissionWithResponse(vreName, authorizationHeader);
+    if (filterResponse.isPresent()) {
+      return filterResponse.get();
+    }
+    if (!findJob(vreName, jobId.get()).isPresent()) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    if (!rmlJobExecutor.cancel(jobId.get())) {
+      return Response.status(Response.Status.CONFLICT).entity("The job has already ended").build();
+    }
+    return Response.noContent().build();
+  }
+
+  private Optional<RmlJob> findJob(String vreName, UUID jobId) {
+    return rmlJobExecutor.getJob(jobId).filter(job -> job.getVreName().equals(vreName));
+  }
+}
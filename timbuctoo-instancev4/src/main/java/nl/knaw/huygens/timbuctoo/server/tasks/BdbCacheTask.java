@@ -0,0 +1,30 @@
+package nl.knaw.huygens.timbuctoo.server.tasks;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbPersistentEnvironmentCreator;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.CacheStatistics;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * Lists the cache usage, hits, misses and evictions of the berkeley db environments that are open.
+ */
+public class BdbCacheTask extends Task {
+  private final BdbPersistentEnvironmentCreator environmentCreator;
+
+  public BdbCacheTask(BdbPersistentEnvironmentCreator environmentCreator) {
+    super("bdbcache");
+    this.environmentCreator = environmentCreator;
+  }
+
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+    output.println("shared cache bytes: " + environmentCreator.getSharedCacheBytes());
+    output.println("import cache mode: " + environmentCreator.getImportCacheMode());
+    for (Map.Entry<String, CacheStatistics> entry : environmentCreator.getCacheStatistics().entrySet()) {
+      output.println(entry.getKey() + ": " + entry.getValue());
+    }
+  }
+}
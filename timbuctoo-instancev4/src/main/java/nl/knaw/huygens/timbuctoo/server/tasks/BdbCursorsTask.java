@@ -0,0 +1,35 @@
+package nl.knaw.huygens.timbuctoo.server.tasks;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.CursorTracker;
+
+import java.io.PrintWriter;
+
+/**
+ * Lists the berkeley db cursors that are open. Use the parameter minimumAge (in milliseconds) to only show the cursors
+ * that are open for a while.
+ */
+public class BdbCursorsTask extends Task {
+  private static final String MINIMUM_AGE = "minimumAge";
+  private final CursorTracker cursorTracker;
+
+  public BdbCursorsTask(CursorTracker cursorTracker) {
+    super("bdbcursors");
+    this.cursorTracker = cursorTracker;
+  }
+
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+    long minimumAge = parameters.containsKey(MINIMUM_AGE) ?
+      Long.parseLong(parameters.get(MINIMUM_AGE).asList().get(0)) : 0;
+
+    output.println("tracking mode: " + cursorTracker.getMode() +
+      (cursorTracker.getMode() == CursorTracker.Mode.SAMPLED ? " (1 in " + cursorTracker.getSampleRate() + ")" : ""));
+    output.println("open cursors: " + cursorTracker.getOpenCursorCount());
+    output.println("oldest cursor age: " + cursorTracker.getOldestCursorAge() + " ms");
+    for (String cursor : cursorTracker.describeOpenCursors(minimumAge)) {
+      output.println(cursor);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package nl.knaw.huygens.timbuctoo.server.tasks;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+import nl.knaw.huygens.timbuctoo.server.RmlJob;
+import nl.knaw.huygens.timbuctoo.server.RmlJobExecutor;
+
+import java.io.PrintWriter;
+import java.util.UUID;
+
+/**
+ * Lists the rml jobs of all vres. Cancels a job when its id is passed as the cancel parameter.
+ */
+public class RmlJobsTask extends Task {
+  private final RmlJobExecutor rmlJobExecutor;
+
+  public RmlJobsTask(RmlJobExecutor rmlJobExecutor) {
+    super("rmljobs");
+    this.rmlJobExecutor = rmlJobExecutor;
+  }
+
+  @Override
+  public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+    for (String jobId : parameters.get("cancel")) {
+      final boolean cancelled = rmlJobExecutor.cancel(UUID.fromString(jobId));
+      output.println(jobId + (cancelled ? " cancelled" : " not found or already ended"));
+    }
+    for (RmlJob job : rmlJobExecutor.getJobs()) {
+      output.println(job.getId() + " " + job.getVreName() + " (" + job.getSize() + " rows): " + job.getState() +
+        ", " + job.getStatus());
+    }
+  }
+}
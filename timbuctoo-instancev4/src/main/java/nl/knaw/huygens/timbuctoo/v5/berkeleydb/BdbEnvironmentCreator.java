@@ -3,14 +3,44 @@ package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
 import com.sleepycat.bind.EntryBinding;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.BdbDbCreationException;
 
+import java.util.Comparator;
+
 public interface BdbEnvironmentCreator {
   <KeyT, ValueT> BdbWrapper<KeyT, ValueT> getDatabase(String userId, String dataSetId, String databaseName,
                                                       boolean allowDuplicates, EntryBinding<KeyT> keyBinder,
                                                       EntryBinding<ValueT> valueBinder)
     throws BdbDbCreationException;
 
+  /**
+   * Like getDatabase, but the keys are sorted using keyComparator instead of the default byte-by-byte comparison.
+   * The comparator class must have a public no-arg constructor, because berkeley db instantiates it itself.
+   */
+  <KeyT, ValueT> BdbWrapper<KeyT, ValueT> getDatabase(String userId, String dataSetId, String databaseName,
+                                                      boolean allowDuplicates, EntryBinding<KeyT> keyBinder,
+                                                      EntryBinding<ValueT> valueBinder,
+                                                      Class<? extends Comparator<byte[]>> keyComparator)
+    throws BdbDbCreationException;
+
+  /**
+   * Closes the databases and the environment of the data set. A later call to getDatabase opens them again.
+   */
   void removeDatabasesFor(String userId, String dataSetId);
 
+  /**
+   * The amount of cursors that are open on the databases of the data set. The environment of a data set with open
+   * cursors should not be closed.
+   */
+  default int getOpenCursorCount(String userId, String dataSetId) {
+    return 0;
+  }
+
+  /**
+   * Called when the data set starts importing (importing is true) and when it has finished its imports, so that the
+   * import can be kept from filling the cache.
+   */
+  default void setImporting(String userId, String dataSetId, boolean importing) {
+  }
+
   void start();
 
   void stop();
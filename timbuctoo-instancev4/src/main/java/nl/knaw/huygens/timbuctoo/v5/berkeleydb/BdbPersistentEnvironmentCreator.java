@@ -3,36 +3,59 @@ package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.sleepycat.bind.EntryBinding;
+import com.sleepycat.je.CacheMode;
 import com.sleepycat.je.Database;
 import com.sleepycat.je.DatabaseConfig;
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.je.Durability;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.StatsConfig;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.BdbDbCreationException;
 import nl.knaw.huygens.timbuctoo.v5.filehelper.FileHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.Properties;
-import java.util.stream.Collectors;
-
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens an environment per data set. The environments share one cache, except for the data sets that have a reserved
+ * cache size in the configuration (in megabytes, by the combined id of the data set). Those get a cache of their own,
+ * so they stay responsive while other data sets are imported.
+ *
+ * <p>While a data set is importing, its environment uses the importCacheMode (EVICT_LN by default), so the records
+ * that the import writes don't push the pages of the other data sets out of the shared cache.</p>
+ */
 public class BdbPersistentEnvironmentCreator implements BdbEnvironmentCreator {
   private static final Logger LOG = LoggerFactory.getLogger(BdbPersistentEnvironmentCreator.class);
 
   private final String databaseLocation;
-  Map<String, Environment> environmentMap = new HashMap<>();
-  Map<String, Database> databases = new HashMap<>();
+  final Map<String, Environment> environmentMap = new ConcurrentHashMap<>();
+  //the databases of each environment by their name
+  final Map<String, Map<String, Database>> databases = new ConcurrentHashMap<>();
   protected final EnvironmentConfig configuration;
   private FileHelper fileHelper;
+  private final CursorTracker cursorTracker;
+  private final Map<String, Integer> reservedCacheSizes;
+  private final CacheMode importCacheMode;
+  private final Set<String> importingEnvironments = ConcurrentHashMap.newKeySet();
 
   @JsonCreator
-  public BdbPersistentEnvironmentCreator(@JsonProperty("databaseLocation") String databaseLocation) {
+  public BdbPersistentEnvironmentCreator(@JsonProperty("databaseLocation") String databaseLocation,
+                                         @JsonProperty("cursorTracking") CursorTracker cursorTracker,
+                                         @JsonProperty("reservedCacheSizes") Map<String, Integer> reservedCacheSizes,
+                                         @JsonProperty("importCacheMode") CacheMode importCacheMode) {
     this.databaseLocation = databaseLocation;
+    this.cursorTracker = cursorTracker == null ? new CursorTracker(null, null) : cursorTracker;
+    this.reservedCacheSizes = reservedCacheSizes == null ? Collections.emptyMap() : reservedCacheSizes;
+    this.importCacheMode = importCacheMode == null ? CacheMode.EVICT_LN : importCacheMode;
     configuration = new EnvironmentConfig(new Properties());
     configuration.setTransactional(true);
     configuration.setDurability(Durability.COMMIT_NO_SYNC);
@@ -45,35 +68,41 @@ public class BdbPersistentEnvironmentCreator implements BdbEnvironmentCreator {
                                                              boolean allowDuplicates, EntryBinding<KeyT> keyBinder,
                                                              EntryBinding<ValueT> valueBinder)
     throws BdbDbCreationException {
+    return getDatabase(userId, dataSetId, databaseName, allowDuplicates, keyBinder, valueBinder, null);
+  }
+
+  @Override
+  public <KeyT, ValueT> BdbWrapper<KeyT, ValueT> getDatabase(String userId, String dataSetId, String databaseName,
+                                                             boolean allowDuplicates, EntryBinding<KeyT> keyBinder,
+                                                             EntryBinding<ValueT> valueBinder,
+                                                             Class<? extends Comparator<byte[]>> keyComparator)
+    throws BdbDbCreationException {
     DatabaseConfig config = new DatabaseConfig();
     config.setAllowCreate(true);
     config.setDeferredWrite(true);
     config.setSortedDuplicates(allowDuplicates);
+    if (keyComparator != null) {
+      config.setBtreeComparator(keyComparator);
+    }
 
     String environmentKey = environmentKey(userId, dataSetId);
-    String databaseKey = environmentKey + "_" + databaseName;
-    if (!databases.containsKey(databaseKey)) {
-      if (!environmentMap.containsKey(environmentKey)) {
-        try {
-          File dbDir = fileHelper.pathInDataSet(userId, dataSetId, "databases");
-          Environment dataSetEnvironment = new Environment(dbDir, configuration);
-          environmentMap.put(environmentKey, dataSetEnvironment);
-        } catch (DatabaseException e) {
-          throw new BdbDbCreationException(e);
-        }
-      }
-      try {
-        databases.put(databaseKey, environmentMap.get(environmentKey).openDatabase(null, databaseName, config));
-      } catch (DatabaseException e) {
-        throw new BdbDbCreationException(e);
-      }
+    final Environment environment;
+    final Database database;
+    try {
+      //opening an environment can take a while, the concurrent maps only block the lookups of the same key
+      environment = environmentMap.computeIfAbsent(environmentKey, key -> openEnvironment(userId, dataSetId, key));
+      database = databases.computeIfAbsent(environmentKey, key -> new ConcurrentHashMap<>())
+                           .computeIfAbsent(databaseName, name -> environment.openDatabase(null, name, config));
+    } catch (DatabaseException e) {
+      throw new BdbDbCreationException(e);
     }
     return new BdbWrapper<>(
-      environmentMap.get(environmentKey),
-      databases.get(databaseKey),
+      environment,
+      database,
       config,
       keyBinder,
-      valueBinder
+      valueBinder,
+      cursorTracker
     );
   }
 
@@ -81,29 +110,118 @@ public class BdbPersistentEnvironmentCreator implements BdbEnvironmentCreator {
     return userId + "_" + dataSetId;
   }
 
+  private Environment openEnvironment(String userId, String dataSetId, String environmentKey) {
+    EnvironmentConfig config = configuration;
+    Integer reservedCacheSize = reservedCacheSizes.get(userId + "__" + dataSetId);
+    if (reservedCacheSize != null) {
+      config = configuration.clone();
+      config.setSharedCache(false);
+      config.setCacheSize(reservedCacheSize * 1024L * 1024L);
+    }
+    Environment environment = new Environment(fileHelper.pathInDataSet(userId, dataSetId, "databases"), config);
+    if (importingEnvironments.contains(environmentKey)) {
+      environment.setMutableConfig(environment.getMutableConfig().setCacheMode(importCacheMode));
+    }
+    return environment;
+  }
+
   @Override
-  public void removeDatabasesFor(String userId, String dataSetId) {
+  public void setImporting(String userId, String dataSetId, boolean importing) {
     String environmentKey = environmentKey(userId, dataSetId);
+    if (importing) {
+      importingEnvironments.add(environmentKey);
+    } else {
+      importingEnvironments.remove(environmentKey);
+    }
+    Environment environment = environmentMap.get(environmentKey);
+    if (environment != null) {
+      //null is the default cache mode
+      environment.setMutableConfig(environment.getMutableConfig().setCacheMode(importing ? importCacheMode : null));
+    }
+  }
 
-    List<String> dbsToRemove = databases.keySet().stream()
-                                        .filter(dbName -> dbName.startsWith(environmentKey))
-                                        .collect(Collectors.toList());
+  /**
+   * The cache statistics of the open environments by the combined id of their data set.
+   */
+  public Map<String, CacheStatistics> getCacheStatistics() {
+    Map<String, CacheStatistics> result = new TreeMap<>();
+    StatsConfig statsConfig = new StatsConfig();
+    for (Map.Entry<String, Environment> entry : environmentMap.entrySet()) {
+      try {
+        Environment environment = entry.getValue();
+        result.put(entry.getKey(), CacheStatistics.fromStats(
+          environment.getStats(statsConfig),
+          environment.getConfig().getSharedCache(),
+          importingEnvironments.contains(entry.getKey())
+        ));
+      } catch (DatabaseException | IllegalStateException e) {
+        //the environment was closed in the mean time
+        LOG.debug("Could not read the statistics of environment " + entry.getKey(), e);
+      }
+    }
+    return result;
+  }
 
-    for (String dbToRemove : dbsToRemove) {
-      databases.get(dbToRemove).close();
-      databases.remove(dbToRemove);
+  /**
+   * The bytes that are used by the shared cache of all environments.
+   */
+  public long getSharedCacheBytes() {
+    for (Environment environment : environmentMap.values()) {
+      try {
+        if (environment.getConfig().getSharedCache()) {
+          return environment.getStats(new StatsConfig().setFast(true)).getSharedCacheTotalBytes();
+        }
+      } catch (DatabaseException | IllegalStateException e) {
+        LOG.debug("Could not read the statistics of an environment", e);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public void removeDatabasesFor(String userId, String dataSetId) {
+    closeEnvironment(environmentKey(userId, dataSetId));
+  }
+
+  private void closeEnvironment(String environmentKey) {
+    Map<String, Database> dbsToRemove = databases.remove(environmentKey);
+    if (dbsToRemove != null) {
+      //the BdbWrappers might have closed the databases already, closing them again does nothing
+      dbsToRemove.values().forEach(Database::close);
     }
 
-    if (environmentMap.containsKey(environmentKey)) {
-      environmentMap.get(environmentKey).close();
-      environmentMap.remove(environmentKey);
+    importingEnvironments.remove(environmentKey);
+    Environment environment = environmentMap.remove(environmentKey);
+    if (environment != null) {
+      environment.close();
     }
   }
 
+  @Override
+  public int getOpenCursorCount(String userId, String dataSetId) {
+    Environment environment = environmentMap.get(environmentKey(userId, dataSetId));
+    return environment == null ? 0 : cursorTracker.getOpenCursorCount(environment);
+  }
+
   public String getDatabaseLocation() {
     return databaseLocation;
   }
 
+  @JsonProperty("cursorTracking")
+  public CursorTracker getCursorTracker() {
+    return cursorTracker;
+  }
+
+  @JsonProperty("reservedCacheSizes")
+  public Map<String, Integer> getReservedCacheSizes() {
+    return reservedCacheSizes;
+  }
+
+  @JsonProperty("importCacheMode")
+  public CacheMode getImportCacheMode() {
+    return importCacheMode;
+  }
+
   @Override
   public void start() {
     File dbHome = new File(databaseLocation);
@@ -116,7 +234,13 @@ public class BdbPersistentEnvironmentCreator implements BdbEnvironmentCreator {
 
   @Override
   public void stop() {
-
+    for (String environmentKey : environmentMap.keySet()) {
+      try {
+        closeEnvironment(environmentKey);
+      } catch (DatabaseException e) {
+        LOG.error("Could not close environment " + environmentKey, e);
+      }
+    }
   }
 
   @Override
@@ -1,5 +1,6 @@
 package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
 
+import com.google.common.util.concurrent.Striped;
 import com.sleepycat.bind.EntryBinding;
 import com.sleepycat.bind.tuple.TupleBinding;
 import com.sleepycat.je.Cursor;
@@ -15,10 +16,12 @@ import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 import static com.sleepycat.je.OperationStatus.SUCCESS;
@@ -30,14 +33,23 @@ public class BdbWrapper<KeyT, ValueT> {
   private final DatabaseConfig databaseConfig;
   private final EntryBinding<KeyT> keyBinder;
   private final EntryBinding<ValueT> valueBinder;
-  private final DatabaseEntry keyEntry = new DatabaseEntry();
-  private final DatabaseEntry valueEntry = new DatabaseEntry();
+  private static final int LOCK_STRIPES = 64;
+  //every thread gets its own buffers, so writes only need to lock the key that they change
+  private final ThreadLocal<DatabaseEntry> keyEntry = ThreadLocal.withInitial(DatabaseEntry::new);
+  private final ThreadLocal<DatabaseEntry> valueEntry = ThreadLocal.withInitial(DatabaseEntry::new);
+  private final Striped<Lock> writeLocks = Striped.lock(LOCK_STRIPES);
   private Transaction transaction;
   private static final Logger LOG = getLogger(BdbWrapper.class);
-  private final Map<Cursor, String> cursors = new HashMap<>();
+  private final CursorTracker cursorTracker;
 
   public BdbWrapper(Environment dbEnvironment, Database database, DatabaseConfig databaseConfig,
                     EntryBinding<KeyT> keyBinder, EntryBinding<ValueT> valueBinder) {
+    this(dbEnvironment, database, databaseConfig, keyBinder, valueBinder, CursorTracker.full());
+  }
+
+  public BdbWrapper(Environment dbEnvironment, Database database, DatabaseConfig databaseConfig,
+                    EntryBinding<KeyT> keyBinder, EntryBinding<ValueT> valueBinder, CursorTracker cursorTracker) {
+    this.cursorTracker = cursorTracker;
     this.dbEnvironment = dbEnvironment;
     this.database = database;
     this.databaseConfig = databaseConfig;
@@ -55,16 +67,15 @@ public class BdbWrapper<KeyT, ValueT> {
     if (transaction != null) {
       transaction.abort();
     }
-    for (Map.Entry<Cursor, String> cursor : cursors.entrySet()) {
-      cursor.getKey().close();
-      LOG.error("Cursor was not closed. It was opened at: \n" + cursor.getValue());
+    for (String origin : cursorTracker.closeCursorsOf(database)) {
+      LOG.error("Cursor was not closed. It was opened at: \n" + origin);
     }
 
     database.close();
   }
 
   public DatabaseGetter.Builder<KeyT, ValueT> databaseGetter() {
-    return DatabaseGetter.databaseGetter(keyBinder, valueBinder, database, cursors);
+    return DatabaseGetter.databaseGetter(keyBinder, valueBinder, database, cursorTracker);
   }
 
   public void commit() {
@@ -75,61 +86,213 @@ public class BdbWrapper<KeyT, ValueT> {
   }
 
   public void replace(KeyT key, ValueT initialValue, Function<ValueT, ValueT> replacer) throws DatabaseWriteException {
-    synchronized (keyEntry) {
-      try (Cursor cursor = database.openCursor(transaction, CursorConfig.DEFAULT)) {
-        keyBinder.objectToEntry(key, keyEntry);
-        OperationStatus searchResult = cursor.getSearchKey(keyEntry, valueEntry, LockMode.DEFAULT);
-        ValueT newValue = initialValue;
-        if (searchResult.equals(OperationStatus.SUCCESS)) {
-          newValue = replacer.apply(valueBinder.entryToObject(valueEntry));
-        }
-        valueBinder.objectToEntry(newValue, valueEntry);
-        cursor.putCurrent(valueEntry);
-      } catch (Exception e) {
-        throw new DatabaseWriteException(e);
+    final DatabaseEntry keyEntry = this.keyEntry.get();
+    final DatabaseEntry valueEntry = this.valueEntry.get();
+    Lock lock = null;
+    try (Cursor cursor = database.openCursor(transaction, CursorConfig.DEFAULT)) {
+      keyBinder.objectToEntry(key, keyEntry);
+      lock = lockFor(keyEntry);
+      OperationStatus searchResult = cursor.getSearchKey(keyEntry, valueEntry, LockMode.DEFAULT);
+      ValueT newValue = initialValue;
+      if (searchResult.equals(OperationStatus.SUCCESS)) {
+        newValue = replacer.apply(valueBinder.entryToObject(valueEntry));
+      }
+      valueBinder.objectToEntry(newValue, valueEntry);
+      cursor.putCurrent(valueEntry);
+    } catch (Exception e) {
+      throw new DatabaseWriteException(e);
+    } finally {
+      if (lock != null) {
+        lock.unlock();
       }
     }
   }
 
   public boolean put(KeyT key, ValueT value) throws DatabaseWriteException {
-    synchronized (keyEntry) {
-      try {
+    final DatabaseEntry keyEntry = this.keyEntry.get();
+    final DatabaseEntry valueEntry = this.valueEntry.get();
+    try {
+      keyBinder.objectToEntry(key, keyEntry);
+      if (databaseConfig.getSortedDuplicates()) {
+        //putNoDupData is atomic, so it needs no lock of our own
+        valueBinder.objectToEntry(value, valueEntry);
+        return database.putNoDupData(transaction, keyEntry, valueEntry) != null;
+      } else {
+        final Lock lock = lockFor(keyEntry);
+        try (Cursor cursor = database.openCursor(transaction, CursorConfig.DEFAULT)) {
+          return put(cursor, keyEntry, valueEntry, value);
+        } finally {
+          lock.unlock();
+        }
+      }
+    } catch (Exception e) {
+      throw new DatabaseWriteException(e);
+    }
+  }
+
+  private boolean put(Cursor cursor, DatabaseEntry keyEntry, DatabaseEntry valueEntry, ValueT value) {
+    OperationStatus searchResult = cursor.getSearchKey(keyEntry, valueEntry, LockMode.DEFAULT);
+    if (searchResult == SUCCESS && Objects.equals(value, valueBinder.entryToObject(valueEntry))) {
+      return false;
+    } else {
+      valueBinder.objectToEntry(value, valueEntry);
+      return cursor.put(keyEntry, valueEntry) != null;
+    }
+  }
+
+  public boolean delete(KeyT key, ValueT value) throws DatabaseWriteException {
+    final DatabaseEntry keyEntry = this.keyEntry.get();
+    final DatabaseEntry valueEntry = this.valueEntry.get();
+    Lock lock = null;
+    try (Cursor cursor = database.openCursor(transaction, CursorConfig.DEFAULT)) {
+      keyBinder.objectToEntry(key, keyEntry);
+      valueBinder.objectToEntry(value, valueEntry);
+      lock = lockFor(keyEntry);
+      return delete(cursor, keyEntry, valueEntry);
+    } catch (Exception e) {
+      throw new DatabaseWriteException(e);
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  private boolean delete(Cursor cursor, DatabaseEntry keyEntry, DatabaseEntry valueEntry) {
+    OperationStatus searchResult = cursor.getSearchBoth(keyEntry, valueEntry, LockMode.DEFAULT);
+    return searchResult.equals(OperationStatus.SUCCESS) && cursor.delete() == OperationStatus.SUCCESS;
+  }
+
+  /**
+   * Returns a batch that applies all its puts and deletes using a single cursor.
+   */
+  public WriteBatch writeBatch() {
+    return new WriteBatch();
+  }
+
+  /**
+   * Locks the stripe of the key. Writes to keys that are in different stripes can run in parallel.
+   */
+  private Lock lockFor(DatabaseEntry keyEntry) {
+    final Lock lock = writeLocks.getAt(stripeOf(keyEntry));
+    lock.lock();
+    return lock;
+  }
+
+  private int stripeOf(DatabaseEntry keyEntry) {
+    final byte[] data = keyEntry.getData();
+    int hash = 1;
+    for (int i = keyEntry.getOffset(); i < keyEntry.getOffset() + keyEntry.getSize(); i++) {
+      hash = 31 * hash + data[i];
+    }
+    return Math.floorMod(hash, writeLocks.size());
+  }
+
+  /**
+   * A batch takes the stripe locks of all its keys before it starts, in ascending order, and keeps them until it is
+   * done. The cursor of the batch keeps a lock on its current record while it moves on to the next key, so taking the
+   * stripes one by one could deadlock with a put to that record.
+   */
+  public class WriteBatch {
+    private final List<BatchOperation> operations = new ArrayList<>();
+    private final List<KeyT> keys = new ArrayList<>();
+
+    public WriteBatch put(KeyT key, ValueT value) {
+      keys.add(key);
+      operations.add((cursor, keyEntry, valueEntry) -> {
         keyBinder.objectToEntry(key, keyEntry);
         if (databaseConfig.getSortedDuplicates()) {
           valueBinder.objectToEntry(value, valueEntry);
-          return database.putNoDupData(transaction, keyEntry, valueEntry) != null;
+          return cursor.putNoDupData(keyEntry, valueEntry) != null;
         } else {
-          try (Cursor cursor = database.openCursor(transaction, CursorConfig.DEFAULT)) {
-            OperationStatus searchResult = cursor.getSearchKey(keyEntry, valueEntry, LockMode.DEFAULT);
-            if (searchResult == SUCCESS && Objects.equals(value, valueBinder.entryToObject(valueEntry))) {
-              return false;
-            } else {
-              valueBinder.objectToEntry(value, valueEntry);
-              return database.put(transaction, keyEntry, valueEntry) != null;
+          return BdbWrapper.this.put(cursor, keyEntry, valueEntry, value);
+        }
+      });
+      return this;
+    }
+
+    public WriteBatch delete(KeyT key, ValueT value) {
+      keys.add(key);
+      operations.add((cursor, keyEntry, valueEntry) -> {
+        keyBinder.objectToEntry(key, keyEntry);
+        valueBinder.objectToEntry(value, valueEntry);
+        return BdbWrapper.this.delete(cursor, keyEntry, valueEntry);
+      });
+      return this;
+    }
+
+    public int size() {
+      return operations.size();
+    }
+
+    /**
+     * Applies the operations in the order in which they were added and returns the amount of operations that
+     * changed the database.
+     */
+    public int apply() throws DatabaseWriteException {
+      final DatabaseEntry keyEntry = BdbWrapper.this.keyEntry.get();
+      final DatabaseEntry valueEntry = BdbWrapper.this.valueEntry.get();
+      final SortedSet<Integer> stripes = new TreeSet<>();
+      for (KeyT key : keys) {
+        keyBinder.objectToEntry(key, keyEntry);
+        stripes.add(stripeOf(keyEntry));
+      }
+      final List<Lock> locks = new ArrayList<>(stripes.size());
+      int changes = 0;
+      try {
+        for (int stripe : stripes) {
+          final Lock lock = writeLocks.getAt(stripe);
+          lock.lock();
+          locks.add(lock);
+        }
+        try (Cursor cursor = database.openCursor(transaction, CursorConfig.DEFAULT)) {
+          for (BatchOperation operation : operations) {
+            if (operation.apply(cursor, keyEntry, valueEntry)) {
+              changes++;
             }
           }
         }
       } catch (Exception e) {
         throw new DatabaseWriteException(e);
+      } finally {
+        for (Lock lock : locks) {
+          lock.unlock();
+        }
       }
+      operations.clear();
+      keys.clear();
+      return changes;
     }
   }
 
-  public boolean delete(KeyT key, ValueT value) throws DatabaseWriteException {
-    boolean wasChange = false;
-    synchronized (keyEntry) {
-      try (Cursor cursor = database.openCursor(transaction, CursorConfig.DEFAULT)) {
+  private interface BatchOperation {
+    boolean apply(Cursor cursor, DatabaseEntry keyEntry, DatabaseEntry valueEntry);
+  }
+
+  /**
+   * Passes the values of each of the keys to the consumer, using one cursor for all keys. Provide the keys in the
+   * order of the database, so that the cursor only has to move forwards.
+   */
+  public void forEachValueOf(Iterable<KeyT> keys, BiConsumer<KeyT, ValueT> consumer) {
+    final DatabaseEntry keyEntry = new DatabaseEntry();
+    final DatabaseEntry valueEntry = new DatabaseEntry();
+    //the cursor is tracked like the cursors of the DatabaseGetters, so it counts as an open cursor of the data set
+    final String origin = cursorTracker.captureOrigin();
+    final Cursor cursor = database.openCursor(null, CursorConfig.DEFAULT);
+    cursorTracker.opened(cursor, origin);
+    try {
+      for (KeyT key : keys) {
         keyBinder.objectToEntry(key, keyEntry);
-        valueBinder.objectToEntry(value, valueEntry);
-        OperationStatus searchResult = cursor.getSearchBoth(keyEntry, valueEntry, LockMode.DEFAULT);
-        if (searchResult.equals(OperationStatus.SUCCESS)) {
-          wasChange = cursor.delete() == OperationStatus.SUCCESS;
+        OperationStatus status = cursor.getSearchKey(keyEntry, valueEntry, LockMode.DEFAULT);
+        while (status == SUCCESS) {
+          consumer.accept(key, valueBinder.entryToObject(valueEntry));
+          status = cursor.getNextDup(keyEntry, valueEntry, LockMode.DEFAULT);
         }
-      } catch (Exception e) {
-        throw new DatabaseWriteException(e);
       }
+    } finally {
+      cursor.close();
+      cursorTracker.closed(cursor);
     }
-    return wasChange;
   }
 
   public List<String> dump(String prefix, int start, int count, LockMode lockMode) {
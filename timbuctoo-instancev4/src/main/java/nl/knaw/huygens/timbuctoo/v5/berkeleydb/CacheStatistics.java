@@ -0,0 +1,82 @@
+package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
+
+import com.sleepycat.je.EnvironmentStats;
+
+import java.util.Optional;
+
+/**
+ * The cache usage of one environment, taken from its EnvironmentStats. The eviction counts of the environments that
+ * use the shared cache are those of the shared evictor. The bytes that the environments on the shared cache use are
+ * not known per environment, only the total of the shared cache.
+ */
+public class CacheStatistics {
+  private final boolean sharedCache;
+  private final boolean importing;
+  private final long cacheBytes;
+  private final long fetches;
+  private final long fetchMisses;
+  private final long nodesEvicted;
+
+  public CacheStatistics(boolean sharedCache, boolean importing, long cacheBytes, long fetches, long fetchMisses,
+                         long nodesEvicted) {
+    this.sharedCache = sharedCache;
+    this.importing = importing;
+    this.cacheBytes = cacheBytes;
+    this.fetches = fetches;
+    this.fetchMisses = fetchMisses;
+    this.nodesEvicted = nodesEvicted;
+  }
+
+  static CacheStatistics fromStats(EnvironmentStats stats, boolean sharedCache, boolean importing) {
+    return new CacheStatistics(
+      sharedCache,
+      importing,
+      //for an environment on the shared cache this is the usage of the whole shared cache
+      sharedCache ? 0 : stats.getCacheTotalBytes(),
+      stats.getNBINsFetch() + stats.getNLNsFetch() + stats.getNUpperINsFetch(),
+      stats.getNBINsFetchMiss() + stats.getNLNsFetchMiss() + stats.getNUpperINsFetchMiss(),
+      stats.getNNodesEvicted()
+    );
+  }
+
+  public boolean isSharedCache() {
+    return sharedCache;
+  }
+
+  public boolean isImporting() {
+    return importing;
+  }
+
+  /**
+   * The bytes of the reserved cache of this environment. Empty when the environment uses the shared cache.
+   */
+  public Optional<Long> getCacheBytes() {
+    return sharedCache ? Optional.empty() : Optional.of(cacheBytes);
+  }
+
+  public long getHits() {
+    return fetches - fetchMisses;
+  }
+
+  public long getMisses() {
+    return fetchMisses;
+  }
+
+  public double getHitRatio() {
+    return fetches == 0 ? 1.0 : (double) getHits() / fetches;
+  }
+
+  public long getNodesEvicted() {
+    return nodesEvicted;
+  }
+
+  @Override
+  public String toString() {
+    return (sharedCache ? "shared cache" : "reserved cache") + (importing ? " (importing)" : "") +
+      (sharedCache ? "" : ", bytes: " + cacheBytes) +
+      ", hits: " + getHits() +
+      ", misses: " + getMisses() +
+      String.format(", hit ratio: %.3f", getHitRatio()) +
+      ", evicted nodes: " + nodesEvicted;
+  }
+}
@@ -0,0 +1,136 @@
+package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.Environment;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps track of the cursors that are opened by the DatabaseGetters, so that cursors that are never closed can be
+ * found.
+ *
+ * <p>Recording where a cursor was opened means capturing a stack trace, which is expensive when done for every
+ * stream. So the mode determines for which cursors the stack trace is kept: none (OFF), one in sampleRate (SAMPLED) or
+ * all of them (FULL). The amount of open cursors and their age are tracked in every mode.</p>
+ */
+public class CursorTracker {
+  private final Mode mode;
+  private final int sampleRate;
+  private final Map<Cursor, OpenCursor> cursors = new ConcurrentHashMap<>();
+
+  @JsonCreator
+  public CursorTracker(@JsonProperty("mode") Mode mode, @JsonProperty("sampleRate") Integer sampleRate) {
+    this.mode = mode == null ? Mode.SAMPLED : mode;
+    this.sampleRate = sampleRate == null || sampleRate < 1 ? 100 : sampleRate;
+  }
+
+  public static CursorTracker full() {
+    return new CursorTracker(Mode.FULL, 1);
+  }
+
+  @JsonProperty("mode")
+  public Mode getMode() {
+    return mode;
+  }
+
+  @JsonProperty("sampleRate")
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Returns the stack trace of the caller if it should be recorded for the cursor that the caller is about to open.
+   * Otherwise it returns null.
+   */
+  String captureOrigin() {
+    if (mode == Mode.FULL || (mode == Mode.SAMPLED && ThreadLocalRandom.current().nextInt(sampleRate) == 0)) {
+      return ExceptionUtils.getStackTrace(new Throwable());
+    }
+    return null;
+  }
+
+  void opened(Cursor cursor, String origin) {
+    cursors.put(cursor, new OpenCursor(System.currentTimeMillis(), origin));
+  }
+
+  void closed(Cursor cursor) {
+    cursors.remove(cursor);
+  }
+
+  /**
+   * Closes the cursors of the database that are still open and returns where they were opened.
+   */
+  List<String> closeCursorsOf(Database database) {
+    List<String> result = new ArrayList<>();
+    for (Map.Entry<Cursor, OpenCursor> entry : cursors.entrySet()) {
+      if (entry.getKey().getDatabase() == database) {
+        entry.getKey().close();
+        cursors.remove(entry.getKey());
+        result.add(entry.getValue().origin == null ? "<origin was not recorded>" : entry.getValue().origin);
+      }
+    }
+    return result;
+  }
+
+  public int getOpenCursorCount() {
+    return cursors.size();
+  }
+
+  /**
+   * The amount of open cursors on the databases of the environment.
+   */
+  public int getOpenCursorCount(Environment environment) {
+    int result = 0;
+    for (Cursor cursor : cursors.keySet()) {
+      if (cursor.getDatabase().getEnvironment() == environment) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  public long getOldestCursorAge() {
+    final long now = System.currentTimeMillis();
+    return cursors.values().stream().mapToLong(cursor -> now - cursor.openedAt).max().orElse(0);
+  }
+
+  /**
+   * Describes the cursors that are open for at least minimumAge milliseconds.
+   */
+  public List<String> describeOpenCursors(long minimumAge) {
+    final long now = System.currentTimeMillis();
+    List<String> result = new ArrayList<>();
+    for (Map.Entry<Cursor, OpenCursor> entry : cursors.entrySet()) {
+      final long age = now - entry.getValue().openedAt;
+      if (age >= minimumAge) {
+        result.add(entry.getKey().getDatabase().getDatabaseName() + " open for " + age + " ms" +
+          (entry.getValue().origin == null ? "" : ", opened at:\n" + entry.getValue().origin));
+      }
+    }
+    return result;
+  }
+
+  public enum Mode {
+    OFF,
+    SAMPLED,
+    FULL
+  }
+
+  private static class OpenCursor {
+    private final long openedAt;
+    private final String origin;
+
+    OpenCursor(long openedAt, String origin) {
+      this.openedAt = openedAt;
+      this.origin = origin;
+    }
+  }
+}
@@ -7,11 +7,9 @@ import com.sleepycat.je.DatabaseEntry;
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.je.LockMode;
 import com.sleepycat.je.OperationStatus;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 
 import java.util.Iterator;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
@@ -28,19 +26,19 @@ public class DatabaseGetter<KeyT, ValueT> {
   private final DatabaseFunction initializer;
   private final DatabaseFunction iterator;
   private final Database database;
-  private final Map<Cursor, String> cursors;
+  private final CursorTracker cursorTracker;
 
   private static final Logger LOG = getLogger(DatabaseGetter.class);
 
   DatabaseGetter(EntryBinding<KeyT> keyBinder, EntryBinding<ValueT> valueBinder, DatabaseFunction initializer,
-                 DatabaseFunction iterator, Database database, Map<Cursor, String> cursors, DatabaseEntry key,
+                 DatabaseFunction iterator, Database database, CursorTracker cursorTracker, DatabaseEntry key,
                  DatabaseEntry value) {
     this.keyBinder = keyBinder;
     this.valueBinder = valueBinder;
     this.initializer = initializer;
     this.iterator = iterator;
     this.database = database;
-    this.cursors = cursors;
+    this.cursorTracker = cursorTracker;
     this.key = key;
     this.value = value;
   }
@@ -64,14 +62,14 @@ public class DatabaseGetter<KeyT, ValueT> {
       initializer,
       iterator,
       valueMaker,
-      ExceptionUtils.getStackTrace(new Throwable())
+      cursorTracker.captureOrigin()
     );
 
     return stream(data).onClose(() -> {
       try {
         if (data.cursor != null) {
           data.cursor.close();
-          cursors.remove(data.cursor);
+          cursorTracker.closed(data.cursor);
         }
       } catch (DatabaseException e) {
         LOG.error("Could not close cursor", e);
@@ -82,8 +80,8 @@ public class DatabaseGetter<KeyT, ValueT> {
   public static <KeyT, ValueT> Builder<KeyT, ValueT> databaseGetter(EntryBinding<KeyT> keyBinder,
                                                                     EntryBinding<ValueT> valueBinder,
                                                                     Database database,
-                                                                    Map<Cursor, String> cursors) {
-    return new DatabaseGetterBuilderImpl<>(keyBinder, valueBinder, database, cursors);
+                                                                    CursorTracker cursorTracker) {
+    return new DatabaseGetterBuilderImpl<>(keyBinder, valueBinder, database, cursorTracker);
   }
 
   private interface DatabaseFunctionMaker<KeyT, ValueT> {
@@ -169,7 +167,7 @@ public class DatabaseGetter<KeyT, ValueT> {
     private final EntryBinding<KeyT> keyBinder;
     private final EntryBinding<ValueT> valueBinder;
     private final Database database;
-    private final Map<Cursor, String> cursors;
+    private final CursorTracker cursorTracker;
 
     private KeyT key = null;
     private BiFunction<KeyT, KeyT, Boolean> keyCheck = null;
@@ -183,11 +181,11 @@ public class DatabaseGetter<KeyT, ValueT> {
     private int skipCount = 0;
 
     public DatabaseGetterBuilderImpl(EntryBinding<KeyT> keyBinder, EntryBinding<ValueT> valueBinder, Database database,
-                                     Map<Cursor, String> cursors) {
+                                     CursorTracker cursorTracker) {
       this.keyBinder = keyBinder;
       this.valueBinder = valueBinder;
       this.database = database;
-      this.cursors = cursors;
+      this.cursorTracker = cursorTracker;
     }
 
     @Override
@@ -203,7 +201,7 @@ public class DatabaseGetter<KeyT, ValueT> {
         iterator,
         iterator,
         database,
-        cursors,
+        cursorTracker,
         key, value);
     }
 
@@ -403,7 +401,7 @@ public class DatabaseGetter<KeyT, ValueT> {
         },
         iterator,
         database,
-        cursors,
+        cursorTracker,
         keyEntry,
         valueEntry
       );
@@ -415,17 +413,17 @@ public class DatabaseGetter<KeyT, ValueT> {
     private final DatabaseFunction initialLookup;
     private final DatabaseFunction iteration;
     private final Supplier<T> valueMaker;
-    private final String stackTrace;
+    private final String origin;
     public Cursor cursor;
     boolean shouldMove;
     OperationStatus status;
 
     public CursorIterator(DatabaseFunction initialLookup, DatabaseFunction iteration,
-                          Supplier<T> valueMaker, String stackTrace) {
+                          Supplier<T> valueMaker, String origin) {
       this.initialLookup = initialLookup;
       this.iteration = iteration;
       this.valueMaker = valueMaker;
-      this.stackTrace = stackTrace;
+      this.origin = origin;
       cursor = null;
       shouldMove = true;
       status = null;
@@ -437,7 +435,7 @@ public class DatabaseGetter<KeyT, ValueT> {
         try {
           if (cursor == null) {
             cursor = database.openCursor(null, null);
-            cursors.put(cursor, stackTrace);
+            cursorTracker.opened(cursor, origin);
             status = initialLookup.apply(cursor);
           } else {
             status = iteration.apply(cursor);
@@ -3,6 +3,7 @@ package nl.knaw.huygens.timbuctoo.v5.dataset;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbPersistentEnvironmentCreator;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.QuadStoreLayout;
 import nl.knaw.huygens.timbuctoo.v5.datastores.resourcesync.ResourceSync;
 import nl.knaw.huygens.timbuctoo.v5.filestorage.FileStorageFactory;
 import nl.knaw.huygens.timbuctoo.v5.filehelper.FileHelper;
@@ -12,21 +13,45 @@ import nl.knaw.huygens.timbuctoo.v5.util.TimbuctooRdfIdHelper;
 import org.immutables.value.Value;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 
 @Value.Immutable
 public interface DataSetConfiguration {
+  int DEFAULT_PRE_WARM_THREADS = 4;
+  int DEFAULT_MAX_RML_JOIN_VALUES_IN_MEMORY = 100_000;
+  int DEFAULT_IMPORT_LISTENER_THREADS = Runtime.getRuntime().availableProcessors();
 
   @JsonCreator
   static DataSetConfiguration create(@JsonProperty("dataSetMetadataLocation") String dataSetMetadataLocation,
                                      @JsonProperty("fileStorage") FileStorageFactory fileStorageFactory,
-                                     @JsonProperty("rdfIo") RdfIoFactory rdfIoFactory) {
+                                     @JsonProperty("rdfIo") RdfIoFactory rdfIoFactory,
+                                     @JsonProperty("defaultQuadStoreLayout") QuadStoreLayout defaultQuadStoreLayout,
+                                     @JsonProperty("compressGeneratedLogs") Boolean compressGeneratedLogs,
+                                     @JsonProperty("hotDataSets") List<String> hotDataSets,
+                                     @JsonProperty("preWarmThreads") Integer preWarmThreads,
+                                     @JsonProperty("idleDataSetTimeoutMinutes") Integer idleDataSetTimeoutMinutes,
+                                     @JsonProperty("maxOpenDataSets") Integer maxOpenDataSets,
+                                     @JsonProperty("maxRmlJoinValuesInMemory") Integer maxRmlJoinValuesInMemory,
+                                     @JsonProperty("rmlThreads") Integer rmlThreads,
+                                     @JsonProperty("importListenerThreads") Integer importListenerThreads) {
     return ImmutableDataSetConfiguration.builder()
       .dataSetMetadataLocation(dataSetMetadataLocation)
       .fileStorage(fileStorageFactory)
       .rdfIo(rdfIoFactory)
       .resourceSync(new ResourceSync(new FileHelper(dataSetMetadataLocation), fileStorageFactory))
+      .defaultQuadStoreLayout(defaultQuadStoreLayout == null ? QuadStoreLayout.STRING_KEYS : defaultQuadStoreLayout)
+      .compressGeneratedLogs(compressGeneratedLogs != null && compressGeneratedLogs)
+      .hotDataSets(hotDataSets == null ? Collections.emptyList() : hotDataSets)
+      .preWarmThreads(preWarmThreads == null ? DEFAULT_PRE_WARM_THREADS : preWarmThreads)
+      .idleDataSetTimeoutMinutes(idleDataSetTimeoutMinutes == null ? 0 : idleDataSetTimeoutMinutes)
+      .maxOpenDataSets(maxOpenDataSets == null ? 0 : maxOpenDataSets)
+      .maxRmlJoinValuesInMemory(maxRmlJoinValuesInMemory == null ? DEFAULT_MAX_RML_JOIN_VALUES_IN_MEMORY :
+        maxRmlJoinValuesInMemory)
+      .rmlThreads(rmlThreads == null ? 1 : rmlThreads)
+      .importListenerThreads(importListenerThreads == null ? DEFAULT_IMPORT_LISTENER_THREADS : importListenerThreads)
       .build();
   }
 
@@ -38,6 +63,82 @@ public interface DataSetConfiguration {
 
   ResourceSync getResourceSync();
 
+  /**
+   * The layout that is used for data sets that are created without specifying one.
+   */
+  @Value.Default
+  default QuadStoreLayout getDefaultQuadStoreLayout() {
+    return QuadStoreLayout.STRING_KEYS;
+  }
+
+  /**
+   * Whether the logs that are generated by Timbuctoo itself (uploads of tabular data, rml mappings) are gzipped while
+   * they are written to a temporary file. Saves disk space at the cost of some cpu time.
+   */
+  @Value.Default
+  default boolean getCompressGeneratedLogs() {
+    return false;
+  }
+
+  /**
+   * The combined ids of the data sets that are opened in the background right after startup. The other data sets are
+   * opened when they are used for the first time. Use "*" to open all data sets.
+   */
+  List<String> getHotDataSets();
+
+  /**
+   * The amount of data sets that are opened at the same time while opening the hot data sets.
+   */
+  @Value.Default
+  default int getPreWarmThreads() {
+    return DEFAULT_PRE_WARM_THREADS;
+  }
+
+  /**
+   * The data sets that are not used for this amount of minutes are closed, so their environments don't take up memory
+   * and file handles. They are opened again when they are used. 0 (the default) keeps them open.
+   */
+  @Value.Default
+  default int getIdleDataSetTimeoutMinutes() {
+    return 0;
+  }
+
+  /**
+   * The maximum amount of data sets that are kept open. When more data sets are open, the least recently used ones
+   * are closed. 0 (the default) means no maximum.
+   */
+  @Value.Default
+  default int getMaxOpenDataSets() {
+    return 0;
+  }
+
+  /**
+   * The amount of values that an rml data source keeps in memory to join the rows of other collections on. When a
+   * mapping has more, they are stored in a temporary database.
+   */
+  @Value.Default
+  default int getMaxRmlJoinValuesInMemory() {
+    return DEFAULT_MAX_RML_JOIN_VALUES_IN_MEMORY;
+  }
+
+  /**
+   * The amount of triples maps of the rml mappings that are executed at the same time. A triples map that joins on
+   * other triples maps waits until those are done. 1 (the default) executes them one by one.
+   */
+  @Value.Default
+  default int getRmlThreads() {
+    return 1;
+  }
+
+  /**
+   * The amount of threads on which the stores that can handle it process the changed subjects of an import. Defaults
+   * to the amount of processors. 1 processes the subjects on the importing thread.
+   */
+  @Value.Default
+  default int getImportListenerThreads() {
+    return DEFAULT_IMPORT_LISTENER_THREADS;
+  }
+
   default DataSetRepository createRepository(ExecutorService executorService, PermissionFetcher permissionFetcher,
                                              BdbPersistentEnvironmentCreator databases,
                                              TimbuctooRdfIdHelper rdfIdHelper,
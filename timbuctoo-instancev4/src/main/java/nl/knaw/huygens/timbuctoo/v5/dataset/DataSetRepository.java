@@ -15,6 +15,7 @@ import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataSetPublishException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataStoreCreationException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.IllegalDataSetNameException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.NotEnoughPermissionsException;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.QuadStoreLayout;
 import nl.knaw.huygens.timbuctoo.v5.datastores.resourcesync.ResourceSync;
 import nl.knaw.huygens.timbuctoo.v5.datastores.resourcesync.ResourceSyncException;
 import nl.knaw.huygens.timbuctoo.v5.filehelper.FileHelper;
@@ -34,19 +35,28 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet.dataSet;
 
@@ -54,30 +64,56 @@ import static nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet.dataSet;
  * - stores all configuration parameters so it can inject them in the dataset constructor
  * - makes CreateDataSet a singleton
  * - keeps track of all created dataSets across restarts (stores them in a file)
+ *
+ * <p>The data sets are kept in concurrent maps so looking them up never blocks. Creating, removing and publishing the
+ * data sets of one owner are done while holding the lock of that owner's map.</p>
+ *
+ * <p>At startup only the metadata of the data sets is read. A data set is opened when it is requested for the first
+ * time, or in the background right after startup when it is one of the hot data sets of the configuration.</p>
+ *
+ * <p>When the configuration has an idle timeout or a maximum of open data sets, a background task closes the data
+ * sets that were not used for a while (or least recently) together with their environment. A data set is not closed
+ * while it is importing, has open cursors or was looked up during a {@link DataSetUsage} that is still running. A
+ * lookup on a thread without a usage keeps the data set open for at least {@link #UNTRACKED_LOOKUP_MILLIS}, because
+ * it is not known when such a caller is done with it.</p>
  */
 public class DataSetRepository {
 
   private static final Logger LOG = LoggerFactory.getLogger(DataSetRepository.class);
+  static final long UNTRACKED_LOOKUP_MILLIS = TimeUnit.MINUTES.toMillis(5);
 
   private final ExecutorService executorService;
   private final PermissionFetcher permissionFetcher;
   private final DataSetConfiguration configuration;
   private final BdbEnvironmentCreator dataStoreFactory;
-  private final Map<String, Map<String, DataSet>> dataSetMap;
+  private final ConcurrentMap<String, Map<String, LazyDataSet>> dataSetMap;
   private final Map<String, Set<DataSetMetaData>> metaDataSet;
   private final TimbuctooRdfIdHelper rdfIdHelper;
   private final String rdfBaseUri;
   private final boolean publicByDefault;
-  private final HashMap<UUID, StringBuffer> statusMap;
+  private final Map<UUID, StringBuffer> statusMap;
   private final FileHelper fileHelper;
   private final ResourceSync resourceSync;
   private Consumer<String> onUpdated;
+  private final List<Consumer<String>> dataSetChangeListeners = new CopyOnWriteArrayList<>();
+  private ScheduledExecutorService idleDataSetCloser;
+  private final ThreadLocal<DataSetUsage.References> currentUsage = new ThreadLocal<>();
+  private final Clock clock;
 
 
   public DataSetRepository(ExecutorService executorService, PermissionFetcher permissionFetcher,
                            DataSetConfiguration configuration, BdbEnvironmentCreator dataStoreFactory,
                            TimbuctooRdfIdHelper rdfIdHelper, Consumer<String> onUpdated,
                            boolean publicByDefault) throws IOException {
+    this(executorService, permissionFetcher, configuration, dataStoreFactory, rdfIdHelper, onUpdated,
+      publicByDefault, Clock.systemUTC());
+  }
+
+  DataSetRepository(ExecutorService executorService, PermissionFetcher permissionFetcher,
+                    DataSetConfiguration configuration, BdbEnvironmentCreator dataStoreFactory,
+                    TimbuctooRdfIdHelper rdfIdHelper, Consumer<String> onUpdated,
+                    boolean publicByDefault, Clock clock) throws IOException {
+    this.clock = clock;
     this.executorService = executorService;
     this.permissionFetcher = permissionFetcher;
     this.configuration = configuration;
@@ -114,76 +150,238 @@ public class DataSetRepository {
     this.rdfIdHelper = rdfIdHelper;
     this.rdfBaseUri = rdfIdHelper.instanceBaseUri();
     this.publicByDefault = publicByDefault;
-    statusMap = new HashMap<>();
+    statusMap = new ConcurrentHashMap<>();
     resourceSync = configuration.getResourceSync();
 
-    dataSetMap = new HashMap<>();
+    dataSetMap = new ConcurrentHashMap<>();
     this.onUpdated = onUpdated;
   }
 
-  private void loadDataSetsFromJson() throws IOException {
-    synchronized (dataSetMap) {
-      for (Map.Entry<String, Set<DataSetMetaData>> entry : metaDataSet.entrySet()) {
-        String ownerId = entry.getKey();
-        Set<DataSetMetaData> ownerMetaDatas = entry.getValue();
-        HashMap<String, DataSet> ownersSets = new HashMap<>();
-        dataSetMap.put(ownerId, ownersSets);
+  private void loadDataSetsFromJson() {
+    for (Map.Entry<String, Set<DataSetMetaData>> entry : metaDataSet.entrySet()) {
+      String ownerId = entry.getKey();
+      Set<DataSetMetaData> ownerMetaDatas = entry.getValue();
+      Map<String, LazyDataSet> ownersSets = getOwnersDataSets(ownerId);
+      synchronized (ownersSets) {
         for (DataSetMetaData dataSetMetaData : ownerMetaDatas) {
-          String dataSetName = dataSetMetaData.getDataSetId();
-          try {
-            ownersSets.put(
-              dataSetName,
-              dataSet(
-                dataSetMetaData,
-                configuration,
-                fileHelper,
-                executorService,
-                rdfBaseUri,
-                dataStoreFactory,
-                resourceSync,
-                () -> onUpdated.accept(dataSetMetaData.getCombinedId())
-              )
-            );
-          } catch (DataStoreCreationException | ResourceSyncException e) {
-            throw new IOException(e);
-          }
+          ownersSets.put(dataSetMetaData.getDataSetId(), new LazyDataSet(dataSetMetaData, this::openDataSet, clock));
+          notifyDataSetChanged(dataSetMetaData.getCombinedId());
         }
       }
     }
   }
 
-  public Optional<DataSet> getDataSet(User user, String ownerId, String dataSetId) {
-    synchronized (dataSetMap) {
-      if (dataSetMap.containsKey(ownerId) && dataSetMap.get(ownerId).containsKey(dataSetId)) {
-        try {
-          if (permissionFetcher.getPermissions(user, dataSetMap.get(ownerId).get(dataSetId).getMetadata()
-          ).contains(Permission.READ)) {
-            return Optional.ofNullable(dataSetMap.get(ownerId).get(dataSetId));
-          }
-        } catch (PermissionFetchingException e) {
-          return Optional.empty();
+  private DataSet openDataSet(DataSetMetaData dataSetMetaData)
+    throws IOException, DataStoreCreationException, ResourceSyncException {
+    return dataSet(
+      dataSetMetaData,
+      configuration,
+      fileHelper,
+      executorService,
+      rdfBaseUri,
+      dataStoreFactory,
+      resourceSync,
+      () -> dataSetUpdated(dataSetMetaData.getCombinedId())
+    );
+  }
+
+  /**
+   * Opens the hot data sets on a few threads. Does not wait for them to be opened.
+   */
+  private void preWarm() {
+    final List<String> hotDataSets = configuration.getHotDataSets();
+    final List<LazyDataSet> toOpen = getLazyDataSets()
+      .filter(lazy -> hotDataSets.contains("*") || hotDataSets.contains(lazy.getMetadata().getCombinedId()))
+      .collect(Collectors.toList());
+    if (toOpen.isEmpty()) {
+      return;
+    }
+    LOG.info("Opening " + toOpen.size() + " data sets in the background");
+    final ExecutorService preWarmThreads = Executors.newFixedThreadPool(Math.max(1, configuration.getPreWarmThreads()));
+    for (LazyDataSet lazyDataSet : toOpen) {
+      preWarmThreads.submit(() -> {
+        //the usage keeps the idle closer away until the data set is fully opened
+        try (DataSetUsage usage = startUsage()) {
+          open(lazyDataSet);
         }
+      });
+    }
+    //the threads stop when all data sets are opened
+    preWarmThreads.shutdown();
+  }
+
+  /**
+   * Starts a usage on the current thread. The data sets that are looked up on this thread are kept open until the
+   * returned usage is closed. Lookups on threads without a usage only keep the data set open for
+   * {@link #UNTRACKED_LOOKUP_MILLIS}, so code that runs longer than that outside of a request should start a usage.
+   */
+  public DataSetUsage startUsage() {
+    final DataSetUsage.References current = currentUsage.get();
+    if (current != null && current.hold()) {
+      return new DataSetUsage(current, () -> {
+      });
+    }
+    final DataSetUsage.References started = new DataSetUsage.References();
+    currentUsage.set(started);
+    return new DataSetUsage(started, currentUsage::remove);
+  }
+
+  /**
+   * Returns an executor that runs its tasks within the usage of the current thread, so the data sets that the tasks
+   * use or look up stay open until they are done as well. Without a usage on the current thread the executor is
+   * returned as is.
+   */
+  public Executor continueCurrentUsageOn(Executor executor) {
+    final DataSetUsage.References references = currentUsage.get();
+    if (references == null) {
+      return executor;
+    }
+    return task -> {
+      if (!references.hold()) {
+        executor.execute(task);
+        return;
+      }
+      try {
+        executor.execute(() -> {
+          final DataSetUsage.References previous = currentUsage.get();
+          currentUsage.set(references);
+          try {
+            task.run();
+          } finally {
+            if (previous == null) {
+              currentUsage.remove();
+            } else {
+              currentUsage.set(previous);
+            }
+            references.release();
+          }
+        });
+      } catch (RuntimeException e) {
+        references.release();
+        throw e;
       }
+    };
+  }
+
+  private DataSet acquire(LazyDataSet lazyDataSet) throws DataStoreCreationException {
+    final DataSetUsage.References usage = currentUsage.get();
+    return usage == null ? lazyDataSet.get() : usage.acquire(lazyDataSet);
+  }
+
+  private Optional<DataSet> open(LazyDataSet lazyDataSet) {
+    try {
+      return Optional.of(acquire(lazyDataSet));
+    } catch (DataStoreCreationException e) {
+      LOG.error("Could not open data set " + lazyDataSet.getMetadata().getCombinedId(), e);
       return Optional.empty();
     }
   }
 
-  public Optional<DataSet> unsafeGetDataSetWithoutCheckingPermissions(String ownerId, String dataSetId) {
-    synchronized (dataSetMap) {
-      if (dataSetMap.containsKey(ownerId) && dataSetMap.get(ownerId).containsKey(dataSetId)) {
-        return Optional.ofNullable(dataSetMap.get(ownerId).get(dataSetId));
-      } else {
-        return Optional.empty();
+  /**
+   * Closes the data sets that are idle for longer than the timeout of the configuration and, if there are still more
+   * open data sets than the maximum, the least recently used ones. Data sets that were looked up in the last
+   * {@link #UNTRACKED_LOOKUP_MILLIS} are never closed, because a lookup without a usage might still be using them.
+   */
+  void closeIdleDataSets() {
+    final long idleTimeout = TimeUnit.MINUTES.toMillis(configuration.getIdleDataSetTimeoutMinutes());
+    final int maxOpenDataSets = configuration.getMaxOpenDataSets();
+    final long now = clock.millis();
+    final long leastRecentlyUsedSince = now - UNTRACKED_LOOKUP_MILLIS;
+    final long idleSince = now - Math.max(idleTimeout, UNTRACKED_LOOKUP_MILLIS);
+    final List<LazyDataSet> opened = getLazyDataSets()
+      .filter(lazy -> lazy.getIfOpened().isPresent())
+      .sorted(Comparator.comparingLong(LazyDataSet::getLastAccess))
+      .collect(Collectors.toList());
+    int tooMany = maxOpenDataSets > 0 ? opened.size() - maxOpenDataSets : 0;
+    for (LazyDataSet lazyDataSet : opened) {
+      final long lastAccess = lazyDataSet.getLastAccess();
+      final boolean idle = idleTimeout > 0 && lastAccess < idleSince;
+      if (!idle && (tooMany <= 0 || lastAccess >= leastRecentlyUsedSince)) {
+        //the others are used more recently
+        break;
+      }
+      try {
+        if (lazyDataSet.closeIfUnused(idle ? idleSince : leastRecentlyUsedSince, this::isInUse, this::closeDataSet)) {
+          LOG.info("Closed data set " + lazyDataSet.getMetadata().getCombinedId() + " that was not used for " +
+            (now - lastAccess) + " ms");
+          tooMany--;
+        }
+      } catch (RuntimeException e) {
+        LOG.error("Could not close data set " + lazyDataSet.getMetadata().getCombinedId(), e);
       }
     }
   }
 
+  private boolean isInUse(DataSet dataSet) {
+    final DataSetMetaData metadata = dataSet.getMetadata();
+    return dataSet.getImportManager().isImporting() ||
+      dataStoreFactory.getOpenCursorCount(metadata.getOwnerId(), metadata.getDataSetId()) > 0;
+  }
+
+  private void closeDataSet(DataSet dataSet) {
+    dataSet.stop();
+    dataStoreFactory.removeDatabasesFor(dataSet.getMetadata().getOwnerId(), dataSet.getMetadata().getDataSetId());
+  }
+
+  private void startClosingIdleDataSets() {
+    if (configuration.getIdleDataSetTimeoutMinutes() <= 0 && configuration.getMaxOpenDataSets() <= 0) {
+      return;
+    }
+    idleDataSetCloser = Executors.newSingleThreadScheduledExecutor();
+    idleDataSetCloser.scheduleWithFixedDelay(this::closeIdleDataSets, 1, 1, TimeUnit.MINUTES);
+  }
+
+  private Stream<LazyDataSet> getLazyDataSets() {
+    return dataSetMap.values().stream().flatMap(x -> x.values().stream());
+  }
+
+  private Optional<LazyDataSet> getLazyDataSet(String ownerId, String dataSetId) {
+    Map<String, LazyDataSet> ownersSets = dataSetMap.get(ownerId);
+    if (ownersSets == null) {
+      return Optional.empty();
+    } else {
+      return Optional.ofNullable(ownersSets.get(dataSetId));
+    }
+  }
+
+  private boolean hasPermission(User user, DataSetMetaData metadata, Permission permission) {
+    try {
+      return permissionFetcher.getPermissions(user, metadata).contains(permission);
+    } catch (PermissionFetchingException e) {
+      return false;
+    }
+  }
+
+  public Optional<DataSet> getDataSet(User user, String ownerId, String dataSetId) {
+    //the permissions only need the metadata, so the data set is only opened for users that may read it
+    return getLazyDataSet(ownerId, dataSetId)
+      .filter(lazy -> hasPermission(user, lazy.getMetadata(), Permission.READ))
+      .flatMap(this::open);
+  }
+
+  public Optional<DataSet> unsafeGetDataSetWithoutCheckingPermissions(String ownerId, String dataSetId) {
+    return getLazyDataSet(ownerId, dataSetId).flatMap(this::open);
+  }
+
+  private Map<String, LazyDataSet> getOwnersDataSets(String ownerId) {
+    //the maps of the owners are never removed, so the lock of such a map guards all changes to it
+    return dataSetMap.computeIfAbsent(ownerId, key -> new ConcurrentHashMap<>());
+  }
+
   public boolean userMatchesPrefix(User user, String prefix) {
     return user != null && user.getPersistentId() != null && ("u" + user.getPersistentId()).equals(prefix);
   }
 
   public DataSet createDataSet(User user, String dataSetId) throws DataStoreCreationException,
     IllegalDataSetNameException {
+    return createDataSet(user, dataSetId, configuration.getDefaultQuadStoreLayout());
+  }
+
+  /**
+   * Creates the data set with the provided quadStoreLayout. The layout is ignored if the data set already exists.
+   */
+  public DataSet createDataSet(User user, String dataSetId, QuadStoreLayout quadStoreLayout)
+    throws DataStoreCreationException, IllegalDataSetNameException {
     //The ownerId might not be valid (i.e. a safe string). We make it safe here:
     //dataSetId is under the control of the user so we simply throw if it's not valid
     String ownerPrefix = "u" + user.getPersistentId();
@@ -219,80 +417,75 @@ public class DataSetRepository {
       baseUri,
       uriPrefix,
       false,
-      publicByDefault
+      publicByDefault,
+      quadStoreLayout
     );
 
-    ObjectMapper objectMapper = new ObjectMapper()
-      .registerModule(new Jdk8Module())
-      .registerModule(new GuavaModule())
-      .registerModule(new TimbuctooCustomSerializers())
-      .enable(SerializationFeature.INDENT_OUTPUT);
-
-    File metaDataFile = fileHelper.fileInDataSet(ownerPrefix, dataSetId, "metaData.json");
-
-
-    try {
-      objectMapper.writeValue(metaDataFile, dataSet);
-    } catch (IOException e) {
-      throw new DataStoreCreationException(e);
+    Map<String, LazyDataSet> userDataSets = getOwnersDataSets(ownerPrefix);
+    LazyDataSet existing = userDataSets.get(dataSetId);
+    if (existing != null) {
+      return acquire(existing);
     }
 
+    synchronized (userDataSets) {
+      if (!userDataSets.containsKey(dataSetId)) {
+        ObjectMapper objectMapper = new ObjectMapper()
+          .registerModule(new Jdk8Module())
+          .registerModule(new GuavaModule())
+          .registerModule(new TimbuctooCustomSerializers())
+          .enable(SerializationFeature.INDENT_OUTPUT);
 
-    synchronized (dataSetMap) {
-      Map<String, DataSet> userDataSets = dataSetMap.computeIfAbsent(ownerPrefix, key -> new HashMap<>());
+        File metaDataFile = fileHelper.fileInDataSet(ownerPrefix, dataSetId, "metaData.json");
 
-      if (!userDataSets.containsKey(dataSetId)) {
         try {
+          objectMapper.writeValue(metaDataFile, dataSet);
           permissionFetcher.initializeOwnerAuthorization(user, dataSet.getOwnerId(), dataSet.getDataSetId());
-          userDataSets.put(
-            dataSetId,
-            dataSet(
-              dataSet,
-              configuration,
-              fileHelper,
-              executorService,
-              rdfBaseUri,
-              dataStoreFactory,
-              resourceSync,
-              () -> onUpdated.accept(dataSet.getCombinedId())
-            )
-          );
+          final LazyDataSet created = new LazyDataSet(dataSet, this::openDataSet, clock);
+          created.get();
+          userDataSets.put(dataSetId, created);
+          notifyDataSetChanged(dataSet.getCombinedId());
         } catch (
           PermissionFetchingException | AuthorizationCreationException | IOException | ResourceSyncException e) {
           throw new DataStoreCreationException(e);
         }
       }
-      return userDataSets.get(dataSetId);
+      return acquire(userDataSets.get(dataSetId));
     }
   }
 
   boolean dataSetExists(String ownerId, String dataSet) {
-    return unsafeGetDataSetWithoutCheckingPermissions(ownerId, dataSet).isPresent();
+    return getLazyDataSet(ownerId, dataSet).isPresent();
   }
 
   public void publishDataSet(User user, String ownerId, String dataSetName)
     throws DataSetPublishException {
-    Optional<DataSet> dataSet = getDataSet(user,
-      ownerId, dataSetName);
+    Optional<LazyDataSet> dataSet = getLazyDataSet(ownerId, dataSetName)
+      .filter(lazy -> hasPermission(user, lazy.getMetadata(), Permission.READ));
     try {
       if (dataSet.isPresent() &&
         permissionFetcher.getPermissions(user,dataSet.get().getMetadata()).contains(Permission.ADMIN)) {
         DataSetMetaData dataSetMetaData = dataSet.get().getMetadata();
 
-        dataSetMetaData.publish();
+        synchronized (getOwnersDataSets(ownerId)) {
+          if (!dataSetExists(ownerId, dataSetName)) {
+            //removed in the mean time
+            return;
+          }
+          dataSetMetaData.publish();
 
-        ObjectMapper objectMapper = new ObjectMapper()
-          .registerModule(new Jdk8Module())
-          .registerModule(new GuavaModule())
-          .registerModule(new TimbuctooCustomSerializers())
-          .enable(SerializationFeature.INDENT_OUTPUT);
+          ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new Jdk8Module())
+            .registerModule(new GuavaModule())
+            .registerModule(new TimbuctooCustomSerializers())
+            .enable(SerializationFeature.INDENT_OUTPUT);
 
-        File metaDataFile = fileHelper.fileInDataSet(ownerId, dataSetName, "metaData.json");
+          File metaDataFile = fileHelper.fileInDataSet(ownerId, dataSetName, "metaData.json");
 
-        try {
-          objectMapper.writeValue(metaDataFile, dataSetMetaData);
-        } catch (IOException e) {
-          throw new DataSetPublishException(e);
+          try {
+            objectMapper.writeValue(metaDataFile, dataSetMetaData);
+          } catch (IOException e) {
+            throw new DataSetPublishException(e);
+          }
         }
       }
     } catch (PermissionFetchingException e) {
@@ -300,27 +493,35 @@ public class DataSetRepository {
     }
   }
 
-  public Collection<DataSet> getDataSets() {
-    return dataSetMap.values().stream().flatMap(x -> x.values().stream())
-      .collect(Collectors.toList());
+  /**
+   * Returns the metadata of all data sets without opening them.
+   */
+  public Collection<DataSetMetaData> getDataSetMetadata() {
+    return getLazyDataSets().map(LazyDataSet::getMetadata).collect(Collectors.toList());
   }
 
   public Collection<DataSet> getPromotedDataSets() {
-    return dataSetMap.values().stream().flatMap(x -> x.values().stream())
+    return getLazyDataSets()
       .filter(x -> x.getMetadata().isPromoted())
+      .map(this::open)
+      .filter(Optional::isPresent)
+      .map(Optional::get)
       .collect(Collectors.toList());
   }
 
-  public Collection<DataSet> getDataSetsWithWriteAccess(User user) {
-    List<DataSet> dataSetsWithWriteAccess = new ArrayList<>();
+  /**
+   * Returns the metadata of the data sets that the user may write to without opening them.
+   */
+  public Collection<DataSetMetaData> getDataSetMetadataWithWriteAccess(User user) {
+    List<DataSetMetaData> dataSetsWithWriteAccess = new ArrayList<>();
 
-    for (Map<String, DataSet> userDataSets : dataSetMap.values()) {
-      for (DataSet dataSet : userDataSets.values()) {
+    for (Map<String, LazyDataSet> userDataSets : dataSetMap.values()) {
+      for (LazyDataSet dataSet : userDataSets.values()) {
         try {
           boolean isAllowedToWrite = permissionFetcher.getOldPermissions(user, dataSet.getMetadata().getCombinedId())
             .contains(Permission.WRITE);
           if (isAllowedToWrite) {
-            dataSetsWithWriteAccess.add(dataSet);
+            dataSetsWithWriteAccess.add(dataSet.getMetadata());
           }
         } catch (PermissionFetchingException e) {
           LOG.error("Could not fetch write permission", e);
@@ -351,36 +552,60 @@ public class DataSetRepository {
 
   public void removeDataSet(String ownerId, String dataSetName, User user)
     throws IOException, NotEnoughPermissionsException {
-    try {
-      DataSet dataSet = dataSetMap.get(ownerId).get(dataSetName);
-      String combinedId = dataSet.getMetadata().getCombinedId();
-      if (!permissionFetcher.getPermissions(user, dataSet.getMetadata()).contains(Permission.ADMIN)) {
-        throw new NotEnoughPermissionsException(
-          String.format(
-            "User '%s' is not allowed to remove dataset '%s'",
-            user.getDisplayName(),
-            combinedId
-          )
-        );
+    Map<String, LazyDataSet> ownersSets = getOwnersDataSets(ownerId);
+    synchronized (ownersSets) {
+      try {
+        LazyDataSet dataSet = ownersSets.get(dataSetName);
+        String combinedId = dataSet.getMetadata().getCombinedId();
+        if (!permissionFetcher.getPermissions(user, dataSet.getMetadata()).contains(Permission.ADMIN)) {
+          throw new NotEnoughPermissionsException(
+            String.format(
+              "User '%s' is not allowed to remove dataset '%s'",
+              user.getDisplayName(),
+              combinedId
+            )
+          );
+        }
+        //remove it first, so the lookups don't return a stopped data set
+        ownersSets.remove(dataSetName);
+        dataSet.close();
+        notifyDataSetChanged(combinedId);
+        resourceSync.removeDataSet(ownerId, dataSetName);
+        permissionFetcher.removeAuthorizations(combinedId);
+      } catch (ResourceSyncException | PermissionFetchingException e) {
+        throw new IOException(e);
       }
-      dataSet.stop();
-      dataSetMap.get(ownerId).remove(dataSetName);
-      resourceSync.removeDataSet(ownerId, dataSetName);
-      permissionFetcher.removeAuthorizations(combinedId);
-    } catch (ResourceSyncException | PermissionFetchingException e) {
-      throw new IOException(e);
+
+      // remove folder
+      FileUtils.deleteDirectory(fileHelper.dataSetPath(ownerId, dataSetName));
     }
+  }
 
-    // remove folder
-    FileUtils.deleteDirectory(fileHelper.dataSetPath(ownerId, dataSetName));
+  /**
+   * Registers a listener that is called with the combined id of a data set whenever that data set is loaded, created,
+   * removed or has finished an import.
+   */
+  public void subscribeToDataSetChanges(Consumer<String> listener) {
+    dataSetChangeListeners.add(listener);
+  }
 
+  private void dataSetUpdated(String combinedId) {
+    notifyDataSetChanged(combinedId);
+    onUpdated.accept(combinedId);
+  }
 
+  private void notifyDataSetChanged(String combinedId) {
+    for (Consumer<String> listener : dataSetChangeListeners) {
+      listener.accept(combinedId);
+    }
   }
 
   public void stop() {
-    for (DataSet dataSet : getDataSets()) {
-      dataSet.stop();
+    if (idleDataSetCloser != null) {
+      idleDataSetCloser.shutdownNow();
     }
+    //the data sets that were never used don't have to be opened to be stopped
+    getLazyDataSets().forEach(LazyDataSet::close);
 
     dataStoreFactory.stop();
   }
@@ -388,6 +613,8 @@ public class DataSetRepository {
   public void start() throws IOException {
     dataStoreFactory.start();
     loadDataSetsFromJson();
+    preWarm();
+    startClosingIdleDataSets();
   }
 
 }
@@ -0,0 +1,78 @@
+package nl.knaw.huygens.timbuctoo.v5.dataset;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataStoreCreationException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A unit of work (such as a request). The data sets that are looked up during the usage are acquired once and released
+ * when the usage has ended, so the idle data set closer can't close them while they are being used.
+ *
+ * <p>Starting a usage on a thread that already has one continues the existing usage. Tasks that continue the usage on
+ * another thread (see {@link DataSetRepository#continueCurrentUsageOn}) hold it as well. The data sets are released
+ * when the last of them is done.</p>
+ */
+public class DataSetUsage implements AutoCloseable {
+  private final References references;
+  private final Runnable onClose;
+  private boolean closed;
+
+  DataSetUsage(References references, Runnable onClose) {
+    this.references = references;
+    this.onClose = onClose;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    onClose.run();
+    references.release();
+  }
+
+  /**
+   * The data sets that were acquired during a usage and the amount of threads and tasks that still hold it.
+   */
+  static class References {
+    private final Set<LazyDataSet> acquired = new HashSet<>();
+    private int holders = 1;
+
+    /**
+     * @return false when the usage has already ended
+     */
+    synchronized boolean hold() {
+      if (holders == 0) {
+        return false;
+      }
+      holders++;
+      return true;
+    }
+
+    synchronized DataSet acquire(LazyDataSet lazyDataSet) throws DataStoreCreationException {
+      if (acquired.contains(lazyDataSet)) {
+        return lazyDataSet.get();
+      }
+      final DataSet dataSet = lazyDataSet.acquire();
+      acquired.add(lazyDataSet);
+      return dataSet;
+    }
+
+    void release() {
+      final List<LazyDataSet> toRelease;
+      synchronized (this) {
+        if (--holders > 0) {
+          return;
+        }
+        toRelease = new ArrayList<>(acquired);
+        acquired.clear();
+      }
+      toRelease.forEach(LazyDataSet::release);
+    }
+  }
+}
@@ -23,20 +23,28 @@ import nl.knaw.huygens.timbuctoo.v5.rdfio.RdfSerializer;
 import org.slf4j.Logger;
 
 import javax.ws.rs.core.MediaType;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -46,6 +54,9 @@ import static org.slf4j.LoggerFactory.getLogger;
  */
 public class ImportManager implements DataProvider {
   private static final Logger LOG = getLogger(ImportManager.class);
+  private static final int TEMP_LOG_BUFFER_SIZE = 64 * 1024;
+  private static final String TEMP_LOG_PREFIX = "generated_log_";
+  private static final String TEMP_LOG_DIRECTORY = "generated_logs";
   private final FileStorage fileStorage;
   private final FileStorage imageStorage;
   private final LogStorage logStorage;
@@ -56,12 +67,27 @@ public class ImportManager implements DataProvider {
   private final Runnable webhooks;
   private final ImportStatus importStatus;
   private final DataSetImportStatus dataSetImportStatus;
+  private final boolean compressGeneratedLogs;
+  //a directory in the data set's own directory, so generated logs don't depend on the system's temp directory
+  private final File tempLogDirectory;
+  //the imports that are submitted to the executor and have not finished yet
+  private final AtomicInteger pendingImports = new AtomicInteger();
+  private final List<Consumer<Boolean>> importActivityListeners = new CopyOnWriteArrayList<>();
 
   public ImportManager(File logListLocation, FileStorage fileStorage, FileStorage imageStorage, LogStorage logStorage,
                        ExecutorService executorService, RdfIoFactory rdfIoFactory, ResourceList resourceList,
                        Runnable onUpdated)
     throws DataStoreCreationException {
+    this(logListLocation, fileStorage, imageStorage, logStorage, executorService, rdfIoFactory, resourceList,
+      onUpdated, false);
+  }
+
+  public ImportManager(File logListLocation, FileStorage fileStorage, FileStorage imageStorage, LogStorage logStorage,
+                       ExecutorService executorService, RdfIoFactory rdfIoFactory, ResourceList resourceList,
+                       Runnable onUpdated, boolean compressGeneratedLogs)
+    throws DataStoreCreationException {
     this.webhooks = onUpdated;
+    this.compressGeneratedLogs = compressGeneratedLogs;
     this.fileStorage = new PublicFileStore(fileStorage, resourceList);
     this.imageStorage = new PublicFileStore(imageStorage, resourceList);
     this.logStorage = new PublicLogStore(logStorage, resourceList);
@@ -77,6 +103,13 @@ public class ImportManager implements DataProvider {
     } catch (IOException e) {
       throw new DataStoreCreationException(e);
     }
+    tempLogDirectory = new File(logListLocation.getAbsoluteFile().getParentFile(), TEMP_LOG_DIRECTORY);
+    if (!tempLogDirectory.isDirectory() && !tempLogDirectory.mkdirs()) {
+      throw new DataStoreCreationException(
+        new IOException("Could not create the directory for generated logs " + tempLogDirectory.getAbsolutePath())
+      );
+    }
+    removeTempLogs();
     subscribedProcessors = new ArrayList<>();
     importStatus = new ImportStatus(logListStore.getData());
     dataSetImportStatus = new DataSetImportStatus(logListStore.getData());
@@ -99,7 +132,7 @@ public class ImportManager implements DataProvider {
       importStatus.addError("Could not save log", e);
       throw new LogStorageFailedException(e);
     }
-    return executorService.submit(() -> processLogsUntil(index[0]));
+    return submitProcessing(index[0]);
   }
 
   public String addFile(InputStream fileStream, String fileName, MediaType mediaType)
@@ -136,7 +169,7 @@ public class ImportManager implements DataProvider {
         return logList;
       });
       //schedule processing
-      return executorService.submit(() -> processLogsUntil(index[0]));
+      return submitProcessing(index[0]);
     } catch (IOException e) {
       importStatus.addError("Could not update logList", e);
       throw new LogStorageFailedException(e);
@@ -145,7 +178,56 @@ public class ImportManager implements DataProvider {
 
   public Future<ImportStatus> processLogs() {
     importStatus.start(this.getClass().getSimpleName() + ".processLogs", null);
-    return executorService.submit(() -> processLogsUntil(Integer.MAX_VALUE));
+    return submitProcessing(Integer.MAX_VALUE);
+  }
+
+  private Future<ImportStatus> submitProcessing(int maxIndex) {
+    importSubmitted();
+    try {
+      return executorService.submit(() -> {
+        try {
+          return processLogsUntil(maxIndex);
+        } finally {
+          importFinished();
+        }
+      });
+    } catch (RuntimeException e) {
+      importFinished();
+      throw e;
+    }
+  }
+
+  private void importSubmitted() {
+    //the lock keeps the listeners from being called in a different order than the counter changed
+    synchronized (importActivityListeners) {
+      if (pendingImports.incrementAndGet() == 1) {
+        importActivityListeners.forEach(listener -> listener.accept(true));
+      }
+    }
+  }
+
+  private void importFinished() {
+    synchronized (importActivityListeners) {
+      if (pendingImports.decrementAndGet() == 0) {
+        importActivityListeners.forEach(listener -> listener.accept(false));
+      }
+    }
+  }
+
+  /**
+   * The listener is called with true when the first import is submitted and with false when the last pending import
+   * has finished.
+   */
+  public void subscribeToImportActivity(Consumer<Boolean> listener) {
+    importActivityListeners.add(listener);
+  }
+
+  /**
+   * Whether an import is running or waiting to be processed. The stores of the data set should not be closed while
+   * this is the case.
+   */
+  public boolean isImporting() {
+    return pendingImports.get() > 0 || importStatus.isActive();
   }
 
   private synchronized ImportStatus processLogsUntil(int maxIndex) {
@@ -160,19 +242,35 @@ public class ImportManager implements DataProvider {
         try {
           CachedLog log = logStorage.getLog(logToken);
           final Stopwatch stopwatch = Stopwatch.createStarted();
+          List<RdfProcessor> processors = new ArrayList<>();
           for (RdfProcessor processor : subscribedProcessors) {
             if (processor.getCurrentVersion() <= index) {
-              String msg = "******* " + processor.getClass().getSimpleName() + " Started importing full log...";
-              LOG.info(msg);
-              importStatus.setStatus(msg);
-              RdfParser rdfParser = serializerFactory.makeRdfParser(log);
-              processor.start(index);
-              rdfParser.importRdf(log, entry.getBaseUri(), entry.getDefaultGraph(), processor);
-              processor.commit();
+              processors.add(processor);
+            }
+          }
+          String progress = "";
+          if (!processors.isEmpty()) {
+            // parse the log once and hand each quad to all processors that still need this entry
+            RdfProcessorMultiplexer multiplexer = new RdfProcessorMultiplexer(processors);
+            String msg = "******* " + multiplexer.getProcessorNames() + " Started importing full log...";
+            LOG.info(msg);
+            importStatus.setStatus(msg);
+            RdfParser rdfParser = serializerFactory.makeRdfParser(log);
+            boolean committed = false;
+            try {
+              multiplexer.start(index);
+              rdfParser.importRdf(log, entry.getBaseUri(), entry.getDefaultGraph(), multiplexer);
+              multiplexer.commit();
+              committed = true;
+            } finally {
+              if (!committed) {
+                multiplexer.abort();
+              }
+              progress = " (" + multiplexer.getProgress() + ")";
             }
           }
           long elapsedTime = stopwatch.elapsed(TimeUnit.SECONDS);
-          String msg = "Finished importing. Total import took " + elapsedTime + " seconds.";
+          String msg = "Finished importing. Total import took " + elapsedTime + " seconds." + progress;
           LOG.info(msg);
           importStatus.setStatus(msg);
           dataWasAdded = true;
@@ -193,54 +291,71 @@ public class ImportManager implements DataProvider {
         }
       } else { // no logToken
         RdfCreator creator = entry.getRdfCreator().get();
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();//FIXME: write to tempFile
-
-        String token = "";
-        MediaType mediaType;
-        Optional<Charset> charset;
+        //the generated log is written to a temporary file, so that the whole log never has to fit in memory
+        final File tempFile;
+        try {
+          tempFile = File.createTempFile(TEMP_LOG_PREFIX, compressGeneratedLogs ? ".gz" : ".tmp", tempLogDirectory);
+        } catch (IOException e) {
+          LOG.error("Log generation failed", e);
+          importStatus.addError("Log generation failed", e);
+          break;
+        }
 
-        if (creator instanceof PlainRdfCreator) {
-          try (RdfSerializer serializer = serializerFactory.makeRdfSerializer(outputStream)) {
-            mediaType = serializer.getMediaType();
-            charset = Optional.of(serializer.getCharset());
-            ((PlainRdfCreator) creator).sendQuads(serializer);
-          } catch (Exception e) {
-            LOG.error("Log generation failed", e);
-            importStatus.addError("Log generation failed", e);
-            break;
+        try {
+          String token = "";
+          MediaType mediaType;
+          Optional<Charset> charset;
+
+          if (creator instanceof PlainRdfCreator) {
+            try (OutputStream outputStream = openTempLog(tempFile);
+                 RdfSerializer serializer = serializerFactory.makeRdfSerializer(outputStream)) {
+              mediaType = serializer.getMediaType();
+              charset = Optional.of(serializer.getCharset());
+              ((PlainRdfCreator) creator).sendQuads(serializer);
+            } catch (Exception e) {
+              LOG.error("Log generation failed", e);
+              importStatus.addError("Log generation failed", e);
+              break;
+            }
+          } else {
+            try (OutputStream outputStream = openTempLog(tempFile);
+                 RdfPatchSerializer srlzr = serializerFactory.makeRdfPatchSerializer(outputStream, entry.getBaseUri())
+            ) {
+              mediaType = srlzr.getMediaType();
+              charset = Optional.of(srlzr.getCharset());
+              ((PatchRdfCreator) creator).sendQuads(srlzr);
+            } catch (Exception e) {
+              LOG.error("Log generation failed", e);
+              importStatus.addError("Log generation failed", e);
+              break;
+            }
           }
-        } else {
-          try (RdfPatchSerializer srlzr = serializerFactory.makeRdfPatchSerializer(outputStream, entry.getBaseUri())) {
-            mediaType = srlzr.getMediaType();
-            charset = Optional.of(srlzr.getCharset());
-            ((PatchRdfCreator) creator).sendQuads(srlzr);
+
+          try (InputStream generatedLog = readTempLog(tempFile)) {
+            token = logStorage.saveLog(
+              generatedLog,
+              "log_generated_by_" + creator.getClass().getSimpleName(),
+              mediaType,
+              charset
+            );
+            LogEntry entryWithLog = LogEntry.addLogToEntry(entry, token);
+            unprocessed.set(entryWithLog);
+
+            token = "";
+            unprocessed.previous(); //move back to process this item again
           } catch (Exception e) {
-            LOG.error("Log generation failed", e);
-            importStatus.addError("Log generation failed", e);
+            if (token.isEmpty()) {
+              LOG.error("Log processing failed", e);
+            } else {
+              LOG.error("Log processing failed. Log created but not added to the list!", e);
+            }
+            importStatus.addError("Log processing failed", e);
             break;
           }
-        }
-
-        try {
-          token = logStorage.saveLog(
-            new ByteArrayInputStream(outputStream.toByteArray()),
-            "log_generated_by_" + creator.getClass().getSimpleName(),
-            mediaType,
-            charset
-          );
-          LogEntry entryWithLog = LogEntry.addLogToEntry(entry, token);
-          unprocessed.set(entryWithLog);
-
-          token = "";
-          unprocessed.previous(); //move back to process this item again
-        } catch (Exception e) {
-          if (token.isEmpty()) {
-            LOG.error("Log processing failed", e);
-          } else {
-            LOG.error("Log processing failed. Log created but not added to the list!", e);
+        } finally {
+          if (!tempFile.delete()) {
+            LOG.warn("Could not delete temporary log file " + tempFile.getAbsolutePath());
           }
-          importStatus.addError("Log processing failed", e);
-          break;
         }
       } // end else with no condition
       importStatus.finishEntry();
@@ -259,11 +374,49 @@ public class ImportManager implements DataProvider {
     return importStatus;
   }
 
+  /**
+   * Removes the temporary logs that were left behind when Timbuctoo stopped during the generation of a log.
+   */
+  private void removeTempLogs() {
+    final File[] leftOvers = tempLogDirectory.listFiles((dir, name) -> name.startsWith(TEMP_LOG_PREFIX));
+    if (leftOvers != null) {
+      for (File leftOver : leftOvers) {
+        if (!leftOver.delete()) {
+          LOG.warn("Could not delete temporary log file " + leftOver.getAbsolutePath());
+        }
+      }
+    }
+  }
+
+  private OutputStream openTempLog(File tempFile) throws IOException {
+    OutputStream result = new BufferedOutputStream(new FileOutputStream(tempFile), TEMP_LOG_BUFFER_SIZE);
+    if (compressGeneratedLogs) {
+      result = new GZIPOutputStream(result, TEMP_LOG_BUFFER_SIZE);
+    }
+    return result;
+  }
+
+  private InputStream readTempLog(File tempFile) throws IOException {
+    InputStream result = new BufferedInputStream(new FileInputStream(tempFile), TEMP_LOG_BUFFER_SIZE);
+    if (compressGeneratedLogs) {
+      result = new GZIPInputStream(result, TEMP_LOG_BUFFER_SIZE);
+    }
+    return result;
+  }
+
   @Override
   public void subscribeToRdf(RdfProcessor processor) {
     subscribedProcessors.add(processor);
   }
 
+  /**
+   * Subscribes a processor that runs in its own thread. The parser can run ahead of the processor for at most
+   * queueSize quads.
+   */
+  public void subscribeToRdf(RdfProcessor processor, int queueSize) {
+    subscribedProcessors.add(new QueuedRdfProcessor(processor, queueSize));
+  }
+
   public boolean isRdfTypeSupported(MediaType mediaType) {
     return serializerFactory.isRdfTypeSupported(mediaType);
   }
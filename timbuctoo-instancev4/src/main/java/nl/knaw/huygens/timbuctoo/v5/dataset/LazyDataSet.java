@@ -0,0 +1,128 @@
+package nl.knaw.huygens.timbuctoo.v5.dataset;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataStoreCreationException;
+import nl.knaw.huygens.timbuctoo.v5.datastores.resourcesync.ResourceSyncException;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A data set of which only the metadata is known. The databases and stores are opened the first time the data set
+ * itself is requested, so starting Timbuctoo doesn't take longer when there are more data sets.
+ *
+ * <p>A data set that is not used for a while can be closed with closeIfUnused. It is opened again when it is requested
+ * the next time. A data set that was acquired is not closed until each acquire is matched by a release. A data set
+ * that was only looked up with get is not closed while it was accessed more recently than the time that the closer
+ * provides, because get does not take the lock.</p>
+ */
+class LazyDataSet {
+  private final DataSetMetaData metadata;
+  private final Opener opener;
+  private final Clock clock;
+  private volatile DataSet dataSet;
+  private boolean closed;
+  private int users;
+  private volatile long lastAccess;
+
+  LazyDataSet(DataSetMetaData metadata, Opener opener, Clock clock) {
+    this.metadata = metadata;
+    this.opener = opener;
+    this.clock = clock;
+    this.lastAccess = clock.millis();
+  }
+
+  /**
+   * The metadata is shared with the opened data set, so changes (such as publishing) are visible in both.
+   */
+  DataSetMetaData getMetadata() {
+    return metadata;
+  }
+
+  DataSet get() throws DataStoreCreationException {
+    //written before dataSet is read, closeIfUnused relies on that order
+    lastAccess = clock.millis();
+    DataSet result = dataSet;
+    if (result == null) {
+      synchronized (this) {
+        result = dataSet;
+        if (result == null) {
+          if (closed) {
+            throw new DataStoreCreationException(
+              new IllegalStateException("Data set " + metadata.getCombinedId() + " has been closed")
+            );
+          }
+          try {
+            result = opener.open(metadata);
+          } catch (IOException | ResourceSyncException e) {
+            throw new DataStoreCreationException(e);
+          }
+          dataSet = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the data set like get() and keeps it open until release is called.
+   */
+  synchronized DataSet acquire() throws DataStoreCreationException {
+    final DataSet result = get();
+    users++;
+    return result;
+  }
+
+  synchronized void release() {
+    users--;
+    lastAccess = clock.millis();
+  }
+
+  Optional<DataSet> getIfOpened() {
+    return Optional.ofNullable(dataSet);
+  }
+
+  long getLastAccess() {
+    return lastAccess;
+  }
+
+  /**
+   * Closes the opened data set using the closer, unless it is acquired, in use or was accessed at or after
+   * idleSince. Lookups that happen while the data set is being closed wait for it and open it again.
+   *
+   * @return whether the data set was closed
+   */
+  synchronized boolean closeIfUnused(long idleSince, Predicate<DataSet> isInUse, Consumer<DataSet> closer) {
+    if (dataSet == null || closed || users > 0 || lastAccess >= idleSince || isInUse.test(dataSet)) {
+      return false;
+    }
+    DataSet toClose = dataSet;
+    dataSet = null;
+    //get writes lastAccess before it reads dataSet without the lock. So a get that still saw the data set has written
+    //its access by now and the data set is kept open for it.
+    if (lastAccess >= idleSince) {
+      dataSet = toClose;
+      return false;
+    }
+    closer.accept(toClose);
+    return true;
+  }
+
+  /**
+   * Stops the data set if it was opened and makes sure it won't be opened anymore.
+   */
+  synchronized void close() {
+    closed = true;
+    if (dataSet != null) {
+      dataSet.stop();
+    }
+  }
+
+  interface Opener {
+    DataSet open(DataSetMetaData metadata) throws IOException, DataStoreCreationException, ResourceSyncException;
+  }
+}
@@ -11,4 +11,13 @@ public interface OptimizedPatchListener {
   void notifyUpdate();
 
   void finish() throws RdfProcessingFailedException;
+
+  /**
+   * Listeners that return true will get onChangedSubject calls from several threads at once. They should keep the
+   * results of each thread apart (or use thread-safe structures) and combine them in finish(). start(),
+   * notifyUpdate() and finish() are always called from the thread that drives the import.
+   */
+  default boolean canProcessSubjectsConcurrently() {
+    return false;
+  }
 }
@@ -0,0 +1,207 @@
+package nl.knaw.huygens.timbuctoo.v5.dataset;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Runs a (slow) processor in its own thread. The calls are put on a bounded queue, so the parser only has to wait for
+ * this processor when it's more than queueSize quads behind.
+ *
+ * <p>The thread is started in start() and finishes in commit(), so all calls to the delegate, including start and
+ * commit, are made from the same thread. Errors of the delegate are rethrown on the next call or on commit. When
+ * the consumer thread has stopped the calls fail instead of waiting for room in the queue.</p>
+ */
+public class QueuedRdfProcessor implements RdfProcessor {
+  private static final Logger LOG = getLogger(QueuedRdfProcessor.class);
+  private static final RdfProcessorCall END = processor -> { };
+  //how long a full queue is waited for before checking whether the consumer is still alive
+  private static final long OFFER_TIMEOUT_MILLIS = 100;
+  private final RdfProcessor delegate;
+  private final int queueSize;
+  private final AtomicLong processedCount = new AtomicLong();
+  private BlockingQueue<RdfProcessorCall> queue;
+  private Thread consumer;
+  private volatile Throwable failure;
+  private volatile boolean aborted;
+
+  public QueuedRdfProcessor(RdfProcessor delegate, int queueSize) {
+    this.delegate = delegate;
+    this.queueSize = queueSize;
+  }
+
+  public RdfProcessor getDelegate() {
+    return delegate;
+  }
+
+  public long getProcessedCount() {
+    return processedCount.get();
+  }
+
+  @Override
+  public void setPrefix(String prefix, String iri) throws RdfProcessingFailedException {
+    enqueue(processor -> processor.setPrefix(prefix, iri));
+  }
+
+  @Override
+  public void onQuad(boolean isAssertion, String subject, String predicate, String object, String dataType,
+                     String language, String graph) throws RdfProcessingFailedException {
+    enqueue(processor -> {
+      processor.onQuad(isAssertion, subject, predicate, object, dataType, language, graph);
+      processedCount.incrementAndGet();
+    });
+  }
+
+  @Override
+  public void addRelation(String subject, String predicate, String object, String graph)
+    throws RdfProcessingFailedException {
+    onQuad(true, subject, predicate, object, null, null, graph);
+  }
+
+  @Override
+  public void addValue(String subject, String predicate, String value, String dataType, String graph)
+    throws RdfProcessingFailedException {
+    onQuad(true, subject, predicate, value, dataType, null, graph);
+  }
+
+  @Override
+  public void addLanguageTaggedString(String subject, String predicate, String value, String language, String graph)
+    throws RdfProcessingFailedException {
+    enqueue(processor -> {
+      processor.addLanguageTaggedString(subject, predicate, value, language, graph);
+      processedCount.incrementAndGet();
+    });
+  }
+
+  @Override
+  public void delRelation(String subject, String predicate, String object, String graph)
+    throws RdfProcessingFailedException {
+    onQuad(false, subject, predicate, object, null, null, graph);
+  }
+
+  @Override
+  public void delValue(String subject, String predicate, String value, String valueType, String graph)
+    throws RdfProcessingFailedException {
+    onQuad(false, subject, predicate, value, valueType, null, graph);
+  }
+
+  @Override
+  public void delLanguageTaggedString(String subject, String predicate, String value, String language, String graph)
+    throws RdfProcessingFailedException {
+    enqueue(processor -> {
+      processor.delLanguageTaggedString(subject, predicate, value, language, graph);
+      processedCount.incrementAndGet();
+    });
+  }
+
+  @Override
+  public void start(int index) throws RdfProcessingFailedException {
+    queue = new ArrayBlockingQueue<>(queueSize);
+    failure = null;
+    aborted = false;
+    processedCount.set(0);
+    consumer = new Thread(this::consume, "rdf-processor-" + delegate.getClass().getSimpleName());
+    consumer.start();
+    enqueue(processor -> processor.start(index));
+  }
+
+  @Override
+  public int getCurrentVersion() {
+    return delegate.getCurrentVersion();
+  }
+
+  @Override
+  public boolean requiresOrderedQuads() {
+    return delegate.requiresOrderedQuads();
+  }
+
+  @Override
+  public void commit() throws RdfProcessingFailedException {
+    enqueue(RdfProcessor::commit);
+    finish();
+    if (failure != null) {
+      throw new RdfProcessingFailedException(failure);
+    }
+  }
+
+  /**
+   * Stops the consumer thread without committing the delegate.
+   */
+  public void abort() {
+    if (consumer != null && consumer.isAlive()) {
+      aborted = true;
+      try {
+        finish();
+      } catch (RdfProcessingFailedException e) {
+        LOG.error("Could not stop " + consumer.getName(), e);
+      }
+    }
+  }
+
+  private void enqueue(RdfProcessorCall call) throws RdfProcessingFailedException {
+    if (failure != null) {
+      // the consumer is only draining the queue now, let it stop
+      finish();
+      throw new RdfProcessingFailedException(failure);
+    }
+    try {
+      put(call);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RdfProcessingFailedException(e);
+    }
+  }
+
+  private void put(RdfProcessorCall call) throws InterruptedException, RdfProcessingFailedException {
+    while (!queue.offer(call, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+      if (!consumer.isAlive()) {
+        //nothing will take the call from the queue anymore
+        throw new RdfProcessingFailedException(failure != null ? failure :
+          new IllegalStateException("The consumer of " + delegate.getClass().getSimpleName() + " has stopped"));
+      }
+    }
+  }
+
+  private void finish() throws RdfProcessingFailedException {
+    try {
+      if (consumer.isAlive()) {
+        put(END);
+      }
+      consumer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RdfProcessingFailedException(e);
+    }
+  }
+
+  private void consume() {
+    try {
+      RdfProcessorCall call = queue.take();
+      while (call != END) {
+        // after a failure we keep draining the queue so the parser does not block
+        if (failure == null && !aborted) {
+          try {
+            call.apply(delegate);
+          } catch (Throwable e) {
+            //an Error is caught as well, the consumer has to keep draining the queue or the parser blocks
+            LOG.error("Processor " + delegate.getClass().getSimpleName() + " failed", e);
+            failure = e;
+          }
+        }
+        call = queue.take();
+      }
+    } catch (InterruptedException e) {
+      failure = e;
+    }
+  }
+
+  private interface RdfProcessorCall {
+    void apply(RdfProcessor processor) throws RdfProcessingFailedException;
+  }
+}
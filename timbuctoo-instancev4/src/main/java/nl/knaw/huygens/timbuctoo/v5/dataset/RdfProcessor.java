@@ -56,5 +56,12 @@ public interface RdfProcessor {
 
   void commit() throws RdfProcessingFailedException;
 
+  /**
+   * Whether the quads must arrive in the order of the log. A processor that returns false allows a parallel parser to
+   * deliver the quads of a chunk as soon as the chunk is parsed.
+   */
+  default boolean requiresOrderedQuads() {
+    return true;
+  }
 
 }
@@ -0,0 +1,149 @@
+package nl.knaw.huygens.timbuctoo.v5.dataset;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Forwards everything that the RdfParser emits to several processors, so that a log only has to be parsed once no
+ * matter how many processors still need it.
+ *
+ * <p>The ImportManager only hands the processors that have not processed the log entry yet to the multiplexer, so
+ * processors that are at different positions in the log list can share the parse of the entries they both need.</p>
+ */
+public class RdfProcessorMultiplexer implements RdfProcessor {
+  private final List<RdfProcessor> processors;
+  private final long[] quadCounts;
+  private int currentVersion = -1;
+
+  public RdfProcessorMultiplexer(List<RdfProcessor> processors) {
+    this.processors = processors;
+    this.quadCounts = new long[processors.size()];
+  }
+
+  @Override
+  public void setPrefix(String prefix, String iri) throws RdfProcessingFailedException {
+    for (RdfProcessor processor : processors) {
+      processor.setPrefix(prefix, iri);
+    }
+  }
+
+  @Override
+  public void onQuad(boolean isAssertion, String subject, String predicate, String object, String dataType,
+                     String language, String graph) throws RdfProcessingFailedException {
+    for (int i = 0; i < processors.size(); i++) {
+      processors.get(i).onQuad(isAssertion, subject, predicate, object, dataType, language, graph);
+      quadCounts[i]++;
+    }
+  }
+
+  @Override
+  public void addRelation(String subject, String predicate, String object, String graph)
+    throws RdfProcessingFailedException {
+    onQuad(true, subject, predicate, object, null, null, graph);
+  }
+
+  @Override
+  public void addValue(String subject, String predicate, String value, String dataType, String graph)
+    throws RdfProcessingFailedException {
+    onQuad(true, subject, predicate, value, dataType, null, graph);
+  }
+
+  @Override
+  public void addLanguageTaggedString(String subject, String predicate, String value, String language, String graph)
+    throws RdfProcessingFailedException {
+    for (int i = 0; i < processors.size(); i++) {
+      processors.get(i).addLanguageTaggedString(subject, predicate, value, language, graph);
+      quadCounts[i]++;
+    }
+  }
+
+  @Override
+  public void delRelation(String subject, String predicate, String object, String graph)
+    throws RdfProcessingFailedException {
+    onQuad(false, subject, predicate, object, null, null, graph);
+  }
+
+  @Override
+  public void delValue(String subject, String predicate, String value, String valueType, String graph)
+    throws RdfProcessingFailedException {
+    onQuad(false, subject, predicate, value, valueType, null, graph);
+  }
+
+  @Override
+  public void delLanguageTaggedString(String subject, String predicate, String value, String language, String graph)
+    throws RdfProcessingFailedException {
+    for (int i = 0; i < processors.size(); i++) {
+      processors.get(i).delLanguageTaggedString(subject, predicate, value, language, graph);
+      quadCounts[i]++;
+    }
+  }
+
+  @Override
+  public void start(int index) throws RdfProcessingFailedException {
+    currentVersion = index;
+    for (RdfProcessor processor : processors) {
+      processor.start(index);
+    }
+  }
+
+  @Override
+  public int getCurrentVersion() {
+    return currentVersion;
+  }
+
+  @Override
+  public void commit() throws RdfProcessingFailedException {
+    for (RdfProcessor processor : processors) {
+      processor.commit();
+    }
+  }
+
+  @Override
+  public boolean requiresOrderedQuads() {
+    return processors.stream().anyMatch(RdfProcessor::requiresOrderedQuads);
+  }
+
+  /**
+   * Stops the queued processors that are still running. Should be called when the parse did not complete.
+   */
+  public void abort() {
+    for (RdfProcessor processor : processors) {
+      if (processor instanceof QueuedRdfProcessor) {
+        ((QueuedRdfProcessor) processor).abort();
+      }
+    }
+  }
+
+  public long getQuadCount(int processorIndex) {
+    return quadCounts[processorIndex];
+  }
+
+  public String getProcessorNames() {
+    return processors.stream().map(RdfProcessorMultiplexer::getName).collect(joining(", "));
+  }
+
+  public String getProgress() {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < processors.size(); i++) {
+      if (i > 0) {
+        result.append(", ");
+      }
+      RdfProcessor processor = processors.get(i);
+      result.append(getName(processor)).append(": ").append(quadCounts[i]).append(" quads");
+      if (processor instanceof QueuedRdfProcessor) {
+        result.append(" (").append(((QueuedRdfProcessor) processor).getProcessedCount()).append(" processed)");
+      }
+    }
+    return result.toString();
+  }
+
+  static String getName(RdfProcessor processor) {
+    if (processor instanceof QueuedRdfProcessor) {
+      return ((QueuedRdfProcessor) processor).getDelegate().getClass().getSimpleName() + " (queued)";
+    }
+    return processor.getClass().getSimpleName();
+  }
+}
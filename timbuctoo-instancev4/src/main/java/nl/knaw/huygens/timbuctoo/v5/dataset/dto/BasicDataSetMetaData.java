@@ -3,6 +3,7 @@ package nl.knaw.huygens.timbuctoo.v5.dataset.dto;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.IllegalDataSetNameException;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.QuadStoreLayout;
 import org.immutables.value.Value;
 
 import static nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData.createCombinedId;
@@ -17,7 +18,12 @@ public class BasicDataSetMetaData implements DataSetMetaData {
   private final String combinedId;
   private boolean promoted;
   private boolean published;
+  private final QuadStoreLayout quadStoreLayout;
 
+  public BasicDataSetMetaData(String ownerId, String dataSetId, String baseUri, String uriPrefix, boolean promoted,
+                              boolean published) throws IllegalDataSetNameException {
+    this(ownerId, dataSetId, baseUri, uriPrefix, promoted, published, QuadStoreLayout.STRING_KEYS);
+  }
 
   @JsonCreator
   public BasicDataSetMetaData(@JsonProperty("ownerId") String ownerId,
@@ -25,7 +31,9 @@ public class BasicDataSetMetaData implements DataSetMetaData {
                               @JsonProperty("baseUri") String baseUri,
                               @JsonProperty("uriPrefix") String uriPrefix,
                               @JsonProperty("promoted") boolean promoted,
-                              @JsonProperty("published") boolean published) throws IllegalDataSetNameException {
+                              @JsonProperty("published") boolean published,
+                              @JsonProperty("quadStoreLayout") QuadStoreLayout quadStoreLayout)
+    throws IllegalDataSetNameException {
     if (!ownerId.matches(VALID_ID) || !dataSetId.matches(VALID_ID)) {
       throw new IllegalDataSetNameException("Owner id and dataSet id should match " + VALID_ID);
     }
@@ -37,6 +45,8 @@ public class BasicDataSetMetaData implements DataSetMetaData {
     this.uriPrefix = uriPrefix;
     this.promoted = promoted;
     this.published = published;
+    //data sets that were created before the layout was configurable use the string keys
+    this.quadStoreLayout = quadStoreLayout == null ? QuadStoreLayout.STRING_KEYS : quadStoreLayout;
   }
 
   @Override
@@ -82,6 +92,11 @@ public class BasicDataSetMetaData implements DataSetMetaData {
     return published;
   }
 
+  @Override
+  public QuadStoreLayout getQuadStoreLayout() {
+    return quadStoreLayout;
+  }
+
   @Override
   public void publish() {
     this.published = true;
@@ -4,21 +4,28 @@ import com.google.common.collect.Lists;
 import com.sleepycat.bind.tuple.TupleBinding;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbEnvironmentCreator;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.BdbDbCreationException;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetConfiguration;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ImportManager;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataStoreCreationException;
+import nl.knaw.huygens.timbuctoo.v5.datastores.countstore.CountStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.RdfDescriptionSaver;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbBackedData;
+import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbCountStore;
+import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbDictionaryTripleStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbRmlDataSourceStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbSchemaStore;
+import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbTermDictionary;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbTripleStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbTruePatchStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbTypeNameStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.StoreUpdater;
+import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.UpdatableQuadStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.UpdatedPerPatchStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.VersionStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.prefixstore.TypeNameStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.QuadStore;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.QuadStoreLayout;
 import nl.knaw.huygens.timbuctoo.v5.datastores.resourcesync.ResourceSync;
 import nl.knaw.huygens.timbuctoo.v5.datastores.resourcesync.ResourceSyncException;
 import nl.knaw.huygens.timbuctoo.v5.datastores.rmldatasource.RmlDataSourceStore;
@@ -38,6 +45,7 @@ import java.util.concurrent.ExecutorService;
 @Value.Immutable
 public abstract class DataSet {
   private static final Logger LOG = LoggerFactory.getLogger(DataSet.class);
+  private static final int DESCRIPTION_SAVER_QUEUE_SIZE = 10_000;
 
 
   public static DataSet dataSet(DataSetMetaData metadata, DataSetConfiguration configuration,
@@ -57,26 +65,63 @@ public abstract class DataSet {
       executorService,
       configuration.getRdfIo(),
       resourceSync.resourceList(userId, dataSetId),
-      onUpdated
+      onUpdated,
+      configuration.getCompressGeneratedLogs()
     );
+    importManager.subscribeToImportActivity(importing -> dataStoreFactory.setImporting(userId, dataSetId, importing));
 
     try {
+      //the description saver runs in its own thread, so it doesn't slow down the StoreUpdater
       importManager.subscribeToRdf(new RdfDescriptionSaver(descriptionFile, metadata.getBaseUri(),
-        importManager.getImportStatus()));
+        importManager.getImportStatus()), DESCRIPTION_SAVER_QUEUE_SIZE);
     } catch (ParserConfigurationException | SAXException e) {
       LOG.error("Could not construct import manager of data set", e);
     }
 
     final TupleBinding<String> stringBinding = TupleBinding.getPrimitiveBinding(String.class);
+    final TupleBinding<Integer> integerBinding = TupleBinding.getPrimitiveBinding(Integer.class);
     try {
-      BdbTripleStore quadStore = new BdbTripleStore(dataStoreFactory.getDatabase(
-        userId,
-        dataSetId,
-        "rdfData",
-        true,
-        stringBinding,
-        stringBinding
-      ));
+      final UpdatableQuadStore quadStore;
+      if (metadata.getQuadStoreLayout() == QuadStoreLayout.DICTIONARY_ENCODED) {
+        quadStore = new BdbDictionaryTripleStore(
+          dataStoreFactory.getDatabase(
+            userId,
+            dataSetId,
+            "rdfDataEncoded",
+            true,
+            BdbDictionaryTripleStore.keyBinding(),
+            BdbDictionaryTripleStore.valueBinding(),
+            BdbDictionaryTripleStore.KeyComparator.class
+          ),
+          new BdbTermDictionary(
+            dataStoreFactory.getDatabase(
+              userId,
+              dataSetId,
+              "termIds",
+              false,
+              stringBinding,
+              integerBinding
+            ),
+            dataStoreFactory.getDatabase(
+              userId,
+              dataSetId,
+              "terms",
+              false,
+              integerBinding,
+              stringBinding
+            )
+          )
+        );
+      } else {
+        quadStore = new BdbTripleStore(dataStoreFactory.getDatabase(
+          userId,
+          dataSetId,
+          "rdfData",
+          true,
+          stringBinding,
+          stringBinding
+        ));
+      }
       final BdbTypeNameStore typeNameStore = new BdbTypeNameStore(
         new BdbBackedData(dataStoreFactory.getDatabase(
           userId,
@@ -89,6 +134,14 @@ public abstract class DataSet {
         rdfPrefix
       );
       final BdbSchemaStore schema = new BdbSchemaStore(
+        dataStoreFactory.getDatabase(
+          userId,
+          dataSetId,
+          "schemaTypes",
+          false,
+          stringBinding,
+          stringBinding
+        ),
         new BdbBackedData(dataStoreFactory.getDatabase(
           userId,
           dataSetId,
@@ -109,7 +162,6 @@ public abstract class DataSet {
           stringBinding
         )
       );
-      final TupleBinding<Integer> integerBinding = TupleBinding.getPrimitiveBinding(Integer.class);
       final UpdatedPerPatchStore updatedPerPatchStore = new UpdatedPerPatchStore(
         dataStoreFactory.getDatabase(
           userId,
@@ -129,6 +181,14 @@ public abstract class DataSet {
           stringBinding,
           stringBinding
         ),
+        dataStoreFactory.getDatabase(
+          userId,
+          dataSetId,
+          "rmlRows",
+          false,
+          stringBinding,
+          BdbRmlDataSourceStore.rowBinding()
+        ),
         importManager.getImportStatus()
       );
       VersionStore versionStore = new VersionStore(dataStoreFactory.getDatabase(
@@ -139,15 +199,46 @@ public abstract class DataSet {
         stringBinding,
         integerBinding
       ));
+      final BdbCountStore countStore = new BdbCountStore(
+        dataStoreFactory.getDatabase(
+          userId,
+          dataSetId,
+          "quadCounts",
+          false,
+          stringBinding,
+          integerBinding
+        ),
+        dataStoreFactory.getDatabase(
+          userId,
+          dataSetId,
+          "valueHistograms",
+          false,
+          stringBinding,
+          stringBinding
+        ),
+        new BdbBackedData(dataStoreFactory.getDatabase(
+          userId,
+          dataSetId,
+          "countState",
+          false,
+          stringBinding,
+          stringBinding
+        )),
+        quadStore,
+        //a data set without a processed version has no data that would be missing from the counts
+        versionStore.getVersion() < 0,
+        importManager.getImportStatus()
+      );
       final StoreUpdater storeUpdater = new StoreUpdater(
         dataStoreFactory,
         quadStore,
         typeNameStore,
         truePatchStore,
         updatedPerPatchStore,
-        Lists.newArrayList(schema, rmlDataSourceStore),
+        Lists.newArrayList(schema, rmlDataSourceStore, countStore),
         versionStore,
-        importManager.getImportStatus()
+        importManager.getImportStatus(),
+        configuration.getImportListenerThreads()
       );
       importManager.subscribeToRdf(storeUpdater);
       return ImmutableDataSet.builder()
@@ -155,16 +246,22 @@ public abstract class DataSet {
                              .quadStore(quadStore)
                              .typeNameStore(typeNameStore)
                              .schemaStore(schema)
-                             .dataSource(new RdfDataSourceFactory(rmlDataSourceStore))
+                             .dataSource(new RdfDataSourceFactory(
+                               rmlDataSourceStore,
+                               configuration.getMaxRmlJoinValuesInMemory()
+                             ))
                              .rmlDataSourceStore(rmlDataSourceStore)
                              .schemaStore(schema)
                              .truePatchStore(truePatchStore)
                              .updatePerPatchStore(updatedPerPatchStore)
                              .versionStore(versionStore)
+                             .countStore(countStore)
                              .importManager(importManager)
                              .build();
     } catch (BdbDbCreationException e) {
       throw new DataStoreCreationException(e.getCause());
+    } catch (DatabaseWriteException e) {
+      throw new DataStoreCreationException(e);
     }
   }
 
@@ -180,6 +277,7 @@ public abstract class DataSet {
     getUpdatePerPatchStore().close();
     getRmlDataSourceStore().close();
     getVersionStore().close();
+    getCountStore().close();
 
   }
 
@@ -193,6 +291,8 @@ public abstract class DataSet {
 
   public abstract SchemaStore getSchemaStore();
 
+  public abstract CountStore getCountStore();
+
   public abstract TypeNameStore getTypeNameStore();
 
   public abstract ImportManager getImportManager();
@@ -1,6 +1,7 @@
 package nl.knaw.huygens.timbuctoo.v5.dataset.dto;
 
 import nl.knaw.huygens.timbuctoo.util.Tuple;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.QuadStoreLayout;
 import org.immutables.value.Value;
 
 import java.util.Optional;
@@ -49,5 +50,10 @@ public interface DataSetMetaData {
   @Value.Auxiliary
   boolean isPublished();
 
+  /**
+   * Returns how the quads of this data set are stored. This is fixed when the data set is created.
+   */
+  QuadStoreLayout getQuadStoreLayout();
+
   void publish();
 }
@@ -0,0 +1,35 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.countstore;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.OptimizedPatchListener;
+import nl.knaw.huygens.timbuctoo.v5.datastores.countstore.dto.ValueHistogram;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the statistics that would otherwise require walking through all quads of a data set: the size of each list
+ * of quads (subject, predicate, direction) and the amount of times each value of a predicate is used.
+ *
+ * <p>The statistics are updated during each import. A store that was added to a data set that already contained
+ * data can't know the statistics of that data, so it returns nothing until the next import has counted all quads of
+ * the data set.</p>
+ */
+public interface CountStore extends OptimizedPatchListener {
+  /**
+   * Returns the amount of quads of the subject with the predicate and direction, or nothing when it is not known.
+   */
+  Optional<Integer> getCount(String subject, String predicate, Direction direction);
+
+  /**
+   * Returns the amount of times that each value of the predicate is used, or nothing when it is not known.
+   */
+  Optional<ValueHistogram> getValueHistogram(String predicate);
+
+  /**
+   * Returns the predicates that have (or have had) values.
+   */
+  Stream<String> getPredicatesWithValues();
+
+  void close();
+}
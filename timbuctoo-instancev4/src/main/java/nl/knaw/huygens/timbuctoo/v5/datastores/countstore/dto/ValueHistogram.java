@@ -0,0 +1,41 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.countstore.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import java.util.Map;
+
+/**
+ * The amount of quads per value of a predicate. Predicates with many different values (such as names) are not
+ * counted per value, only the fact that they have too many values is kept.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableValueHistogram.class)
+@JsonDeserialize(as = ImmutableValueHistogram.class)
+public interface ValueHistogram {
+  static ValueHistogram create(Map<String, Integer> valueCounts) {
+    return ImmutableValueHistogram.builder()
+      .valueCounts(valueCounts)
+      .tooManyValues(false)
+      .quadCount(valueCounts.values().stream().mapToLong(Integer::longValue).sum())
+      .build();
+  }
+
+  static ValueHistogram tooManyValues(long quadCount) {
+    return ImmutableValueHistogram.builder().tooManyValues(true).quadCount(quadCount).build();
+  }
+
+  Map<String, Integer> getValueCounts();
+
+  boolean isTooManyValues();
+
+  /**
+   * The amount of quads with a value for the predicate. It is kept when there are too many values as well, so the
+   * values can be counted again once there are few enough quads left.
+   */
+  @Value.Default
+  default long getQuadCount() {
+    return 0;
+  }
+}
@@ -0,0 +1,414 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import nl.knaw.huygens.timbuctoo.util.Tuple;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
+import nl.knaw.huygens.timbuctoo.v5.dataset.ChangeFetcher;
+import nl.knaw.huygens.timbuctoo.v5.dataset.ImportStatus;
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+import nl.knaw.huygens.timbuctoo.v5.datastores.countstore.CountStore;
+import nl.knaw.huygens.timbuctoo.v5.datastores.countstore.dto.ValueHistogram;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Stores the size of each quad list under the key "subject\npredicate\ndirection". An import only reads the quads
+ * that were asserted or retracted and adds the difference to the stored size, so subjects with many quads (such as
+ * the types, whose incoming rdf:type quads form the collections) don't have to be counted again.
+ *
+ * <p>The value histograms are stored as one json record per predicate. A predicate that gets more than
+ * MAX_HISTOGRAM_VALUES different values is marked as having too many values and is no longer counted per value. Only
+ * the amount of its quads is kept, and once that has dropped to MAX_HISTOGRAM_VALUES its values are counted again.</p>
+ *
+ * <p>A store that is added to a data set that already has data is incomplete. At the end of the next import it
+ * counts all quads of the quad store once and from then on it is kept up to date like any other store.</p>
+ */
+public class BdbCountStore implements CountStore {
+  private static final Logger LOG = getLogger(BdbCountStore.class);
+  public static final int MAX_HISTOGRAM_VALUES = 100;
+  private static final String COMPLETE = "complete";
+  private static final String INCOMPLETE = "incomplete";
+  private static final int BATCH_SIZE = 1000;
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+    .registerModule(new Jdk8Module())
+    .registerModule(new GuavaModule());
+  private final BdbWrapper<String, Integer> counts;
+  private final BdbWrapper<String, String> histograms;
+  private final DataStorage state;
+  private final UpdatableQuadStore quadStore;
+  private final ImportStatus importStatus;
+  private volatile boolean complete;
+  //onChangedSubject may be called from several threads. Each thread collects the changes of the values in its own
+  //map and the maps are combined during finish()
+  private Queue<Map<String, PredicateChanges>> shards;
+  private ThreadLocal<Map<String, PredicateChanges>> shardHistograms;
+
+  /**
+   * The state records whether the counts are complete. That is the case when the store was created before the data
+   * set got any data, or after all quads of the quad store have been counted.
+   */
+  public BdbCountStore(BdbWrapper<String, Integer> counts, BdbWrapper<String, String> histograms, DataStorage state,
+                       UpdatableQuadStore quadStore, boolean dataSetIsEmpty, ImportStatus importStatus)
+    throws DatabaseWriteException {
+    this.counts = counts;
+    this.histograms = histograms;
+    this.state = state;
+    this.quadStore = quadStore;
+    this.importStatus = importStatus;
+    if (state.getValue() == null) {
+      state.setValue(dataSetIsEmpty ? COMPLETE : INCOMPLETE);
+    }
+    this.complete = COMPLETE.equals(state.getValue());
+    if (!complete) {
+      LOG.info("The data set was imported before the counts were kept. The quads will be counted during the next " +
+        "import.");
+    }
+    resetShards();
+  }
+
+  private static String countKey(String subject, String predicate, Direction direction) {
+    return subject + "\n" + predicate + "\n" + direction.name();
+  }
+
+  @Override
+  public Optional<Integer> getCount(String subject, String predicate, Direction direction) {
+    if (!complete) {
+      return Optional.empty();
+    }
+    try (Stream<Integer> values = counts.databaseGetter()
+      .key(countKey(subject, predicate, direction))
+      .dontSkip()
+      .forwards()
+      .getValues()) {
+      return Optional.of(values.findFirst().orElse(0));
+    }
+  }
+
+  @Override
+  public Optional<ValueHistogram> getValueHistogram(String predicate) {
+    if (!complete) {
+      return Optional.empty();
+    }
+    return Optional.of(loadHistogram(predicate).orElseGet(() -> ValueHistogram.create(new HashMap<>())));
+  }
+
+  @Override
+  public Stream<String> getPredicatesWithValues() {
+    return histograms.databaseGetter().getAll().getKeys();
+  }
+
+  private Optional<ValueHistogram> loadHistogram(String predicate) {
+    try (Stream<String> values = histograms.databaseGetter().key(predicate).dontSkip().forwards().getValues()) {
+      final Optional<String> value = values.findFirst();
+      if (value.isPresent()) {
+        return Optional.of(OBJECT_MAPPER.readValue(value.get(), ValueHistogram.class));
+      }
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void resetShards() {
+    final Queue<Map<String, PredicateChanges>> newShards = new ConcurrentLinkedQueue<>();
+    shards = newShards;
+    shardHistograms = ThreadLocal.withInitial(() -> {
+      Map<String, PredicateChanges> shard = new HashMap<>();
+      newShards.add(shard);
+      return shard;
+    });
+  }
+
+  @Override
+  public void start() {
+    resetShards();
+  }
+
+  @Override
+  public void onChangedSubject(String subject, ChangeFetcher changeFetcher) throws RdfProcessingFailedException {
+    if (!complete) {
+      return;
+    }
+    final Map<String, PredicateChanges> histogramChanges = shardHistograms.get();
+    //the unchanged quads are not needed, the difference is added to the stored count
+    final Map<String, Integer> changes = new HashMap<>();
+    try (Stream<CursorQuad> quads = changeFetcher.getPredicates(subject, true, false, true)) {
+      for (CursorQuad quad : (Iterable<CursorQuad>) quads::iterator) {
+        final int change = quad.getChangeType() == ChangeType.ASSERTED ? 1 :
+          quad.getChangeType() == ChangeType.RETRACTED ? -1 : 0;
+        if (change == 0) {
+          continue;
+        }
+        changes.merge(countKey(subject, quad.getPredicate(), quad.getDirection()), change, Integer::sum);
+        if (quad.getValuetype().isPresent()) {
+          addValueChange(histogramChanges, quad.getPredicate(), quad.getObject(), change);
+        }
+      }
+    }
+    try {
+      for (Map.Entry<String, Integer> change : changes.entrySet()) {
+        if (change.getValue() != 0) {
+          updateCount(change.getKey(), change.getValue());
+        }
+      }
+    } catch (DatabaseWriteException e) {
+      throw new RdfProcessingFailedException(e);
+    }
+  }
+
+  private static void addValueChange(Map<String, PredicateChanges> histogramChanges, String predicate, String value,
+                                     int change) {
+    final PredicateChanges changes = histogramChanges.computeIfAbsent(predicate, p -> new PredicateChanges());
+    changes.quadChange += change;
+    if (changes.valueChanges == null) {
+      return;
+    }
+    mergeValueChange(changes.valueChanges, value, change);
+    //only the values whose count really changed are kept, so more than twice the maximum means that either before or
+    //after the import there were more values than the maximum. Stop collecting the changes so that predicates like
+    //names don't fill the memory.
+    if (changes.valueChanges.size() > 2 * MAX_HISTOGRAM_VALUES) {
+      changes.valueChanges = null;
+    }
+  }
+
+  private static void mergeValueChange(Map<String, Integer> valueChanges, String value, int change) {
+    //an assertion and a retraction of the same value cancel each other out
+    valueChanges.merge(value, change, (current, mutation) -> current + mutation == 0 ? null : current + mutation);
+  }
+
+  private void updateCount(String key, int change) throws DatabaseWriteException {
+    //each subject is handled by one thread, so no other thread writes this key
+    final int current;
+    try (Stream<Integer> values = counts.databaseGetter().key(key).dontSkip().forwards().getValues()) {
+      current = values.findFirst().orElse(0);
+    }
+    final int updated = current + change;
+    if (updated <= 0) {
+      if (updated < 0) {
+        LOG.error("Count of " + key.replace("\n", " ") + " became negative (" + updated + ")");
+      }
+      counts.delete(key, current);
+    } else {
+      counts.put(key, updated);
+    }
+  }
+
+  @Override
+  public boolean canProcessSubjectsConcurrently() {
+    return true;
+  }
+
+  @Override
+  public void notifyUpdate() {
+  }
+
+  @Override
+  public void finish() throws RdfProcessingFailedException {
+    if (!complete) {
+      //the changes of this import are already part of the quad store, so a count of all quads includes them
+      recount();
+      return;
+    }
+    importStatus.setStatus("Updating value statistics");
+    final Map<String, PredicateChanges> combined = new HashMap<>();
+    for (Map<String, PredicateChanges> shard : shards) {
+      for (Map.Entry<String, PredicateChanges> predicate : shard.entrySet()) {
+        combined.computeIfAbsent(predicate.getKey(), p -> new PredicateChanges()).add(predicate.getValue());
+      }
+    }
+    resetShards();
+    try {
+      final Set<String> toRecount = new HashSet<>();
+      for (Map.Entry<String, PredicateChanges> predicate : combined.entrySet()) {
+        final PredicateChanges changes = predicate.getValue();
+        final Optional<ValueHistogram> stored = loadHistogram(predicate.getKey());
+        if (stored.isPresent() && stored.get().isTooManyValues()) {
+          final long quadCount = stored.get().getQuadCount() + changes.quadChange;
+          if (quadCount <= MAX_HISTOGRAM_VALUES) {
+            //there can't be too many values anymore
+            toRecount.add(predicate.getKey());
+          } else {
+            storeHistogram(predicate.getKey(), ValueHistogram.tooManyValues(quadCount));
+          }
+          continue;
+        }
+        final Map<String, Integer> valueCounts = new HashMap<>();
+        stored.ifPresent(histogram -> valueCounts.putAll(histogram.getValueCounts()));
+        if (changes.valueChanges == null) {
+          final long quadCount = valueCounts.values().stream().mapToLong(Integer::longValue).sum() + changes.quadChange;
+          storeHistogram(predicate.getKey(), ValueHistogram.tooManyValues(quadCount));
+          continue;
+        }
+        changes.valueChanges.forEach((value, change) -> valueCounts.merge(value, change, Integer::sum));
+        valueCounts.values().removeIf(count -> count <= 0);
+        if (valueCounts.size() > MAX_HISTOGRAM_VALUES) {
+          storeHistogram(
+            predicate.getKey(),
+            ValueHistogram.tooManyValues(valueCounts.values().stream().mapToLong(Integer::longValue).sum())
+          );
+        } else {
+          storeHistogram(predicate.getKey(), ValueHistogram.create(valueCounts));
+        }
+      }
+      if (!toRecount.isEmpty()) {
+        recountHistograms(toRecount);
+      }
+    } catch (DatabaseWriteException e) {
+      throw new RdfProcessingFailedException(e);
+    }
+  }
+
+  /**
+   * Counts the values of the predicates again from the quad store. Used for predicates that were marked as having too
+   * many values and have few enough quads left to count them per value.
+   */
+  private void recountHistograms(Set<String> predicates) throws DatabaseWriteException {
+    importStatus.setStatus("Counting the values of " + predicates.size() + " predicates");
+    final Map<String, PredicateChanges> valueCounts = new HashMap<>();
+    try (Stream<CursorQuad> quads = quadStore.getAllQuads()) {
+      for (CursorQuad quad : (Iterable<CursorQuad>) quads::iterator) {
+        if (quad.getValuetype().isPresent() && predicates.contains(quad.getPredicate())) {
+          addValueChange(valueCounts, quad.getPredicate(), quad.getObject(), 1);
+        }
+      }
+    }
+    for (String predicate : predicates) {
+      //a predicate without any quads left has an empty histogram
+      valueCounts.computeIfAbsent(predicate, p -> new PredicateChanges());
+    }
+    storeHistograms(valueCounts);
+  }
+
+  /**
+   * Replaces the counts and histograms with those of all quads in the quad store and marks the store as complete.
+   */
+  private void recount() throws RdfProcessingFailedException {
+    importStatus.setStatus("Counting all quads");
+    try {
+      //a recount that was interrupted may have left some counts behind
+      clear(counts);
+      clear(histograms);
+      final Map<String, PredicateChanges> valueCounts = new HashMap<>();
+      final BdbWrapper<String, Integer>.WriteBatch batch = counts.writeBatch();
+      String key = null;
+      int count = 0;
+      try (Stream<CursorQuad> quads = quadStore.getAllQuads()) {
+        for (CursorQuad quad : (Iterable<CursorQuad>) quads::iterator) {
+          final String quadKey = countKey(quad.getSubject(), quad.getPredicate(), quad.getDirection());
+          if (!quadKey.equals(key)) {
+            if (key != null) {
+              batch.put(key, count);
+              if (batch.size() >= BATCH_SIZE) {
+                batch.apply();
+              }
+            }
+            key = quadKey;
+            count = 0;
+          }
+          count++;
+          if (quad.getValuetype().isPresent()) {
+            addValueChange(valueCounts, quad.getPredicate(), quad.getObject(), 1);
+          }
+        }
+      }
+      if (key != null) {
+        batch.put(key, count);
+      }
+      batch.apply();
+      storeHistograms(valueCounts);
+      state.setValue(COMPLETE);
+      complete = true;
+      LOG.info("Counted all quads, the counts are complete");
+    } catch (DatabaseWriteException e) {
+      throw new RdfProcessingFailedException(e);
+    }
+  }
+
+  private static <ValueT> void clear(BdbWrapper<String, ValueT> database) throws DatabaseWriteException {
+    //the entries are read before they are deleted, so that the cursor does not hold a lock on them
+    List<Tuple<String, ValueT>> entries;
+    do {
+      try (Stream<Tuple<String, ValueT>> stored = database.databaseGetter().getAll().getKeysAndValues(Tuple::tuple)) {
+        entries = stored.limit(BATCH_SIZE).collect(Collectors.toList());
+      }
+      final BdbWrapper<String, ValueT>.WriteBatch batch = database.writeBatch();
+      for (Tuple<String, ValueT> entry : entries) {
+        batch.delete(entry.getLeft(), entry.getRight());
+      }
+      batch.apply();
+    } while (!entries.isEmpty());
+  }
+
+  /**
+   * Stores the histograms of values that were counted from scratch, so the changes are the counts.
+   */
+  private void storeHistograms(Map<String, PredicateChanges> valueCounts) throws DatabaseWriteException {
+    for (Map.Entry<String, PredicateChanges> predicate : valueCounts.entrySet()) {
+      final Map<String, Integer> counted = predicate.getValue().valueChanges;
+      if (counted == null || counted.size() > MAX_HISTOGRAM_VALUES) {
+        storeHistogram(predicate.getKey(), ValueHistogram.tooManyValues(predicate.getValue().quadChange));
+      } else {
+        storeHistogram(predicate.getKey(), ValueHistogram.create(counted));
+      }
+    }
+  }
+
+  private void storeHistogram(String predicate, ValueHistogram histogram) throws DatabaseWriteException {
+    try {
+      histograms.put(predicate, OBJECT_MAPPER.writeValueAsString(histogram));
+    } catch (JsonProcessingException e) {
+      throw new DatabaseWriteException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      counts.close();
+      histograms.close();
+      state.close();
+    } catch (Exception e) {
+      LOG.error("Exception while closing BdbCountStore", e);
+    }
+  }
+
+  /**
+   * The changes of the values of one predicate.
+   */
+  private static class PredicateChanges {
+    //null when the predicate has too many values to keep track of them separately
+    private Map<String, Integer> valueChanges = new HashMap<>();
+    private long quadChange;
+
+    void add(PredicateChanges other) {
+      quadChange += other.quadChange;
+      if (other.valueChanges == null) {
+        valueChanges = null;
+      } else if (valueChanges != null) {
+        other.valueChanges.forEach((value, change) -> mergeValueChange(valueChanges, value, change));
+      }
+    }
+  }
+}
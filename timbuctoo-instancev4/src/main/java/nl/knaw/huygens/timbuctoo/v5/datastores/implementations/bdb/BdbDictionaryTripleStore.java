@@ -0,0 +1,359 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
+
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.DatabaseGetter;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataStoreCreationException;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static nl.knaw.huygens.timbuctoo.v5.berkeleydb.DatabaseGetter.Iterate.BACKWARDS;
+import static nl.knaw.huygens.timbuctoo.v5.berkeleydb.DatabaseGetter.Iterate.FORWARDS;
+import static nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb.BdbTermDictionary.NO_TERM;
+
+/**
+ * A quad store that stores the quads as fixed-width (subject id, predicate id, direction) keys. Uri's, datatypes and
+ * language tags are interned in a BdbTermDictionary. The values contain the datatype and language id followed by
+ * either the id of the object uri or the literal value.
+ *
+ * <p>The quads are sorted by id instead of by their string representation. The cursors are the base64 encoded
+ * key and value, so they stay opaque to the GraphQL layer.</p>
+ */
+public class BdbDictionaryTripleStore implements UpdatableQuadStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BdbDictionaryTripleStore.class);
+  private static final EncodedKeyBinding KEY_BINDING = new EncodedKeyBinding();
+  private static final EncodedValueBinding VALUE_BINDING = new EncodedValueBinding();
+  protected final BdbWrapper<EncodedKey, EncodedValue> bdbWrapper;
+  private final BdbTermDictionary dictionary;
+
+  public BdbDictionaryTripleStore(BdbWrapper<EncodedKey, EncodedValue> rdfData, BdbTermDictionary dictionary)
+    throws DataStoreCreationException {
+    this.bdbWrapper = rdfData;
+    this.dictionary = dictionary;
+  }
+
+  public static TupleBinding<EncodedKey> keyBinding() {
+    return KEY_BINDING;
+  }
+
+  public static TupleBinding<EncodedValue> valueBinding() {
+    return VALUE_BINDING;
+  }
+
+  @Override
+  public Stream<CursorQuad> getQuads(String subject, String predicate, Direction direction, String cursor) {
+    final DatabaseGetter<EncodedKey, EncodedValue> getter;
+    if (cursor.isEmpty() || cursor.equals("LAST")) {
+      final int subjectId = dictionary.getId(subject);
+      final int predicateId = dictionary.getId(predicate);
+      if (subjectId == NO_TERM || predicateId == NO_TERM) {
+        return Stream.empty();
+      }
+      final EncodedKey key = new EncodedKey(subjectId, predicateId, direction);
+      if (cursor.isEmpty()) {
+        getter = bdbWrapper.databaseGetter()
+          .key(key)
+          .dontSkip()
+          .forwards();
+      } else {
+        getter = bdbWrapper.databaseGetter()
+          .key(key)
+          .skipToEnd()
+          .backwards();
+      }
+    } else {
+      TupleInput position = new TupleInput(Base64.getUrlDecoder().decode(cursor.substring(2)));
+      getter = bdbWrapper.databaseGetter()
+        .key(KEY_BINDING.entryToObject(position))
+        .skipToValue(VALUE_BINDING.entryToObject(position))
+        .skipOne() //we start after the cursor
+        .direction(cursor.startsWith("A\n") ? FORWARDS : BACKWARDS);
+    }
+    return getter.getKeysAndValues(this::formatResult);
+  }
+
+  @Override
+  public Stream<CursorQuad> getQuads(String subject) {
+    final int subjectId = dictionary.getId(subject);
+    if (subjectId == NO_TERM) {
+      return Stream.empty();
+    }
+    return bdbWrapper.databaseGetter()
+      .partialKey(new EncodedKey(subjectId, NO_TERM, Direction.IN), (prefix, key) -> prefix.subject == key.subject)
+      .dontSkip()
+      .forwards()
+      .getKeysAndValues(this::formatResult);
+  }
+
+  @Override
+  public Stream<CursorQuad> getAllQuads() {
+    return bdbWrapper.databaseGetter()
+      .getAll()
+      .getKeysAndValues(this::formatResult);
+  }
+
+  @Override
+  public Map<String, Set<String>> getObjects(Collection<String> subjects, String predicate, Direction direction) {
+    final int predicateId = dictionary.getId(predicate);
+    if (predicateId == NO_TERM) {
+      return new HashMap<>();
+    }
+    //the keys are sorted by subject id, so the cursor only has to move forwards
+    Map<Integer, String> subjectsById = new TreeMap<>();
+    for (String subject : subjects) {
+      final int subjectId = dictionary.getId(subject);
+      if (subjectId != NO_TERM) {
+        subjectsById.put(subjectId, subject);
+      }
+    }
+    List<EncodedKey> keys = new ArrayList<>(subjectsById.size());
+    for (Integer subjectId : subjectsById.keySet()) {
+      keys.add(new EncodedKey(subjectId, predicateId, direction));
+    }
+    Map<String, Set<String>> result = new HashMap<>();
+    bdbWrapper.forEachValueOf(keys, (key, value) ->
+      result.computeIfAbsent(subjectsById.get(key.subject), subject -> new HashSet<>())
+        .add(value.objectId == NO_TERM ? value.object : dictionary.getTerm(value.objectId))
+    );
+    return result;
+  }
+
+  @Override
+  public void close() {
+    try {
+      bdbWrapper.close();
+    } catch (Exception e) {
+      LOG.error("Exception closing BdbDictionaryTripleStore", e);
+    }
+    dictionary.close();
+  }
+
+  private CursorQuad formatResult(EncodedKey key, EncodedValue value) {
+    final TupleOutput cursor = new TupleOutput();
+    KEY_BINDING.objectToEntry(key, cursor);
+    VALUE_BINDING.objectToEntry(value, cursor);
+    return CursorQuad.create(
+      dictionary.getTerm(key.subject),
+      dictionary.getTerm(key.predicate),
+      key.direction,
+      value.objectId == NO_TERM ? value.object : dictionary.getTerm(value.objectId),
+      dictionary.getTerm(value.dataType),
+      dictionary.getTerm(value.language),
+      Base64.getUrlEncoder().encodeToString(cursor.toByteArray())
+    );
+  }
+
+  @Override
+  public boolean putQuad(String subject, String predicate, Direction direction, String object, String dataType,
+                         String language) throws DatabaseWriteException {
+    final EncodedKey key = new EncodedKey(
+      dictionary.getOrCreateId(subject),
+      dictionary.getOrCreateId(predicate),
+      direction
+    );
+    final int dataTypeId = dictionary.getOrCreateId(dataType);
+    final EncodedValue value = new EncodedValue(
+      dataTypeId,
+      dictionary.getOrCreateId(language),
+      dataType == null ? dictionary.getOrCreateId(object) : NO_TERM,
+      dataType == null ? null : object
+    );
+    return bdbWrapper.put(key, value);
+  }
+
+  @Override
+  public boolean deleteQuad(String subject, String predicate, Direction direction, String object, String dataType,
+                            String language) throws DatabaseWriteException {
+    final EncodedKey key = encodeKey(subject, predicate, direction);
+    final EncodedValue value = encodeValue(object, dataType, language);
+    if (key == null || value == null) {
+      //one of the terms was never stored, so neither was the quad
+      return false;
+    }
+    return bdbWrapper.delete(key, value);
+  }
+
+  @Override
+  public Stream<CursorQuad> inStoreOrder(Stream<CursorQuad> patchQuads) {
+    //every quad is encoded once, instead of twice for every comparison
+    return patchQuads
+      .map(quad -> new SortableQuad(toBytes(quad), quad))
+      .sorted((left, right) -> compareBytes(left.bytes, right.bytes))
+      .map(sortable -> sortable.quad);
+  }
+
+  @Override
+  public int compare(CursorQuad leftQ, CursorQuad rightQ) {
+    return compareBytes(toBytes(leftQ), toBytes(rightQ));
+  }
+
+  private byte[] toBytes(CursorQuad quad) {
+    final TupleOutput output = new TupleOutput();
+    EncodedKey key = encodeKey(quad.getSubject(), quad.getPredicate(), quad.getDirection());
+    EncodedValue value = encodeValue(
+      quad.getObject(),
+      quad.getValuetype().orElse(null),
+      quad.getLanguage().orElse(null)
+    );
+    if (key == null) {
+      key = new EncodedKey(NO_TERM, NO_TERM, quad.getDirection());
+    }
+    if (value == null) {
+      value = new EncodedValue(NO_TERM, NO_TERM, NO_TERM, quad.getObject());
+    }
+    KEY_BINDING.objectToEntry(key, output);
+    VALUE_BINDING.objectToEntry(value, output);
+    return output.toByteArray();
+  }
+
+  private EncodedKey encodeKey(String subject, String predicate, Direction direction) {
+    final int subjectId = dictionary.getId(subject);
+    final int predicateId = dictionary.getId(predicate);
+    if (subjectId == NO_TERM || predicateId == NO_TERM) {
+      return null;
+    }
+    return new EncodedKey(subjectId, predicateId, direction);
+  }
+
+  private EncodedValue encodeValue(String object, String dataType, String language) {
+    final int dataTypeId = dictionary.getId(dataType);
+    final int languageId = dictionary.getId(language);
+    final int objectId = dataType == null ? dictionary.getId(object) : NO_TERM;
+    if ((dataType != null && dataTypeId == NO_TERM) || (language != null && languageId == NO_TERM) ||
+      (dataType == null && objectId == NO_TERM)) {
+      return null;
+    }
+    return new EncodedValue(dataTypeId, languageId, objectId, dataType == null ? null : object);
+  }
+
+  private static int compareBytes(byte[] left, byte[] right) {
+    final int length = Math.min(left.length, right.length);
+    for (int i = 0; i < length; i++) {
+      final int result = (left[i] & 0xff) - (right[i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return left.length - right.length;
+  }
+
+  private static class SortableQuad {
+    private final byte[] bytes;
+    private final CursorQuad quad;
+
+    SortableQuad(byte[] bytes, CursorQuad quad) {
+      this.bytes = bytes;
+      this.quad = quad;
+    }
+  }
+
+  public static class EncodedKey {
+    private final int subject;
+    private final int predicate;
+    private final Direction direction;
+
+    EncodedKey(int subject, int predicate, Direction direction) {
+      this.subject = subject;
+      this.predicate = predicate;
+      this.direction = direction;
+    }
+  }
+
+  public static class EncodedValue {
+    private final int dataType;
+    private final int language;
+    private final int objectId;
+    private final String object;
+
+    EncodedValue(int dataType, int language, int objectId, String object) {
+      this.dataType = dataType;
+      this.language = language;
+      this.objectId = objectId;
+      this.object = object;
+    }
+  }
+
+  private static class EncodedKeyBinding extends TupleBinding<EncodedKey> {
+    @Override
+    public EncodedKey entryToObject(TupleInput input) {
+      return new EncodedKey(input.readInt(), input.readInt(), input.readByte() == 1 ? Direction.OUT : Direction.IN);
+    }
+
+    @Override
+    public void objectToEntry(EncodedKey key, TupleOutput output) {
+      output.writeInt(key.subject);
+      output.writeInt(key.predicate);
+      output.writeByte(key.direction == Direction.OUT ? 1 : 0);
+    }
+  }
+
+  private static class EncodedValueBinding extends TupleBinding<EncodedValue> {
+    @Override
+    public EncodedValue entryToObject(TupleInput input) {
+      final int dataType = input.readInt();
+      final int language = input.readInt();
+      if (dataType == NO_TERM) {
+        return new EncodedValue(dataType, language, input.readInt(), null);
+      } else {
+        return new EncodedValue(dataType, language, NO_TERM, input.readString());
+      }
+    }
+
+    @Override
+    public void objectToEntry(EncodedValue value, TupleOutput output) {
+      output.writeInt(value.dataType);
+      output.writeInt(value.language);
+      if (value.dataType == NO_TERM) {
+        output.writeInt(value.objectId);
+      } else {
+        output.writeString(value.object);
+      }
+    }
+  }
+
+  /**
+   * Sorts the keys on subject id, predicate id and direction by reading the fixed-width fields directly from the
+   * serialized key. Berkeley db instantiates this class itself, so it needs to be public and have a no-arg
+   * constructor.
+   */
+  public static class KeyComparator implements Comparator<byte[]>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public int compare(byte[] left, byte[] right) {
+      int result = Integer.compare(readInt(left, 0), readInt(right, 0));
+      if (result == 0) {
+        result = Integer.compare(readInt(left, 4), readInt(right, 4));
+        if (result == 0) {
+          result = Byte.compare(left[8], right[8]);
+        }
+      }
+      return result;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+      //TupleOutput.writeInt flips the sign bit to make the bytes sortable
+      return ((data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16 | (data[offset + 2] & 0xff) << 8 |
+        (data[offset + 3] & 0xff)) ^ 0x80000000;
+    }
+  }
+}
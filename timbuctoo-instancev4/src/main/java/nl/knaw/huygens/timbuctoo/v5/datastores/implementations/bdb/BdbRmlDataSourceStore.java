@@ -1,5 +1,8 @@
 package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
 
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
 import nl.knaw.huygens.timbuctoo.util.StreamIterator;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
@@ -14,26 +17,62 @@ import nl.knaw.huygens.timbuctoo.v5.datastores.rmldatasource.RmlDataSourceStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.RDFS_LABEL;
 import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.TIM_HAS_PROPERTY;
 import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.TIM_HAS_ROW;
-import static org.apache.commons.lang3.StringEscapeUtils.escapeJava;
+import static org.apache.commons.lang3.StringEscapeUtils.unescapeJava;
 
+/**
+ * Stores the raw rows of the uploaded collections for the rml mapper. Each row is a single record in the rows
+ * database, keyed by collection uri and row uri, so all rows of a collection can be read with one cursor. The record
+ * contains the values by column index. The column names are stored once per collection in the source database,
+ * next to the uris of the rows of each collection.
+ */
 public class BdbRmlDataSourceStore implements RmlDataSourceStore {
   private static final Logger LOG = LoggerFactory.getLogger(BdbRmlDataSourceStore.class);
+  private static final RowBinding ROW_BINDING = new RowBinding();
+  private static final String COLUMNS_PREFIX = "columns\n";
+  private static final String ROWS_MOVED_MARKER = "rowsMoved\n";
+  private static final int BATCH_SIZE = 1000;
   protected final BdbWrapper<String, String> bdbWrapper;
-  private final Map<String, Map<String, Property>> collectionProperties = new HashMap<>();
+  private final BdbWrapper<String, Map<Integer, String>> rows;
+  private final Map<String, Map<String, Property>> collectionProperties = new ConcurrentHashMap<>();
+  private final Map<String, Columns> collectionColumns = new ConcurrentHashMap<>();
   private ImportStatus importStatus;
 
-  public BdbRmlDataSourceStore(BdbWrapper<String, String> bdbWrapper, ImportStatus importStatus)
-    throws DataStoreCreationException {
+  public BdbRmlDataSourceStore(BdbWrapper<String, String> bdbWrapper, BdbWrapper<String, Map<Integer, String>> rows,
+                               ImportStatus importStatus) throws DataStoreCreationException {
     this.bdbWrapper = bdbWrapper;
+    this.rows = rows;
     this.importStatus = importStatus;
+    try {
+      moveRowsOfOldUploads();
+    } catch (DatabaseWriteException e) {
+      throw new DataStoreCreationException(e);
+    }
+  }
+
+  public static TupleBinding<Map<Integer, String>> rowBinding() {
+    return ROW_BINDING;
+  }
+
+  private static String rowKey(String collectionUri, String rowUri) {
+    return collectionUri + "\n" + rowUri;
   }
 
   @Override
@@ -45,10 +84,22 @@ public class BdbRmlDataSourceStore implements RmlDataSourceStore {
       .getValues();
   }
 
+  @Override
+  public Stream<Map<String, String>> getRows(String collectionUri) {
+    final Columns columns = getColumns(collectionUri);
+    return rows.databaseGetter()
+      .partialKey(rowKey(collectionUri, ""), (prefix, key) -> key.startsWith(prefix))
+      .dontSkip()
+      .forwards()
+      .getValues()
+      .map(columns::toNames);
+  }
+
   @Override
   public void close() {
     try {
       bdbWrapper.close();
+      rows.close();
     } catch (Exception e) {
       LOG.error("Exception closing BdbRmlDataSourceStore", e);
     }
@@ -78,53 +129,10 @@ public class BdbRmlDataSourceStore implements RmlDataSourceStore {
           Optional<CursorQuad> isRawRow = quads.findFirst();
           if (isRawRow.isPresent()) {
             final String collectionUri = isRawRow.get().getObject();
-            Map<String, Property> predicatesToStore = collectionProperties.computeIfAbsent(
-              collectionUri,
-              collection -> getPropertyNames(changeFetcher, collection)
-            );
-            switch (isRawRow.get().getChangeType()) {
-              case ASSERTED:
-                //add all unchanged and new predicates
-                StreamIterator.iterateAndCloseOrThrow(
-                  changeFetcher.getPredicates(subject, false, true, true),
-                  pred -> {
-                    final Property property = predicatesToStore.get(pred.getPredicate());
-                    if (property != null) {
-                      bdbWrapper.put(subject, property.newName + "\n" + pred.getObject());
-                    }
-                  }
-                );
-                break;
-              case RETRACTED:
-                //remove all unchanged and removed predicates
-                StreamIterator.iterateAndCloseOrThrow(
-                  changeFetcher.getPredicates(subject, true, true, false),
-                  pred -> {
-                    final Property property = predicatesToStore.get(pred.getPredicate());
-                    if (property != null) {
-                      bdbWrapper.delete(subject, property.oldName + "\n" + pred.getObject());
-                    }
-                  }
-                );
-                break;
-              case UNCHANGED:
-                //add all added predicates, remove all removed predicates
-                StreamIterator.iterateAndCloseOrThrow(
-                  changeFetcher.getPredicates(subject, true, false, true),
-                  pred -> {
-                    final Property property = predicatesToStore.get(pred.getPredicate());
-                    if (property != null) {
-                      if (pred.getChangeType() == ChangeType.RETRACTED) {
-                        bdbWrapper.delete(subject, property.oldName + "\n" + pred.getObject());
-                      } else {
-                        bdbWrapper.put(subject, property.oldName + "\n" + pred.getObject());
-                      }
-                    }
-                  }
-                );
-                break;
-              default:
-                throw new RuntimeException("Should not happen");
+            if (isRawRow.get().getChangeType() == ChangeType.RETRACTED) {
+              deleteRow(rowKey(collectionUri, subject));
+            } else {
+              storeRow(collectionUri, subject, changeFetcher);
             }
           }
         }
@@ -134,6 +142,34 @@ public class BdbRmlDataSourceStore implements RmlDataSourceStore {
     }
   }
 
+  private void storeRow(String collectionUri, String subject, ChangeFetcher changeFetcher)
+    throws DatabaseWriteException {
+    Map<String, Property> predicatesToStore = collectionProperties.computeIfAbsent(
+      collectionUri,
+      collection -> getPropertyNames(changeFetcher, collection)
+    );
+    final Columns columns = getColumns(collectionUri);
+    //the record is rewritten from all unchanged and new predicates, so a changed row needs only one write
+    Map<Integer, String> values = new TreeMap<>();
+    StreamIterator.iterateAndCloseOrThrow(
+      changeFetcher.getPredicates(subject, false, true, true),
+      pred -> {
+        final Property property = predicatesToStore.get(pred.getPredicate());
+        if (property != null && property.newName != null) {
+          values.put(columns.indexOf(property.newName), pred.getObject());
+        }
+      }
+    );
+    rows.put(rowKey(collectionUri, subject), values);
+  }
+
+  private void deleteRow(String key) throws DatabaseWriteException {
+    final Optional<Map<Integer, String>> values = getRow(key);
+    if (values.isPresent()) {
+      rows.delete(key, values.get());
+    }
+  }
+
   public Map<String, Property> getPropertyNames(ChangeFetcher changeFetcher, String collection) {
     Map<String, Property> result = new HashMap<>();
     StreamIterator.iterateAndClose(
@@ -144,9 +180,9 @@ public class BdbRmlDataSourceStore implements RmlDataSourceStore {
           changeFetcher.getPredicates(propertyQuad.getObject(), RDFS_LABEL, Direction.OUT, true, true, true),
           label -> {
             if (label.getChangeType() == ChangeType.RETRACTED) {
-              propDesc.oldName = escapeJava(label.getObject());
+              propDesc.oldName = label.getObject();
             } else {
-              propDesc.newName = escapeJava(label.getObject());
+              propDesc.newName = label.getObject();
             }
           }
         );
@@ -156,6 +192,100 @@ public class BdbRmlDataSourceStore implements RmlDataSourceStore {
     return result;
   }
 
+  private Columns getColumns(String collectionUri) {
+    return collectionColumns.computeIfAbsent(collectionUri, collection -> {
+      Columns columns = new Columns(collection);
+      try (Stream<String> stored = bdbWrapper.databaseGetter()
+        .key(COLUMNS_PREFIX + collection)
+        .dontSkip()
+        .forwards()
+        .getValues()) {
+        stored.forEach(column -> {
+          final String[] indexAndName = column.split("\n", 2);
+          columns.add(Integer.parseInt(indexAndName[0]), indexAndName[1]);
+        });
+      }
+      return columns;
+    });
+  }
+
+  /**
+   * Uploads that were stored before the rows got their own database have a "name\nvalue" entry for each value of a
+   * row, under the uri of the row. They are moved to the rows database once, when the store is opened. A marker in the
+   * source database records that the move is done.
+   *
+   * <p>The rows of a batch are synced to disk before their old entries are deleted. So when Timbuctoo stops during the
+   * move, the next move finds each row either in its old entries, in the rows database or partly in both. A row that
+   * is in both is merged.</p>
+   */
+  private void moveRowsOfOldUploads() throws DatabaseWriteException {
+    try (Stream<String> marker = bdbWrapper.databaseGetter().key(ROWS_MOVED_MARKER).dontSkip().forwards().getValues()) {
+      if (marker.findAny().isPresent()) {
+        return;
+      }
+    }
+    //the values of a collection are the uris of its rows, which never contain a newline
+    final Set<String> collections;
+    try (Stream<String> collectionUris = bdbWrapper.databaseGetter().getAll()
+      .getKeysAndValues((key, value) -> value.contains("\n") ? null : key)) {
+      collections = collectionUris.filter(key -> key != null).collect(Collectors.toCollection(TreeSet::new));
+    }
+    for (String collectionUri : collections) {
+      final List<String> rowUris;
+      try (Stream<String> stored = get(collectionUri)) {
+        rowUris = stored.collect(Collectors.toList());
+      }
+      LOG.info("Moving the rows of " + collectionUri + " to the rows database");
+      final Columns columns = getColumns(collectionUri);
+      BdbWrapper<String, Map<Integer, String>>.WriteBatch batch = rows.writeBatch();
+      BdbWrapper<String, String>.WriteBatch oldEntries = bdbWrapper.writeBatch();
+      for (String rowUri : rowUris) {
+        final List<String> oldValues;
+        try (Stream<String> stored = get(rowUri)) {
+          oldValues = stored.collect(Collectors.toList());
+        }
+        if (oldValues.isEmpty()) {
+          //moved already
+          continue;
+        }
+        final String key = rowKey(collectionUri, rowUri);
+        Map<Integer, String> values = new TreeMap<>(getRow(key).orElse(Collections.emptyMap()));
+        for (String oldValue : oldValues) {
+          final String[] nameAndValue = oldValue.split("\n", 2);
+          values.put(columns.indexOf(unescapeJava(nameAndValue[0])), nameAndValue[1]);
+          oldEntries.delete(rowUri, oldValue);
+        }
+        batch.put(key, values);
+        if (batch.size() >= BATCH_SIZE) {
+          moveBatch(batch, oldEntries);
+        }
+      }
+      moveBatch(batch, oldEntries);
+    }
+    bdbWrapper.put(ROWS_MOVED_MARKER, "true");
+    bdbWrapper.commit();
+  }
+
+  private void moveBatch(BdbWrapper<String, Map<Integer, String>>.WriteBatch batch,
+                         BdbWrapper<String, String>.WriteBatch oldEntries) throws DatabaseWriteException {
+    //the column names are stored in the source database, they have to be on disk before the rows that use them
+    bdbWrapper.commit();
+    batch.apply();
+    rows.commit();
+    oldEntries.apply();
+  }
+
+  private Optional<Map<Integer, String>> getRow(String key) {
+    try (Stream<Map<Integer, String>> stored = rows.databaseGetter().key(key).dontSkip().forwards().getValues()) {
+      return stored.findFirst();
+    }
+  }
+
+  @Override
+  public boolean canProcessSubjectsConcurrently() {
+    return true;
+  }
+
   @Override
   public void notifyUpdate() {
   }
@@ -168,4 +298,72 @@ public class BdbRmlDataSourceStore implements RmlDataSourceStore {
     String oldName;
     String newName;
   }
+
+  /**
+   * The column names of one collection. A column keeps its index once it is added, so the stored records stay valid.
+   */
+  private class Columns {
+    private final String collectionUri;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    Columns(String collectionUri) {
+      this.collectionUri = collectionUri;
+    }
+
+    synchronized void add(int index, String name) {
+      while (names.size() <= index) {
+        names.add(null);
+      }
+      names.set(index, name);
+      indexes.put(name, index);
+    }
+
+    synchronized int indexOf(String name) throws DatabaseWriteException {
+      Integer index = indexes.get(name);
+      if (index == null) {
+        index = names.size();
+        bdbWrapper.put(COLUMNS_PREFIX + collectionUri, index + "\n" + name);
+        add(index, name);
+      }
+      return index;
+    }
+
+    synchronized Map<String, String> toNames(Map<Integer, String> values) {
+      Map<String, String> result = new LinkedHashMap<>();
+      for (Map.Entry<Integer, String> value : values.entrySet()) {
+        result.put(names.get(value.getKey()), value.getValue());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Writes the amount of values followed by the column index and the length prefixed utf-8 bytes of each value.
+   */
+  private static class RowBinding extends TupleBinding<Map<Integer, String>> {
+    @Override
+    public Map<Integer, String> entryToObject(TupleInput input) {
+      final int size = input.readPackedInt();
+      Map<Integer, String> values = new TreeMap<>();
+      for (int i = 0; i < size; i++) {
+        final int column = input.readPackedInt();
+        final byte[] bytes = new byte[input.readPackedInt()];
+        input.readFast(bytes);
+        values.put(column, new String(bytes, StandardCharsets.UTF_8));
+      }
+      return values;
+    }
+
+    @Override
+    public void objectToEntry(Map<Integer, String> values, TupleOutput output) {
+      output.writePackedInt(values.size());
+      for (Map.Entry<Integer, String> value : values.entrySet()) {
+        final byte[] bytes = value.getValue().getBytes(StandardCharsets.UTF_8);
+        output.writePackedInt(value.getKey());
+        output.writePackedInt(bytes.length);
+        output.writeFast(bytes);
+      }
+    }
+  }
 }
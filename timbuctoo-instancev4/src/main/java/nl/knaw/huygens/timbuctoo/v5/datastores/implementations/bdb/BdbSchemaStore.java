@@ -1,10 +1,11 @@
 package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ChangeFetcher;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ImportStatus;
@@ -21,10 +22,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -32,54 +41,141 @@ import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction.OU
 import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.RDF_TYPE;
 import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.UNKNOWN;
 
+/**
+ * Stores the schema as one record per type, so an import only rewrites the types that it changed. Types are loaded
+ * when they are first requested.
+ */
 public class BdbSchemaStore implements SchemaStore, OptimizedPatchListener {
   private static final Logger LOG = LoggerFactory.getLogger(BdbSchemaStore.class);
   private static final Function<String, Type> TYPE_MAKER = Type::new;
 
   private static ObjectMapper objectMapper = new ObjectMapper()
-    .enable(SerializationFeature.INDENT_OUTPUT)
     .registerModule(new Jdk8Module())
     .registerModule(new GuavaModule())
-    .registerModule(new TimbuctooCustomSerializers())
-    .enable(SerializationFeature.INDENT_OUTPUT);
-  private final DataStorage dataStore;
+    .registerModule(new TimbuctooCustomSerializers());
+  private final BdbWrapper<String, String> typeStore;
+  private final DataStorage legacyStore;
 
-  Map<String, Type> types = new HashMap<>();
+  //the types that have been loaded from the typeStore or created during an import
+  private final Map<String, Type> types = new ConcurrentHashMap<>();
+  private final Set<String> typeUris = ConcurrentHashMap.newKeySet();
+  private volatile boolean allTypesLoaded;
   private ImportStatus importStatus;
+  //onChangedSubject may be called from several threads. Each thread collects its changes in its own map and the
+  //maps are added to the types during finish()
+  private Queue<Map<String, Type>> shards;
+  private ThreadLocal<Map<String, Type>> shardTypes;
+  private final AtomicLong processedSubjects = new AtomicLong();
 
-  public BdbSchemaStore(DataStorage dataStore, ImportStatus importStatus) throws IOException {
-
-    this.dataStore = dataStore;
-    final String storedValue = this.dataStore.getValue();
-    if (storedValue != null) {
-      types = objectMapper.readValue(storedValue, new TypeReference<Map<String, Type>>() {});
-    }
+  /**
+   * The legacyStore contains the schema in the format of previous versions, a single json object with all types.
+   * It is copied to the typeStore when the typeStore is still empty.
+   */
+  public BdbSchemaStore(BdbWrapper<String, String> typeStore, DataStorage legacyStore, ImportStatus importStatus)
+    throws IOException {
+    this.typeStore = typeStore;
+    this.legacyStore = legacyStore;
     this.importStatus = importStatus;
+    try (Stream<String> keys = typeStore.databaseGetter().getAll().getKeys()) {
+      keys.forEach(typeUris::add);
+    }
+    final String legacyValue = legacyStore.getValue();
+    if (typeUris.isEmpty() && legacyValue != null) {
+      final Map<String, Type> legacyTypes =
+        objectMapper.readValue(legacyValue, new TypeReference<Map<String, Type>>() {});
+      types.putAll(legacyTypes);
+      typeUris.addAll(legacyTypes.keySet());
+      try {
+        for (Type type : legacyTypes.values()) {
+          storeType(type);
+        }
+      } catch (DatabaseWriteException e) {
+        throw new IOException(e);
+      }
+    }
+    resetShards();
   }
 
   @Override
   public Map<String, Type> getTypes() {
-    return types;
+    if (!allTypesLoaded) {
+      for (String typeUri : typeUris) {
+        getType(typeUri);
+      }
+      allTypesLoaded = true;
+    }
+    return Collections.unmodifiableMap(types);
+  }
+
+  @Override
+  public Type getType(String typeUri) {
+    if (!typeUris.contains(typeUri)) {
+      return null;
+    }
+    return types.computeIfAbsent(typeUri, this::loadType);
+  }
+
+  private Type loadType(String typeUri) {
+    try (Stream<String> values = typeStore.databaseGetter().key(typeUri).dontSkip().forwards().getValues()) {
+      final String value = values.findFirst()
+        .orElseThrow(() -> new IllegalStateException("Type " + typeUri + " is not stored"));
+      return objectMapper.readValue(value, Type.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Type getOrCreateType(String typeUri) {
+    //the uri is only registered once the type exists, so getType never tries to load a type that is not stored yet
+    final Type type = types.computeIfAbsent(
+      typeUri,
+      uri -> typeUris.contains(uri) ? loadType(uri) : TYPE_MAKER.apply(uri)
+    );
+    typeUris.add(typeUri);
+    return type;
+  }
+
+  private void storeType(Type type) throws DatabaseWriteException {
+    try {
+      typeStore.put(type.getName(), objectMapper.writeValueAsString(type));
+    } catch (JsonProcessingException e) {
+      throw new DatabaseWriteException(e);
+    }
   }
 
   @Override
   public void close() {
     this.finish();
     try {
-      this.dataStore.close();
+      this.typeStore.close();
+      this.legacyStore.close();
     } catch (Exception e) {
       LOG.error("Exception while closing BdbSchemaStore", e);
     }
   }
 
+  private void resetShards() {
+    final Queue<Map<String, Type>> newShards = new ConcurrentLinkedQueue<>();
+    shards = newShards;
+    shardTypes = ThreadLocal.withInitial(() -> {
+      Map<String, Type> shard = new HashMap<>();
+      newShards.add(shard);
+      return shard;
+    });
+  }
+
   @Override
   public void start() {
+    resetShards();
+    processedSubjects.set(0);
     importStatus.setStatus("Processing entities");
     LOG.info("Processing entities");
   }
 
   @Override
   public void onChangedSubject(String subject, ChangeFetcher changeFetcher) {
+    processedSubjects.incrementAndGet();
+    final Map<String, Type> types = shardTypes.get();
     //Step 1: Get the types that where added, unchanged, removed
     List<Type> addedTypes = new ArrayList<>();
     List<Type> removedTypes = new ArrayList<>();
@@ -223,8 +319,20 @@ public class BdbSchemaStore implements SchemaStore, OptimizedPatchListener {
     }
   }
 
+  @Override
+  public boolean canProcessSubjectsConcurrently() {
+    return true;
+  }
+
   @Override
   public void notifyUpdate() {
+    //the changes are only merged into the types during finish(), so the size of the types is reported there
+    final String status = "Processed " + processedSubjects.get() + " entities for the schema";
+    LOG.info(status);
+    importStatus.setStatus(status);
+  }
+
+  private void logTypesSize() {
     final long totalPredicateCount = types
       .values().stream()
       .flatMap(t -> t.getPredicates().stream())
@@ -301,10 +409,19 @@ public class BdbSchemaStore implements SchemaStore, OptimizedPatchListener {
   public void finish() {
     LOG.info("Finished processing entities");
     importStatus.setStatus("Finished processing entities");
+    final Set<String> changedTypes = new HashSet<>();
+    for (Map<String, Type> shard : shards) {
+      for (Map.Entry<String, Type> shardType : shard.entrySet()) {
+        getOrCreateType(shardType.getKey()).merge(shardType.getValue());
+        changedTypes.add(shardType.getKey());
+      }
+    }
+    resetShards();
     //Step 3: Add type information to inverse predicates
-    for (Map.Entry<String, Type> typeEntry : types.entrySet()) {
-      Type type = typeEntry.getValue();
-      String typeName = typeEntry.getKey();
+    //Only the changed types are visited. The inverses that unchanged types added during earlier imports are part of
+    //the stored types, so they are loaded together with the changed types.
+    for (String typeName : new ArrayList<>(changedTypes)) {
+      Type type = getType(typeName);
 
       for (Predicate predicate : type.getPredicates()) {
         predicate.finish();
@@ -313,15 +430,16 @@ public class BdbSchemaStore implements SchemaStore, OptimizedPatchListener {
         }
         for (String referenceType : predicate.getReferenceTypes().keySet()) {
           try {
-            types.get(referenceType)
+            getType(referenceType)
               .getPredicate(predicate.getName(), Direction.IN) //There must be an inverse for each outward predicate
               .incReferenceType(type.getName(), 1);
+            changedTypes.add(referenceType);
           } catch (Exception e) {
             String cause = "Referenced type " + referenceType + " not found";
             try {
-              if (types.containsKey(referenceType)) {
+              if (typeUris.contains(referenceType)) {
                 cause = "type does not have the inverse predicate " + predicate.getName();
-                if (types.get(referenceType).getPredicate(predicate.getName(), Direction.IN) != null) {
+                if (getType(referenceType).getPredicate(predicate.getName(), Direction.IN) != null) {
                   cause = "Something failed during addreferencetype(" + typeName + ")";
                 }
               }
@@ -339,14 +457,15 @@ public class BdbSchemaStore implements SchemaStore, OptimizedPatchListener {
     }
     try {
       try {
-        String serializedValue = objectMapper.writeValueAsString(types);
-        dataStore.setValue(serializedValue);
-      } catch (IOException | DatabaseWriteException e) {
+        for (String typeName : changedTypes) {
+          storeType(getType(typeName));
+        }
+      } catch (DatabaseWriteException e) {
         throw new SchemaUpdateException(e);
       }
     } catch (SchemaUpdateException e) {
       e.printStackTrace();
     }
-
+    logTypesSize();
   }
 }
@@ -0,0 +1,137 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataStoreCreationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+/**
+ * Maps the uri's, datatypes and language tags of a data set to small integer ids and back.
+ *
+ * <p>Ids are handed out sequentially starting at 1, so 0 can be used to indicate that a term is absent. Terms are
+ * never removed from the dictionary.</p>
+ */
+public class BdbTermDictionary {
+  public static final int NO_TERM = 0;
+  private static final Logger LOG = LoggerFactory.getLogger(BdbTermDictionary.class);
+  //A newline can't be part of a uri, a datatype or a language tag, so this key can't clash with a term
+  private static final String NEXT_ID_KEY = "\n";
+  private static final int CACHE_SIZE = 100_000;
+
+  private final BdbWrapper<String, Integer> termToId;
+  private final BdbWrapper<Integer, String> idToTerm;
+  private final Cache<String, Integer> idCache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+  private final Cache<Integer, String> termCache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+  private static final int LOCK_STRIPES = 64;
+  private final Striped<Lock> termLocks = Striped.lock(LOCK_STRIPES);
+  private final Object nextIdLock = new Object();
+  private final AtomicInteger nextId;
+  private int storedNextId;
+
+  public BdbTermDictionary(BdbWrapper<String, Integer> termToId, BdbWrapper<Integer, String> idToTerm)
+    throws DataStoreCreationException {
+    this.termToId = termToId;
+    this.idToTerm = idToTerm;
+    storedNextId = lookup(termToId, NEXT_ID_KEY).orElse(NO_TERM + 1);
+    nextId = new AtomicInteger(storedNextId);
+  }
+
+  /**
+   * Returns the id of the term, or NO_TERM if the term is null or not part of the dictionary.
+   */
+  public int getId(String term) {
+    if (term == null) {
+      return NO_TERM;
+    }
+    Integer id = idCache.getIfPresent(term);
+    if (id == null) {
+      Optional<Integer> stored = lookup(termToId, term);
+      if (!stored.isPresent()) {
+        return NO_TERM;
+      }
+      id = stored.get();
+      idCache.put(term, id);
+    }
+    return id;
+  }
+
+  /**
+   * Returns the id of the term, adding the term to the dictionary if it's not part of it yet. Only the creation of
+   * the same term (or of terms in the same lock stripe) is serialized.
+   */
+  public int getOrCreateId(String term) throws DatabaseWriteException {
+    if (term == null) {
+      return NO_TERM;
+    }
+    int id = getId(term);
+    if (id != NO_TERM) {
+      return id;
+    }
+    final Lock lock = termLocks.get(term);
+    lock.lock();
+    try {
+      //another thread might have created the term while we waited for the lock
+      id = getId(term);
+      if (id == NO_TERM) {
+        id = nextId.getAndIncrement();
+        //the term is stored before its id, so every id that can be found also has a term
+        idToTerm.put(id, term);
+        termToId.put(term, id);
+        storeNextId(id + 1);
+        idCache.put(term, id);
+        termCache.put(id, term);
+      }
+      return id;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void storeNextId(int next) throws DatabaseWriteException {
+    synchronized (nextIdLock) {
+      if (next > storedNextId) {
+        termToId.put(NEXT_ID_KEY, next);
+        storedNextId = next;
+      }
+    }
+  }
+
+  /**
+   * Returns the term that belongs to this id or null for NO_TERM.
+   */
+  public String getTerm(int id) {
+    if (id == NO_TERM) {
+      return null;
+    }
+    String term = termCache.getIfPresent(id);
+    if (term == null) {
+      term = lookup(idToTerm, id).orElseThrow(() -> new IllegalStateException("Unknown term id " + id));
+      termCache.put(id, term);
+    }
+    return term;
+  }
+
+  private static <KeyT, ValueT> Optional<ValueT> lookup(BdbWrapper<KeyT, ValueT> bdbWrapper, KeyT key) {
+    try (Stream<ValueT> values = bdbWrapper.databaseGetter().key(key).dontSkip().forwards().getValues()) {
+      return values.findFirst();
+    }
+  }
+
+  public void close() {
+    try {
+      termToId.close();
+      idToTerm.close();
+    } catch (Exception e) {
+      LOG.error("Exception closing BdbTermDictionary", e);
+    }
+  }
+}
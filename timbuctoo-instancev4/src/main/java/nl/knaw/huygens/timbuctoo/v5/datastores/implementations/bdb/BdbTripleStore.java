@@ -4,18 +4,23 @@ import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.DatabaseGetter;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataStoreCreationException;
-import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.QuadStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 
 import static nl.knaw.huygens.timbuctoo.v5.berkeleydb.DatabaseGetter.Iterate.BACKWARDS;
 import static nl.knaw.huygens.timbuctoo.v5.berkeleydb.DatabaseGetter.Iterate.FORWARDS;
 
-public class BdbTripleStore implements QuadStore {
+public class BdbTripleStore implements UpdatableQuadStore {
 
   private static final Logger LOG = LoggerFactory.getLogger(BdbTripleStore.class);
   protected final BdbWrapper<String, String> bdbWrapper;
@@ -60,6 +65,28 @@ public class BdbTripleStore implements QuadStore {
       .getKeysAndValues(this::formatResult);
   }
 
+  @Override
+  public Stream<CursorQuad> getAllQuads() {
+    return bdbWrapper.databaseGetter()
+      .getAll()
+      .getKeysAndValues(this::formatResult);
+  }
+
+  @Override
+  public Map<String, Set<String>> getObjects(Collection<String> subjects, String predicate, Direction direction) {
+    //sorted keys let the cursor move forwards through the database
+    Map<String, String> subjectsByKey = new TreeMap<>();
+    for (String subject : subjects) {
+      subjectsByKey.put(formatKey(subject, predicate, direction), subject);
+    }
+    Map<String, Set<String>> result = new HashMap<>();
+    bdbWrapper.forEachValueOf(subjectsByKey.keySet(), (key, value) ->
+      result.computeIfAbsent(subjectsByKey.get(key), subject -> new HashSet<>())
+        .add(formatResult(key, value).getObject())
+    );
+    return result;
+  }
+
   @Override
   public void close() {
     try {
@@ -84,12 +111,14 @@ public class BdbTripleStore implements QuadStore {
     );
   }
 
+  @Override
   public boolean putQuad(String subject, String predicate, Direction direction, String object, String dataType,
                          String language) throws DatabaseWriteException {
     String value = formatValue(object, dataType, language);
     return bdbWrapper.put(formatKey(subject, predicate, direction), value);
   }
 
+  @Override
   public boolean deleteQuad(String subject, String predicate, Direction direction, String object, String dataType,
                          String language) throws DatabaseWriteException {
     String value = formatValue(object, dataType, language);
@@ -104,6 +133,13 @@ public class BdbTripleStore implements QuadStore {
     return (dataType == null ? "" : dataType) + "\n" + (language == null ? "" : language) + "\n" + object;
   }
 
+  @Override
+  public Stream<CursorQuad> inStoreOrder(Stream<CursorQuad> patchQuads) {
+    //the keys and values are sorted by their string representation just like the patch store
+    return patchQuads;
+  }
+
+  @Override
   public int compare(CursorQuad leftQ, CursorQuad rightQ) {
     final String leftStr = formatKey(leftQ.getSubject(), leftQ.getPredicate(), leftQ.getDirection()) + "\n" +
       formatValue(leftQ.getObject(), leftQ.getValuetype().orElse(null), leftQ.getLanguage().orElse(null));
@@ -11,10 +11,10 @@ import static com.google.common.collect.Streams.stream;
 class ChangeFetcherImpl implements ChangeFetcher {
 
   private final BdbTruePatchStore truePatchStore;
-  private final BdbTripleStore tripleStore;
+  private final UpdatableQuadStore tripleStore;
   private final int currentversion;
 
-  public ChangeFetcherImpl(BdbTruePatchStore truePatchStore, BdbTripleStore tripleStore, int currentversion) {
+  public ChangeFetcherImpl(BdbTruePatchStore truePatchStore, UpdatableQuadStore tripleStore, int currentversion) {
     this.truePatchStore = truePatchStore;
     this.tripleStore = tripleStore;
     this.currentversion = currentversion;
@@ -31,13 +31,11 @@ class ChangeFetcherImpl implements ChangeFetcher {
                                           boolean getRetracted, boolean getUnchanged, boolean getAsserted) {
     final Stream<CursorQuad> result;
     if (getUnchanged) {
-      final Stream<CursorQuad> assertions;
+      final Stream<CursorQuad> assertions = getChanges(subject, predicate, direction, true);
       final Stream<CursorQuad> currentState;
       if (predicate != null) {
-        assertions = truePatchStore.getChanges(subject, predicate, direction, currentversion, true);
         currentState = tripleStore.getQuads(subject, predicate, direction, "");
       } else {
-        assertions = truePatchStore.getChanges(subject, currentversion, true);
         currentState = tripleStore.getQuads(subject);
       }
       //if (!assertions.findAny().isPresent()) {
@@ -50,22 +48,13 @@ class ChangeFetcherImpl implements ChangeFetcher {
       //}
     } else {
       if (getAsserted) {
-        if (predicate == null) {
-          result = truePatchStore.getChanges(subject, currentversion, true);
-        } else {
-          result = truePatchStore.getChanges(subject, predicate, direction, currentversion, true);
-        }
+        result = getChanges(subject, predicate, direction, true);
       } else {
         result = Stream.empty();
       }
     }
     if (getRetracted) {
-      final Stream<CursorQuad> retractions;
-      if (predicate != null) {
-        retractions = truePatchStore.getChanges(subject, predicate, direction, currentversion, false);
-      } else {
-        retractions = truePatchStore.getChanges(subject, currentversion, false);
-      }
+      final Stream<CursorQuad> retractions = getChanges(subject, predicate, direction, false);
       return stream(new RetractionMerger(result, retractions, tripleStore, currentversion)).onClose(() -> {
         result.close();
         retractions.close();
@@ -74,4 +63,14 @@ class ChangeFetcherImpl implements ChangeFetcher {
       return result;
     }
   }
+
+  private Stream<CursorQuad> getChanges(String subject, String predicate, Direction direction, boolean assertions) {
+    if (predicate == null) {
+      return tripleStore.inStoreOrder(truePatchStore.getChanges(subject, currentversion, assertions));
+    } else {
+      return tripleStore.inStoreOrder(
+        truePatchStore.getChanges(subject, predicate, direction, currentversion, assertions)
+      );
+    }
+  }
 }
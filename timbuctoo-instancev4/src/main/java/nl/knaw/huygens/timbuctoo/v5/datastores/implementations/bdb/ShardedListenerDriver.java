@@ -0,0 +1,137 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.ChangeFetcher;
+import nl.knaw.huygens.timbuctoo.v5.dataset.OptimizedPatchListener;
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Hands the changed subjects to the listeners that can process subjects concurrently. The subjects are divided over
+ * a fixed number of shards based on their hash and each shard is processed by its own thread, so a subject is always
+ * handled by the same thread.
+ */
+class ShardedListenerDriver implements AutoCloseable {
+  private static final Logger LOG = getLogger(ShardedListenerDriver.class);
+  //subjects are uri's or blank nodes, so they won't consist of just a newline
+  private static final String END = "\n";
+  private static final int QUEUE_SIZE = 1_000;
+  private static final AtomicInteger DRIVER_COUNT = new AtomicInteger();
+
+  private final List<OptimizedPatchListener> listeners;
+  private final ChangeFetcher changeFetcher;
+  private final List<BlockingQueue<String>> shards;
+  private final List<Future<?>> workers;
+  private final ExecutorService executor;
+  private volatile Exception failure;
+  private boolean finished;
+
+  ShardedListenerDriver(List<OptimizedPatchListener> listeners, ChangeFetcher changeFetcher, int shardCount) {
+    this.listeners = listeners;
+    this.changeFetcher = changeFetcher;
+    this.shards = new ArrayList<>();
+    this.workers = new ArrayList<>();
+    if (listeners.isEmpty()) {
+      executor = null;
+      finished = true;
+    } else {
+      final String threadName = "listener-shard-" + DRIVER_COUNT.incrementAndGet() + "-";
+      final AtomicInteger threadCount = new AtomicInteger();
+      executor = Executors.newFixedThreadPool(shardCount, runnable -> {
+        Thread thread = new Thread(runnable, threadName + threadCount.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+      for (int i = 0; i < shardCount; i++) {
+        final BlockingQueue<String> shard = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        shards.add(shard);
+        workers.add(executor.submit(() -> processShard(shard)));
+      }
+    }
+  }
+
+  public void add(String subject) throws RdfProcessingFailedException {
+    if (finished) {
+      return;
+    }
+    if (failure != null) {
+      throw new RdfProcessingFailedException(failure);
+    }
+    try {
+      shards.get(Math.floorMod(subject.hashCode(), shards.size())).put(subject);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RdfProcessingFailedException(e);
+    }
+  }
+
+  /**
+   * Waits until all subjects are processed.
+   */
+  public void finish() throws RdfProcessingFailedException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    try {
+      for (BlockingQueue<String> shard : shards) {
+        shard.put(END);
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RdfProcessingFailedException(e);
+    } catch (ExecutionException e) {
+      throw new RdfProcessingFailedException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    if (failure != null) {
+      throw new RdfProcessingFailedException(failure);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (!finished) {
+      //something went wrong while reading the subjects, let the workers stop without processing the rest
+      failure = new IllegalStateException("Processing of the changed subjects was aborted");
+      try {
+        finish();
+      } catch (RdfProcessingFailedException e) {
+        LOG.debug("Listener shards stopped", e);
+      }
+    }
+  }
+
+  private void processShard(BlockingQueue<String> shard) throws InterruptedException {
+    String subject = shard.take();
+    while (subject != END) {
+      //after a failure we keep taking subjects so the producer does not block
+      if (failure == null) {
+        try {
+          for (OptimizedPatchListener listener : listeners) {
+            listener.onChangedSubject(subject, changeFetcher);
+          }
+        } catch (Exception e) {
+          LOG.error("Processing subject " + subject + " failed", e);
+          failure = e;
+        }
+      }
+      subject = shard.take();
+    }
+  }
+}
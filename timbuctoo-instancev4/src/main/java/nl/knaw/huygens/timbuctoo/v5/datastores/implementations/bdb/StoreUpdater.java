@@ -11,6 +11,7 @@ import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedExcept
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -24,7 +25,7 @@ public class StoreUpdater implements RdfProcessor {
 
   private static final Logger LOG = getLogger(StoreUpdater.class);
   private final BdbEnvironmentCreator dbFactory;
-  private final BdbTripleStore tripleStore;
+  private final UpdatableQuadStore tripleStore;
   private final BdbTypeNameStore typeNameStore;
   private final BdbTruePatchStore truePatchStore;
   private final UpdatedPerPatchStore updatedPerPatchStore;
@@ -37,11 +38,17 @@ public class StoreUpdater implements RdfProcessor {
   private long prevTime;
   private String logString;
   private ImportStatus importStatus;
+  private final int listenerThreads;
 
-  public StoreUpdater(BdbEnvironmentCreator dbFactory, BdbTripleStore tripleStore, BdbTypeNameStore typeNameStore,
+  /**
+   * Listeners that can process subjects concurrently are run on listenerThreads threads. Use 1 to run all listeners
+   * on the importing thread.
+   */
+  public StoreUpdater(BdbEnvironmentCreator dbFactory, UpdatableQuadStore tripleStore, BdbTypeNameStore typeNameStore,
                       BdbTruePatchStore truePatchStore, UpdatedPerPatchStore updatedPerPatchStore,
                       List<OptimizedPatchListener> listeners,
-                      VersionStore versionStore, ImportStatus importStatus) {
+                      VersionStore versionStore, ImportStatus importStatus, int listenerThreads) {
+    this.listenerThreads = listenerThreads;
     this.dbFactory = dbFactory;
     this.tripleStore = tripleStore;
     this.typeNameStore = typeNameStore;
@@ -55,27 +62,39 @@ public class StoreUpdater implements RdfProcessor {
 
   private void updateListeners() throws RdfProcessingFailedException {
     logString = "Processed {} subjects ({} subjects/s)";
+    final List<OptimizedPatchListener> serialListeners = new ArrayList<>();
+    final List<OptimizedPatchListener> concurrentListeners = new ArrayList<>();
     for (OptimizedPatchListener listener : listeners) {
       listener.start();
+      if (listenerThreads > 1 && listener.canProcessSubjectsConcurrently()) {
+        concurrentListeners.add(listener);
+      } else {
+        serialListeners.add(listener);
+      }
     }
 
     count = 0;
     prevCount = 0;
     prevTime = stopwatch.elapsed(TimeUnit.SECONDS);
-    try (Stream<String> subjects = updatedPerPatchStore.ofVersion(currentversion)) {
-      final ChangeFetcher getQuads = new ChangeFetcherImpl(truePatchStore, tripleStore, currentversion);
+    final ChangeFetcher getQuads = new ChangeFetcherImpl(truePatchStore, tripleStore, currentversion);
+    try (Stream<String> subjects = updatedPerPatchStore.ofVersion(currentversion);
+         ShardedListenerDriver shards = new ShardedListenerDriver(concurrentListeners, getQuads, listenerThreads)) {
       final Iterator<String> iterator = subjects.iterator();
       while (iterator.hasNext()) {
         final boolean needUpdate = notifyUpdate();
-
-        final String subject = iterator.next();
-        for (OptimizedPatchListener listener : listeners) {
-          if (needUpdate) {
+        if (needUpdate) {
+          for (OptimizedPatchListener listener : listeners) {
             listener.notifyUpdate();
           }
+        }
+
+        final String subject = iterator.next();
+        shards.add(subject);
+        for (OptimizedPatchListener listener : serialListeners) {
           listener.onChangedSubject(subject, getQuads);
         }
       }
+      shards.finish();
     }
     for (OptimizedPatchListener listener : listeners) {
       listener.finish();
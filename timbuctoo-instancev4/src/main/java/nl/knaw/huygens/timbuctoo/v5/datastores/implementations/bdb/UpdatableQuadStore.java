@@ -0,0 +1,37 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
+
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.QuadStore;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+
+import java.util.stream.Stream;
+
+/**
+ * A QuadStore that the StoreUpdater can write to.
+ */
+public interface UpdatableQuadStore extends QuadStore {
+  boolean putQuad(String subject, String predicate, Direction direction, String object, String dataType,
+                  String language) throws DatabaseWriteException;
+
+  boolean deleteQuad(String subject, String predicate, Direction direction, String object, String dataType,
+                     String language) throws DatabaseWriteException;
+
+  /**
+   * Returns all quads in the order of the store. The quads with the same subject, predicate and direction are next to
+   * each other.
+   */
+  Stream<CursorQuad> getAllQuads();
+
+  /**
+   * Compares two quads the same way the store sorts them.
+   */
+  int compare(CursorQuad leftQ, CursorQuad rightQ);
+
+  /**
+   * The truePatchStore returns its quads sorted by their string representation. The ChangeFetcher merges them with
+   * the quads from this store so they have to be sorted the same way. Stores that use a different order should
+   * re-sort them here.
+   */
+  Stream<CursorQuad> inStoreOrder(Stream<CursorQuad> patchQuads);
+}
@@ -3,6 +3,11 @@ package nl.knaw.huygens.timbuctoo.v5.datastores.quadstore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public interface QuadStore {
@@ -10,5 +15,22 @@ public interface QuadStore {
 
   Stream<CursorQuad> getQuads(String subject);
 
+  /**
+   * Returns the objects of the predicate for each of the subjects. Subjects without such a predicate are not part of
+   * the result. Stores can override this method to look up all subjects in one pass.
+   */
+  default Map<String, Set<String>> getObjects(Collection<String> subjects, String predicate, Direction direction) {
+    Map<String, Set<String>> result = new HashMap<>();
+    for (String subject : subjects) {
+      try (Stream<CursorQuad> quads = getQuads(subject, predicate, direction, "")) {
+        Set<String> objects = quads.map(CursorQuad::getObject).collect(Collectors.toSet());
+        if (!objects.isEmpty()) {
+          result.put(subject, objects);
+        }
+      }
+    }
+    return result;
+  }
+
   void close();
 }
@@ -0,0 +1,16 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto;
+
+/**
+ * The on-disk layout of the quads of a data set. The layout is chosen when the data set is created and can't be
+ * changed afterwards.
+ */
+public enum QuadStoreLayout {
+  /**
+   * Stores each quad as "subject\npredicate\nDIRECTION" -> "datatype\nlang\nobject".
+   */
+  STRING_KEYS,
+  /**
+   * Interns uri's, datatypes and language tags in a term dictionary and stores the quads as fixed-width id keys.
+   */
+  DICTIONARY_ENCODED
+}
@@ -2,10 +2,17 @@ package nl.knaw.huygens.timbuctoo.v5.datastores.rmldatasource;
 
 import nl.knaw.huygens.timbuctoo.v5.dataset.OptimizedPatchListener;
 
+import java.util.Map;
 import java.util.stream.Stream;
 
 public interface RmlDataSourceStore extends OptimizedPatchListener {
   Stream<String> get(String collectionUri);
 
+  /**
+   * Returns the values of each row of the collection by column name. The rows are read with a single cursor, so
+   * close the stream when done.
+   */
+  Stream<Map<String, String>> getRows(String collectionUri);
+
   void close();
 }
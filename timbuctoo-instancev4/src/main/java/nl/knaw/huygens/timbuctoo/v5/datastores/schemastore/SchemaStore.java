@@ -7,5 +7,12 @@ import java.util.Map;
 public interface SchemaStore {
   Map<String, Type> getTypes();
 
+  /**
+   * Returns the type or null if it does not exist. Unlike getTypes() this does not need to load all types.
+   */
+  default Type getType(String typeUri) {
+    return getTypes().get(typeUri);
+  }
+
   void close();
 }
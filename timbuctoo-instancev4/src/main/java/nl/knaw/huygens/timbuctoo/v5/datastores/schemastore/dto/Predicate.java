@@ -153,6 +153,13 @@ public class Predicate {
     this.subjectsWithThisPredicateAsList += mut;
   }
 
+  public void merge(Predicate other) {
+    other.valueTypes.forEach((type, count) -> valueTypes.merge(type, count, Long::sum));
+    other.referenceTypes.forEach((type, count) -> referenceTypes.merge(type, count, Long::sum));
+    subjectsWithThisPredicate += other.subjectsWithThisPredicate;
+    subjectsWithThisPredicateAsList += other.subjectsWithThisPredicateAsList;
+  }
+
   public void finish() {
     this.hasBeenList = this.hasBeenList || subjectsWithThisPredicateAsList > 0;
     this.hasBeenSingular = this.hasBeenSingular || subjectsWithThisPredicateAsList <= 0;
@@ -89,4 +89,14 @@ public class Type {
   public void registerSubject(int mut) {
     subjectsWithThisType += mut;
   }
+
+  /**
+   * Adds the counts of other to the counts of this type. Used to combine the results of several threads.
+   */
+  public void merge(Type other) {
+    subjectsWithThisType += other.subjectsWithThisType;
+    for (Predicate predicate : other.getPredicates()) {
+      getOrCreatePredicate(predicate.getName(), predicate.getDirection()).merge(predicate);
+    }
+  }
 }
@@ -0,0 +1,42 @@
+package nl.knaw.huygens.timbuctoo.v5.dropwizard;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository;
+import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetUsage;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * Keeps the data sets that a request uses open until the response is written. It is a servlet filter instead of a
+ * jersey filter, because jersey runs its response filters before a streamed response is written.
+ */
+public class DataSetUsageFilter implements Filter {
+  private final DataSetRepository dataSetRepository;
+
+  public DataSetUsageFilter(DataSetRepository dataSetRepository) {
+    this.dataSetRepository = dataSetRepository;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+    throws IOException, ServletException {
+    try (DataSetUsage usage = dataSetRepository.startUsage()) {
+      chain.doFilter(request, response);
+    }
+  }
+
+  @Override
+  public void destroy() {
+
+  }
+}
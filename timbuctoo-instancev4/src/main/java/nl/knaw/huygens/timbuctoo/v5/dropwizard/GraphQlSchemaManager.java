@@ -0,0 +1,26 @@
+package nl.knaw.huygens.timbuctoo.v5.dropwizard;
+
+import io.dropwizard.lifecycle.Managed;
+import nl.knaw.huygens.timbuctoo.v5.graphql.rootquery.RootQuery;
+
+/**
+ * Starts building the GraphQL schema when Timbuctoo starts, so the first request does not have to wait for all of it.
+ * It has to be managed after the DataSetRepositoryManager, because the data sets are read when the repository starts.
+ */
+public class GraphQlSchemaManager implements Managed {
+  private final RootQuery rootQuery;
+
+  public GraphQlSchemaManager(RootQuery rootQuery) {
+    this.rootQuery = rootQuery;
+  }
+
+  @Override
+  public void start() throws Exception {
+    rootQuery.rebuildInBackground();
+  }
+
+  @Override
+  public void stop() throws Exception {
+
+  }
+}
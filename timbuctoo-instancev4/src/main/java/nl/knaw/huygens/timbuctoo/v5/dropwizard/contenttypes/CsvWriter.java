@@ -1,11 +1,14 @@
 package nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes;
 
+import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.RowStreamer;
+import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.TableStreamer;
+import nl.knaw.huygens.timbuctoo.v5.serializable.Serialization;
 import nl.knaw.huygens.timbuctoo.v5.serializable.serializations.CsvSerialization;
 
 import javax.ws.rs.Produces;
 
 @Produces(CsvWriter.MIME_TYPE)
-public class CsvWriter extends SerializerWriter {
+public class CsvWriter extends SerializerWriter implements RowStreamingWriter {
 
   public static final String MIME_TYPE = "text/csv";
 
@@ -17,4 +20,9 @@ public class CsvWriter extends SerializerWriter {
   public String getMimeType() {
     return MIME_TYPE;
   }
+
+  @Override
+  public RowStreamer makeRowStreamer(Serialization serialization) {
+    return new TableStreamer((CsvSerialization) serialization);
+  }
 }
@@ -1,11 +1,14 @@
 package nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes;
 
+import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.JsonLdStreamer;
+import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.RowStreamer;
+import nl.knaw.huygens.timbuctoo.v5.serializable.Serialization;
 import nl.knaw.huygens.timbuctoo.v5.serializable.serializations.JsonLdSerialization;
 
 import javax.ws.rs.Produces;
 
 @Produces(JsonLdWriter.MIME_TYPE)
-public class JsonLdWriter extends SerializerWriter {
+public class JsonLdWriter extends SerializerWriter implements RowStreamingWriter {
 
   public static final String MIME_TYPE = "application/ld+json";
 
@@ -17,4 +20,9 @@ public class JsonLdWriter extends SerializerWriter {
   public String getMimeType() {
     return MIME_TYPE;
   }
+
+  @Override
+  public RowStreamer makeRowStreamer(Serialization serialization) {
+    return new JsonLdStreamer((JsonLdSerialization) serialization);
+  }
 }
@@ -0,0 +1,16 @@
+package nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes;
+
+import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.RowStreamer;
+import nl.knaw.huygens.timbuctoo.v5.serializable.Serialization;
+
+/**
+ * Implemented by the SerializerWriters whose serializations can write the rows of a result while the query is
+ * executed.
+ */
+public interface RowStreamingWriter {
+
+  /**
+   * Returns the streamer that writes the rows to a serialization that was created by this writer.
+   */
+  RowStreamer makeRowStreamer(Serialization serialization);
+}
@@ -0,0 +1,56 @@
+package nl.knaw.huygens.timbuctoo.v5.dropwizard.endpoints;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Keeps what is written in memory until the stream is connected to the output stream of the response. This allows
+ * a query to be executed (and written) before it is known whether the response will be a success.
+ */
+class DeferredOutputStream extends OutputStream {
+  private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+  private OutputStream target;
+
+  /**
+   * Writes what was buffered to the target and writes everything that follows to the target directly.
+   */
+  synchronized void connect(OutputStream target) throws IOException {
+    buffer.writeTo(target);
+    buffer = null;
+    this.target = target;
+  }
+
+  @Override
+  public synchronized void write(int value) throws IOException {
+    if (target == null) {
+      buffer.write(value);
+    } else {
+      target.write(value);
+    }
+  }
+
+  @Override
+  public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+    if (target == null) {
+      buffer.write(bytes, offset, length);
+    } else {
+      target.write(bytes, offset, length);
+    }
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    if (target != null) {
+      target.flush();
+    }
+  }
+
+  /**
+   * The target is owned by the container, so it is only flushed.
+   */
+  @Override
+  public void close() throws IOException {
+    flush();
+  }
+}
@@ -5,23 +5,27 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sleepycat.je.DatabaseException;
 import graphql.ExecutionResult;
-import graphql.GraphQL;
 import graphql.schema.GraphQLSchema;
 import nl.knaw.huygens.timbuctoo.util.UriHelper;
 import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes.RowStreamingWriter;
 import nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes.SerializerWriter;
 import nl.knaw.huygens.timbuctoo.v5.dropwizard.contenttypes.SerializerWriterRegistry;
+import nl.knaw.huygens.timbuctoo.v5.graphql.GraphQlCache;
+import nl.knaw.huygens.timbuctoo.v5.graphql.GraphQlCache.CachedGraphQl;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.RootData;
+import nl.knaw.huygens.timbuctoo.v5.graphql.exceptions.RowStreamingAbortedException;
 import nl.knaw.huygens.timbuctoo.v5.graphql.security.PermissionBasedFieldVisibility;
 import nl.knaw.huygens.timbuctoo.v5.graphql.security.UserPermissionCheck;
-import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.SerializerExecutionStrategy;
+import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.RowStreamer;
 import nl.knaw.huygens.timbuctoo.v5.security.PermissionFetcher;
 import nl.knaw.huygens.timbuctoo.v5.security.UserValidator;
 import nl.knaw.huygens.timbuctoo.v5.security.dto.Permission;
 import nl.knaw.huygens.timbuctoo.v5.security.dto.User;
 import nl.knaw.huygens.timbuctoo.v5.security.exceptions.UserValidationException;
 import nl.knaw.huygens.timbuctoo.v5.serializable.SerializableResult;
+import nl.knaw.huygens.timbuctoo.v5.serializable.Serialization;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -33,11 +37,16 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
 import java.net.URI;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Supplier;
 
 import static com.google.common.collect.Sets.newHashSet;
@@ -46,24 +55,30 @@ import static nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.ContextData.
 
 @Path("/v5/graphql")
 public class GraphQl {
-  private final Supplier<GraphQLSchema> graphqlGetter;
+  private final GraphQlCache graphQlCache;
   private final SerializerWriterRegistry serializerWriterRegistry;
   private final UserValidator userValidator;
   private final UriHelper uriHelper;
   private final PermissionFetcher permissionFetcher;
   private final ObjectMapper objectMapper;
   private final DataSetRepository dataSetRepository;
+  private final Executor queryExecutor;
 
+  /**
+   * The queries whose rows are streamed are executed on the queryExecutor, so the response can be sent while they
+   * are running.
+   */
   public GraphQl(Supplier<GraphQLSchema> graphqlGetter, SerializerWriterRegistry serializerWriterRegistry,
                  UserValidator userValidator, UriHelper uriHelper, PermissionFetcher permissionFetcher,
-                 DataSetRepository dataSetRepository)
+                 DataSetRepository dataSetRepository, Executor queryExecutor)
     throws DatabaseException, RdfProcessingFailedException {
-    this.graphqlGetter = graphqlGetter;
+    this.graphQlCache = new GraphQlCache(graphqlGetter);
     this.serializerWriterRegistry = serializerWriterRegistry;
     this.userValidator = userValidator;
     this.uriHelper = uriHelper;
     this.permissionFetcher = permissionFetcher;
     this.dataSetRepository = dataSetRepository;
+    this.queryExecutor = queryExecutor;
     objectMapper = new ObjectMapper();
   }
 
@@ -171,17 +186,16 @@ public class GraphQl {
       newHashSet(Permission.READ)
     );
 
-    final GraphQLSchema transform = graphqlGetter
-      .get()
-      .transform(b -> b.fieldVisibility(new PermissionBasedFieldVisibility(userPermissionCheck,dataSetRepository)));
-    final GraphQL.Builder builder = GraphQL.newGraphQL(transform);
+    final CachedGraphQl graphQl = graphQlCache.get(
+      PermissionBasedFieldVisibility.getDataSetNamesWithOutReadPermission(userPermissionCheck, dataSetRepository),
+      serializerWriter != null
+    );
 
-    if (serializerWriter != null) {
-      builder.queryExecutionStrategy(new SerializerExecutionStrategy());
+    if (serializerWriter instanceof RowStreamingWriter && graphQl.isValid(queryFromBody)) {
+      return executeStreaming(graphQl, serializerWriter, userPermissionCheck, user, queryFromBody, operationName,
+        variables);
     }
 
-    GraphQL graphQl = builder.build();
-
     final ExecutionResult result = graphQl
       .execute(newExecutionInput()
         .root(new RootData(user))
@@ -215,6 +229,94 @@ public class GraphQl {
   }
 
 
+  /**
+   * Executes the query on the queryExecutor and writes the rows while they are resolved. The rows are kept in memory
+   * until the first row is written without errors. Only then the response is sent as a success and the rest of the
+   * rows go to the client directly. When the query fails before that, or its rows can't be streamed, the response is
+   * the same as the one of a query that is not streamed.
+   */
+  private Response executeStreaming(CachedGraphQl graphQl, SerializerWriter serializerWriter,
+                                    UserPermissionCheck userPermissionCheck, Optional<User> user,
+                                    String queryFromBody, String operationName, Map variables) {
+    final DeferredOutputStream output = new DeferredOutputStream();
+    final Serialization serialization = serializerWriter.getSerializationFactory().create(output);
+    final RowStreamer rowStreamer = ((RowStreamingWriter) serializerWriter).makeRowStreamer(serialization);
+    final CompletableFuture<ExecutionResult> execution;
+    try {
+      execution = CompletableFuture.supplyAsync(
+        () -> graphQl.execute(newExecutionInput()
+          .root(new RootData(user))
+          .context(contextData(userPermissionCheck, user, rowStreamer))
+          .query(queryFromBody)
+          .operationName(operationName)
+          .variables(variables == null ? Collections.emptyMap() : variables)
+          .build()),
+        dataSetRepository.continueCurrentUsageOn(queryExecutor)
+      );
+    } catch (RejectedExecutionException e) {
+      return Response
+        .status(Response.Status.SERVICE_UNAVAILABLE)
+        .entity("Too many streamed queries are running, please try again later")
+        .build();
+    }
+    CompletableFuture.anyOf(rowStreamer.rowsStarted(), execution).join();
+
+    if (!execution.isDone()) {
+      return Response
+        .ok()
+        .type(serializerWriter.getMimeType())
+        .entity((StreamingOutput) os -> {
+          output.connect(os);
+          final ExecutionResult result = joinStreamedExecution(execution);
+          if (result.getErrors() != null && !result.getErrors().isEmpty()) {
+            //the status is already sent, so the only way to report the errors is to abort the response
+            throw new IOException("The query could not be executed: " + result.getErrors());
+          }
+          rowStreamer.finish();
+        })
+        .build();
+    }
+    final ExecutionResult result = execution.join();
+    if (result.getErrors() != null && !result.getErrors().isEmpty()) {
+      return Response
+        .status(415)
+        .type(MediaType.APPLICATION_JSON_TYPE)
+        .entity(result.toSpecification())
+        .build();
+    }
+    return Response
+      .ok()
+      .type(serializerWriter.getMimeType())
+      .entity((StreamingOutput) os -> {
+        output.connect(os);
+        if (rowStreamer.isStreaming()) {
+          rowStreamer.finish();
+        } else {
+          serialization.serialize(new SerializableResult(result.getData()));
+        }
+      })
+      .build();
+  }
+
+  /**
+   * Waits for the execution. When it was aborted because a row could not be written, the write failure is thrown, so
+   * the response is aborted like for any other failed write.
+   */
+  private ExecutionResult joinStreamedExecution(CompletableFuture<ExecutionResult> execution) throws IOException {
+    try {
+      return execution.join();
+    } catch (CompletionException e) {
+      Throwable cause = e;
+      while (cause != null && !(cause instanceof RowStreamingAbortedException)) {
+        cause = cause.getCause();
+      }
+      if (cause != null) {
+        throw ((RowStreamingAbortedException) cause).getCause();
+      }
+      throw e;
+    }
+  }
+
   public boolean unSpecifiedAcceptHeader(@HeaderParam("accept") String acceptHeader) {
     return acceptHeader == null || acceptHeader.isEmpty() || "*/*".equals(acceptHeader);
   }
@@ -2,8 +2,8 @@ package nl.knaw.huygens.timbuctoo.v5.dropwizard.endpoints;
 
 import io.dropwizard.jersey.params.UUIDParam;
 import nl.knaw.huygens.timbuctoo.rml.LoggingErrorHandler;
-import nl.knaw.huygens.timbuctoo.rml.dto.Quad;
 import nl.knaw.huygens.timbuctoo.rml.jena.JenaBasedReader;
+import nl.knaw.huygens.timbuctoo.rml.rmldata.ExecutionProgress;
 import nl.knaw.huygens.timbuctoo.rml.rmldata.RmlMappingDocument;
 import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ImportManager;
@@ -28,11 +28,13 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Response;
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
 import static nl.knaw.huygens.timbuctoo.v5.dropwizard.endpoints.ErrorResponseHelper.handleImportManagerResult;
 
@@ -42,12 +44,14 @@ public class Rml {
   private final ErrorResponseHelper errorResponseHelper;
   private final JenaBasedReader rmlBuilder = new JenaBasedReader();
   private final UserValidator userValidator;
+  private final ExecutorService rmlExecutor;
 
   public Rml(DataSetRepository dataSetRepository, ErrorResponseHelper errorResponseHelper,
-             UserValidator userValidator) {
+             UserValidator userValidator, ExecutorService rmlExecutor) {
     this.dataSetRepository = dataSetRepository;
     this.errorResponseHelper = errorResponseHelper;
     this.userValidator = userValidator;
+    this.rmlExecutor = rmlExecutor;
   }
 
   @POST
@@ -89,7 +93,7 @@ public class Rml {
       Future<ImportStatus> promise = importManager.generateLog(
         baseUri,
         baseUri,
-        new RmlRdfCreator(rmlMappingDocument, baseUri)
+        new RmlRdfCreator(rmlMappingDocument, baseUri, importManager.getImportStatus())
       );
       return handleImportManagerResult(promise);
     } else {
@@ -112,27 +116,71 @@ public class Rml {
   private class RmlRdfCreator implements PlainRdfCreator {
     private final RmlMappingDocument rmlMappingDocument;
     private final String baseUri;
+    private final ImportStatus importStatus;
 
-    public RmlRdfCreator(RmlMappingDocument rmlMappingDocument, String baseUri) {
+    public RmlRdfCreator(RmlMappingDocument rmlMappingDocument, String baseUri, ImportStatus importStatus) {
       this.rmlMappingDocument = rmlMappingDocument;
       this.baseUri = baseUri;
+      this.importStatus = importStatus;
     }
 
     @Override
     public void sendQuads(RdfSerializer saver) throws LogStorageFailedException {
-      Stream<Quad> triples = rmlMappingDocument.execute(new LoggingErrorHandler());
-      Iterator<Quad> iterator = triples.iterator();
-      while (iterator.hasNext()) {
-        Quad triple = iterator.next();
-        saver.onQuad(
-          triple.getSubject().getUri().get(),
-          triple.getPredicate().getUri().get(),
-          triple.getObject().getContent(),
-          triple.getObject().getLiteralType().orElse(null),
-          triple.getObject().getLiteralLanguage().orElse(null),
-          baseUri
-        );
+      try {
+        rmlMappingDocument.execute(new LoggingErrorHandler(), rmlExecutor, triple -> {
+          try {
+            saver.onQuad(
+              triple.getSubject().getUri().get(),
+              triple.getPredicate().getUri().get(),
+              triple.getObject().getContent(),
+              triple.getObject().getLiteralType().orElse(null),
+              triple.getObject().getLiteralLanguage().orElse(null),
+              baseUri
+            );
+          } catch (LogStorageFailedException e) {
+            throw new RuntimeException(e);
+          }
+        }, new ImportStatusProgress(importStatus));
+      } catch (RuntimeException e) {
+        if (e.getCause() instanceof LogStorageFailedException) {
+          throw (LogStorageFailedException) e.getCause();
+        }
+        throw e;
       }
     }
   }
+
+  /**
+   * Shows the progress of all triples maps in one status line, because the triples maps can run at the same time.
+   */
+  private static class ImportStatusProgress implements ExecutionProgress {
+    private final ImportStatus importStatus;
+    private final Map<String, String> triplesMaps = new LinkedHashMap<>();
+
+    ImportStatusProgress(ImportStatus importStatus) {
+      this.importStatus = importStatus;
+    }
+
+    @Override
+    public synchronized void triplesMapStarted(String uri) {
+      update(uri, "started");
+    }
+
+    @Override
+    public synchronized void triplesMapProgressed(String uri, long quadCount) {
+      update(uri, quadCount + " quads");
+    }
+
+    @Override
+    public synchronized void triplesMapFinished(String uri, long quadCount) {
+      update(uri, "finished, " + quadCount + " quads");
+    }
+
+    private void update(String uri, String state) {
+      triplesMaps.put(uri, state);
+      importStatus.setStatus("Mapping " + triplesMaps.entrySet().stream()
+        .map(triplesMap -> triplesMap.getKey() + ": " + triplesMap.getValue())
+        .collect(Collectors.joining("; ")));
+    }
+  }
 }
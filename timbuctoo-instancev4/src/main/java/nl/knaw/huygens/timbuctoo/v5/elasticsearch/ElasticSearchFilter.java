@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import nl.knaw.huygens.timbuctoo.v5.graphql.collectionfilter.CollectionFilter;
+import nl.knaw.huygens.timbuctoo.v5.graphql.collectionfilter.FilterResult;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
@@ -20,6 +21,7 @@ import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.nio.entity.NStringEntity;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 
@@ -27,35 +29,68 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Queries an elasticsearch index. The requests are sent asynchronously so the GraphQL execution can continue with other
+ * fields (or other filtered lists) while elasticsearch is searching. The connections to elasticsearch are pooled and
+ * reused.
+ */
 public class ElasticSearchFilter implements CollectionFilter {
 
   public static final String UNIQUE_FIELD_NAME = "_uid";
+  public static final String ID_FIELD_NAME = "uri";
 
   private static final String METHOD_GET = "GET";
+  private static final int DEFAULT_MAX_CONNECTIONS = 50;
+  //only the parts of the response that EsFilterResult reads
+  private static final Map<String, String> PARAMS = Collections.singletonMap(
+    "filter_path",
+    "took,hits.total,hits.hits._source." + ID_FIELD_NAME + ",hits.hits.sort,aggregations"
+  );
 
   private final RestClient restClient;
   private final ObjectMapper mapper;
 
+  public ElasticSearchFilter(String hostname, int port, Optional<String> username, Optional<String> password) {
+    this(hostname, port, username, password, Optional.empty());
+  }
+
+  /**
+   * All requests go to the same host, so maxConnections is both the size of the pool and the amount of connections to
+   * that host.
+   */
   @JsonCreator
   public ElasticSearchFilter(@JsonProperty("hostname") String hostname, @JsonProperty("port") int port,
                              @JsonProperty("username") Optional<String> username,
-                             @JsonProperty("password") Optional<String> password) {
+                             @JsonProperty("password") Optional<String> password,
+                             @JsonProperty("maxConnections") Optional<Integer> maxConnections) {
     Header[] headers = {
       new BasicHeader(HttpHeaders.CONTENT_TYPE, "application/json"),
       new BasicHeader("Role", "Read")};
     final RestClientBuilder restClientBuilder = RestClient.builder(new HttpHost(hostname, port))
       .setDefaultHeaders(headers);
+    final int connections = maxConnections.orElse(DEFAULT_MAX_CONNECTIONS);
+    final CredentialsProvider credentialsProvider;
     if (username.isPresent() && !username.get().isEmpty() && password.isPresent() && !password.get().isEmpty()) {
-      final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+      credentialsProvider = new BasicCredentialsProvider();
 
       credentialsProvider.setCredentials(
         AuthScope.ANY,
         new UsernamePasswordCredentials(username.get(), password.get())
       );
-
-      restClientBuilder.setHttpClientConfigCallback(b -> b.setDefaultCredentialsProvider(credentialsProvider));
+    } else {
+      credentialsProvider = null;
     }
+    restClientBuilder.setHttpClientConfigCallback(b -> {
+      b.setMaxConnTotal(connections).setMaxConnPerRoute(connections);
+      if (credentialsProvider != null) {
+        b.setDefaultCredentialsProvider(credentialsProvider);
+      }
+      return b;
+    });
     restClient = restClientBuilder.build();
     mapper = new ObjectMapper();
   }
@@ -63,15 +98,59 @@ public class ElasticSearchFilter implements CollectionFilter {
   @Override
   public EsFilterResult query(String dataSetId, String fieldName, String elasticSearchQuery, String token,
                               int preferredPageSize) throws IOException {
-    String endpoint = dataSetId + (fieldName != null && !fieldName.isEmpty() ? "/" + fieldName : "") + "/_search";
     JsonNode queryNode = elaborateQuery(elasticSearchQuery, token, preferredPageSize);
-    Map<String, String> params = Collections.singletonMap("pretty", "true");
 
     HttpEntity entity = new NStringEntity(queryNode.toString(), ContentType.APPLICATION_JSON);
-    Response response = restClient.performRequest(METHOD_GET, endpoint, params, entity);
+    Response response = restClient.performRequest(METHOD_GET, endpoint(dataSetId, fieldName), PARAMS, entity);
 
     JsonNode responseNode = mapper.readTree(response.getEntity().getContent());
-    return new EsFilterResult(queryNode, responseNode);
+    return new EsFilterResult(queryNode, responseNode, ID_FIELD_NAME);
+  }
+
+  @Override
+  public CompletableFuture<FilterResult> queryAsync(String dataSetId, String fieldName, String elasticSearchQuery,
+                                                    String token, int preferredPageSize, Executor responseExecutor) {
+    CompletableFuture<FilterResult> result = new CompletableFuture<>();
+    final JsonNode queryNode;
+    try {
+      queryNode = elaborateQuery(elasticSearchQuery, token, preferredPageSize);
+    } catch (IOException e) {
+      result.completeExceptionally(e);
+      return result;
+    }
+
+    HttpEntity entity = new NStringEntity(queryNode.toString(), ContentType.APPLICATION_JSON);
+    restClient.performRequestAsync(METHOD_GET, endpoint(dataSetId, fieldName), PARAMS, entity,
+      new ResponseListener() {
+        @Override
+        public void onSuccess(Response response) {
+          try {
+            //the listener is called on the io thread of the http client, which should go on with other responses
+            responseExecutor.execute(() -> {
+              try {
+                JsonNode responseNode = mapper.readTree(response.getEntity().getContent());
+                result.complete(new EsFilterResult(queryNode, responseNode, ID_FIELD_NAME));
+              } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+              }
+            });
+          } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+          }
+        }
+
+        @Override
+        public void onFailure(Exception exception) {
+          result.completeExceptionally(exception);
+        }
+      }
+    );
+    //The result is completed on the responseExecutor. The caller should continue on its own executor.
+    return result;
+  }
+
+  private static String endpoint(String dataSetId, String fieldName) {
+    return dataSetId + (fieldName != null && !fieldName.isEmpty() ? "/" + fieldName : "") + "/_search";
   }
 
   protected ObjectNode elaborateQuery(String elasticSearchQuery, String token, int preferredPageSize)
@@ -108,6 +187,9 @@ public class ElasticSearchFilter implements CollectionFilter {
         objNode.put(UNIQUE_FIELD_NAME, "desc");
         sortNode.add(objNode);
       }
+
+      // only the id field is read from the hits
+      node.putArray("_source").add(ID_FIELD_NAME);
       return node;
     } catch (IOException e) {
       throw new IOException("Elasticsearch query is not a wellformed JSON document", e);
@@ -10,6 +10,8 @@ import nl.knaw.huygens.timbuctoo.v5.filestorage.implementations.filesystem.dto.F
 import nl.knaw.huygens.timbuctoo.v5.filestorage.implementations.filesystem.dto.FileInfoList;
 import nl.knaw.huygens.timbuctoo.v5.filestorage.implementations.filesystem.dto.FileSystemCachedFile;
 import nl.knaw.huygens.timbuctoo.v5.filestorage.implementations.filesystem.dto.FileSystemCachedLog;
+import nl.knaw.huygens.timbuctoo.v5.filestorage.implementations.filesystem.dto.ImmutableFileInfo;
+import org.slf4j.Logger;
 
 import javax.ws.rs.core.MediaType;
 import java.io.File;
@@ -20,7 +22,10 @@ import java.nio.file.Files;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 public class FileSystemFileStorage implements FileStorage, LogStorage {
+  private static final Logger LOG = getLogger(FileSystemFileStorage.class);
   private final File dir;
   private final JsonFileBackedData<FileInfoList> fileInfo;
 
@@ -65,11 +70,26 @@ public class FileSystemFileStorage implements FileStorage, LogStorage {
   @Override
   public CachedLog getLog(String token) throws IOException {
     FileInfo fileInfo = this.fileInfo.getData().getItems().get(token);
+    //a stored fallback is used as well: the log doesn't change, so detecting it again would only give UTF-8 again
     return new FileSystemCachedLog(
       fileInfo.getMediaType(),
       fileInfo.getCharset(),
       fileInfo.getName(),
-      new File(dir, token)
+      new File(dir, token),
+      (detected, isFallback) -> storeCharset(token, fileInfo, detected, isFallback)
     );
   }
+
+  private void storeCharset(String token, FileInfo info, Charset charset, boolean isFallback) {
+    try {
+      fileInfo.updateData(data -> data.addItem(token, ImmutableFileInfo.builder()
+        .from(info)
+        .charset(charset)
+        .charsetIsFallback(isFallback)
+        .build()));
+    } catch (IOException e) {
+      //the charset will simply be detected again next time
+      LOG.warn("Could not store the detected charset of " + token, e);
+    }
+  }
 }
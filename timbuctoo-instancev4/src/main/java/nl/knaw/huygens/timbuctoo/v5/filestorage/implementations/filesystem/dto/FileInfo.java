@@ -33,4 +33,12 @@ public interface FileInfo {
   MediaType getMediaType();
 
   Optional<Charset> getCharset();
+
+  /**
+   * True when the charset of the log could not be detected and UTF-8 was stored as a fallback.
+   */
+  @Value.Default
+  default boolean getCharsetIsFallback() {
+    return false;
+  }
 }
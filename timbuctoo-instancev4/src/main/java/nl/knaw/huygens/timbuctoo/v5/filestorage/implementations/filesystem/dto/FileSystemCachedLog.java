@@ -5,27 +5,48 @@ import nl.knaw.huygens.timbuctoo.v5.filestorage.dto.CachedLog;
 import org.mozilla.universalchardet.UniversalDetector;
 
 import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.SequenceInputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 public class FileSystemCachedLog implements CachedLog {
+  //the detector only looks at the start of the file, a multi-GB upload should not be read twice
+  static final int MAX_DETECTION_BYTES = 1024 * 1024;
+  private static final int DETECTION_CHUNK_SIZE = 4096;
 
   private final MediaType mimeType;
   private final Optional<Charset> charset;
   private final String name;
   private final File file;
+  private final BiConsumer<Charset, Boolean> onCharsetDetected;
 
   public FileSystemCachedLog(MediaType mimeType, Optional<Charset> charset, String name, File file) {
+    this(mimeType, charset, name, file, (detected, isFallback) -> { });
+  }
+
+  /**
+   * Creates a log that reports the charset it detected.
+   *
+   * @param onCharsetDetected is called with the charset that was detected when the log had no charset, so that it can
+   *                          be stored and the detection does not have to run again. The second argument is true
+   *                          when nothing was detected and the charset is the UTF-8 fallback.
+   */
+  public FileSystemCachedLog(MediaType mimeType, Optional<Charset> charset, String name, File file,
+                             BiConsumer<Charset, Boolean> onCharsetDetected) {
     this.mimeType = mimeType;
     this.charset = charset;
     this.name = name;
     this.file = file;
+    this.onCharsetDetected = onCharsetDetected;
   }
 
   @Override
@@ -43,28 +64,42 @@ public class FileSystemCachedLog implements CachedLog {
     if (charset.isPresent()) {
       return new InputStreamReader(new FileInputStream(file), charset.get());
     } else {
-      byte[] buf = new byte[4096];
-      final UniversalDetector detector;
-      try (FileInputStream stream = new FileInputStream(file)) {
-        detector = new UniversalDetector(null);
-
-        int readCount;
-        while ((readCount = stream.read(buf)) > 0 && !detector.isDone()) {
-          detector.handleData(buf, 0, readCount);
+      FileInputStream stream = new FileInputStream(file);
+      try {
+        byte[] prefix = new byte[(int) Math.max(0, Math.min(MAX_DETECTION_BYTES, file.length()))];
+        UniversalDetector detector = new UniversalDetector(null);
+        int prefixLength = 0;
+        while (prefixLength < prefix.length && !detector.isDone()) {
+          int chunkSize = Math.min(DETECTION_CHUNK_SIZE, prefix.length - prefixLength);
+          int readCount = stream.read(prefix, prefixLength, chunkSize);
+          if (readCount < 0) {
+            break;
+          }
+          detector.handleData(prefix, prefixLength, readCount);
+          prefixLength += readCount;
         }
-      }
-      detector.dataEnd();
+        detector.dataEnd();
 
-      Charset encoding = Charsets.UTF_8;
-      try {
-        String detectedEncoding = detector.getDetectedCharset();
-        if (detectedEncoding != null) {
-          encoding = Charset.forName(detectedEncoding);
+        Charset encoding = Charsets.UTF_8;
+        boolean isFallback = true;
+        try {
+          String detectedEncoding = detector.getDetectedCharset();
+          if (detectedEncoding != null) {
+            encoding = Charset.forName(detectedEncoding);
+            isFallback = false;
+          }
+        } catch (UnsupportedCharsetException e) {
+          //ignore, we use UTF-8 as a fallback
         }
-      } catch (UnsupportedCharsetException e) {
-        //ignore, we use UTF-8 as a fallback
+        onCharsetDetected.accept(encoding, isFallback);
+
+        //replay the bytes that the detector consumed, followed by the rest of the file
+        InputStream replayed = new SequenceInputStream(new ByteArrayInputStream(prefix, 0, prefixLength), stream);
+        return new InputStreamReader(replayed, encoding);
+      } catch (IOException | RuntimeException e) {
+        stream.close();
+        throw e;
       }
-      return new InputStreamReader(new FileInputStream(file), encoding);
     }
 
   }
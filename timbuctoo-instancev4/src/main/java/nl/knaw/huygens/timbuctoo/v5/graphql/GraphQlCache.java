@@ -0,0 +1,190 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.execution.AsyncExecutionStrategy;
+import graphql.execution.AsyncSerialExecutionStrategy;
+import graphql.execution.Execution;
+import graphql.execution.ExecutionId;
+import graphql.execution.ExecutionStrategy;
+import graphql.execution.instrumentation.NoOpInstrumentation;
+import graphql.language.Document;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLSchema;
+import graphql.validation.Validator;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.ContextData;
+import nl.knaw.huygens.timbuctoo.v5.graphql.security.PermissionBasedFieldVisibility;
+import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.SerializerExecutionStrategy;
+import org.slf4j.Logger;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Keeps the GraphQL instances that are built from the schema, so that the schema does not have to be transformed for
+ * every request. The visibility of the fields only depends on the data sets that the user is not allowed to read, so
+ * the instances are cached per set of hidden data sets (and per execution strategy).
+ *
+ * <p>Each instance also caches the documents of the queries that were parsed and validated against its schema, so a
+ * query that is sent again is executed right away. Queries with errors are not cached, they are handed to graphql-java
+ * as-is so that it reports the errors.</p>
+ *
+ * <p>The supplier is expected to return the same schema object until the schema is rebuilt. When it returns a
+ * different object, all cached instances and documents are dropped.</p>
+ */
+public class GraphQlCache {
+  private static final Logger LOG = getLogger(GraphQlCache.class);
+  private final Supplier<GraphQLSchema> schemaSupplier;
+  private final long maxInstances;
+  private final long maxDocumentsPerInstance;
+  private volatile SchemaGeneration current;
+
+  public GraphQlCache(Supplier<GraphQLSchema> schemaSupplier) {
+    this(schemaSupplier, 100, 1000);
+  }
+
+  public GraphQlCache(Supplier<GraphQLSchema> schemaSupplier, long maxInstances, long maxDocumentsPerInstance) {
+    this.schemaSupplier = schemaSupplier;
+    this.maxInstances = maxInstances;
+    this.maxDocumentsPerInstance = maxDocumentsPerInstance;
+  }
+
+  public CachedGraphQl get(Set<String> dataSetNamesWithOutReadPermission, boolean useSerializerStrategy) {
+    final GraphQLSchema schema = schemaSupplier.get();
+    SchemaGeneration generation = current;
+    if (generation == null || generation.schema != schema) {
+      synchronized (this) {
+        if (current == null || current.schema != schema) {
+          current = new SchemaGeneration(schema);
+        }
+        generation = current;
+      }
+    }
+    return generation.instances.getUnchecked(new Key(dataSetNamesWithOutReadPermission, useSerializerStrategy));
+  }
+
+  private class SchemaGeneration {
+    private final GraphQLSchema schema;
+    private final LoadingCache<Key, CachedGraphQl> instances;
+
+    SchemaGeneration(GraphQLSchema schema) {
+      this.schema = schema;
+      this.instances = CacheBuilder.newBuilder()
+        .maximumSize(maxInstances)
+        .build(new CacheLoader<Key, CachedGraphQl>() {
+          @Override
+          public CachedGraphQl load(Key key) {
+            return new CachedGraphQl(
+              schema.transform(b -> b.fieldVisibility(new PermissionBasedFieldVisibility(key.hiddenDataSets))),
+              key.useSerializerStrategy ? new SerializerExecutionStrategy() : new AsyncExecutionStrategy(),
+              maxDocumentsPerInstance
+            );
+          }
+        });
+    }
+  }
+
+  public static class CachedGraphQl {
+    private final GraphQLSchema schema;
+    private final GraphQL graphQl;
+    private final Execution execution;
+    private final Cache<String, Document> documents;
+
+    CachedGraphQl(GraphQLSchema schema, ExecutionStrategy queryStrategy, long maxDocuments) {
+      this.schema = schema;
+      this.graphQl = GraphQL.newGraphQL(schema).queryExecutionStrategy(queryStrategy).build();
+      //subscriptions are not part of the schema, so the query strategy is passed as the subscription strategy as well
+      this.execution = new Execution(queryStrategy, new AsyncSerialExecutionStrategy(), queryStrategy,
+        NoOpInstrumentation.INSTANCE);
+      this.documents = CacheBuilder.newBuilder().maximumSize(maxDocuments).build();
+    }
+
+    public ExecutionResult execute(ExecutionInput executionInput) {
+      final String query = executionInput.getQuery();
+      if (query == null) {
+        return graphQl.execute(executionInput);
+      }
+      Document document = documents.getIfPresent(query);
+      if (document == null) {
+        document = parseAndValidate(query);
+        if (document == null) {
+          //let graphql-java report the syntax or validation errors
+          return graphQl.execute(executionInput);
+        }
+        documents.put(query, document);
+      }
+      final CompletableFuture<ExecutionResult> result =
+        execution.execute(document, schema, ExecutionId.generate(), executionInput);
+      if (executionInput.getContext() instanceof ContextData) {
+        //the asynchronous data fetchers hand the rest of the query back to this thread
+        return ((ContextData) executionInput.getContext()).getQueryThreadExecutor().runUntilDone(result);
+      }
+      return result.join();
+    }
+
+    /**
+     * Returns whether the query can be executed without syntax or validation errors.
+     */
+    public boolean isValid(String query) {
+      if (query == null) {
+        return false;
+      }
+      if (documents.getIfPresent(query) != null) {
+        return true;
+      }
+      final Document document = parseAndValidate(query);
+      if (document != null) {
+        documents.put(query, document);
+      }
+      return document != null;
+    }
+
+    private Document parseAndValidate(String query) {
+      try {
+        Document document = new Parser().parseDocument(query);
+        if (new Validator().validateDocument(schema, document).isEmpty()) {
+          return document;
+        }
+      } catch (RuntimeException e) {
+        LOG.debug("Query could not be parsed", e);
+      }
+      return null;
+    }
+  }
+
+  private static class Key {
+    private final Set<String> hiddenDataSets;
+    private final boolean useSerializerStrategy;
+
+    Key(Set<String> hiddenDataSets, boolean useSerializerStrategy) {
+      this.hiddenDataSets = hiddenDataSets;
+      this.useSerializerStrategy = useSerializerStrategy;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (other == null || getClass() != other.getClass()) {
+        return false;
+      }
+      Key key = (Key) other;
+      return useSerializerStrategy == key.useSerializerStrategy && hiddenDataSets.equals(key.hiddenDataSets);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(hiddenDataSets, useSerializerStrategy);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs tasks on the thread that executes a GraphQL query. A data fetcher that completes asynchronously (such as a
+ * collection filter) hands the rest of the query to this executor, so the query is resolved on the thread that is
+ * waiting for it anyway instead of on a thread of the filter.
+ *
+ * <p>The tasks are queued until runUntilDone runs them. Tasks that are handed over after the query is done are run
+ * right away, so a task is never left behind.</p>
+ */
+public class QueryThreadExecutor implements Executor {
+  private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+  private boolean done;
+
+  @Override
+  public void execute(Runnable task) {
+    synchronized (this) {
+      if (!done) {
+        tasks.add(task);
+        return;
+      }
+    }
+    task.run();
+  }
+
+  /**
+   * Runs the queued tasks on the current thread until the result is complete and returns the result.
+   */
+  public <T> T runUntilDone(CompletableFuture<T> result) {
+    //wakes the loop below up when the result is completed on another thread
+    result.whenComplete((value, exception) -> tasks.add(() -> { }));
+    try {
+      while (!result.isDone()) {
+        tasks.take().run();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      synchronized (this) {
+        done = true;
+      }
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+    }
+    return result.join();
+  }
+}
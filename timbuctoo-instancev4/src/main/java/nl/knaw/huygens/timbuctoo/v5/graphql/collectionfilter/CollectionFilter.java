@@ -3,9 +3,28 @@ package nl.knaw.huygens.timbuctoo.v5.graphql.collectionfilter;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class")
 public interface CollectionFilter {
   FilterResult query(String dataSetId, String fieldName, String elasticSearchQuery, String token, int preferredPageSize)
     throws IOException;
+
+  /**
+   * Performs the query without blocking the calling thread. The response is parsed and the result is completed on the
+   * responseExecutor, so the io threads of the filter only have to receive the responses. Filters that can't query
+   * asynchronously run the query synchronously on the calling thread.
+   */
+  default CompletableFuture<FilterResult> queryAsync(String dataSetId, String fieldName, String elasticSearchQuery,
+                                                     String token, int preferredPageSize,
+                                                     Executor responseExecutor) {
+    CompletableFuture<FilterResult> result = new CompletableFuture<>();
+    try {
+      result.complete(query(dataSetId, fieldName, elasticSearchQuery, token, preferredPageSize));
+    } catch (IOException | RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
 }
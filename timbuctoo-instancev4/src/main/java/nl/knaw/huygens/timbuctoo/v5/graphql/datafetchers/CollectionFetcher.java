@@ -5,6 +5,16 @@ import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginatedList;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginationArguments;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.SubjectReference;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface CollectionFetcher {
   PaginatedList<SubjectReference> getList(PaginationArguments arguments, DataSet dataSet);
+
+  /**
+   * Returns the list without waiting for external services (such as the collection filters) on the calling thread.
+   */
+  default CompletableFuture<PaginatedList<SubjectReference>> getListAsync(PaginationArguments arguments,
+                                                                          DataSet dataSet) {
+    return CompletableFuture.completedFuture(getList(arguments, dataSet));
+  }
 }
@@ -2,7 +2,9 @@ package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers;
 
 import graphql.schema.DataFetcher;
 import graphql.schema.DataFetchingEnvironment;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.DatabaseResult;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginationArguments;
 
 public class CollectionFetcherWrapper implements DataFetcher {
   private final PaginationArgumentsHelper argumentsHelper;
@@ -15,10 +17,14 @@ public class CollectionFetcherWrapper implements DataFetcher {
 
   @Override
   public Object get(DataFetchingEnvironment environment) {
-    return fetcher.getList(
-      argumentsHelper.getPaginationArguments(environment),
-      ((DatabaseResult) environment.getSource()).getDataSet()
-    );
+    final PaginationArguments arguments = argumentsHelper.getPaginationArguments(environment);
+    final DataSet dataSet = ((DatabaseResult) environment.getSource()).getDataSet();
+    if (arguments.getFilter().isPresent()) {
+      //graphql-java resolves the other fields while the filter is queried
+      return fetcher.getListAsync(arguments, dataSet);
+    } else {
+      return fetcher.getList(arguments, dataSet);
+    }
   }
 
 }
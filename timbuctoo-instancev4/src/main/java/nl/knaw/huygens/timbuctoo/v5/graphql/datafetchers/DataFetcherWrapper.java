@@ -2,6 +2,8 @@ package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers;
 
 import graphql.schema.DataFetcher;
 import graphql.schema.DataFetchingEnvironment;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.TypeBatchLoader;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.ContextData;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.DatabaseResult;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.SubjectReference;
 
@@ -24,14 +26,27 @@ public class DataFetcherWrapper implements DataFetcher {
         return inner.getList(
           source,
           argumentsHelper.getPaginationArguments(environment),
-          ((DatabaseResult) environment.getSource()).getDataSet()
+          ((DatabaseResult) environment.getSource()).getDataSet(),
+          getTypeBatchLoader(environment)
         );
       } else {
-        return inner.getItem(source, ((DatabaseResult) environment.getSource()).getDataSet());
+        return inner.getItem(
+          source,
+          ((DatabaseResult) environment.getSource()).getDataSet(),
+          getTypeBatchLoader(environment)
+        );
       }
     } else {
       throw new IllegalStateException("Source is not a SubjectReference");
     }
   }
 
+  private TypeBatchLoader getTypeBatchLoader(DataFetchingEnvironment environment) {
+    if (environment.getContext() instanceof ContextData) {
+      return ((ContextData) environment.getContext()).getTypeBatchLoader();
+    } else {
+      //without a request context the items of one list are still loaded together
+      return new TypeBatchLoader();
+    }
+  }
 }
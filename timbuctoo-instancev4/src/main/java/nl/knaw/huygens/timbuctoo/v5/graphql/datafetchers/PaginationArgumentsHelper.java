@@ -2,23 +2,39 @@ package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers;
 
 import com.google.common.base.Charsets;
 import graphql.schema.DataFetchingEnvironment;
+import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository;
+import nl.knaw.huygens.timbuctoo.v5.graphql.QueryThreadExecutor;
 import nl.knaw.huygens.timbuctoo.v5.graphql.collectionfilter.CollectionFilter;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.ConfiguredFilter;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.ContextData;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.DatabaseResult;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginationArguments;
 
 import java.util.Base64;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class PaginationArgumentsHelper {
   public static final int DEFAULT_COUNT = 20;
   private final Map<String, CollectionFilter> collectionFilters;
+  private final Executor filterResultExecutor;
+  private final DataSetRepository dataSetRepository;
   private static final Base64.Decoder DECODER = Base64.getDecoder();
 
-  public PaginationArgumentsHelper(Map<String, CollectionFilter> collectionFilters) {
+  /**
+   * The filters parse their responses on the filterResultExecutor. The query then continues on the thread that
+   * executes it (see {@link QueryThreadExecutor}), so neither the threads of the filters nor the filterResultExecutor
+   * are used for resolving the rest of the query. It continues within the data set usage of the request, so the data
+   * sets are not closed while the rest of the query is resolved.
+   */
+  public PaginationArgumentsHelper(Map<String, CollectionFilter> collectionFilters, Executor filterResultExecutor,
+                                   DataSetRepository dataSetRepository) {
     this.collectionFilters = collectionFilters;
+    this.filterResultExecutor = filterResultExecutor;
+    this.dataSetRepository = dataSetRepository;
   }
 
   public PaginationArguments getPaginationArguments(DataFetchingEnvironment environment) {
@@ -41,8 +57,16 @@ public class PaginationArgumentsHelper {
         int countArg = count;
         String dataSetId = ((DatabaseResult) environment.getSource()).getDataSet().getMetadata().getCombinedId();
         String fieldName = environment.getFieldDefinition().getName();
-
-        filter = () -> entry.getValue().query(dataSetId, fieldName, searchQuery, cursorArg, countArg);
+        Executor queryThread = environment.getContext() instanceof ContextData ?
+          ((ContextData) environment.getContext()).getQueryThreadExecutor() : Runnable::run;
+
+        filter = () -> {
+          //captured on the thread that runs the query, because the filter completes on a thread of its own
+          final Executor continuation = dataSetRepository.continueCurrentUsageOn(queryThread);
+          return entry.getValue()
+            .queryAsync(dataSetId, fieldName, searchQuery, cursorArg, countArg, filterResultExecutor)
+            .thenApplyAsync(Function.identity(), continuation);
+        };
         break;
       }
     }
@@ -68,6 +92,7 @@ public class PaginationArgumentsHelper {
 
   public String makePaginatedListDefinition(String outputType) {
     return "type " + makeListName(outputType) + " {\n" +
+      "  total: Int\n" +
       "  prevCursor: ID\n" +
       "  nextCursor: ID\n" +
       "  items: [" + outputType + "!]!\n" +
@@ -127,13 +127,17 @@ public class RdfWiringFactory implements WiringFactory {
       final Directive directive = environment.getFieldDefinition().getDirective("dataSet");
       String userId = ((StringValue) directive.getArgument("userId").getValue()).getValue();
       String dataSetId = ((StringValue) directive.getArgument("dataSetId").getValue()).getValue();
-      final DataSet dataSet = dataSetRepository.unsafeGetDataSetWithoutCheckingPermissions(userId, dataSetId)
-        .orElse(null);
-      return dataFetchingEnvironment -> new DatabaseResult() {
-        @Override
-        public DataSet getDataSet() {
-          return dataSet;
-        }
+      //the wiring is made while the schema is built, so the data set is looked up during the fetch. That way it is
+      //held by the usage of the request and a data set that was closed in the mean time is opened again
+      return dataFetchingEnvironment -> {
+        final DataSet dataSet = dataSetRepository.unsafeGetDataSetWithoutCheckingPermissions(userId, dataSetId)
+          .orElse(null);
+        return new DatabaseResult() {
+          @Override
+          public DataSet getDataSet() {
+            return dataSet;
+          }
+        };
       };
     }
     return null;
@@ -0,0 +1,90 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.RDF_TYPE;
+
+/**
+ * Loads the rdf:types of subjects in batches. It lives as long as one GraphQL request.
+ *
+ * <p>The data fetchers register the subjects that they return. When the type of one of them is needed, the types of
+ * all registered subjects of that data set are loaded in one pass over the quad store (for a list that is the whole
+ * page at once instead of one lookup per item). The types of the most recently loaded subjects are kept, so a subject
+ * that shows up again is usually not looked up again.</p>
+ *
+ * <p>A streamed export registers every subject of the data set during one request, so both the batches and the kept
+ * types are limited. A batch that reaches the maximum size is loaded right away.</p>
+ */
+public class TypeBatchLoader {
+  private static final int MAX_BATCH_SIZE = 1_000;
+  private static final int MAX_LOADED = 10_000;
+
+  private final Map<String, DataSetTypes> dataSets = new HashMap<>();
+  private final int maxBatchSize;
+  private final int maxLoaded;
+
+  public TypeBatchLoader() {
+    this(MAX_BATCH_SIZE, MAX_LOADED);
+  }
+
+  TypeBatchLoader(int maxBatchSize, int maxLoaded) {
+    this.maxBatchSize = maxBatchSize;
+    this.maxLoaded = maxLoaded;
+  }
+
+  public synchronized void register(DataSet dataSet, String subject) {
+    final DataSetTypes types = typesOf(dataSet);
+    if (types.loaded.getIfPresent(subject) == null) {
+      types.pending.add(subject);
+      if (types.pending.size() >= maxBatchSize) {
+        load(dataSet, types);
+      }
+    }
+  }
+
+  public synchronized Set<String> getTypes(DataSet dataSet, String subject) {
+    final DataSetTypes types = typesOf(dataSet);
+    Set<String> result = types.loaded.getIfPresent(subject);
+    if (result == null) {
+      types.pending.add(subject);
+      result = load(dataSet, types).getOrDefault(subject, Collections.emptySet());
+    }
+    return result;
+  }
+
+  private Map<String, Set<String>> load(DataSet dataSet, DataSetTypes types) {
+    //a copy, because the pending set is cleared below and the store may hold on to what it is given
+    Set<String> subjects = ImmutableSet.copyOf(types.pending);
+    types.pending.clear();
+    Map<String, Set<String>> found = dataSet.getQuadStore().getObjects(subjects, RDF_TYPE, Direction.OUT);
+    for (String pending : subjects) {
+      types.loaded.put(pending, found.getOrDefault(pending, Collections.emptySet()));
+    }
+    return found;
+  }
+
+  private DataSetTypes typesOf(DataSet dataSet) {
+    return dataSets.computeIfAbsent(dataSet.getMetadata().getCombinedId(), id -> new DataSetTypes(maxLoaded));
+  }
+
+  private static class DataSetTypes {
+    //sorted, so that the store can look them up in the order of its keys
+    private final Set<String> pending = new TreeSet<>();
+    private final Cache<String, Set<String>> loaded;
+
+    DataSetTypes(int maxLoaded) {
+      //one segment, the loader is synchronized anyway and the limit is exact that way
+      loaded = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(maxLoaded).build();
+    }
+  }
+}
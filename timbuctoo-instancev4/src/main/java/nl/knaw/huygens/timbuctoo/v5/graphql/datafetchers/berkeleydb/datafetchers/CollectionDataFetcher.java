@@ -11,8 +11,8 @@ import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.SubjectReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -33,27 +33,37 @@ public class CollectionDataFetcher implements CollectionFetcher {
   public PaginatedList<SubjectReference> getList(PaginationArguments arguments, DataSet dataSet) {
     String cursor = arguments.getCursor();
     if (arguments.getFilter().isPresent()) {
-      try {
-        final FilterResult result = arguments.getFilter().get().query();
-        return PaginatedList.create(
-          null,
-          result.getNextToken(),
-          result.getUriList().stream().map(x -> new LazyTypeSubjectReference(x, dataSet)).collect(Collectors.toList()),
-          Optional.of(result.getTotal()),
-          result.getFacets()
-        );
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
+      return getListAsync(arguments, dataSet).join();
     } else {
       try (Stream<CursorQuad> subjectStream = dataSet.getQuadStore().getQuads(collectionUri, RDF_TYPE, IN, cursor)) {
         return getPaginatedList(
           subjectStream,
           cursorSubject -> new LazyTypeSubjectReference(cursorSubject.getObject(), dataSet),
-          arguments
+          arguments,
+          dataSet.getCountStore().getCount(collectionUri, RDF_TYPE, IN)
         );
       }
     }
   }
 
+  @Override
+  public CompletableFuture<PaginatedList<SubjectReference>> getListAsync(PaginationArguments arguments,
+                                                                         DataSet dataSet) {
+    if (arguments.getFilter().isPresent()) {
+      return arguments.getFilter().get().query().thenApply(result -> filteredList(result, dataSet));
+    } else {
+      return CompletableFuture.completedFuture(getList(arguments, dataSet));
+    }
+  }
+
+  private PaginatedList<SubjectReference> filteredList(FilterResult result, DataSet dataSet) {
+    return PaginatedList.create(
+      null,
+      result.getNextToken(),
+      result.getUriList().stream().map(x -> new LazyTypeSubjectReference(x, dataSet)).collect(Collectors.toList()),
+      Optional.of(result.getTotal()),
+      result.getFacets()
+    );
+  }
+
 }
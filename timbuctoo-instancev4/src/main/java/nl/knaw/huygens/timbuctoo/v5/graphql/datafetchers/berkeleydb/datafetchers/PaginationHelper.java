@@ -7,6 +7,7 @@ import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginationArguments
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -18,6 +19,17 @@ public class PaginationHelper {
   static <U extends DatabaseResult> PaginatedList<U> getPaginatedList(Stream<CursorQuad> subjectStream,
                                                                       Function<CursorQuad, U> makeItem,
                                                                       PaginationArguments arguments) {
+    return getPaginatedList(subjectStream, makeItem, arguments, Optional.empty());
+  }
+
+  /**
+   * The total is the size of the complete list, it is passed on as-is because counting the items of the stream would
+   * mean walking through the whole list.
+   */
+  static <U extends DatabaseResult> PaginatedList<U> getPaginatedList(Stream<CursorQuad> subjectStream,
+                                                                      Function<CursorQuad, U> makeItem,
+                                                                      PaginationArguments arguments,
+                                                                      Optional<Integer> total) {
 
     String[] cursors = new String[3];
     int count = arguments.getCount();
@@ -42,7 +54,9 @@ public class PaginationHelper {
       return PaginatedList.create(
         null,
         null,
-        subjects
+        subjects,
+        total,
+        Collections.emptyList()
       );
     } else {
 
@@ -67,7 +81,9 @@ public class PaginationHelper {
       return PaginatedList.create(
         prevCursor,
         nextCursor,
-        items
+        items,
+        total,
+        Collections.emptyList()
       );
     }
   }
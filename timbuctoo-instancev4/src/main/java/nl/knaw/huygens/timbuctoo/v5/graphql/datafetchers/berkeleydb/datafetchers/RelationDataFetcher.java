@@ -3,6 +3,7 @@ package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.datafetcher
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.TypeBatchLoader;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.dto.LazyTypeSubjectReference;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.SubjectReference;
 
@@ -13,11 +14,11 @@ public class RelationDataFetcher extends WalkTriplesDataFetcher<SubjectReference
   }
 
   @Override
-  protected SubjectReference makeItem(CursorQuad triple, DataSet dataSet) {
+  protected SubjectReference makeItem(CursorQuad triple, DataSet dataSet, TypeBatchLoader typeBatchLoader) {
     if (triple.getValuetype().isPresent()) {
       throw new IllegalStateException("Source is not a triple referencing a URI");
     } else {
-      return new LazyTypeSubjectReference(triple.getObject(), dataSet);
+      return new LazyTypeSubjectReference(triple.getObject(), dataSet, typeBatchLoader);
     }
 
   }
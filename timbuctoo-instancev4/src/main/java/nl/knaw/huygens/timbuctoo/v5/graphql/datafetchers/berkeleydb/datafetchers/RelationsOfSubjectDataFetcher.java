@@ -39,7 +39,8 @@ public class RelationsOfSubjectDataFetcher implements CollectionFetcher {
           );
           return lazyTypeSubjectReference;
         },
-        arguments
+        arguments,
+        dataSet.getCountStore().getCount(source, predicate, direction)
       );
     }
 
@@ -4,6 +4,7 @@ import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.RelatedDataFetcher;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.TypeBatchLoader;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.DatabaseResult;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginatedList;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginationArguments;
@@ -22,19 +23,27 @@ public abstract class WalkTriplesDataFetcher<T extends DatabaseResult> implement
     this.direction = direction;
   }
 
-  protected abstract T makeItem(CursorQuad quad, DataSet dataSet);
+  protected abstract T makeItem(CursorQuad quad, DataSet dataSet, TypeBatchLoader typeBatchLoader);
 
-  public PaginatedList<T> getList(SubjectReference source, PaginationArguments arguments, DataSet dataSet) {
+  @Override
+  public PaginatedList<T> getList(SubjectReference source, PaginationArguments arguments, DataSet dataSet,
+                                  TypeBatchLoader typeBatchLoader) {
     String cursor = arguments.getCursor();
     try (Stream<CursorQuad> q = dataSet.getQuadStore().getQuads(source.getSubjectUri(), predicate, direction, cursor)) {
-      return getPaginatedList(q, qd -> this.makeItem(qd, dataSet), arguments);
+      return getPaginatedList(
+        q,
+        qd -> this.makeItem(qd, dataSet, typeBatchLoader),
+        arguments,
+        dataSet.getCountStore().getCount(source.getSubjectUri(), predicate, direction)
+      );
     }
   }
 
-  public T getItem(SubjectReference source, DataSet dataSet) {
+  @Override
+  public T getItem(SubjectReference source, DataSet dataSet, TypeBatchLoader typeBatchLoader) {
     try (Stream<CursorQuad> quads = dataSet.getQuadStore().getQuads(source.getSubjectUri(), predicate, direction, "")) {
       return quads.findFirst()
-        .map(q -> this.makeItem(q, dataSet))
+        .map(q -> this.makeItem(q, dataSet, typeBatchLoader))
         .orElse(null);
     }
   }
@@ -3,6 +3,7 @@ package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.dto;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.TypeBatchLoader;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.SubjectReference;
 
 import java.util.Set;
@@ -14,11 +15,23 @@ import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.RDF_TYPE;
 public class LazyTypeSubjectReference implements SubjectReference {
   private final String subjectUri;
   private final DataSet dataSet;
+  private final TypeBatchLoader typeBatchLoader;
   private Set<String> types;
 
   public LazyTypeSubjectReference(String subjectUri, DataSet dataSet) {
     this.subjectUri = subjectUri;
     this.dataSet = dataSet;
+    this.typeBatchLoader = null;
+  }
+
+  /**
+   * Creates a reference whose types are loaded together with the other subjects that are registered at the loader.
+   */
+  public LazyTypeSubjectReference(String subjectUri, DataSet dataSet, TypeBatchLoader typeBatchLoader) {
+    this.subjectUri = subjectUri;
+    this.dataSet = dataSet;
+    this.typeBatchLoader = typeBatchLoader;
+    typeBatchLoader.register(dataSet, subjectUri);
   }
 
   @Override
@@ -28,7 +41,9 @@ public class LazyTypeSubjectReference implements SubjectReference {
 
   @Override
   public Set<String> getTypes() {
-    if (types == null) {
+    if (types == null && typeBatchLoader != null) {
+      types = typeBatchLoader.getTypes(dataSet, subjectUri);
+    } else if (types == null) {
       try (Stream<CursorQuad> quads = dataSet.getQuadStore().getQuads(subjectUri, RDF_TYPE, Direction.OUT, "")) {
         types = quads
           .map(CursorQuad::getObject)
@@ -2,9 +2,9 @@ package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto;
 
 import nl.knaw.huygens.timbuctoo.v5.graphql.collectionfilter.FilterResult;
 
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 public interface ConfiguredFilter {
 
-  FilterResult query() throws IOException;
+  CompletableFuture<FilterResult> query();
 }
@@ -1,6 +1,9 @@
 package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto;
 
+import nl.knaw.huygens.timbuctoo.v5.graphql.QueryThreadExecutor;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.TypeBatchLoader;
 import nl.knaw.huygens.timbuctoo.v5.graphql.security.UserPermissionCheck;
+import nl.knaw.huygens.timbuctoo.v5.graphql.serializable.RowStreamer;
 import nl.knaw.huygens.timbuctoo.v5.security.dto.User;
 import org.immutables.value.Value;
 
@@ -13,7 +16,40 @@ public interface ContextData {
 
   Optional<User> getUser();
 
+  /**
+   * Loads the types of the subjects that are returned during this request.
+   */
+  @Value.Default
+  @Value.Auxiliary
+  default TypeBatchLoader getTypeBatchLoader() {
+    return new TypeBatchLoader();
+  }
+
+  /**
+   * Continues the query on the thread that executes it after an asynchronous data fetcher has completed.
+   */
+  @Value.Default
+  @Value.Auxiliary
+  default QueryThreadExecutor getQueryThreadExecutor() {
+    return new QueryThreadExecutor();
+  }
+
+  /**
+   * Set when the rows of the result are written while the query is executed.
+   */
+  @Value.Auxiliary
+  Optional<RowStreamer> getRowStreamer();
+
   static ContextData contextData(UserPermissionCheck userPermissionCheck, Optional<User> user) {
     return ImmutableContextData.builder().userPermissionCheck(userPermissionCheck).user(user).build();
   }
+
+  static ContextData contextData(UserPermissionCheck userPermissionCheck, Optional<User> user,
+                                 RowStreamer rowStreamer) {
+    return ImmutableContextData.builder()
+      .userPermissionCheck(userPermissionCheck)
+      .user(user)
+      .rowStreamer(rowStreamer)
+      .build();
+  }
 }
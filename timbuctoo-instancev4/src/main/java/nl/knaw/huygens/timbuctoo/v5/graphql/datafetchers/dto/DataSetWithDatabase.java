@@ -2,14 +2,45 @@ package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto;
 
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.QuadStoreLayout;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.dto.LazyTypeSubjectReference;
 
-public class DataSetWithDatabase extends LazyTypeSubjectReference implements DataSetMetaData {
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The metadata of a data set that can also be used as the subject of its data set description. The data set itself is
+ * only looked up when its database is needed, so listing the metadata doesn't open the data sets.
+ */
+public class DataSetWithDatabase implements SubjectReference, DataSetMetaData {
   private final DataSetMetaData dataSetMetaData;
+  private final Supplier<DataSet> dataSetLookup;
+  private LazyTypeSubjectReference subjectReference;
 
   public DataSetWithDatabase(DataSet dataSet) {
-    super(dataSet.getMetadata().getBaseUri(), dataSet);
-    this.dataSetMetaData = dataSet.getMetadata();
+    this(dataSet.getMetadata(), () -> dataSet);
+  }
+
+  public DataSetWithDatabase(DataSetMetaData dataSetMetaData, Supplier<DataSet> dataSetLookup) {
+    this.dataSetMetaData = dataSetMetaData;
+    this.dataSetLookup = dataSetLookup;
+  }
+
+  private LazyTypeSubjectReference getSubjectReference() {
+    if (subjectReference == null) {
+      subjectReference = new LazyTypeSubjectReference(dataSetMetaData.getBaseUri(), dataSetLookup.get());
+    }
+    return subjectReference;
+  }
+
+  @Override
+  public Set<String> getTypes() {
+    return getSubjectReference().getTypes();
+  }
+
+  @Override
+  public DataSet getDataSet() {
+    return getSubjectReference().getDataSet();
   }
 
   @Override
@@ -47,6 +78,11 @@ public class DataSetWithDatabase extends LazyTypeSubjectReference implements Dat
     return dataSetMetaData.isPublished();
   }
 
+  @Override
+  public QuadStoreLayout getQuadStoreLayout() {
+    return dataSetMetaData.getQuadStoreLayout();
+  }
+
   @Override
   public String getSubjectUri() {
     return dataSetMetaData.getBaseUri();
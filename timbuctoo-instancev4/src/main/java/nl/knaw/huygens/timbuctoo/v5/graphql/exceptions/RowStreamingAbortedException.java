@@ -0,0 +1,17 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Stops the execution of a query whose rows can't be written anymore, for example because the client went away.
+ */
+public class RowStreamingAbortedException extends RuntimeException {
+  public RowStreamingAbortedException(IOException cause) {
+    super(cause);
+  }
+
+  @Override
+  public synchronized IOException getCause() {
+    return (IOException) super.getCause();
+  }
+}
@@ -12,16 +12,19 @@ import graphql.schema.idl.TypeDefinitionRegistry;
 import nl.knaw.huygens.timbuctoo.util.Tuple;
 import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetImportStatus;
 import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository;
+import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetUsage;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ImportStatus;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.EntryImportStatus;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataStoreCreationException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.IllegalDataSetNameException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
+import nl.knaw.huygens.timbuctoo.v5.datastores.countstore.CountStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.prefixstore.TypeNameStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.QuadStore;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.QuadStoreLayout;
 import nl.knaw.huygens.timbuctoo.v5.datastores.schemastore.dto.Type;
 import nl.knaw.huygens.timbuctoo.v5.dropwizard.SupportedExportFormats;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.RdfWiringFactory;
@@ -44,6 +47,7 @@ import nl.knaw.huygens.timbuctoo.v5.graphql.rootquery.dataproviders.ImmutablePro
 import nl.knaw.huygens.timbuctoo.v5.graphql.rootquery.dataproviders.ImmutableStringList;
 import nl.knaw.huygens.timbuctoo.v5.graphql.rootquery.dataproviders.MimeTypeDescription;
 import nl.knaw.huygens.timbuctoo.v5.graphql.rootquery.dataproviders.Property;
+import nl.knaw.huygens.timbuctoo.v5.graphql.rootquery.dataproviders.ValueStatistics;
 import nl.knaw.huygens.timbuctoo.v5.graphql.security.UserPermissionCheck;
 import nl.knaw.huygens.timbuctoo.v5.security.dto.Permission;
 import nl.knaw.huygens.timbuctoo.v5.security.dto.User;
@@ -55,9 +59,17 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -78,25 +90,55 @@ public class RootQuery implements Supplier<GraphQLSchema> {
   private final DerivedSchemaTypeGenerator typeGenerator;
   private final ObjectMapper objectMapper;
   private final SchemaParser schemaParser;
-  private final String staticQuery;
-
+  private final TypeDefinitionRegistry staticTypes;
+  private final Map<String, DataSetTypes> dataSetTypes = new ConcurrentHashMap<>();
+  private final Set<String> outdatedDataSets = ConcurrentHashMap.newKeySet();
+  private final AtomicLong changeCount = new AtomicLong();
+  private final Lock rebuildLock = new ReentrantLock();
+  private final Executor rebuildExecutor;
+  private volatile BuiltSchema builtSchema;
+  private CompletableFuture<Void> scheduledRebuild;
+
+  /**
+   * The schema is rebuilt on the rebuildExecutor, so the callers of get() never wait for a rebuild.
+   */
   public RootQuery(DataSetRepository dataSetRepository, SupportedExportFormats supportedFormats, String archetypes,
-                   RdfWiringFactory wiringFactory, DerivedSchemaTypeGenerator typeGenerator, ObjectMapper objectMapper)
+                   RdfWiringFactory wiringFactory, DerivedSchemaTypeGenerator typeGenerator, ObjectMapper objectMapper,
+                   Executor rebuildExecutor)
     throws IOException {
+    this.rebuildExecutor = rebuildExecutor;
     this.dataSetRepository = dataSetRepository;
     this.supportedFormats = supportedFormats;
     this.archetypes = archetypes;
     this.wiringFactory = wiringFactory;
     this.typeGenerator = typeGenerator;
     this.objectMapper = objectMapper;
-    staticQuery = Resources.toString(getResource(RootQuery.class, "schema.graphql"), Charsets.UTF_8);
     schemaParser = new SchemaParser();
+    staticTypes = parseStaticTypes(Resources.toString(getResource(RootQuery.class, "schema.graphql"), Charsets.UTF_8));
+    dataSetRepository.subscribeToDataSetChanges(this::invalidateSchema);
+  }
+
+  /**
+   * Marks the schema as outdated. A rebuild is started on the next call to get().
+   */
+  public void invalidateSchema() {
+    outdatedDataSets.addAll(dataSetTypes.keySet());
+    changeCount.incrementAndGet();
   }
 
-  public synchronized GraphQLSchema rebuildSchema() {
-    final TypeDefinitionRegistry staticQuery = schemaParser.parse(this.staticQuery);
+  /**
+   * Marks the types of one data set as outdated. Only the types of that data set are regenerated by the rebuild that
+   * the next call to get() starts.
+   */
+  public void invalidateSchema(String combinedId) {
+    outdatedDataSets.add(combinedId);
+    changeCount.incrementAndGet();
+  }
+
+  private TypeDefinitionRegistry parseStaticTypes(String staticQuery) {
+    final TypeDefinitionRegistry staticTypes = schemaParser.parse(staticQuery);
     if (archetypes != null && !archetypes.isEmpty()) {
-      staticQuery.merge(schemaParser.parse(
+      staticTypes.merge(schemaParser.parse(
         archetypes +
           "extend type DataSetMetadata {\n" +
           "  archetypes: Archetypes! @passThrough\n" +
@@ -104,27 +146,49 @@ public class RootQuery implements Supplier<GraphQLSchema> {
           "\n")
       );
     }
+    return staticTypes;
+  }
+
+  /**
+   * Builds a new schema and makes it the one that get() returns. Only the types of the data sets that changed since
+   * the previous build are generated again.
+   */
+  public GraphQLSchema rebuildSchema() {
+    rebuildLock.lock();
+    try {
+      //a change that happens during the rebuild increments the count, so it will cause another rebuild
+      final long changesBeforeBuild = changeCount.get();
+      final GraphQLSchema schema = buildSchema();
+      builtSchema = new BuiltSchema(schema, changesBeforeBuild);
+      return schema;
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  private GraphQLSchema buildSchema() {
     TypeDefinitionRegistry registry = new TypeDefinitionRegistry();
-    registry.merge(staticQuery);
+    registry.merge(staticTypes);
     final RuntimeWiring.Builder wiring = RuntimeWiring.newRuntimeWiring();
 
     wiring.type("Query", builder -> builder
-      .dataFetcher("promotedDataSets", env -> dataSetRepository.getPromotedDataSets()
+      .dataFetcher("promotedDataSets", env -> dataSetRepository.getDataSetMetadata()
         .stream()
-        .map(DataSetWithDatabase::new)
+        .filter(DataSetMetaData::isPromoted)
+        .map(this::lookUpWhenNeeded)
         .collect(Collectors.toList()))
-      .dataFetcher("allDataSets", env -> dataSetRepository.getDataSets()
+      .dataFetcher("allDataSets", env -> dataSetRepository.getDataSetMetadata()
         .stream()
-        .map(DataSetWithDatabase::new)
         .filter(x -> {
           if (x.isPublished()) {
             return true;
           } else {
             ContextData contextData = env.getContext();
             UserPermissionCheck userPermissionCheck = contextData.getUserPermissionCheck();
-            return userPermissionCheck.getPermissions(x.getDataSet().getMetadata()).contains(Permission.READ);
+            return userPermissionCheck.getPermissions(x).contains(Permission.READ);
           }
         })
+        .map(this::lookUpWhenNeeded)
         .collect(Collectors.toList()))
       .dataFetcher("dataSetMetadata", env -> {
         final String dataSetId = env.getArgument("dataSetId");
@@ -182,12 +246,39 @@ public class RootQuery implements Supplier<GraphQLSchema> {
         final DataSet dataSet = dataSetRepository.getDataSet(user, input.getOwnerId(), input.getDataSetId()).get();
         final TypeNameStore typeNameStore = dataSet.getTypeNameStore();
         String collectionUri = typeNameStore.makeUri(collectionId);
-        if (dataSet.getSchemaStore().getTypes() == null ||
-          dataSet.getSchemaStore().getTypes().get(collectionUri) == null) {
+        final Type type = dataSet.getSchemaStore().getType(collectionUri);
+        if (type == null) {
           return null;
         } else {
-          return getCollection(dataSet, typeNameStore, dataSet.getSchemaStore().getTypes().get(collectionUri));
+          return getCollection(dataSet, typeNameStore, type);
+        }
+      })
+      .dataFetcher("quadCount", env -> {
+        final DataSet dataSet = getDataSet(env);
+        final String direction = env.getArgument("direction");
+        return dataSet.getCountStore().getCount(
+          env.getArgument("subjectUri"),
+          env.getArgument("predicateUri"),
+          direction == null ? Direction.OUT : Direction.valueOf(direction)
+        ).orElse(null);
+      })
+      .dataFetcher("valueStatistics", env -> {
+        final CountStore countStore = getDataSet(env).getCountStore();
+        final String predicateUri = env.getArgument("predicateUri");
+        final List<String> predicates;
+        if (predicateUri == null) {
+          try (Stream<String> predicatesWithValues = countStore.getPredicatesWithValues()) {
+            predicates = predicatesWithValues.collect(Collectors.toList());
+          }
+        } else {
+          predicates = Collections.singletonList(predicateUri);
         }
+        final List<ValueStatistics> result = new ArrayList<>();
+        for (String predicate : predicates) {
+          countStore.getValueHistogram(predicate)
+            .ifPresent(histogram -> result.add(ValueStatistics.create(predicate, histogram)));
+        }
+        return result;
       })
       .dataFetcher("dataSetId", env -> ((DataSetMetaData) env.getSource()).getCombinedId())
       .dataFetcher("dataSetName", env -> ((DataSetMetaData) env.getSource()).getDataSetId())
@@ -254,8 +345,8 @@ public class RootQuery implements Supplier<GraphQLSchema> {
 
     wiring.type("AboutMe", builder -> builder
       .dataFetcher("dataSets", env -> (Iterable) () -> dataSetRepository
-        .getDataSetsWithWriteAccess(env.getSource())
-        .stream().map(DataSetWithDatabase::new).iterator()
+        .getDataSetMetadataWithWriteAccess(env.getSource())
+        .stream().map(this::lookUpWhenNeeded).iterator()
       )
       .dataFetcher("id", env -> ((User) env.getSource()).getPersistentId())
       .dataFetcher("name", env -> ((User) env.getSource()).getDisplayName())
@@ -284,7 +375,16 @@ public class RootQuery implements Supplier<GraphQLSchema> {
           if (dataSetOpt.isPresent()) {
             return dataSetOpt.get().getMetadata();
           }
-          return dataSetRepository.createDataSet(currentUser.get(), dataSetName).getMetadata();
+          String quadStoreLayout = environment.getArgument("quadStoreLayout");
+          if (quadStoreLayout == null) {
+            return dataSetRepository.createDataSet(currentUser.get(), dataSetName).getMetadata();
+          } else {
+            return dataSetRepository.createDataSet(
+              currentUser.get(),
+              dataSetName,
+              QuadStoreLayout.valueOf(quadStoreLayout)
+            ).getMetadata();
+          }
         } catch (DataStoreCreationException e) {
           LOG.error("Data set creation exception", e);
           throw new RuntimeException("Data set could not be created");
@@ -299,46 +399,91 @@ public class RootQuery implements Supplier<GraphQLSchema> {
     wiring.wiringFactory(wiringFactory);
     StringBuilder root = new StringBuilder("type DataSets {\n sillyWorkaroundWhenNoDataSetsAreVisible: Boolean\n");
 
-    boolean[] dataSetAvailable = new boolean[]{false};
-
-
-    dataSetRepository.getDataSets().forEach(dataSet -> {
-      final DataSetMetaData dataSetMetaData = dataSet.getMetadata();
+    final Set<String> currentDataSets = new HashSet<>();
+    boolean dataSetAvailable = false;
+    for (DataSetMetaData dataSetMetaData : dataSetRepository.getDataSetMetadata()) {
       final String name = dataSetMetaData.getCombinedId();
-
-      final Map<String, Type> types = dataSet.getSchemaStore().getTypes();
-      if (types != null) {
-        dataSetAvailable[0] = true;
-        root.append("  ")
-          .append(name)
-          .append(":")
-          .append(name)
-          .append(" @dataSet(userId:\"")
-          .append(dataSetMetaData.getOwnerId())
-          .append("\", dataSetId:\"")
-          .append(dataSetMetaData.getDataSetId())
-          .append("\")\n");
-
+      currentDataSets.add(name);
+      final DataSetTypes types = getDataSetTypes(dataSetMetaData);
+      if (types != null && types.registry != null) {
+        dataSetAvailable = true;
+        root.append(types.rootField);
+        //the data set is looked up on every fetch, because it might have been closed and opened again in the mean time
         wiring.type(name, c -> c
-          .dataFetcher("metadata", env -> new DataSetWithDatabase(dataSet))
-        );
-
-        final String schema = typeGenerator.makeGraphQlTypes(
-          name,
-          types,
-          dataSet.getTypeNameStore()
+          .dataFetcher("metadata", env -> lookUpWhenNeeded(dataSetMetaData))
         );
-        staticQuery.merge(schemaParser.parse(schema));
+        registry.merge(types.registry);
       }
-    });
+    }
+    //forget the types of the data sets that were removed
+    dataSetTypes.keySet().retainAll(currentDataSets);
     root.append("}\n\nextend type Query {\n  #The actual dataSets\n  dataSets: DataSets @passThrough\n}\n\n");
 
-    if (dataSetAvailable[0]) {
-      staticQuery.merge(schemaParser.parse(root.toString()));
+    if (dataSetAvailable) {
+      registry.merge(schemaParser.parse(root.toString()));
     }
 
     SchemaGenerator schemaGenerator = new SchemaGenerator();
-    return schemaGenerator.makeExecutableSchema(staticQuery, wiring.build());
+    return schemaGenerator.makeExecutableSchema(registry, wiring.build());
+  }
+
+  /**
+   * Returns the generated types of the data set. The data set is only opened when its types were not generated yet or
+   * are outdated. So after the first build, a rebuild only opens the data sets that changed.
+   *
+   * @return null if the data set could not be opened
+   */
+  private DataSetTypes getDataSetTypes(DataSetMetaData dataSetMetaData) {
+    final String name = dataSetMetaData.getCombinedId();
+    final boolean outdated = outdatedDataSets.remove(name);
+    DataSetTypes types = dataSetTypes.get(name);
+    if (outdated || types == null) {
+      //the rebuild runs outside of a request, so it starts a usage of its own to keep the data set open while its
+      //schema is read
+      try (DataSetUsage usage = dataSetRepository.startUsage()) {
+        final Optional<DataSet> dataSet = dataSetRepository.unsafeGetDataSetWithoutCheckingPermissions(
+          dataSetMetaData.getOwnerId(),
+          dataSetMetaData.getDataSetId()
+        );
+        if (!dataSet.isPresent()) {
+          //the schema is incomplete, so the next call to get() starts another build that tries again
+          outdatedDataSets.add(name);
+          changeCount.incrementAndGet();
+          return null;
+        }
+        types = new DataSetTypes();
+        final Map<String, Type> schemaTypes = dataSet.get().getSchemaStore().getTypes();
+        if (schemaTypes != null) {
+          types.rootField = "  " + name + ":" + name +
+            " @dataSet(userId:\"" + dataSetMetaData.getOwnerId() +
+            "\", dataSetId:\"" + dataSetMetaData.getDataSetId() + "\")\n";
+          types.registry = schemaParser.parse(typeGenerator.makeGraphQlTypes(
+            name,
+            schemaTypes,
+            dataSet.get().getTypeNameStore()
+          ));
+        }
+        dataSetTypes.put(name, types);
+      }
+    }
+    return types;
+  }
+
+  /**
+   * Wraps the metadata so that the data set is only opened when a field needs its database. The data set is looked up
+   * through the repository, so a data set that was closed in the mean time is opened again.
+   */
+  private DataSetWithDatabase lookUpWhenNeeded(DataSetMetaData dataSetMetaData) {
+    return new DataSetWithDatabase(dataSetMetaData, () -> dataSetRepository
+      .unsafeGetDataSetWithoutCheckingPermissions(dataSetMetaData.getOwnerId(), dataSetMetaData.getDataSetId())
+      .orElseThrow(() -> new IllegalStateException("Data set " + dataSetMetaData.getCombinedId() + " is not available"))
+    );
+  }
+
+  private DataSet getDataSet(DataFetchingEnvironment env) {
+    DataSetMetaData input = env.getSource();
+    final User user = ((ContextData) env.getContext()).getUser().orElse(null);
+    return dataSetRepository.getDataSet(user, input.getOwnerId(), input.getDataSetId()).get();
   }
 
   public CollectionMetadataList getCollections(DataSetMetaData input, Optional<User> userOpt) {
@@ -413,9 +558,57 @@ public class RootQuery implements Supplier<GraphQLSchema> {
     }
   }
 
+  /**
+   * Starts a rebuild on the rebuildExecutor, unless one is already waiting or running.
+   *
+   * @return the rebuild that was started or that was already waiting or running
+   */
+  public synchronized CompletableFuture<Void> rebuildInBackground() {
+    if (scheduledRebuild == null || scheduledRebuild.isDone()) {
+      scheduledRebuild = CompletableFuture.runAsync(this::rebuildSchema, rebuildExecutor);
+      scheduledRebuild.exceptionally(e -> {
+        LOG.error("Could not rebuild the schema", e);
+        return null;
+      });
+    }
+    return scheduledRebuild;
+  }
+
+  /**
+   * Returns the schema, it is only rebuilt when a data set has changed since the last build. So callers can use the
+   * identity of the returned schema to cache things that are derived from it.
+   *
+   * <p>The schema is rebuilt in the background, in the mean time the callers get the previous schema. Only the calls
+   * that are made before the first schema is built wait for it. The first build starts when Timbuctoo has started (see
+   * rebuildInBackground).</p>
+   */
   @Override
   public GraphQLSchema get() {
-    return rebuildSchema();
+    BuiltSchema current = builtSchema;
+    if (current == null) {
+      rebuildInBackground().join();
+      current = builtSchema;
+    } else if (current.builtFor != changeCount.get()) {
+      rebuildInBackground();
+    }
+    return current.schema;
+  }
+
+  private static class BuiltSchema {
+    private final GraphQLSchema schema;
+    private final long builtFor;
+
+    BuiltSchema(GraphQLSchema schema, long builtFor) {
+      this.schema = schema;
+      this.builtFor = builtFor;
+    }
   }
 
+  /**
+   * The generated types of one data set and the field that makes them available under the DataSets type.
+   */
+  private static class DataSetTypes {
+    private TypeDefinitionRegistry registry;
+    private String rootField;
+  }
 }
@@ -0,0 +1,14 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.rootquery.dataproviders;
+
+import org.immutables.value.Value;
+
+@Value.Immutable
+public interface ValueCount {
+  String getValue();
+
+  int getCount();
+
+  static ValueCount create(String value, int count) {
+    return ImmutableValueCount.builder().value(value).count(count).build();
+  }
+}
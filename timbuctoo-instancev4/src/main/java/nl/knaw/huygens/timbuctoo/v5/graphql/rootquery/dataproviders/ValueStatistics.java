@@ -0,0 +1,28 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.rootquery.dataproviders;
+
+import nl.knaw.huygens.timbuctoo.v5.datastores.countstore.dto.ValueHistogram;
+import org.immutables.value.Value;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Value.Immutable
+public interface ValueStatistics {
+  String getPredicateUri();
+
+  boolean isTooManyValues();
+
+  List<ValueCount> getValues();
+
+  static ValueStatistics create(String predicateUri, ValueHistogram histogram) {
+    return ImmutableValueStatistics.builder()
+      .predicateUri(predicateUri)
+      .tooManyValues(histogram.isTooManyValues())
+      .values(histogram.getValueCounts().entrySet().stream()
+        .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+        .map(entry -> ValueCount.create(entry.getKey(), entry.getValue()))
+        .collect(Collectors.toList()))
+      .build();
+  }
+}
@@ -4,7 +4,7 @@ import graphql.schema.GraphQLFieldDefinition;
 import graphql.schema.GraphQLFieldsContainer;
 import graphql.schema.visibility.GraphqlFieldVisibility;
 import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository;
-import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
 import nl.knaw.huygens.timbuctoo.v5.security.dto.Permission;
 
 import java.util.ArrayList;
@@ -12,27 +12,40 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class PermissionBasedFieldVisibility implements GraphqlFieldVisibility {
-  private final UserPermissionCheck userPermissionCheck;
-  private final DataSetRepository dataSetRepository;
+  private final Supplier<Set<String>> dataSetNamesWithOutReadPermission;
 
   public PermissionBasedFieldVisibility(UserPermissionCheck userPermissionCheck, DataSetRepository dataSetRepository) {
-    this.userPermissionCheck = userPermissionCheck;
-    this.dataSetRepository = dataSetRepository;
+    this.dataSetNamesWithOutReadPermission =
+      () -> getDataSetNamesWithOutReadPermission(userPermissionCheck, dataSetRepository);
+  }
+
+  /**
+   * Creates a visibility that hides a fixed set of data sets. Unlike the visibility that checks the permissions of a
+   * user on each call, it can be shared by all users that are not allowed to read the same data sets.
+   */
+  public PermissionBasedFieldVisibility(Set<String> dataSetNamesWithOutReadPermission) {
+    this.dataSetNamesWithOutReadPermission = () -> dataSetNamesWithOutReadPermission;
+  }
+
+  public static Set<String> getDataSetNamesWithOutReadPermission(UserPermissionCheck userPermissionCheck,
+                                                                 DataSetRepository dataSetRepository) {
+    Collection<DataSetMetaData> dataSets = dataSetRepository.getDataSetMetadata();
+
+    return dataSets.stream()
+      .filter(metadata -> !userPermissionCheck.getPermissions(metadata).contains(Permission.READ))
+      .map(DataSetMetaData::getCombinedId)
+      .collect(Collectors.toSet());
   }
 
   @Override
   public List<GraphQLFieldDefinition> getFieldDefinitions(GraphQLFieldsContainer fieldsContainer) {
     List<GraphQLFieldDefinition> graphQlFieldDefinitions = new ArrayList<>();
 
-    Collection<DataSet> dataSets = dataSetRepository.getDataSets();
-
-    Set<String> dataSetNamesWithOutReadPermission = dataSets.stream()
-      .filter(dataSet -> !userPermissionCheck.getPermissions(dataSet.getMetadata()).contains(Permission.READ))
-      .map(dataSet -> dataSet.getMetadata().getCombinedId())
-      .collect(Collectors.toSet());
+    Set<String> dataSetNamesWithOutReadPermission = this.dataSetNamesWithOutReadPermission.get();
 
     Iterator<GraphQLFieldDefinition> graphQlFieldDefinitionIterator = fieldsContainer.getFieldDefinitions().iterator();
     while (graphQlFieldDefinitionIterator.hasNext()) {
@@ -47,12 +60,7 @@ public class PermissionBasedFieldVisibility implements GraphqlFieldVisibility {
 
   @Override
   public GraphQLFieldDefinition getFieldDefinition(GraphQLFieldsContainer fieldsContainer, String fieldName) {
-    Collection<DataSet> dataSets = dataSetRepository.getDataSets();
-
-    Set<String> dataSetNamesWithOutReadPermission = dataSets.stream()
-      .filter(dataSet -> !userPermissionCheck.getPermissions(dataSet.getMetadata()).contains(Permission.READ))
-      .map(dataSet -> dataSet.getMetadata().getCombinedId())
-      .collect(Collectors.toSet());
+    Set<String> dataSetNamesWithOutReadPermission = this.dataSetNamesWithOutReadPermission.get();
 
     Iterator<GraphQLFieldDefinition> graphQlFieldDefinitionIterator = fieldsContainer.getFieldDefinitions().iterator();
 
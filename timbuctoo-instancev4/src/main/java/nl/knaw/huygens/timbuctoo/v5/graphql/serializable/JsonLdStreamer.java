@@ -0,0 +1,131 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.serializable;
+
+import graphql.execution.ExecutionContext;
+import graphql.language.Field;
+import graphql.language.SelectionSet;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInterfaceType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLUnionType;
+import nl.knaw.huygens.timbuctoo.util.Tuple;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.serializable.dto.PredicateInfo;
+import nl.knaw.huygens.timbuctoo.v5.serializable.dto.Serializable;
+import nl.knaw.huygens.timbuctoo.v5.serializable.serializations.JsonLdSerialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static nl.knaw.huygens.timbuctoo.v5.graphql.derivedschema.GraphQlTypesContainer.ENTITY_INTERFACE_NAME;
+import static nl.knaw.huygens.timbuctoo.v5.graphql.serializable.SerializerExecutionStrategy.getDirectiveArgument;
+
+/**
+ * Writes the items of a list as JSON-LD while the query is executed.
+ *
+ * <p>The @context is derived from the rdf directives of the fields in the query and is written before the data, so
+ * each item can be written as soon as it is resolved. This is possible when the query zooms in on one list and the
+ * fields that lead to it are not entities (an entity needs its @id and @type before its fields are written).</p>
+ */
+public class JsonLdStreamer extends RowStreamer {
+  private final JsonLdSerialization serialization;
+  private boolean paginated;
+
+  public JsonLdStreamer(JsonLdSerialization serialization) {
+    this.serialization = serialization;
+  }
+
+  @Override
+  protected boolean startRows(ExecutionContext context, List<Tuple<String, GraphQLType>> path,
+                              SelectionSet rowSelection, GraphQLType rowType) throws IOException {
+    List<String> keys = new ArrayList<>();
+    for (Tuple<String, GraphQLType> segment : path) {
+      if (isOfKind(segment.getRight(), ENTITY_INTERFACE_NAME)) {
+        return false;
+      }
+      keys.add(segment.getLeft());
+    }
+    Map<String, PredicateInfo> jsonLdContext = new LinkedHashMap<>();
+    if (!collectContext(context, rowSelection, unwrapNonNull(rowType), jsonLdContext)) {
+      return false;
+    }
+    paginated = isPaginatedList(path.get(path.size() - 1).getRight());
+    serialization.startStreaming(jsonLdContext.values(), keys);
+    return true;
+  }
+
+  @Override
+  protected void startRowList(Optional<String> prevCursor, Optional<String> nextCursor) throws IOException {
+    serialization.startStreamedList(prevCursor, nextCursor, paginated);
+  }
+
+  @Override
+  protected void writeRow(Serializable row) throws IOException {
+    serialization.writeStreamedItem(row);
+  }
+
+  @Override
+  protected void finishRows() throws IOException {
+    serialization.finishStreaming();
+  }
+
+  /**
+   * Adds the predicates of the entity fields in the selection to the context. The first predicate with a certain
+   * name ends up in the context, just like when the context is collected while serializing.
+   */
+  private boolean collectContext(ExecutionContext context, SelectionSet selectionSet, GraphQLType type,
+                                 Map<String, PredicateInfo> result) {
+    if (type instanceof GraphQLList) {
+      return collectContext(context, selectionSet, unwrapNonNull(((GraphQLList) type).getWrappedType()), result);
+    } else if (type instanceof GraphQLUnionType) {
+      for (GraphQLObjectType member : ((GraphQLUnionType) type).getTypes()) {
+        if (!collectContext(context, selectionSet, member, result)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (type instanceof GraphQLInterfaceType) {
+      //the predicates are defined on the fields of the object types
+      for (GraphQLType candidate : context.getGraphQLSchema().getAllTypesAsList()) {
+        if (candidate instanceof GraphQLObjectType && isOfKind(candidate, type.getName()) &&
+          !collectContext(context, selectionSet, candidate, result)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (!(type instanceof GraphQLObjectType)) {
+      return true;
+    }
+    Map<String, Tuple<Field, GraphQLFieldDefinition>> fields = new LinkedHashMap<>();
+    if (!collectFields(context, selectionSet, type, fields)) {
+      return false;
+    }
+    final boolean isEntity = isOfKind(type, ENTITY_INTERFACE_NAME);
+    for (Map.Entry<String, Tuple<Field, GraphQLFieldDefinition>> entry : fields.entrySet()) {
+      final GraphQLFieldDefinition definition = entry.getValue().getRight();
+      if (isEntity) {
+        result.putIfAbsent(entry.getKey(), predicateInfo(entry.getKey(), definition));
+      }
+      final GraphQLType fieldType = unwrapNonNull(definition.getType());
+      final Field field = entry.getValue().getLeft();
+      if (field.getSelectionSet() != null &&
+        !collectContext(context, field.getSelectionSet(), fieldType, result)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static PredicateInfo predicateInfo(String name, GraphQLFieldDefinition definition) {
+    final Optional<String> predicate = getDirectiveArgument(definition, "rdf", "predicate");
+    final Direction direction = getDirectiveArgument(definition, "rdf", "direction")
+      .map(Direction::valueOf)
+      .orElse(Direction.OUT);
+    return PredicateInfo.predicateInfo(name, predicate.orElse(null), direction);
+  }
+}
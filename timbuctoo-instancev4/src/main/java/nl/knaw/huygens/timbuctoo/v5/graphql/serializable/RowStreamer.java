@@ -0,0 +1,350 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.serializable;
+
+import graphql.execution.ExecutionContext;
+import graphql.execution.ExecutionPath;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLInterfaceType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLUnionType;
+import nl.knaw.huygens.timbuctoo.util.Tuple;
+import nl.knaw.huygens.timbuctoo.v5.graphql.exceptions.RowStreamingAbortedException;
+import nl.knaw.huygens.timbuctoo.v5.serializable.dto.Serializable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import static nl.knaw.huygens.timbuctoo.util.Tuple.tuple;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Writes the items of one list in the result while the query is executed, instead of after the complete result is
+ * built. The SerializerExecutionStrategy hands each item of that list (a row) to the streamer as soon as it is
+ * resolved and only keeps a placeholder in the result.
+ *
+ * <p>The row list is found by following the query from the root as long as each level selects one field, the same
+ * way the serializations zoom in on a list. The subclass decides, based on the selection set and the schema, whether
+ * it can write the rows before the complete result is known. If it can't, isStreaming() stays false and the result
+ * should be serialized after the execution.</p>
+ *
+ * <p>The rows are written on the thread that completes them. That is usually the thread that executes the query, but
+ * a data fetcher that completes asynchronously resolves its part of the result on another thread. The writes are
+ * therefore synchronized, so that the rows never interleave. A row that is resolved before the rows that precede it
+ * in the list is kept until those are written, so the rows are always written in the order of the list. An item that
+ * never becomes a row (because it is null) is skipped when the list is complete. When the client reads slowly,
+ * writing blocks and so does the execution of the query. When a row can't be written after the rows have started,
+ * the response can't be completed anymore, so the execution is aborted instead of resolving the other rows.</p>
+ *
+ * <p>rowsStarted() completes when a row is written while the execution has no errors yet. Until then the caller can
+ * still decide to send a different response.</p>
+ */
+public abstract class RowStreamer {
+  private static final Logger LOG = getLogger(RowStreamer.class);
+  private boolean prepared;
+  private String rowListPath;
+  private String rowPath;
+  private IOException failure;
+  private ExecutionContext context;
+  private final CompletableFuture<Void> rowsStarted = new CompletableFuture<>();
+  private final TreeMap<Integer, Serializable> pendingRows = new TreeMap<>();
+  private int nextRow;
+
+  /**
+   * Determines the row list of the query and lets the subclass start writing. It is called when the execution of the
+   * query starts.
+   */
+  synchronized void prepare(ExecutionContext context) {
+    if (prepared) {
+      return;
+    }
+    prepared = true;
+    this.context = context;
+    GraphQLType parentType = context.getGraphQLSchema().getQueryType();
+    SelectionSet selectionSet = context.getOperationDefinition().getSelectionSet();
+    List<Tuple<String, GraphQLType>> path = new ArrayList<>();
+    while (true) {
+      Map<String, Tuple<Field, GraphQLFieldDefinition>> fields = new LinkedHashMap<>();
+      if (!collectFields(context, selectionSet, parentType, fields) || fields.size() != 1) {
+        return;
+      }
+      final Map.Entry<String, Tuple<Field, GraphQLFieldDefinition>> entry = fields.entrySet().iterator().next();
+      final Field field = entry.getValue().getLeft();
+      final GraphQLType fieldType = unwrapNonNull(entry.getValue().getRight().getType());
+      path.add(tuple(entry.getKey(), fieldType));
+      if (isPaginatedList(fieldType)) {
+        final Tuple<String, Field> items = getItemsField(context, field, fieldType);
+        if (items != null) {
+          start(context, path, items.getLeft(), items.getRight().getSelectionSet(), itemType(fieldType));
+        }
+        return;
+      } else if (fieldType instanceof GraphQLList) {
+        start(context, path, null, field.getSelectionSet(), ((GraphQLList) fieldType).getWrappedType());
+        return;
+      } else if (fieldType instanceof GraphQLObjectType) {
+        parentType = fieldType;
+        selectionSet = field.getSelectionSet();
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void start(ExecutionContext context, List<Tuple<String, GraphQLType>> path, String itemsKey,
+                     SelectionSet rowSelection, GraphQLType rowType) {
+    try {
+      if (startRows(context, path, rowSelection, rowType)) {
+        StringBuilder listPath = new StringBuilder();
+        for (Tuple<String, GraphQLType> segment : path) {
+          listPath.append("/").append(segment.getLeft());
+        }
+        rowListPath = listPath.toString();
+        rowPath = itemsKey == null ? rowListPath : rowListPath + "/" + itemsKey;
+      }
+    } catch (IOException e) {
+      LOG.error("Could not start writing the rows", e);
+      failure = e;
+      rowListPath = "";
+      rowPath = "";
+    }
+  }
+
+  /**
+   * Starts writing the rows if the columns or context can be determined from the query. The path contains the
+   * result keys and types of the fields that lead to the row list, the last one is the list itself.
+   */
+  protected abstract boolean startRows(ExecutionContext context, List<Tuple<String, GraphQLType>> path,
+                                       SelectionSet rowSelection, GraphQLType rowType) throws IOException;
+
+  /**
+   * Called when the data fetcher of the row list has returned a list, before its items are resolved. The cursors are
+   * always empty for a list that is not paginated.
+   */
+  protected void startRowList(Optional<String> prevCursor, Optional<String> nextCursor) throws IOException {
+  }
+
+  protected abstract void writeRow(Serializable row) throws IOException;
+
+  protected abstract void finishRows() throws IOException;
+
+  /**
+   * Completes when the first row is written while the execution has no errors. It never completes when the rows are
+   * not streamed.
+   */
+  public CompletableFuture<Void> rowsStarted() {
+    return rowsStarted;
+  }
+
+  public boolean isStreaming() {
+    return rowPath != null;
+  }
+
+  public synchronized void finish() throws IOException {
+    writePendingRows(true);
+    if (failure != null) {
+      throw failure;
+    }
+    finishRows();
+  }
+
+  /**
+   * Throws when a row could not be written after the rows have started (usually because the client went away), so
+   * the execution stops resolving rows that would be thrown away.
+   */
+  synchronized void checkNotAborted() {
+    if (failure != null && rowsStarted.isDone()) {
+      throw new RowStreamingAbortedException(failure);
+    }
+  }
+
+  boolean isRowList(ExecutionPath path) {
+    return rowListPath != null && path.toString().equals(rowListPath);
+  }
+
+  /**
+   * Returns true for the list that contains the rows. For a paginated list that is its items field.
+   */
+  boolean isRowItems(ExecutionPath path) {
+    return rowPath != null && path.toString().equals(rowPath);
+  }
+
+  boolean isRow(ExecutionPath path) {
+    if (rowPath == null) {
+      return false;
+    }
+    final String pathString = path.toString();
+    return pathString.startsWith(rowPath + "[") && pathString.indexOf('/', rowPath.length()) < 0;
+  }
+
+  synchronized void onRowList(Optional<String> prevCursor, Optional<String> nextCursor) {
+    if (failure == null) {
+      try {
+        startRowList(prevCursor, nextCursor);
+      } catch (IOException e) {
+        LOG.error("Could not write the list", e);
+        failure = e;
+      }
+    }
+  }
+
+  /**
+   * Writes the row at the path, and the rows after it that were already resolved, if the rows before it are written.
+   */
+  synchronized void onRow(ExecutionPath path, Serializable row) {
+    final String pathString = path.toString();
+    final int index = Integer.parseInt(pathString.substring(rowPath.length() + 1, pathString.length() - 1));
+    pendingRows.put(index, row);
+    writePendingRows(false);
+  }
+
+  /**
+   * Called when all items of the row list are resolved. The rows after an item that did not become a row are written.
+   */
+  synchronized void onRowsResolved() {
+    writePendingRows(true);
+  }
+
+  private void writePendingRows(boolean skipMissing) {
+    while (!pendingRows.isEmpty() && (skipMissing || pendingRows.firstKey() == nextRow)) {
+      final Map.Entry<Integer, Serializable> next = pendingRows.pollFirstEntry();
+      nextRow = next.getKey() + 1;
+      if (failure == null) {
+        try {
+          writeRow(next.getValue());
+          if (context.getErrors().isEmpty()) {
+            rowsStarted.complete(null);
+          }
+        } catch (IOException e) {
+          LOG.error("Could not write row", e);
+          failure = e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the fields under their result key. Returns false if the selection contains something that can't be
+   * handled without executing the query.
+   */
+  protected boolean collectFields(ExecutionContext context, SelectionSet selectionSet, GraphQLType type,
+                                  Map<String, Tuple<Field, GraphQLFieldDefinition>> result) {
+    if (selectionSet == null) {
+      return false;
+    }
+    for (Selection selection : selectionSet.getSelections()) {
+      if (selection instanceof Field) {
+        final Field field = (Field) selection;
+        if (!(type instanceof GraphQLFieldsContainer)) {
+          return false;
+        }
+        final GraphQLFieldDefinition definition = ((GraphQLFieldsContainer) type).getFieldDefinition(field.getName());
+        if (definition == null) {
+          return false;
+        }
+        //fragments on different types may select the same key, the first one is used
+        result.putIfAbsent(field.getAlias() == null ? field.getName() : field.getAlias(), tuple(field, definition));
+      } else if (selection instanceof InlineFragment) {
+        final InlineFragment fragment = (InlineFragment) selection;
+        final GraphQLType fragmentType = fragment.getTypeCondition() == null ? type :
+          context.getGraphQLSchema().getType(fragment.getTypeCondition().getName());
+        if (appliesTo(fragmentType, type) &&
+          !collectFields(context, fragment.getSelectionSet(), fragmentType, result)) {
+          return false;
+        }
+      } else if (selection instanceof FragmentSpread) {
+        final FragmentDefinition fragment = context.getFragmentsByName().get(((FragmentSpread) selection).getName());
+        if (fragment == null) {
+          return false;
+        }
+        final GraphQLType fragmentType = context.getGraphQLSchema().getType(fragment.getTypeCondition().getName());
+        if (appliesTo(fragmentType, type) &&
+          !collectFields(context, fragment.getSelectionSet(), fragmentType, result)) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns false if the fragment can never be applied to an object of the type.
+   */
+  private static boolean appliesTo(GraphQLType fragmentType, GraphQLType type) {
+    if (!(type instanceof GraphQLObjectType) || fragmentType == null) {
+      return true;
+    }
+    if (fragmentType instanceof GraphQLInterfaceType) {
+      return isOfKind(type, fragmentType.getName());
+    } else if (fragmentType instanceof GraphQLUnionType) {
+      return ((GraphQLUnionType) fragmentType).getTypes().stream().anyMatch(t -> t.getName().equals(type.getName()));
+    } else {
+      return fragmentType.getName().equals(type.getName());
+    }
+  }
+
+  protected Tuple<String, Field> getItemsField(ExecutionContext context, Field listField, GraphQLType listType) {
+    Map<String, Tuple<Field, GraphQLFieldDefinition>> fields = new LinkedHashMap<>();
+    if (!collectFields(context, listField.getSelectionSet(), listType, fields)) {
+      return null;
+    }
+    for (Map.Entry<String, Tuple<Field, GraphQLFieldDefinition>> entry : fields.entrySet()) {
+      if (entry.getValue().getLeft().getName().equals("items")) {
+        return tuple(entry.getKey(), entry.getValue().getLeft());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true for the list types that are resolved from a PaginatedList.
+   */
+  protected static boolean isPaginatedList(GraphQLType type) {
+    if (!(type instanceof GraphQLObjectType) || !type.getName().endsWith("List")) {
+      return false;
+    }
+    final GraphQLObjectType objectType = (GraphQLObjectType) type;
+    return objectType.getFieldDefinition("nextCursor") != null && objectType.getFieldDefinition("items") != null &&
+      unwrapNonNull(objectType.getFieldDefinition("items").getType()) instanceof GraphQLList;
+  }
+
+  protected static GraphQLType itemType(GraphQLType paginatedList) {
+    final GraphQLType items = unwrapNonNull(((GraphQLObjectType) paginatedList).getFieldDefinition("items").getType());
+    return ((GraphQLList) items).getWrappedType();
+  }
+
+  /**
+   * Returns true if all objects of the type implement the interface.
+   */
+  protected static boolean isOfKind(GraphQLType type, String interfaceName) {
+    if (type instanceof GraphQLInterfaceType) {
+      return type.getName().equals(interfaceName);
+    } else if (type instanceof GraphQLObjectType) {
+      return ((GraphQLObjectType) type).getInterfaces().stream().anyMatch(i -> i.getName().equals(interfaceName));
+    } else if (type instanceof GraphQLUnionType) {
+      return ((GraphQLUnionType) type).getTypes().stream().allMatch(member -> isOfKind(member, interfaceName));
+    } else {
+      return false;
+    }
+  }
+
+  protected static GraphQLType unwrapNonNull(GraphQLType type) {
+    return type instanceof GraphQLNonNull ? ((GraphQLNonNull) type).getWrappedType() : type;
+  }
+}
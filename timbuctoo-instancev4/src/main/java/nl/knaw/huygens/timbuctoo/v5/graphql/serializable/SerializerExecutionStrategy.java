@@ -11,6 +11,7 @@ import graphql.language.StringValue;
 import graphql.schema.GraphQLFieldDefinition;
 import graphql.schema.GraphQLObjectType;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.ContextData;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.DatabaseResult;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginatedList;
 import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.SubjectReference;
@@ -25,6 +26,7 @@ import nl.knaw.huygens.timbuctoo.v5.serializable.dto.Value;
 import nl.knaw.huygens.timbuctoo.v5.util.RdfConstants;
 import org.slf4j.Logger;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +50,16 @@ public class SerializerExecutionStrategy extends AsyncExecutionStrategy {
       throws NonNullableFieldWasNullException {
     Map<String, java.util.List<Field>> fields = parameters.fields();
     GraphQLObjectType parentType = parameters.typeInfo().castType(GraphQLObjectType.class);
+    final RowStreamer rowStreamer = getRowStreamer(executionContext);
+    if (rowStreamer != null) {
+      rowStreamer.checkNotAborted();
+      if (executionContext.getGraphQLSchema().getQueryType() == parentType) {
+        rowStreamer.prepare(executionContext);
+      } else if (parameters.source() instanceof PaginatedList && rowStreamer.isRowList(parameters.path())) {
+        final PaginatedList<?> list = (PaginatedList<?>) parameters.source();
+        rowStreamer.onRowList(list.getPrevCursor(), list.getNextCursor());
+      }
+    }
 
     return super.execute(executionContext, parameters).thenApply(sourceResult -> {
       Map<String, Object> data  = sourceResult.getData();
@@ -62,6 +74,9 @@ public class SerializerExecutionStrategy extends AsyncExecutionStrategy {
         } else {
           result = Value.create(value, typename);
         }
+        if (rowStreamer != null && rowStreamer.isRow(parameters.path())) {
+          rowStreamer.onRow(parameters.path(), result);
+        }
         return new ExecutionResultImpl(
           result,
           sourceResult.getErrors(),
@@ -102,8 +117,14 @@ public class SerializerExecutionStrategy extends AsyncExecutionStrategy {
             copy.put(predicateInfo, Value.fromRawJavaType(entry.getValue()));
           }
         }
+        Entity entity = Entity.entity(uri, type, copy);
+        if (rowStreamer != null && rowStreamer.isRow(parameters.path())) {
+          rowStreamer.onRow(parameters.path(), entity);
+          //the row has been written, only keep a placeholder in the result
+          entity = Entity.entity(uri, type, Collections.emptyMap());
+        }
         return new ExecutionResultImpl(
-          Entity.entity(uri, type, copy),
+          entity,
           sourceResult.getErrors(),
           sourceResult.getExtensions()
         );
@@ -144,16 +165,23 @@ public class SerializerExecutionStrategy extends AsyncExecutionStrategy {
 
   }
 
-  public Optional<String> getDirectiveArgument(GraphQLObjectType parentType, String directiveName,
-                                                    String argumentName) {
+  private RowStreamer getRowStreamer(ExecutionContext executionContext) {
+    if (executionContext.getContext() instanceof ContextData) {
+      return ((ContextData) executionContext.getContext()).getRowStreamer().orElse(null);
+    }
+    return null;
+  }
+
+  public static Optional<String> getDirectiveArgument(GraphQLObjectType parentType, String directiveName,
+                                                     String argumentName) {
     return Optional.ofNullable(parentType.getDefinition().getDirective(directiveName))
       .map(d -> d.getArgument(argumentName))
       .map(v -> (StringValue) v.getValue())
       .map(StringValue::getValue);
   }
 
-  public Optional<String> getDirectiveArgument(GraphQLFieldDefinition field, String directiveName,
-                                               String argumentName) {
+  public static Optional<String> getDirectiveArgument(GraphQLFieldDefinition field, String directiveName,
+                                                     String argumentName) {
     return Optional.ofNullable(field.getDefinition().getDirective(directiveName))
       .map(d -> d.getArgument(argumentName))
       .map(v -> (StringValue) v.getValue())
@@ -164,7 +192,15 @@ public class SerializerExecutionStrategy extends AsyncExecutionStrategy {
   protected CompletableFuture<ExecutionResult> completeValueForList(ExecutionContext executionContext,
                                                                     ExecutionStrategyParameters parameters,
                                                                     Iterable<Object> result) {
+    final RowStreamer rowStreamer = getRowStreamer(executionContext);
+    if (rowStreamer != null && rowStreamer.isRowList(parameters.path())) {
+      //only a list that is not paginated has the same path as its items
+      rowStreamer.onRowList(Optional.empty(), Optional.empty());
+    }
     return super.completeValueForList(executionContext, parameters, result).thenApply(completedResult -> {
+      if (rowStreamer != null && rowStreamer.isRowItems(parameters.path())) {
+        rowStreamer.onRowsResolved();
+      }
       List<Object> data = completedResult.getData();
       List<Serializable> copy = data.stream().map(item -> {
         if (item == null || item instanceof Serializable) {
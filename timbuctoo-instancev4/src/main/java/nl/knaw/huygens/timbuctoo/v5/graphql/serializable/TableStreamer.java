@@ -0,0 +1,85 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.serializable;
+
+import graphql.execution.ExecutionContext;
+import graphql.language.Field;
+import graphql.language.SelectionSet;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLType;
+import nl.knaw.huygens.timbuctoo.util.Tuple;
+import nl.knaw.huygens.timbuctoo.v5.serializable.dto.Serializable;
+import nl.knaw.huygens.timbuctoo.v5.serializable.serializations.base.FlatTableSerialization;
+import nl.knaw.huygens.timbuctoo.v5.serializable.serializations.base.FlatTableSerialization.TocItem;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static nl.knaw.huygens.timbuctoo.v5.graphql.derivedschema.GraphQlTypesContainer.ENTITY_INTERFACE_NAME;
+import static nl.knaw.huygens.timbuctoo.v5.graphql.derivedschema.GraphQlTypesContainer.VALUE_INTERFACE_NAME;
+
+/**
+ * Writes the rows of a flat table (e.g. csv) while the query is executed.
+ *
+ * <p>The columns are derived from the query and the schema before the first row is resolved. This is possible when
+ * the query zooms in on one list of entities (the list that FlatTableSerialization would pick) and the selection on
+ * the entities only contains values. The buffered serialization derives the columns from the data instead: a list
+ * gets a column group for each item of the longest list and an entity that is null in every row gets one column. So
+ * when a row contains nested entities or lists, the columns can't be known up front and the query is not streamed.
+ * </p>
+ */
+public class TableStreamer extends RowStreamer {
+  private final FlatTableSerialization serialization;
+
+  public TableStreamer(FlatTableSerialization serialization) {
+    this.serialization = serialization;
+  }
+
+  @Override
+  protected boolean startRows(ExecutionContext context, List<Tuple<String, GraphQLType>> path,
+                              SelectionSet rowSelection, GraphQLType rowType) throws IOException {
+    final TocItem columns = getColumns(context, rowSelection, rowType);
+    if (columns == null || columns.contents.isEmpty()) {
+      return false;
+    }
+    serialization.startTable(columns);
+    return true;
+  }
+
+  @Override
+  protected void writeRow(Serializable row) throws IOException {
+    serialization.writeTableRow(row);
+  }
+
+  @Override
+  protected void finishRows() throws IOException {
+    serialization.finishTable();
+  }
+
+  private TocItem getColumns(ExecutionContext context, SelectionSet selectionSet, GraphQLType type) {
+    final GraphQLType unwrapped = unwrapNonNull(type);
+    if (!isOfKind(unwrapped, ENTITY_INTERFACE_NAME)) {
+      return null;
+    }
+    Map<String, Tuple<Field, GraphQLFieldDefinition>> fields = new LinkedHashMap<>();
+    if (!collectFields(context, selectionSet, unwrapped, fields)) {
+      return null;
+    }
+    TocItem result = new TocItem();
+    for (Map.Entry<String, Tuple<Field, GraphQLFieldDefinition>> entry : fields.entrySet()) {
+      if (!isValue(entry.getValue().getRight().getType())) {
+        return null;
+      }
+      result.set(entry.getKey(), new TocItem());
+    }
+    return result;
+  }
+
+  private static boolean isValue(GraphQLType type) {
+    final GraphQLType unwrapped = unwrapNonNull(type);
+    return unwrapped instanceof GraphQLScalarType || unwrapped instanceof GraphQLEnumType ||
+      isOfKind(unwrapped, VALUE_INTERFACE_NAME);
+  }
+}
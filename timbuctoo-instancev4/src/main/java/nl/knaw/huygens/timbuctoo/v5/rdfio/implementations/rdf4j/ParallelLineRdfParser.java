@@ -0,0 +1,251 @@
+package nl.knaw.huygens.timbuctoo.v5.rdfio.implementations.rdf4j;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.RdfProcessor;
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+import nl.knaw.huygens.timbuctoo.v5.filestorage.dto.CachedLog;
+import nl.knaw.huygens.timbuctoo.v5.rdfio.RdfParser;
+import nl.knaw.huygens.timbuctoo.v5.rdfio.implementations.rdf4j.parsers.TimRdfHandler;
+import nl.knaw.huygens.timbuctoo.v5.util.RdfConstants;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses line based formats (N-Quads and the N-Quads unified diff) on several threads.
+ *
+ * <p>The input is split into chunks of whole lines, each chunk is parsed by its own rdf4j parser on the worker pool
+ * and the resulting quads are handed to the RdfProcessor from the calling thread, so the processor is never called
+ * concurrently. The quads are delivered in the order of the input, unless the processor declares that it does not
+ * need that. Then a chunk is delivered as soon as it is parsed. At most maxChunksInFlight chunks are kept in memory.
+ * </p>
+ *
+ * <p>Blank nodes get the same name as with the single threaded parser, because the name only depends on the file
+ * name and the id in the file.</p>
+ */
+public class ParallelLineRdfParser implements RdfParser {
+  static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  private final ExecutorService executor;
+  private final RDFFormat format;
+  private final int chunkSize;
+  private final int maxChunksInFlight;
+
+  public ParallelLineRdfParser(ExecutorService executor, RDFFormat format, int threadCount) {
+    this(executor, format, threadCount, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Creates a parser that puts lines in a chunk until the chunk contains at least chunkSize characters.
+   */
+  public ParallelLineRdfParser(ExecutorService executor, RDFFormat format, int threadCount, int chunkSize) {
+    this.executor = executor;
+    this.format = format;
+    this.chunkSize = chunkSize;
+    this.maxChunksInFlight = threadCount * 2;
+  }
+
+  @Override
+  public void importRdf(CachedLog input, String baseUri, String defaultGraph, RdfProcessor rdfProcessor)
+    throws RdfProcessingFailedException {
+    final String fileName = input.getFile().getName();
+    final boolean ordered = rdfProcessor.requiresOrderedQuads();
+    final Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+    final CompletionService<ParsedChunk> completionService = new ExecutorCompletionService<>(executor);
+
+    try (BufferedReader reader = new BufferedReader(input.getReader())) {
+      StringBuilder chunk = new StringBuilder(chunkSize + 1024);
+      long lineNumber = 0;
+      long chunkStart = 1;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        chunk.append(line).append('\n');
+        if (chunk.length() >= chunkSize) {
+          inFlight.add(submit(completionService, ordered, chunk.toString(), chunkStart, baseUri, defaultGraph,
+            fileName));
+          chunk.setLength(0);
+          chunkStart = lineNumber + 1;
+          if (inFlight.size() >= maxChunksInFlight) {
+            deliver(next(completionService, inFlight, ordered), rdfProcessor);
+          }
+        }
+      }
+      if (chunk.length() > 0) {
+        inFlight.add(submit(completionService, ordered, chunk.toString(), chunkStart, baseUri, defaultGraph,
+          fileName));
+      }
+      while (!inFlight.isEmpty()) {
+        deliver(next(completionService, inFlight, ordered), rdfProcessor);
+      }
+    } catch (IOException e) {
+      throw new RdfProcessingFailedException(e);
+    } finally {
+      //only non-empty after a failure, the remaining chunks are not needed anymore
+      for (Future<ParsedChunk> future : inFlight) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private Future<ParsedChunk> submit(CompletionService<ParsedChunk> completionService, boolean ordered, String chunk,
+                                     long firstLine, String baseUri, String defaultGraph, String fileName) {
+    if (ordered) {
+      //the completion service would keep a reference to every chunk that is parsed, we take them from inFlight
+      return executor.submit(() -> parseChunk(chunk, firstLine, baseUri, defaultGraph, fileName));
+    } else {
+      return completionService.submit(() -> parseChunk(chunk, firstLine, baseUri, defaultGraph, fileName));
+    }
+  }
+
+  private ParsedChunk next(CompletionService<ParsedChunk> completionService, Deque<Future<ParsedChunk>> inFlight,
+                           boolean ordered) throws RdfProcessingFailedException {
+    try {
+      final Future<ParsedChunk> result;
+      if (ordered) {
+        result = inFlight.removeFirst();
+      } else {
+        result = completionService.take();
+        inFlight.remove(result);
+      }
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RdfProcessingFailedException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RDFHandlerException &&
+        e.getCause().getCause() instanceof RdfProcessingFailedException) {
+        throw (RdfProcessingFailedException) e.getCause().getCause();
+      }
+      throw new RdfProcessingFailedException(e.getCause());
+    }
+  }
+
+  private void deliver(ParsedChunk chunk, RdfProcessor rdfProcessor) throws RdfProcessingFailedException {
+    if (Thread.currentThread().isInterrupted()) {
+      rdfProcessor.commit();
+      throw new RdfProcessingFailedException(new InterruptedException("Interrupted"));
+    }
+    final String[] quads = chunk.quads;
+    for (int i = 0; i < chunk.quadCount; i++) {
+      final int offset = i * ParsedChunk.FIELDS;
+      rdfProcessor.onQuad(
+        chunk.assertions[i],
+        quads[offset],
+        quads[offset + 1],
+        quads[offset + 2],
+        quads[offset + 3],
+        quads[offset + 4],
+        quads[offset + 5]
+      );
+    }
+  }
+
+  private ParsedChunk parseChunk(String chunk, long firstLine, String baseUri, String defaultGraph, String fileName)
+    throws IOException, RDFHandlerException, RDFParseException {
+    ParsedChunk result = new ParsedChunk();
+    RDFParser rdfParser = Rio.createParser(format);
+    rdfParser.setPreserveBNodeIDs(true);
+    rdfParser.setRDFHandler(new TimRdfHandler(result, defaultGraph, fileName));
+    try {
+      rdfParser.parse(new StringReader(chunk), baseUri);
+    } catch (RDFParseException e) {
+      //the parser counts the lines of the chunk, report the line in the file
+      long line = e.getLineNumber() < 0 ? -1 : firstLine + e.getLineNumber() - 1;
+      String message = e.getMessage().replaceFirst(" \\[line [0-9]+(, column [0-9]+)?]$", "");
+      throw new RDFParseException(message, e, line, e.getColumnNumber());
+    }
+    return result;
+  }
+
+  /**
+   * Collects the output of TimRdfHandler for one chunk. The quads are stored in one flat array to keep the overhead
+   * per quad low.
+   */
+  private static class ParsedChunk implements RdfProcessor {
+    private static final int FIELDS = 6;
+    private String[] quads = new String[FIELDS * 1024];
+    private boolean[] assertions = new boolean[1024];
+    private int quadCount;
+
+    @Override
+    public void setPrefix(String prefix, String iri) {
+      //the line based formats have no prefix declarations
+    }
+
+    @Override
+    public void onQuad(boolean isAssertion, String subject, String predicate, String object, String dataType,
+                       String language, String graph) {
+      if (quadCount == assertions.length) {
+        assertions = Arrays.copyOf(assertions, assertions.length * 2);
+        quads = Arrays.copyOf(quads, quads.length * 2);
+      }
+      final int offset = quadCount * FIELDS;
+      quads[offset] = subject;
+      quads[offset + 1] = predicate;
+      quads[offset + 2] = object;
+      quads[offset + 3] = dataType;
+      quads[offset + 4] = language;
+      quads[offset + 5] = graph;
+      assertions[quadCount++] = isAssertion;
+    }
+
+    @Override
+    public void addRelation(String subject, String predicate, String object, String graph) {
+      onQuad(true, subject, predicate, object, null, null, graph);
+    }
+
+    @Override
+    public void addValue(String subject, String predicate, String value, String dataType, String graph) {
+      onQuad(true, subject, predicate, value, dataType, null, graph);
+    }
+
+    @Override
+    public void addLanguageTaggedString(String subject, String predicate, String value, String language,
+                                        String graph) {
+      onQuad(true, subject, predicate, value, RdfConstants.LANGSTRING, language, graph);
+    }
+
+    @Override
+    public void delRelation(String subject, String predicate, String object, String graph) {
+      onQuad(false, subject, predicate, object, null, null, graph);
+    }
+
+    @Override
+    public void delValue(String subject, String predicate, String value, String valueType, String graph) {
+      onQuad(false, subject, predicate, value, valueType, null, graph);
+    }
+
+    @Override
+    public void delLanguageTaggedString(String subject, String predicate, String value, String language,
+                                        String graph) {
+      onQuad(false, subject, predicate, value, RdfConstants.LANGSTRING, language, graph);
+    }
+
+    @Override
+    public void start(int index) {
+    }
+
+    @Override
+    public int getCurrentVersion() {
+      return -1;
+    }
+
+    @Override
+    public void commit() {
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package nl.knaw.huygens.timbuctoo.v5.rdfio.implementations.rdf4j;
 
+import io.dropwizard.lifecycle.Managed;
 import nl.knaw.huygens.timbuctoo.v5.filestorage.dto.CachedLog;
 import nl.knaw.huygens.timbuctoo.v5.rdfio.RdfIoFactory;
 import nl.knaw.huygens.timbuctoo.v5.rdfio.RdfParser;
@@ -13,14 +14,24 @@ import org.eclipse.rdf4j.rio.RDFParserRegistry;
 import javax.ws.rs.core.MediaType;
 import java.io.OutputStream;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static nl.knaw.huygens.timbuctoo.v5.rdfio.implementations.rdf4j.parsers.NquadsUdParser.NQUAD_UD_FORMAT;
 import static org.eclipse.rdf4j.rio.Rio.getWriterFormatForMIMEType;
 
-public class Rdf4jIoFactory implements RdfIoFactory {
+/**
+ * The threads of the parallel parser are started when it is first used and are stopped when Timbuctoo stops.
+ */
+public class Rdf4jIoFactory implements RdfIoFactory, Managed {
   public static final Set<RDFFormat> RDF_FORMATS = RDFParserRegistry.getInstance().getKeys();
   private static RdfParser rdfParser = new Rdf4jRdfParser();
 
   private String rdfFormat = "application/n-quads"; // format for serializer
+  private int parserThreads = 1; // more than 1 enables the parallel parser for the line based formats
+  private ExecutorService parserExecutor;
 
   public Rdf4jIoFactory() {
     RDFParserRegistry.getInstance().add(new NquadsUdParserFactory());
@@ -28,9 +39,46 @@ public class Rdf4jIoFactory implements RdfIoFactory {
 
   @Override
   public RdfParser makeRdfParser(CachedLog log) {
+    if (parserThreads > 1 && log.getMimeType() != null) {
+      String mimeType = log.getMimeType().getType() + "/" + log.getMimeType().getSubtype();
+      if (RDFFormat.NQUADS.hasMIMEType(mimeType)) {
+        return new ParallelLineRdfParser(getParserExecutor(), RDFFormat.NQUADS, parserThreads);
+      } else if (NQUAD_UD_FORMAT.hasMIMEType(mimeType)) {
+        return new ParallelLineRdfParser(getParserExecutor(), NQUAD_UD_FORMAT, parserThreads);
+      }
+    }
     return rdfParser;
   }
 
+  private synchronized ExecutorService getParserExecutor() {
+    if (parserExecutor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      parserExecutor = Executors.newFixedThreadPool(parserThreads, runnable -> {
+        Thread thread = new Thread(runnable, "rdf-parser-" + threadCount.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return parserExecutor;
+  }
+
+  @Override
+  public void start() throws Exception {
+  }
+
+  @Override
+  public void stop() throws Exception {
+    ExecutorService executor;
+    synchronized (this) {
+      executor = parserExecutor;
+      parserExecutor = null;
+    }
+    if (executor != null) {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
   @Override
   public RdfSerializer makeRdfSerializer(OutputStream output) {
     return new Rdf4jWriter(
@@ -61,4 +109,12 @@ public class Rdf4jIoFactory implements RdfIoFactory {
   public void setRdfFormat(String rdfFormat) {
     this.rdfFormat = rdfFormat;
   }
+
+  public int getParserThreads() {
+    return parserThreads;
+  }
+
+  public void setParserThreads(int parserThreads) {
+    this.parserThreads = parserThreads;
+  }
 }
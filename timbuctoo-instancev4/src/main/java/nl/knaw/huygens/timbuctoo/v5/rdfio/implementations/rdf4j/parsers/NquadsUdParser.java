@@ -19,7 +19,7 @@ import static org.eclipse.rdf4j.rio.RDFFormat.NO_NAMESPACES;
 import static org.eclipse.rdf4j.rio.RDFFormat.SUPPORTS_CONTEXTS;
 
 public class NquadsUdParser extends NQuadsParser {
-  private static final RDFFormat NQUAD_UD_FORMAT = new RDFFormat(
+  public static final RDFFormat NQUAD_UD_FORMAT = new RDFFormat(
     "NQuadsUnifiedDiff",
     "application/vnd.timbuctoo-rdf.nquads_unified_diff",
     UTF_8,
@@ -0,0 +1,174 @@
+package nl.knaw.huygens.timbuctoo.v5.rml;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import nl.knaw.huygens.timbuctoo.rml.datasource.JoinHandler;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.CursorTracker;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A JoinHandler that keeps the uris to join on in memory until there are more than maxInMemory of them. Then they are
+ * moved to a temporary berkeley db that only lives as long as the rml execution. The uris that are looked up are kept
+ * in a cache of cacheSize entries.
+ *
+ * <p>Call close() when the rml execution is done, so the temporary database is removed.</p>
+ */
+public class BdbJoinHandler implements JoinHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(BdbJoinHandler.class);
+  private static final long JE_CACHE_BYTES = 32 * 1024 * 1024;
+  private static final int BATCH_SIZE = 1000;
+  private final int maxInMemory;
+  private final int cacheSize;
+  //the field of the row that is used to join by the output field name of the referencing object map
+  private final Map<String, String> joinFields = new HashMap<>();
+  private final Map<String, List<String>> inMemory = new HashMap<>();
+  private int inMemoryCount;
+  private Cache<String, List<String>> lookups;
+  private File tempDir;
+  private Environment environment;
+  private BdbWrapper<String, String> joins;
+  private BdbWrapper<String, String>.WriteBatch batch;
+
+  public BdbJoinHandler(int maxInMemory, int cacheSize) {
+    this.maxInMemory = maxInMemory;
+    this.cacheSize = cacheSize;
+  }
+
+  private static String key(String outputFieldName, String referenceJoinValue) {
+    return outputFieldName + "\n" + referenceJoinValue;
+  }
+
+  @Override
+  public synchronized Map<String, List<String>> resolveReferences(Map<String, String> valueMap) {
+    Map<String, List<String>> result = new HashMap<>();
+    for (Map.Entry<String, String> joinField : joinFields.entrySet()) {
+      final String value = valueMap.get(joinField.getValue());
+      result.put(joinField.getKey(), value == null ? null : lookup(key(joinField.getKey(), value)));
+    }
+    return result;
+  }
+
+  private List<String> lookup(String key) {
+    if (joins == null) {
+      return inMemory.get(key);
+    }
+    applyBatch();
+    List<String> uris = lookups.getIfPresent(key);
+    if (uris == null) {
+      try (Stream<String> values = joins.databaseGetter().key(key).dontSkip().forwards().getValues()) {
+        uris = values.collect(Collectors.toList());
+      }
+      lookups.put(key, uris.isEmpty() ? Collections.emptyList() : uris);
+    }
+    return uris.isEmpty() ? null : uris;
+  }
+
+  @Override
+  public synchronized void willBeJoinedOn(String fieldName, String referenceJoinValue, String uri,
+                                          String outputFieldName) {
+    if (referenceJoinValue == null) {
+      return;
+    }
+    joinFields.putIfAbsent(outputFieldName, fieldName);
+    final String key = key(outputFieldName, referenceJoinValue);
+    if (joins == null) {
+      inMemory.computeIfAbsent(key, x -> new ArrayList<>()).add(uri);
+      if (++inMemoryCount > maxInMemory) {
+        moveToDisk();
+      }
+    } else {
+      lookups.invalidate(key);
+      batch.put(key, uri);
+      if (batch.size() >= BATCH_SIZE) {
+        applyBatch();
+      }
+    }
+  }
+
+  private void moveToDisk() {
+    LOG.info("More than " + maxInMemory + " values to join on, moving them to a temporary database");
+    try {
+      tempDir = Files.createTempDirectory("rml_join_").toFile();
+      EnvironmentConfig environmentConfig = new EnvironmentConfig();
+      environmentConfig.setAllowCreate(true);
+      environmentConfig.setTransactional(false);
+      environmentConfig.setCacheSize(JE_CACHE_BYTES);
+      environment = new Environment(tempDir, environmentConfig);
+      DatabaseConfig databaseConfig = new DatabaseConfig();
+      databaseConfig.setAllowCreate(true);
+      databaseConfig.setSortedDuplicates(true);
+      databaseConfig.setTemporary(true);
+      Database database = environment.openDatabase(null, "joins", databaseConfig);
+      final TupleBinding<String> stringBinding = TupleBinding.getPrimitiveBinding(String.class);
+      joins = new BdbWrapper<>(environment, database, databaseConfig, stringBinding, stringBinding,
+        new CursorTracker(CursorTracker.Mode.OFF, null));
+    } catch (IOException | DatabaseException e) {
+      close();
+      throw new RuntimeException("Could not create the temporary database for the join values", e);
+    }
+    lookups = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    batch = joins.writeBatch();
+    for (Map.Entry<String, List<String>> entry : inMemory.entrySet()) {
+      for (String uri : entry.getValue()) {
+        batch.put(entry.getKey(), uri);
+        if (batch.size() >= BATCH_SIZE) {
+          applyBatch();
+        }
+      }
+    }
+    applyBatch();
+    inMemory.clear();
+  }
+
+  private void applyBatch() {
+    if (batch.size() > 0) {
+      try {
+        batch.apply();
+      } catch (DatabaseWriteException e) {
+        throw new RuntimeException("Could not store the join values", e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    inMemory.clear();
+    if (joins != null) {
+      joins.close();
+      joins = null;
+    }
+    if (environment != null) {
+      environment.close();
+      environment = null;
+    }
+    if (tempDir != null) {
+      try {
+        FileUtils.deleteDirectory(tempDir);
+      } catch (IOException e) {
+        LOG.error("Could not remove the temporary join database at " + tempDir, e);
+      }
+      tempDir = null;
+    }
+  }
+}
@@ -9,9 +9,6 @@ import nl.knaw.huygens.timbuctoo.v5.datastores.rmldatasource.RmlDataSourceStore;
 
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toMap;
-import static org.apache.commons.lang3.StringEscapeUtils.unescapeJava;
-
 public class RdfDataSource implements DataSource {
   private final RmlDataSourceStore rmlDataSourceStore;
   private final String collectionUri;
@@ -28,22 +25,17 @@ public class RdfDataSource implements DataSource {
   @Override
   public Stream<Row> getRows(ErrorHandler defaultErrorHandler) {
     return rmlDataSourceStore
-      .get(collectionUri)
-      .map(row -> {
-        try (Stream<String> values = rmlDataSourceStore.get(row)) {
-          return rowFactory.makeRow(
-            values.map(value -> value.split("\n", 2)).collect(toMap(
-              x -> unescapeJava(x[0]),
-              x -> x[1]
-            )),
-            defaultErrorHandler
-          );
-        }
-      });
+      .getRows(collectionUri)
+      .map(values -> rowFactory.makeRow(values, defaultErrorHandler));
   }
 
   @Override
   public void willBeJoinedOn(String fieldName, String referenceJoinValue, String uri, String outputFieldName) {
     joinHandler.willBeJoinedOn(fieldName, referenceJoinValue, uri, outputFieldName);
   }
+
+  @Override
+  public void close() {
+    joinHandler.close();
+  }
 }
@@ -1,7 +1,6 @@
 package nl.knaw.huygens.timbuctoo.v5.rml;
 
 import nl.knaw.huygens.timbuctoo.rml.DataSource;
-import nl.knaw.huygens.timbuctoo.rml.datasource.joinhandlers.HashMapBasedJoinHandler;
 import nl.knaw.huygens.timbuctoo.rml.rdfshim.RdfResource;
 import nl.knaw.huygens.timbuctoo.rml.datasource.jexl.JexlRowFactory;
 import nl.knaw.huygens.timbuctoo.v5.datastores.rmldatasource.RmlDataSourceStore;
@@ -13,10 +12,17 @@ import java.util.Set;
 
 public class RdfDataSourceFactory {
   private static final String NS_RML = "http://semweb.mmlab.be/ns/rml#";
+  private static final int JOIN_CACHE_SIZE = 10_000;
   private final RmlDataSourceStore rmlDataSourceStore;
+  private final int maxJoinValuesInMemory;
 
-  public RdfDataSourceFactory(RmlDataSourceStore rmlDataSourceStore) {
+  /**
+   * The data sources keep up to maxJoinValuesInMemory values to join on in memory, more are stored in a temporary
+   * database.
+   */
+  public RdfDataSourceFactory(RmlDataSourceStore rmlDataSourceStore, int maxJoinValuesInMemory) {
     this.rmlDataSourceStore = rmlDataSourceStore;
+    this.maxJoinValuesInMemory = maxJoinValuesInMemory;
   }
 
   public Optional<DataSource> apply(RdfResource rdfResource, String vreName) {
@@ -40,7 +46,7 @@ public class RdfDataSourceFactory {
         return rawCollection.iterator().next().asIri().map(collectionIri -> new RdfDataSource(
           rmlDataSourceStore,
           collectionIri,
-          new JexlRowFactory(expressions, new HashMapBasedJoinHandler())
+          new JexlRowFactory(expressions, new BdbJoinHandler(maxJoinValuesInMemory, JOIN_CACHE_SIZE))
         ));
       }
     }
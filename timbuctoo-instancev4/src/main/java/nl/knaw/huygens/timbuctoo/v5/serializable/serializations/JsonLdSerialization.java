@@ -19,13 +19,19 @@ import nl.knaw.huygens.timbuctoo.v5.util.RdfConstants;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 public class JsonLdSerialization implements Serialization {
   private final JsonGenerator generator;
   protected final SerializeDispatcher dispatcher;
+  private int streamedDepth;
+  private boolean streamedListStarted;
+  private boolean streamedListPaginated;
 
   public JsonLdSerialization(OutputStream outputStream) throws IOException {
     generator = new JsonFactory().createGenerator(outputStream, JsonEncoding.UTF8)
@@ -50,7 +56,70 @@ public class JsonLdSerialization implements Serialization {
     generator.close();
   }
 
-  private void writeContext(Set<PredicateInfo> context) throws IOException {
+  /**
+   * Starts a result of which the items of one list are written one at a time. Because the predicates of the items
+   * are not known until they are written, the context has to be complete up front and is written before the data.
+   *
+   * @param context the predicates of all entities that will be written
+   * @param path the keys of the fields that lead to the list, starting at the query
+   */
+  public void startStreaming(Collection<PredicateInfo> context, List<String> path) throws IOException {
+    generator.writeStartObject();
+    writeContext(context);
+    generator.writeFieldName("data");
+    generator.writeStartObject();
+    for (int i = 0; i < path.size() - 1; i++) {
+      generator.writeFieldName(path.get(i));
+      generator.writeStartObject();
+    }
+    generator.writeFieldName(path.get(path.size() - 1));
+    streamedDepth = path.size() - 1;
+  }
+
+  /**
+   * Writes the start of the streamed list. A paginated list is written as an object with the cursors and the items.
+   */
+  public void startStreamedList(Optional<String> prevCursor, Optional<String> nextCursor, boolean paginated)
+    throws IOException {
+    if (paginated) {
+      generator.writeStartObject();
+      if (prevCursor.isPresent()) {
+        generator.writeStringField("prevCursor", prevCursor.get());
+      }
+      if (nextCursor.isPresent()) {
+        generator.writeStringField("nextCursor", nextCursor.get());
+      }
+      generator.writeFieldName("items");
+    }
+    generator.writeStartArray();
+    streamedListStarted = true;
+    streamedListPaginated = paginated;
+  }
+
+  public void writeStreamedItem(Serializable item) throws IOException {
+    //the context has already been written
+    dispatcher.dispatch(item, new LinkedHashSet<>());
+  }
+
+  public void finishStreaming() throws IOException {
+    if (streamedListStarted) {
+      generator.writeEndArray();
+      if (streamedListPaginated) {
+        generator.writeEndObject();
+      }
+    } else {
+      generator.writeNull();
+    }
+    for (int i = 0; i < streamedDepth; i++) {
+      generator.writeEndObject();
+    }
+    generator.writeEndObject();
+    generator.writeEndObject();
+    generator.flush();
+    generator.close();
+  }
+
+  private void writeContext(Collection<PredicateInfo> context) throws IOException {
     generator.writeFieldName("@context");
     generator.writeStartObject();
     //ignore the data wrapper by marking it as an index map and as the @graph container
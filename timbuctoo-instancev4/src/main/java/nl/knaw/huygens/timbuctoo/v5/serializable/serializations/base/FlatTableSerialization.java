@@ -29,6 +29,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 public abstract class FlatTableSerialization implements Serialization {
   public static final String SEPARATOR = ".";
   private static final Logger LOG = getLogger(CsvSerialization.class);
+  private TocItem tableColumns;
 
   @Override
   public void serialize(SerializableResult data) throws IOException {
@@ -55,6 +56,25 @@ public abstract class FlatTableSerialization implements Serialization {
 
   }
 
+  /**
+   * Starts a table whose columns are known before its rows are. The rows are then written one at a time with
+   * writeTableRow, so they do not have to be kept in memory.
+   */
+  public void startTable(TocItem columns) throws IOException {
+    tableColumns = columns;
+    initialize(getHeader(columns, ""));
+  }
+
+  public void writeTableRow(Serializable row) throws IOException {
+    List<Value> result = new ArrayList<>();
+    new WriteBodyDispatcher().dispatch(row, tuple(tableColumns, result));
+    writeRow(result);
+  }
+
+  public void finishTable() throws IOException {
+    finish();
+  }
+
   /**
    * is called once at the start of the serialization
    */
@@ -248,7 +268,7 @@ public abstract class FlatTableSerialization implements Serialization {
     }
   }
 
-  class TocItem {
+  public static class TocItem {
     public final Map<String, TocItem> contents = new LinkedHashMap<>();
     public int maxCount = 0;
 
@@ -259,6 +279,17 @@ public abstract class FlatTableSerialization implements Serialization {
       return contents.computeIfAbsent(key + "", x -> new TocItem());
     }
 
+    public void set(int key, TocItem item) {
+      if (maxCount < key) {
+        maxCount = key;
+      }
+      contents.put(key + "", item);
+    }
+
+    public void set(String key, TocItem item) {
+      contents.put(key, item);
+    }
+
     public TocItem add(String key) {
       return contents.computeIfAbsent(key, x -> new TocItem());
     }
@@ -111,6 +111,20 @@ public class TinkerpopSaverTest {
     assertThat(second.vertices(Direction.OUT, NEXT_RAW_ITEM_EDGE_NAME).next(), is(third));
   }
 
+  @Test
+  public void setUploadFinishedStoresTheAmountOfItemsOnTheVre() {
+    TinkerpopSaver instance = new TinkerpopSaver(vres, graphWrapper, VRE_NAME, VRE_NAME, MAX_VERTICES_PER_TRANSACTION,
+      VRE_NAME);
+    instance.addEntity(rawCollection, Maps.newHashMap());
+    instance.addEntity(rawCollection, Maps.newHashMap());
+
+    instance.setUploadFinished(VRE_NAME, Vre.PublishState.MAPPING_CREATION);
+
+    assertThat(graphWrapper.getGraph().traversal().V().hasLabel(Vre.DATABASE_LABEL).next(), is(
+      likeVertex().withProperty(TinkerpopSaver.RAW_ITEM_COUNT, 2L)
+    ));
+  }
+
   @Test
   public void addPropertyDescriptionsAddsThePropertyDescriptionsToTheCollection() {
     final TinkerpopSaver instance = new TinkerpopSaver(vres, graphWrapper, VRE_NAME, VRE_NAME,
@@ -8,20 +8,29 @@ import nl.knaw.huygens.timbuctoo.rml.dto.RdfUri;
 import nl.knaw.huygens.timbuctoo.rml.dto.RdfValue;
 import nl.knaw.huygens.timbuctoo.rml.rdfshim.RdfLiteral;
 import nl.knaw.huygens.timbuctoo.rml.rdfshim.RdfResource;
+import nl.knaw.huygens.timbuctoo.rml.rmldata.ExecutionProgress;
 import nl.knaw.huygens.timbuctoo.rml.rmldata.RmlMappingDocument;
 import nl.knaw.huygens.timbuctoo.rml.rmldata.builders.TriplesMapBuilder;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 import static nl.knaw.huygens.timbuctoo.rml.TripleMatcher.ANY;
@@ -31,6 +40,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -174,6 +184,162 @@ public class RmlMapperTest {
     ));
   }
 
+  @Test
+  public void canGenerateLinksWhenTheTriplesMapsRunInParallel() throws Exception {
+    final String theNamePredicate = "http://example.org/vocab#name";
+    final String theWrittenByPredicate = "http://example.org/vocab#writtenBy";
+    RmlMappingDocument rmlMappingDocument = rmlMappingDocument()
+      .withTripleMap("http://example.org/documentsMap", makeDocumentMap(theWrittenByPredicate))
+      .withTripleMap("http://example.org/personsMap", makePersonMap(theNamePredicate))
+      .build(makePersonDocumentSourceFactory());
+    List<Quad> result = Collections.synchronizedList(new ArrayList<>());
+    RecordingProgress progress = new RecordingProgress();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      rmlMappingDocument.execute(new ThrowingErrorHandler(), executor, result::add, progress);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(result, containsInAnyOrder(
+      likeTriple(
+        uri("http://www.example.org/persons/1"),
+        uri(theNamePredicate),
+        literal("Bill")
+      ),
+      likeTriple(
+        uri("http://www.example.org/documents/1"),
+        uri(theWrittenByPredicate),
+        uri("http://www.example.org/persons/1")
+      )
+    ));
+    assertThat(progress.finished, containsInAnyOrder(
+      "http://example.org/personsMap",
+      "http://example.org/documentsMap"
+    ));
+    //the documents join on the persons, so the documents map only starts when the persons map has finished
+    assertThat(progress.events, contains(
+      "started http://example.org/personsMap",
+      "finished http://example.org/personsMap",
+      "started http://example.org/documentsMap",
+      "finished http://example.org/documentsMap"
+    ));
+  }
+
+  @Test
+  public void runsTheTriplesMapsThatDoNotJoinOnEachOtherAtTheSameTime() throws Exception {
+    //each data source only returns its rows when both are being read
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    final Function<RdfResource, Optional<DataSource>> sourceFactory = logicalSource -> Optional.of(new TestDataSource(
+      () -> {
+        bothStarted.countDown();
+        try {
+          if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The other triples map did not start");
+          }
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return Lists.<Map<String, String>>newArrayList(ImmutableMap.of("rdfUri", logicalSource.asIri().get()))
+          .iterator();
+      }
+    ));
+    RmlMappingDocument rmlMappingDocument = rmlMappingDocument()
+      .withTripleMap("http://example.org/personsMap", makePersonMap("http://example.org/vocab#name"))
+      .withTripleMap("http://example.org/documentsMap", trip -> trip
+        .withLogicalSource(rdf("http://example.org/documents"))
+        .withSubjectMap(sm -> sm
+          .withClass(rdf(EXAMPLE_CLASS))
+          .withTermMap(tm -> tm.withColumnTerm("rdfUri"))
+        )
+      )
+      .build(sourceFactory);
+    List<Quad> result = Collections.synchronizedList(new ArrayList<>());
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      rmlMappingDocument.execute(new ThrowingErrorHandler(), executor, result::add, new RecordingProgress());
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(result, contains(likeTriple(uri("http://example.org/documents"), ANY, uri(EXAMPLE_CLASS))));
+  }
+
+  @Test(timeout = 10_000)
+  public void stopsTheOtherTriplesMapsWhenOneFails() throws Exception {
+    //the documents never run out, so the execution only finishes when the documents map is stopped
+    final AtomicInteger documentsRead = new AtomicInteger();
+    final CountDownLatch documentsSent = new CountDownLatch(1);
+    //the rows of a triples map are closed when it stops
+    final CountDownLatch documentsStopped = new CountDownLatch(1);
+    final Function<RdfResource, Optional<DataSource>> sourceFactory = logicalSource -> Optional.of(new TestDataSource(
+      () -> new Iterator<Map<String, String>>() {
+        @Override
+        public boolean hasNext() {
+          if (logicalSource.asIri().get().equals("http://example.org/persons")) {
+            //fail while the documents map is running
+            try {
+              documentsSent.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("The persons could not be read");
+          }
+          return true;
+        }
+
+        @Override
+        public Map<String, String> next() {
+          return ImmutableMap.of("rdfUri", "http://example.org/documents/" + documentsRead.getAndIncrement());
+        }
+      }
+    ) {
+      @Override
+      public Stream<Row> getRows(ErrorHandler defaultErrorHandler) {
+        return super.getRows(defaultErrorHandler).onClose(() -> {
+          if (logicalSource.asIri().get().equals("http://example.org/documents")) {
+            documentsStopped.countDown();
+          }
+        });
+      }
+    });
+    RmlMappingDocument rmlMappingDocument = rmlMappingDocument()
+      .withTripleMap("http://example.org/personsMap", makePersonMap("http://example.org/vocab#name"))
+      .withTripleMap("http://example.org/documentsMap", trip -> trip
+        .withLogicalSource(rdf("http://example.org/documents"))
+        .withSubjectMap(sm -> sm
+          .withClass(rdf(EXAMPLE_CLASS))
+          .withTermMap(tm -> tm.withColumnTerm("rdfUri"))
+        )
+      )
+      .build(sourceFactory);
+    final AtomicInteger sent = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      rmlMappingDocument.execute(new ThrowingErrorHandler(), executor, quad -> {
+        sent.incrementAndGet();
+        documentsSent.countDown();
+      }, new RecordingProgress());
+      fail("The failure of the persons map should be rethrown");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), equalTo("The persons could not be read"));
+      //the documents map has stopped before execute returned
+      assertThat(documentsStopped.getCount(), equalTo(0L));
+      final int readWhenReturned = documentsRead.get();
+      final int sentWhenReturned = sent.get();
+      //the documents never run out, so the threads only end when nothing reads them anymore
+      executor.shutdown();
+      assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), equalTo(true));
+      assertThat(documentsRead.get(), equalTo(readWhenReturned));
+      assertThat(sent.get(), equalTo(sentWhenReturned));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test
   public void canHandleMappingsInTheWrongOrder() {
     final String theNamePredicate = "http://example.org/vocab#name";
@@ -607,4 +773,25 @@ public class RmlMapperTest {
       return Optional.empty();
     }
   }
+
+  private static class RecordingProgress implements ExecutionProgress {
+    private final List<String> finished = Collections.synchronizedList(new ArrayList<>());
+    //the starts and finishes in the order in which they happened
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void triplesMapStarted(String uri) {
+      events.add("started " + uri);
+    }
+
+    @Override
+    public void triplesMapProgressed(String uri, long quadCount) {
+    }
+
+    @Override
+    public void triplesMapFinished(String uri, long quadCount) {
+      finished.add(uri);
+      events.add("finished " + uri);
+    }
+  }
 }
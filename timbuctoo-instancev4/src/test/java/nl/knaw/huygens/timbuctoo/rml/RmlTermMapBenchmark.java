@@ -0,0 +1,89 @@
+package nl.knaw.huygens.timbuctoo.rml;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import nl.knaw.huygens.timbuctoo.rml.datasource.jexl.JexlRowFactory;
+import nl.knaw.huygens.timbuctoo.rml.datasource.joinhandlers.HashMapBasedJoinHandler;
+import nl.knaw.huygens.timbuctoo.rml.rmldata.termmaps.RrTemplate;
+import nl.knaw.huygens.timbuctoo.rml.rmldata.termmaps.TermType;
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.MapContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares generating the subjects of rows the way RrTemplate and JexlRowFactory used to (matching the template with
+ * a regex for each row and evaluating the custom field in a new MapContext each time it is used) with the pre split
+ * template and the row backed context. Run it with the main method, it is not part of the test suite.
+ */
+public class RmlTermMapBenchmark {
+  private static final String TEMPLATE = "http://example.org/persons/{id}/{fullName}/{fullName}";
+  private static final String FULL_NAME = "v.first + ' ' + v.last";
+  private static final int ROWS = 500_000;
+
+  public static void main(String[] args) {
+    //warm up the jit before measuring
+    run("warmup", RmlTermMapBenchmark::before);
+    run("before", RmlTermMapBenchmark::before);
+    run("after", RmlTermMapBenchmark::after);
+  }
+
+  private static void run(String name, Runnable benchmark) {
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    benchmark.run();
+    final long millis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+    System.out.println(String.format("%-8s %6d ms (%d rows/s)", name, millis, (ROWS * 1000L) / Math.max(millis, 1)));
+  }
+
+  private static void before() {
+    final JexlExpression fullName = new JexlBuilder().create().createExpression(FULL_NAME);
+    final Pattern pattern = Pattern.compile(
+      "(?<!\\\\)(?:\\\\\\\\)*\\{((?:[^\\\\\\}]|(?:(?<!\\\\)(?:\\\\\\\\)+)|(?:\\\\\\})+)+)\\}"
+    );
+    long length = 0;
+    for (int i = 0; i < ROWS; i++) {
+      final Map<String, String> data = row(i);
+      Matcher matcher = pattern.matcher(TEMPLATE);
+      StringBuffer result = new StringBuffer();
+      while (matcher.find()) {
+        String value;
+        if (data.containsKey(matcher.group(1))) {
+          value = data.get(matcher.group(1));
+        } else {
+          MapContext context = new MapContext();
+          context.set("v", data);
+          value = fullName.evaluate(context).toString();
+        }
+        matcher.appendReplacement(result, value);
+      }
+      matcher.appendTail(result);
+      length += result.length();
+    }
+    System.out.println("generated " + length + " characters");
+  }
+
+  private static void after() {
+    final RrTemplate template = new RrTemplate(TEMPLATE, TermType.IRI, null);
+    final JexlRowFactory rowFactory = new JexlRowFactory(ImmutableMap.of("fullName", FULL_NAME),
+      new HashMapBasedJoinHandler());
+    final ErrorHandler errorHandler = new ThrowingErrorHandler();
+    long length = 0;
+    for (int i = 0; i < ROWS; i++) {
+      length += template.generateValue(rowFactory.makeRow(row(i), errorHandler)).get().getContent().length();
+    }
+    System.out.println("generated " + length + " characters");
+  }
+
+  private static Map<String, String> row(int index) {
+    Map<String, String> data = new HashMap<>();
+    data.put("id", "" + index);
+    data.put("first", "first" + index);
+    data.put("last", "last" + index);
+    return data;
+  }
+}
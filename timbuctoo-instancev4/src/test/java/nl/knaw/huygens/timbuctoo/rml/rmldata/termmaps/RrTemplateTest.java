@@ -51,4 +51,35 @@ public class RrTemplateTest {
     );
   }
 
+  @Test
+  public void insertsValuesWithDollarSignsAndBackslashesAsTheyAre() throws Exception {
+    TestRow row = new TestRow(
+      ImmutableMap.of("foo", "costs $1 or \\$2", "bar", "C:\\path\\"),
+      ImmutableMap.of(),
+      new ThrowingErrorHandler()
+    );
+    RrTemplate rrTemplate = new RrTemplate("{foo} at {bar}", TermType.Literal, XSD_STRING);
+
+    Optional<QuadPart> actual = rrTemplate.generateValue(row);
+    assertThat(actual, is(Optional.of(new RdfValue("costs $1 or \\$2 at C:\\path\\", XSD_STRING))));
+  }
+
+  @Test
+  public void leavesEscapedCurlyBracesInTheTemplateAsTheyAre() throws Exception {
+    TestRow row = new TestRow(ImmutableMap.of("foo", "1", "as", "2"), ImmutableMap.of(), new ThrowingErrorHandler());
+    RrTemplate rrTemplate = new RrTemplate("http://jan/{foo}?really=\\{as\\}", TermType.Literal, XSD_STRING);
+
+    Optional<QuadPart> actual = rrTemplate.generateValue(row);
+    assertThat(actual, is(Optional.of(new RdfValue("http://jan/1?really=\\{as\\}", XSD_STRING))));
+  }
+
+  @Test
+  public void usesTheColumnNameWithEscapedCurlyBracesAsItIsWritten() throws Exception {
+    TestRow row = new TestRow(ImmutableMap.of("fo\\}o", "bar"), ImmutableMap.of(), new ThrowingErrorHandler());
+    RrTemplate rrTemplate = new RrTemplate("http://jan/{fo\\}o}/", TermType.Literal, XSD_STRING);
+
+    Optional<QuadPart> actual = rrTemplate.generateValue(row);
+    assertThat(actual, is(Optional.of(new RdfValue("http://jan/bar/", XSD_STRING))));
+  }
+
 }
@@ -0,0 +1,141 @@
+package nl.knaw.huygens.timbuctoo.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class RmlJobExecutorTest {
+  private static final Runnable NO_CANCEL_HANDLER = () -> {
+  };
+  private RmlJobExecutor instance;
+  private CountDownLatch blocker;
+  private CountDownLatch blockingJobStarted;
+
+  @Before
+  public void setUp() throws Exception {
+    instance = new RmlJobExecutor(1);
+    blocker = new CountDownLatch(1);
+    blockingJobStarted = new CountDownLatch(1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    blocker.countDown();
+    instance.stop();
+  }
+
+  @Test
+  public void runsTheSmallestWaitingMappingFirst() throws Exception {
+    List<String> executed = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(3);
+    instance.submit("blocking", 1, job -> block(), NO_CANCEL_HANDLER);
+    assertThat(blockingJobStarted.await(5, TimeUnit.SECONDS), is(true));
+
+    instance.submit("huge", 1_000_000, job -> record(executed, done, "huge"), NO_CANCEL_HANDLER);
+    instance.submit("small", 10, job -> record(executed, done, "small"), NO_CANCEL_HANDLER);
+    instance.submit("medium", 1_000, job -> record(executed, done, "medium"), NO_CANCEL_HANDLER);
+    blocker.countDown();
+
+    assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+    assertThat(executed, contains("small", "medium", "huge"));
+  }
+
+  @Test
+  public void aCancelledQueuedJobDoesNotRun() throws Exception {
+    List<String> executed = new CopyOnWriteArrayList<>();
+    CountDownLatch cancelled = new CountDownLatch(1);
+    instance.submit("blocking", 1, job -> block(), NO_CANCEL_HANDLER);
+    assertThat(blockingJobStarted.await(5, TimeUnit.SECONDS), is(true));
+    RmlJob queued = instance.submit("queued", 1, job -> executed.add("queued"), cancelled::countDown);
+
+    assertThat(instance.cancel(queued.getId()), is(true));
+    blocker.countDown();
+
+    assertThat(cancelled.getCount(), is(0L));
+    assertThat(queued.getState(), is(RmlJob.State.CANCELLED));
+    instance.stop();
+    assertThat(executed.isEmpty(), is(true));
+  }
+
+  @Test
+  public void aRunningJobStopsWhenItIsCancelled() throws Exception {
+    CountDownLatch stopped = new CountDownLatch(1);
+    RmlJob running = instance.submit("running", 1, job -> {
+      blockingJobStarted.countDown();
+      while (!job.isCancelRequested()) {
+        Thread.yield();
+      }
+      stopped.countDown();
+      throw new CancellationException();
+    }, NO_CANCEL_HANDLER);
+    assertThat(blockingJobStarted.await(5, TimeUnit.SECONDS), is(true));
+
+    assertThat(instance.cancel(running.getId()), is(true));
+
+    assertThat(stopped.await(5, TimeUnit.SECONDS), is(true));
+    instance.stop();
+    assertThat(running.getState(), is(RmlJob.State.CANCELLED));
+  }
+
+  @Test
+  public void aJobThatIsDoneCanNotBeCancelled() throws Exception {
+    CountDownLatch bodyRan = new CountDownLatch(1);
+    RmlJob finished = instance.submit("finished", 1, job -> bodyRan.countDown(), NO_CANCEL_HANDLER);
+    assertThat(bodyRan.await(5, TimeUnit.SECONDS), is(true));
+    instance.stop();
+
+    assertThat(instance.cancel(finished.getId()), is(false));
+    assertThat(finished.getState(), is(RmlJob.State.FINISHED));
+  }
+
+  @Test
+  public void aJobThatThrowsIsFailed() throws Exception {
+    CountDownLatch bodyRan = new CountDownLatch(1);
+    RmlJob failing = instance.submit("failing", 1, job -> {
+      bodyRan.countDown();
+      throw new IllegalStateException("The mapping failed");
+    }, NO_CANCEL_HANDLER);
+    assertThat(bodyRan.await(5, TimeUnit.SECONDS), is(true));
+    instance.stop();
+
+    assertThat(failing.getState(), is(RmlJob.State.FAILED));
+    assertThat(failing.getStatus(), is("The mapping failed"));
+    assertThat(instance.cancel(failing.getId()), is(false));
+  }
+
+  @Test
+  public void aJobThatCompletesAfterACancelRequestIsFinished() throws Exception {
+    RmlJob running = instance.submit("running", 1, job -> block(), NO_CANCEL_HANDLER);
+    assertThat(blockingJobStarted.await(5, TimeUnit.SECONDS), is(true));
+
+    assertThat(instance.cancel(running.getId()), is(true));
+    blocker.countDown();
+    instance.stop();
+
+    assertThat(running.getState(), is(RmlJob.State.FINISHED));
+  }
+
+  private void block() {
+    blockingJobStarted.countDown();
+    try {
+      blocker.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void record(List<String> executed, CountDownLatch done, String name) {
+    executed.add(name);
+    done.countDown();
+  }
+}
@@ -0,0 +1,88 @@
+package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.je.CacheMode;
+import com.sleepycat.je.Environment;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.sleepycat.bind.tuple.TupleBinding.getPrimitiveBinding;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class BdbPersistentEnvironmentCreatorTest {
+  private static final TupleBinding<String> STRING_BINDER = getPrimitiveBinding(String.class);
+  private static final int RESERVED_MEGABYTES = 2;
+
+  private File databaseLocation;
+  private BdbPersistentEnvironmentCreator instance;
+
+  @Before
+  public void setUp() throws Exception {
+    databaseLocation = Files.createTempDir();
+    instance = new BdbPersistentEnvironmentCreator(
+      databaseLocation.getAbsolutePath(),
+      null,
+      ImmutableMap.of("user__reserved", RESERVED_MEGABYTES),
+      null
+    );
+    instance.start();
+    instance.getDatabase("user", "reserved", "test", false, STRING_BINDER, STRING_BINDER).put("key", "value");
+    instance.getDatabase("user", "shared", "test", false, STRING_BINDER, STRING_BINDER).put("key", "value");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    instance.stop();
+    FileUtils.deleteDirectory(databaseLocation);
+  }
+
+  @Test
+  public void aDataSetWithAReservedCacheSizeGetsACacheOfThatSize() {
+    Environment reserved = instance.environmentMap.get("user_reserved");
+
+    assertThat(reserved.getConfig().getSharedCache(), is(false));
+    assertThat(reserved.getConfig().getCacheSize(), is(RESERVED_MEGABYTES * 1024L * 1024L));
+  }
+
+  @Test
+  public void theOtherDataSetsUseTheSharedCache() {
+    Environment shared = instance.environmentMap.get("user_shared");
+
+    assertThat(shared.getConfig().getSharedCache(), is(true));
+  }
+
+  @Test
+  public void theCacheBytesAreOnlyReportedForEnvironmentsWithAReservedCache() {
+    Map<String, CacheStatistics> statistics = instance.getCacheStatistics();
+
+    Optional<Long> reservedBytes = statistics.get("user_reserved").getCacheBytes();
+    assertThat(reservedBytes.isPresent(), is(true));
+    assertThat(reservedBytes.get(), is(greaterThan(0L)));
+    assertThat(statistics.get("user_shared").getCacheBytes().isPresent(), is(false));
+    assertThat(instance.getSharedCacheBytes(), is(greaterThan(0L)));
+  }
+
+  @Test
+  public void anImportingEnvironmentUsesTheImportCacheMode() {
+    instance.setImporting("user", "shared", true);
+
+    Environment shared = instance.environmentMap.get("user_shared");
+    assertThat(shared.getMutableConfig().getCacheMode(), is(CacheMode.EVICT_LN));
+    assertThat(instance.getCacheStatistics().get("user_shared").isImporting(), is(true));
+
+    instance.setImporting("user", "shared", false);
+
+    assertThat(shared.getMutableConfig().getCacheMode(), is(not(CacheMode.EVICT_LN)));
+  }
+}
@@ -1,11 +1,13 @@
 package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
 
 import com.sleepycat.bind.tuple.TupleBinding;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
 import nl.knaw.huygens.timbuctoo.v5.dropwizard.BdbNonPersistentEnvironmentCreator;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -98,6 +100,88 @@ public class BdbWrapperTest {
     }
   }
 
+  @Test
+  public void writeBatchAppliesAllOperationsInOrder() throws Exception {
+    int changes = database.writeBatch()
+      .put("cc", "aa")
+      .put("cc", "bb")
+      .delete("aa", "bb")
+      .delete("cc", "aa")
+      .apply();
+
+    assertThat(changes, is(4));
+    try (Stream<String> stream = database.databaseGetter().getAll().getKeys()) {
+      assertThat(stream.collect(toList()), contains("ab", "ab", "ab", "ab", "bb", "cc"));
+    }
+  }
+
+  @Test
+  public void putCanBeCalledFromSeveralThreads() throws Exception {
+    List<Thread> threads = new ArrayList<>();
+    for (int thread = 0; thread < 4; thread++) {
+      final String prefix = "thread" + thread;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 250; i++) {
+          try {
+            database.put(prefix, "value" + i);
+          } catch (DatabaseWriteException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    try (Stream<String> stream = database.databaseGetter()
+      .partialKey("thread", (prefix, key) -> key.startsWith(prefix))
+      .dontSkip()
+      .forwards()
+      .getValues()) {
+      assertThat(stream.count(), is(1000L));
+    }
+  }
+
+  @Test
+  public void writeBatchesAndPutsToTheSameKeysCanRunAtTheSameTime() throws Exception {
+    BdbWrapper<String, String> db = creator.getDatabase("user", "batches", "test", false, STRING_BINDER,
+      STRING_BINDER);
+    List<Thread> threads = new ArrayList<>();
+    for (int thread = 0; thread < 4; thread++) {
+      final boolean batched = thread % 2 == 0;
+      final String value = "thread" + thread;
+      threads.add(new Thread(() -> {
+        try {
+          BdbWrapper<String, String>.WriteBatch batch = db.writeBatch();
+          for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+              if (batched) {
+                batch.put("key" + i, value + round);
+              } else {
+                db.put("key" + i, value + round);
+              }
+            }
+            batch.apply();
+          }
+        } catch (DatabaseWriteException e) {
+          throw new RuntimeException(e);
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join(10_000);
+      assertThat(thread.isAlive(), is(false));
+    }
+
+    try (Stream<String> stream = db.databaseGetter().getAll().getKeys()) {
+      assertThat(stream.count(), is(100L));
+    }
+    db.close();
+  }
+
   @Test
   public void getAllItems() throws Exception {
     final Stream<String> stream = database.databaseGetter()
@@ -0,0 +1,158 @@
+package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.io.Files;
+import com.sleepycat.bind.EntryBinding;
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.CursorConfig;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static com.sleepycat.bind.tuple.TupleBinding.getPrimitiveBinding;
+import static com.sleepycat.je.OperationStatus.SUCCESS;
+
+/**
+ * Compares writing from several threads to a database without duplicates (the kind of database that BdbWrapper
+ * locks) with the previous implementation of put, with the striped locks and with write batches. Run it with the
+ * main method, it is not part of the test suite.
+ */
+public class BdbWrapperWriteBenchmark {
+  private static final TupleBinding<String> STRING_BINDER = getPrimitiveBinding(String.class);
+  private static final int THREADS = 4;
+  private static final int WRITES_PER_THREAD = 200_000;
+  private static final int BATCH_SIZE = 1_000;
+
+  public static void main(String[] args) throws Exception {
+    final File dbHome = Files.createTempDir();
+    EnvironmentConfig configuration = new EnvironmentConfig();
+    configuration.setTransactional(true);
+    configuration.setAllowCreate(true);
+    final Environment environment = new Environment(dbHome, configuration);
+    try {
+      //warm up the jit before measuring
+      run(environment, "warmup", BdbWrapperWriteBenchmark::previous);
+      run(environment, "previous", BdbWrapperWriteBenchmark::previous);
+      run(environment, "striped locks", BdbWrapperWriteBenchmark::stripedLocks);
+      run(environment, "batches", BdbWrapperWriteBenchmark::batches);
+    } finally {
+      environment.close();
+      FileUtils.deleteDirectory(dbHome);
+    }
+  }
+
+  private static void run(Environment environment, String name, Writer writer) throws Exception {
+    DatabaseConfig config = new DatabaseConfig();
+    config.setAllowCreate(true);
+    config.setDeferredWrite(true);
+    config.setSortedDuplicates(false);
+    final Database database = environment.openDatabase(null, name.replace(' ', '_'), config);
+    final BdbWrapper<String, String> wrapper =
+      new BdbWrapper<>(environment, database, config, STRING_BINDER, STRING_BINDER);
+    final PreviousPut previous = new PreviousPut(database, STRING_BINDER, STRING_BINDER);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      final int thread = i;
+      threads.add(new Thread(() -> {
+        try {
+          writer.write(wrapper, previous, thread);
+        } catch (DatabaseWriteException e) {
+          throw new RuntimeException(e);
+        }
+      }));
+    }
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    final long millis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+    System.out.println(String.format("%-14s %6d ms (%d writes/s)", name, millis,
+      (THREADS * WRITES_PER_THREAD * 1000L) / Math.max(millis, 1)));
+    wrapper.close();
+  }
+
+  private static void previous(BdbWrapper<String, String> database, PreviousPut previous, int thread)
+    throws DatabaseWriteException {
+    for (int i = 0; i < WRITES_PER_THREAD; i++) {
+      previous.put(key(thread, i), "value" + i);
+    }
+  }
+
+  private static void stripedLocks(BdbWrapper<String, String> database, PreviousPut previous, int thread)
+    throws DatabaseWriteException {
+    for (int i = 0; i < WRITES_PER_THREAD; i++) {
+      database.put(key(thread, i), "value" + i);
+    }
+  }
+
+  private static void batches(BdbWrapper<String, String> database, PreviousPut previous, int thread)
+    throws DatabaseWriteException {
+    BdbWrapper<String, String>.WriteBatch batch = database.writeBatch();
+    for (int i = 0; i < WRITES_PER_THREAD; i++) {
+      batch.put(key(thread, i), "value" + i);
+      if (batch.size() == BATCH_SIZE) {
+        batch.apply();
+      }
+    }
+    batch.apply();
+  }
+
+  private static String key(int thread, int index) {
+    return "http://example.org/thread" + thread + "/subject" + (index % 10_000);
+  }
+
+  private interface Writer {
+    void write(BdbWrapper<String, String> database, PreviousPut previous, int thread) throws DatabaseWriteException;
+  }
+
+  /**
+   * A copy of BdbWrapper.put on a database without duplicates as it was before the striped locks: every write of the
+   * database shares one pair of entries and is synchronized on them.
+   */
+  private static class PreviousPut {
+    private final Database database;
+    private final EntryBinding<String> keyBinder;
+    private final EntryBinding<String> valueBinder;
+    private final DatabaseEntry keyEntry = new DatabaseEntry();
+    private final DatabaseEntry valueEntry = new DatabaseEntry();
+
+    PreviousPut(Database database, EntryBinding<String> keyBinder, EntryBinding<String> valueBinder) {
+      this.database = database;
+      this.keyBinder = keyBinder;
+      this.valueBinder = valueBinder;
+    }
+
+    public boolean put(String key, String value) throws DatabaseWriteException {
+      synchronized (keyEntry) {
+        try {
+          keyBinder.objectToEntry(key, keyEntry);
+          try (Cursor cursor = database.openCursor(null, CursorConfig.DEFAULT)) {
+            OperationStatus searchResult = cursor.getSearchKey(keyEntry, valueEntry, LockMode.DEFAULT);
+            if (searchResult == SUCCESS && Objects.equals(value, valueBinder.entryToObject(valueEntry))) {
+              return false;
+            } else {
+              valueBinder.objectToEntry(value, valueEntry);
+              return database.put(null, keyEntry, valueEntry) != null;
+            }
+          }
+        } catch (Exception e) {
+          throw new DatabaseWriteException(e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package nl.knaw.huygens.timbuctoo.v5.berkeleydb;
+
+import com.google.common.io.Files;
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static com.sleepycat.bind.tuple.TupleBinding.getPrimitiveBinding;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class CursorTrackerTest {
+  private static final TupleBinding<String> STRING_BINDER = getPrimitiveBinding(String.class);
+  private File dbHome;
+  private Environment environment;
+  private Database database;
+  private DatabaseConfig config;
+
+  @Before
+  public void setUp() throws Exception {
+    dbHome = Files.createTempDir();
+    EnvironmentConfig environmentConfig = new EnvironmentConfig();
+    environmentConfig.setAllowCreate(true);
+    environment = new Environment(dbHome, environmentConfig);
+    config = new DatabaseConfig();
+    config.setAllowCreate(true);
+    config.setDeferredWrite(true);
+    database = environment.openDatabase(null, "test", config);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    environment.close();
+    FileUtils.deleteDirectory(dbHome);
+  }
+
+  @Test
+  public void countsTheOpenCursorsWithoutRecordingTheirOrigin() throws Exception {
+    CursorTracker tracker = new CursorTracker(CursorTracker.Mode.OFF, null);
+    BdbWrapper<String, String> wrapper = new BdbWrapper<>(environment, database, config, STRING_BINDER,
+      STRING_BINDER, tracker);
+    wrapper.put("key", "value");
+
+    try (Stream<String> values = wrapper.databaseGetter().getAll().getValues()) {
+      Iterator<String> iterator = values.iterator();
+      iterator.next();
+      assertThat(tracker.getOpenCursorCount(), is(1));
+      assertThat(tracker.describeOpenCursors(0).get(0), not(containsString("opened at")));
+    }
+    assertThat(tracker.getOpenCursorCount(), is(0));
+    wrapper.close();
+  }
+
+  @Test
+  public void recordsWhereTheCursorWasOpenedInFullMode() throws Exception {
+    CursorTracker tracker = CursorTracker.full();
+    BdbWrapper<String, String> wrapper = new BdbWrapper<>(environment, database, config, STRING_BINDER,
+      STRING_BINDER, tracker);
+    wrapper.put("key", "value");
+
+    try (Stream<String> values = wrapper.databaseGetter().getAll().getValues()) {
+      values.iterator().hasNext();
+      assertThat(tracker.describeOpenCursors(0).get(0), containsString(CursorTrackerTest.class.getName()));
+    }
+    wrapper.close();
+  }
+
+  @Test
+  public void closeClosesTheCursorsThatAreStillOpen() throws Exception {
+    CursorTracker tracker = CursorTracker.full();
+    BdbWrapper<String, String> wrapper = new BdbWrapper<>(environment, database, config, STRING_BINDER,
+      STRING_BINDER, tracker);
+    wrapper.put("key", "value");
+
+    Stream<String> values = wrapper.databaseGetter().getAll().getValues();
+    assertThat(values.iterator().next(), is("value"));
+    wrapper.close();
+
+    assertThat(tracker.getOpenCursorCount(), is(0));
+    assertThat(tracker.describeOpenCursors(0), is(empty()));
+  }
+
+  @Test
+  public void tracksTheCursorOfForEachValueOf() throws Exception {
+    CursorTracker tracker = new CursorTracker(CursorTracker.Mode.OFF, null);
+    BdbWrapper<String, String> wrapper = new BdbWrapper<>(environment, database, config, STRING_BINDER,
+      STRING_BINDER, tracker);
+    wrapper.put("key", "value");
+    final int[] openWhileIterating = new int[]{0};
+
+    wrapper.forEachValueOf(Collections.singletonList("key"),
+      (key, value) -> openWhileIterating[0] = tracker.getOpenCursorCount(environment));
+
+    assertThat(openWhileIterating[0], is(1));
+    assertThat(tracker.getOpenCursorCount(), is(0));
+    wrapper.close();
+  }
+}
@@ -0,0 +1,204 @@
+package nl.knaw.huygens.timbuctoo.v5.dataset;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
+import nl.knaw.huygens.timbuctoo.v5.datastores.resourcesync.ResourceSync;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.BdbNonPersistentEnvironmentCreator;
+import nl.knaw.huygens.timbuctoo.v5.filestorage.FileStorageFactory;
+import nl.knaw.huygens.timbuctoo.v5.rdfio.RdfIoFactory;
+import nl.knaw.huygens.timbuctoo.v5.security.PermissionFetcher;
+import nl.knaw.huygens.timbuctoo.v5.security.dto.Permission;
+import nl.knaw.huygens.timbuctoo.v5.security.dto.User;
+import nl.knaw.huygens.timbuctoo.v5.util.TimbuctooRdfIdHelper;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DataSetRepositoryConcurrencyTest {
+  private static final User USER = User.create(null, "user");
+  private static final String OWNER = "uuser";
+  private static final long LOOKUP_MILLIS = 500;
+
+  private File tempFile;
+  private BlockingPermissionFetcher permissionFetcher;
+  private DataSetRepository dataSetRepository;
+  private ExecutorService threads;
+
+  @Before
+  public void init() throws Exception {
+    tempFile = Files.createTempDir();
+    ResourceSync resourceSync = mock(ResourceSync.class);
+    when(resourceSync.getDataSetDescriptionFile(anyString(), anyString())).thenReturn(new File(tempFile, "test.xml"));
+    //a mock would record each of the millions of lookups
+    permissionFetcher = new BlockingPermissionFetcher();
+    dataSetRepository = new DataSetRepository(
+      Executors.newSingleThreadExecutor(),
+      permissionFetcher,
+      ImmutableDataSetConfiguration.builder()
+        .dataSetMetadataLocation(tempFile.getAbsolutePath())
+        .rdfIo(mock(RdfIoFactory.class, RETURNS_DEEP_STUBS))
+        .fileStorage(mock(FileStorageFactory.class, RETURNS_DEEP_STUBS))
+        .resourceSync(resourceSync)
+        .build(),
+      new BdbNonPersistentEnvironmentCreator(),
+      new TimbuctooRdfIdHelper("http://example.org/timbuctoo/"),
+      combinedId -> {
+      },
+      false
+    );
+    threads = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void cleanUp() throws Exception {
+    permissionFetcher.release();
+    threads.shutdownNow();
+    FileUtils.deleteDirectory(tempFile);
+  }
+
+  @Test
+  public void lookupsDoNotWaitForTheCreationOfADataSet() throws Exception {
+    dataSetRepository.createDataSet(USER, "existing");
+    permissionFetcher.blockInitialization();
+
+    Future<?> creation = threads.submit(() -> dataSetRepository.createDataSet(USER, "slow"));
+    assertThat(permissionFetcher.initializationStarted.await(5, TimeUnit.SECONDS), is(true));
+
+    Future<Boolean> lookup = threads.submit(() -> dataSetRepository.getDataSet(USER, OWNER, "existing").isPresent());
+    assertThat(lookup.get(5, TimeUnit.SECONDS), is(true));
+    assertThat(dataSetRepository.dataSetExists(OWNER, "slow"), is(false));
+
+    permissionFetcher.release();
+    creation.get(5, TimeUnit.SECONDS);
+    assertThat(dataSetRepository.dataSetExists(OWNER, "slow"), is(true));
+  }
+
+  @Test
+  public void concurrentCreationsOfADataSetReturnTheSameInstance() throws Exception {
+    List<Future<DataSet>> creations = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      creations.add(threads.submit(() -> dataSetRepository.createDataSet(USER, "dataset")));
+    }
+
+    DataSet first = creations.get(0).get(10, TimeUnit.SECONDS);
+    for (Future<DataSet> creation : creations) {
+      assertThat(creation.get(10, TimeUnit.SECONDS), is(sameInstance(first)));
+    }
+  }
+
+  @Test
+  public void lookupsKeepWorkingWhileDataSetsAreCreatedAndRemoved() throws Exception {
+    dataSetRepository.createDataSet(USER, "stable");
+
+    //the throughput of the lookups is measured by DataSetRepositoryLookupBenchmark
+    long lookups = lookupWhileChanging(Runtime.getRuntime().availableProcessors());
+
+    assertThat(lookups, is(greaterThan(0L)));
+  }
+
+  /**
+   * Looks up a data set from several threads while another thread creates and removes data sets. Returns the amount
+   * of successful lookups.
+   */
+  private long lookupWhileChanging(int readers) throws Exception {
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<Long>> lookups = new ArrayList<>();
+    for (int i = 0; i < readers; i++) {
+      lookups.add(threads.submit(() -> {
+        start.await();
+        long count = 0;
+        while (running.get()) {
+          if (!dataSetRepository.getDataSet(USER, OWNER, "stable").isPresent()) {
+            throw new IllegalStateException("The data set disappeared");
+          }
+          count++;
+        }
+        return count;
+      }));
+    }
+    Future<?> changes = threads.submit(() -> {
+      start.await();
+      int counter = 0;
+      while (running.get()) {
+        String name = "temporary" + counter++;
+        dataSetRepository.createDataSet(USER, name);
+        dataSetRepository.removeDataSet(OWNER, name, USER);
+      }
+      return null;
+    });
+
+    start.countDown();
+    Thread.sleep(LOOKUP_MILLIS);
+    running.set(false);
+
+    changes.get(10, TimeUnit.SECONDS);
+    long total = 0;
+    for (Future<Long> lookup : lookups) {
+      total += lookup.get(10, TimeUnit.SECONDS);
+    }
+    return total;
+  }
+
+  private static class BlockingPermissionFetcher implements PermissionFetcher {
+    private final Set<Permission> permissions = Sets.newHashSet(Permission.READ, Permission.WRITE, Permission.ADMIN);
+    private volatile CountDownLatch initializationStarted = new CountDownLatch(1);
+    private volatile CountDownLatch blocker = new CountDownLatch(0);
+
+    void blockInitialization() {
+      initializationStarted = new CountDownLatch(1);
+      blocker = new CountDownLatch(1);
+    }
+
+    void release() {
+      blocker.countDown();
+    }
+
+    @Override
+    public Set<Permission> getPermissions(User user, DataSetMetaData dataSetMetadata) {
+      return permissions;
+    }
+
+    @Override
+    public Set<Permission> getOldPermissions(User user, String vreId) {
+      return permissions;
+    }
+
+    @Override
+    public void initializeOwnerAuthorization(User user, String ownerId, String dataSetId) {
+      initializationStarted.countDown();
+      try {
+        blocker.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void removeAuthorizations(String combinedId) {
+    }
+  }
+}
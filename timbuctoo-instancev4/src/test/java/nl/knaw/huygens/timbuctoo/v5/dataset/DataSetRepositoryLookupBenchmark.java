@@ -0,0 +1,137 @@
+package nl.knaw.huygens.timbuctoo.v5.dataset;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
+import nl.knaw.huygens.timbuctoo.v5.datastores.resourcesync.ResourceSync;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.BdbNonPersistentEnvironmentCreator;
+import nl.knaw.huygens.timbuctoo.v5.filestorage.FileStorageFactory;
+import nl.knaw.huygens.timbuctoo.v5.rdfio.RdfIoFactory;
+import nl.knaw.huygens.timbuctoo.v5.security.PermissionFetcher;
+import nl.knaw.huygens.timbuctoo.v5.security.dto.Permission;
+import nl.knaw.huygens.timbuctoo.v5.security.dto.User;
+import nl.knaw.huygens.timbuctoo.v5.util.TimbuctooRdfIdHelper;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures how the data set lookups scale with the amount of threads, while another thread creates and removes data
+ * sets. Run it with the main method, it is not part of the test suite.
+ */
+public class DataSetRepositoryLookupBenchmark {
+  private static final User USER = User.create(null, "user");
+  private static final String OWNER = "uuser";
+  private static final long MEASURE_MILLIS = 2_000;
+
+  public static void main(String[] args) throws Exception {
+    final File tempFile = Files.createTempDir();
+    final ExecutorService threads = Executors.newCachedThreadPool();
+    try {
+      ResourceSync resourceSync = mock(ResourceSync.class);
+      when(resourceSync.getDataSetDescriptionFile(anyString(), anyString())).thenReturn(new File(tempFile, "test.xml"));
+      DataSetRepository dataSetRepository = new DataSetRepository(
+        Executors.newSingleThreadExecutor(),
+        new AllowAllPermissionFetcher(),
+        ImmutableDataSetConfiguration.builder()
+          .dataSetMetadataLocation(tempFile.getAbsolutePath())
+          .rdfIo(mock(RdfIoFactory.class, RETURNS_DEEP_STUBS))
+          .fileStorage(mock(FileStorageFactory.class, RETURNS_DEEP_STUBS))
+          .resourceSync(resourceSync)
+          .build(),
+        new BdbNonPersistentEnvironmentCreator(),
+        new TimbuctooRdfIdHelper("http://example.org/timbuctoo/"),
+        combinedId -> {
+        },
+        false
+      );
+      dataSetRepository.createDataSet(USER, "stable");
+
+      //warm up the jit before measuring
+      measureLookups(dataSetRepository, threads, 1);
+      final int cores = Runtime.getRuntime().availableProcessors();
+      for (int readers = 1; readers <= cores; readers *= 2) {
+        final long lookups = measureLookups(dataSetRepository, threads, readers);
+        System.out.println(String.format("%3d threads %10d lookups/s", readers, lookups * 1000 / MEASURE_MILLIS));
+      }
+    } finally {
+      threads.shutdownNow();
+      FileUtils.deleteDirectory(tempFile);
+    }
+  }
+
+  private static long measureLookups(DataSetRepository dataSetRepository, ExecutorService threads, int readers)
+    throws Exception {
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<Long>> lookups = new ArrayList<>();
+    for (int i = 0; i < readers; i++) {
+      lookups.add(threads.submit(() -> {
+        start.await();
+        long count = 0;
+        while (running.get()) {
+          dataSetRepository.getDataSet(USER, OWNER, "stable");
+          count++;
+        }
+        return count;
+      }));
+    }
+    Future<?> changes = threads.submit(() -> {
+      start.await();
+      int counter = 0;
+      while (running.get()) {
+        String name = "temporary" + counter++;
+        dataSetRepository.createDataSet(USER, name);
+        dataSetRepository.removeDataSet(OWNER, name, USER);
+      }
+      return null;
+    });
+
+    start.countDown();
+    Thread.sleep(MEASURE_MILLIS);
+    running.set(false);
+
+    changes.get(10, TimeUnit.SECONDS);
+    long total = 0;
+    for (Future<Long> lookup : lookups) {
+      total += lookup.get(10, TimeUnit.SECONDS);
+    }
+    return total;
+  }
+
+  private static class AllowAllPermissionFetcher implements PermissionFetcher {
+    private final Set<Permission> permissions = Sets.newHashSet(Permission.READ, Permission.WRITE, Permission.ADMIN);
+
+    @Override
+    public Set<Permission> getPermissions(User user, DataSetMetaData dataSetMetadata) {
+      return permissions;
+    }
+
+    @Override
+    public Set<Permission> getOldPermissions(User user, String vreId) {
+      return permissions;
+    }
+
+    @Override
+    public void initializeOwnerAuthorization(User user, String ownerId, String dataSetId) {
+    }
+
+    @Override
+    public void removeAuthorizations(String combinedId) {
+    }
+  }
+}
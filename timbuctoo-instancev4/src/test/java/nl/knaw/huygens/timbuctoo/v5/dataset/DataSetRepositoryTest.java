@@ -7,6 +7,7 @@ import nl.knaw.huygens.timbuctoo.security.BasicPermissionFetcher;
 import nl.knaw.huygens.timbuctoo.security.JsonBasedAuthorizer;
 import nl.knaw.huygens.timbuctoo.security.dataaccess.localfile.LocalFileVreAuthorizationAccess;
 import nl.knaw.huygens.timbuctoo.security.exceptions.AuthorizationException;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbEnvironmentCreator;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.DataSetPublishException;
@@ -27,16 +28,31 @@ import org.junit.Test;
 import javax.naming.NoPermissionException;
 import java.io.File;
 import java.io.IOException;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import static nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository.UNTRACKED_LOOKUP_MILLIS;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -48,16 +64,30 @@ public class DataSetRepositoryTest {
   private ResourceSync resourceSync;
   private File authDir;
   private PermissionFetcher permissionFetcher;
+  private Clock clock;
+  private long now;
 
   @Before
   public void init() throws Exception {
     tempFile = Files.createTempDir();
+    clock = mock(Clock.class);
+    when(clock.millis()).thenAnswer(invocation -> now);
     resourceSync = mock(ResourceSync.class);
     when(resourceSync.getDataSetDescriptionFile(anyString(), anyString())).thenReturn(new File(tempFile, "test.xml"));
     dataSetRepository = createDataSetRepo();
   }
 
   private DataSetRepository createDataSetRepo() throws IOException {
+    return createDataSetRepo(new BdbNonPersistentEnvironmentCreator(), Lists.newArrayList());
+  }
+
+  private DataSetRepository createDataSetRepo(BdbEnvironmentCreator environmentCreator, List<String> hotDataSets)
+    throws IOException {
+    return createDataSetRepo(environmentCreator, hotDataSets, 0);
+  }
+
+  private DataSetRepository createDataSetRepo(BdbEnvironmentCreator environmentCreator, List<String> hotDataSets,
+                                              int maxOpenDataSets) throws IOException {
     authDir = tempFile;
     permissionFetcher = mock(PermissionFetcher.class);
     return new DataSetRepository(
@@ -68,15 +98,22 @@ public class DataSetRepositoryTest {
         .rdfIo(mock(RdfIoFactory.class, RETURNS_DEEP_STUBS))
         .fileStorage(mock(FileStorageFactory.class, RETURNS_DEEP_STUBS))
         .resourceSync(resourceSync)
+        .hotDataSets(hotDataSets)
+        .maxOpenDataSets(maxOpenDataSets)
         .build(),
-      new BdbNonPersistentEnvironmentCreator(),
+      environmentCreator,
       new TimbuctooRdfIdHelper("http://example.org/timbuctoo/"),
       combinedId -> {
       },
-      false
+      false,
+      clock
     );
   }
 
+  private void passTime(long millis) {
+    now += millis;
+  }
+
   @After
   public void cleanUp() {
     tempFile.delete();
@@ -206,6 +243,172 @@ public class DataSetRepositoryTest {
     assertThat(dataSetRepository.dataSetExists(dataSet.getMetadata().getOwnerId(), "dataset"), is(true));
   }
 
+  @Test
+  public void dataSetsAreOpenedWhenTheyAreUsedForTheFirstTime() throws Exception {
+    final User user = User.create(null, "user");
+    dataSetRepository.createDataSet(user, "dataset");
+    final BdbEnvironmentCreator environmentCreator = spy(new BdbNonPersistentEnvironmentCreator());
+
+    // create a new instance to simulate a restart
+    dataSetRepository = createDataSetRepo(environmentCreator, Lists.newArrayList());
+    dataSetRepository.start();
+
+    assertThat(dataSetRepository.dataSetExists("uuser", "dataset"), is(true));
+    verify(environmentCreator, never()).getDatabase(anyString(), anyString(), anyString(), anyBoolean(), any(), any());
+
+    given(permissionFetcher.getPermissions(any(), any())).willReturn(Sets.newHashSet(Permission.READ));
+    assertThat(dataSetRepository.getDataSet(user, "uuser", "dataset").isPresent(), is(true));
+    verify(environmentCreator, atLeastOnce())
+      .getDatabase(eq("uuser"), eq("dataset"), anyString(), anyBoolean(), any(), any());
+  }
+
+  @Test
+  public void hotDataSetsAreOpenedAfterStartup() throws Exception {
+    dataSetRepository.createDataSet(User.create(null, "user"), "dataset");
+    dataSetRepository.createDataSet(User.create(null, "user"), "other");
+    final BdbEnvironmentCreator environmentCreator = spy(new BdbNonPersistentEnvironmentCreator());
+
+    dataSetRepository = createDataSetRepo(environmentCreator, Lists.newArrayList("uuser__dataset"));
+    dataSetRepository.start();
+
+    verify(environmentCreator, timeout(5000).atLeastOnce())
+      .getDatabase(eq("uuser"), eq("dataset"), anyString(), anyBoolean(), any(), any());
+    verify(environmentCreator, never())
+      .getDatabase(eq("uuser"), eq("other"), anyString(), anyBoolean(), any(), any());
+  }
+
+  @Test
+  public void theLeastRecentlyUsedDataSetsAreClosedAndReopenedWhenTheyAreUsed() throws Exception {
+    final User user = User.create(null, "user");
+    final BdbEnvironmentCreator environmentCreator = spy(new BdbNonPersistentEnvironmentCreator());
+    dataSetRepository = createDataSetRepo(environmentCreator, Lists.newArrayList(), 1);
+    DataSet dataSet = dataSetRepository.createDataSet(user, "dataset");
+    passTime(1);
+    dataSetRepository.createDataSet(user, "other");
+    passTime(UNTRACKED_LOOKUP_MILLIS);
+
+    dataSetRepository.closeIdleDataSets();
+
+    verify(environmentCreator).removeDatabasesFor("uuser", "dataset");
+    verify(environmentCreator, never()).removeDatabasesFor("uuser", "other");
+    given(permissionFetcher.getPermissions(any(), any())).willReturn(Sets.newHashSet(Permission.READ));
+    DataSet reopened = dataSetRepository.getDataSet(user, "uuser", "dataset").get();
+    assertThat(reopened, is(not(sameInstance(dataSet))));
+    assertThat(reopened.getMetadata(), is(sameInstance(dataSet.getMetadata())));
+  }
+
+  @Test
+  public void dataSetsThatWereLookedUpWithoutAUsageAreKeptOpenForAWhile() throws Exception {
+    final User user = User.create(null, "user");
+    final BdbEnvironmentCreator environmentCreator = spy(new BdbNonPersistentEnvironmentCreator());
+    dataSetRepository = createDataSetRepo(environmentCreator, Lists.newArrayList(), 1);
+    dataSetRepository.createDataSet(user, "dataset");
+    passTime(1);
+    dataSetRepository.createDataSet(user, "other");
+    passTime(UNTRACKED_LOOKUP_MILLIS - 1);
+
+    dataSetRepository.closeIdleDataSets();
+
+    verify(environmentCreator, never()).removeDatabasesFor(anyString(), anyString());
+  }
+
+  @Test
+  public void dataSetsThatAreLookedUpWhileTheCloserChecksThemAreNotClosed() throws Exception {
+    final User user = User.create(null, "user");
+    final BdbEnvironmentCreator environmentCreator = spy(new BdbNonPersistentEnvironmentCreator());
+    dataSetRepository = createDataSetRepo(environmentCreator, Lists.newArrayList(), 1);
+    dataSetRepository.createDataSet(user, "dataset");
+    passTime(1);
+    dataSetRepository.createDataSet(user, "other");
+    passTime(UNTRACKED_LOOKUP_MILLIS);
+    //the lookup happens after the closer has decided that the data set is idle
+    doAnswer(invocation -> {
+      dataSetRepository.unsafeGetDataSetWithoutCheckingPermissions("uuser", "dataset");
+      return invocation.callRealMethod();
+    }).when(environmentCreator).getOpenCursorCount("uuser", "dataset");
+
+    dataSetRepository.closeIdleDataSets();
+
+    verify(environmentCreator, never()).removeDatabasesFor(anyString(), anyString());
+  }
+
+  @Test
+  public void dataSetsWithOpenCursorsAreNotClosed() throws Exception {
+    final User user = User.create(null, "user");
+    final BdbEnvironmentCreator environmentCreator = spy(new BdbNonPersistentEnvironmentCreator());
+    doReturn(1).when(environmentCreator).getOpenCursorCount("uuser", "dataset");
+    dataSetRepository = createDataSetRepo(environmentCreator, Lists.newArrayList(), 1);
+    dataSetRepository.createDataSet(user, "dataset");
+    passTime(1);
+    dataSetRepository.createDataSet(user, "other");
+    passTime(UNTRACKED_LOOKUP_MILLIS + 1);
+
+    dataSetRepository.closeIdleDataSets();
+
+    verify(environmentCreator, never()).removeDatabasesFor("uuser", "dataset");
+    verify(environmentCreator).removeDatabasesFor("uuser", "other");
+  }
+
+  @Test
+  public void dataSetsThatWereLookedUpDuringARunningUsageAreNotClosed() throws Exception {
+    final User user = User.create(null, "user");
+    final BdbEnvironmentCreator environmentCreator = spy(new BdbNonPersistentEnvironmentCreator());
+    dataSetRepository = createDataSetRepo(environmentCreator, Lists.newArrayList(), 1);
+
+    try (DataSetUsage usage = dataSetRepository.startUsage()) {
+      dataSetRepository.createDataSet(user, "dataset");
+      passTime(1);
+      dataSetRepository.createDataSet(user, "other");
+      passTime(UNTRACKED_LOOKUP_MILLIS + 1);
+
+      dataSetRepository.closeIdleDataSets();
+
+      verify(environmentCreator, never()).removeDatabasesFor(anyString(), anyString());
+    }
+    passTime(UNTRACKED_LOOKUP_MILLIS + 1);
+    dataSetRepository.closeIdleDataSets();
+
+    verify(environmentCreator).removeDatabasesFor(eq("uuser"), anyString());
+  }
+
+  @Test
+  public void dataSetsThatATaskContinuingTheUsageLooksUpAreNotClosedUntilTheTaskIsDone() throws Exception {
+    final User user = User.create(null, "user");
+    final BdbEnvironmentCreator environmentCreator = spy(new BdbNonPersistentEnvironmentCreator());
+    dataSetRepository = createDataSetRepo(environmentCreator, Lists.newArrayList(), 1);
+    final ExecutorService continuations = Executors.newSingleThreadExecutor();
+    final CountDownLatch lookedUp = new CountDownLatch(1);
+    final CountDownLatch taskMayFinish = new CountDownLatch(1);
+
+    try (DataSetUsage usage = dataSetRepository.startUsage()) {
+      dataSetRepository.continueCurrentUsageOn(continuations).execute(() -> {
+        try {
+          dataSetRepository.createDataSet(user, "dataset");
+          lookedUp.countDown();
+          taskMayFinish.await(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      assertThat(lookedUp.await(5, TimeUnit.SECONDS), is(true));
+    }
+    passTime(1);
+    dataSetRepository.createDataSet(user, "other");
+    passTime(UNTRACKED_LOOKUP_MILLIS + 1);
+
+    dataSetRepository.closeIdleDataSets();
+
+    verify(environmentCreator, never()).removeDatabasesFor("uuser", "dataset");
+    taskMayFinish.countDown();
+    continuations.shutdown();
+    assertThat(continuations.awaitTermination(5, TimeUnit.SECONDS), is(true));
+    passTime(1);
+    dataSetRepository.createDataSet(user, "third");
+    passTime(UNTRACKED_LOOKUP_MILLIS);
+    dataSetRepository.closeIdleDataSets();
+    verify(environmentCreator).removeDatabasesFor("uuser", "dataset");
+  }
+
   @Test
   public void publishDataSetWillReturnDataSetMetaDataWithPublishedFlagSet() throws Exception {
     User user = User.create(null, "user");
@@ -21,12 +21,15 @@ import javax.ws.rs.core.MediaType;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -34,6 +37,7 @@ import static org.mockito.hamcrest.MockitoHamcrest.argThat;
 
 public class ImportManagerTest {
 
+  protected File dataSetDir;
   protected File logListLocation;
   protected ImportManager importManager;
   protected File filesDir;
@@ -42,8 +46,8 @@ public class ImportManagerTest {
 
   @Before
   public void makeSimpleDataSet() throws IOException, DataStoreCreationException {
-    logListLocation = File.createTempFile("logList", ".json");
-    logListLocation.delete();
+    dataSetDir = Files.createTempDir();
+    logListLocation = new File(dataSetDir, "log.json");
     filesDir = Files.createTempDir();
     resourceList = mock(ResourceList.class);
     fileStorage = new FileSystemFileStorage(filesDir);
@@ -61,7 +65,7 @@ public class ImportManagerTest {
 
   @After
   public void cleanUp() throws IOException {
-    logListLocation.delete();
+    FileUtils.deleteDirectory(dataSetDir);
     FileUtils.cleanDirectory(filesDir);
   }
 
@@ -90,6 +94,26 @@ public class ImportManagerTest {
     assertThat(fileStorage.getLog(logEntry.getLogToken().get()).getReader().read(), is(64));
   }
 
+  @Test
+  public void importActivityListenersAreCalledWhenTheImportStartsAndFinishes() throws Exception {
+    File file = FileHelpers.getFileFromResource(ImportManagerTest.class, "clusius.ttl").toFile();
+    List<Boolean> activity = new CopyOnWriteArrayList<>();
+    importManager.subscribeToImportActivity(activity::add);
+
+    Future<ImportStatus> promise = importManager.addLog(
+      "http://example.com/baseUri",
+      "http://example.com/defaultGraph",
+      "http://example.com/clusius.ttl",
+      new FileInputStream(file),
+      Optional.of(Charsets.UTF_8),
+      MediaType.valueOf("text/turtle")
+    );
+    promise.get();
+
+    assertThat(activity, contains(true, false));
+    assertThat(importManager.isImporting(), is(false));
+  }
+
   @Test
   public void addLogsCallsTheResourceSyncResourceList() throws Exception {
     String name = "http://example.com/clusius.ttl";
@@ -136,6 +160,29 @@ public class ImportManagerTest {
     assertThat(status.hasErrors(), is(false));
   }
 
+  @Test
+  public void callsDirectAndQueuedStoresWithTheSameLog() throws Exception {
+    File file = FileHelpers.getFileFromResource(ImportManagerTest.class, "clusius.ttl").toFile();
+    CountingProcessor processor = new CountingProcessor();
+    CountingProcessor queuedProcessor = new CountingProcessor();
+    importManager.subscribeToRdf(processor);
+    importManager.subscribeToRdf(queuedProcessor, 2);
+
+    Future<ImportStatus> promise = importManager.addLog(
+      "http://example.com/baseUri",
+      "http://example.com/defaultGraph",
+      "http://example.com/clusius.ttl",
+      new FileInputStream(file),
+      Optional.of(Charsets.UTF_8),
+      MediaType.valueOf("text/turtle")
+    );
+    ImportStatus status = promise.get();
+    assertThat(status.hasErrors(), is(false));
+    assertThat(processor.getCounter(), is(28));
+    assertThat(queuedProcessor.getCounter(), is(28));
+    assertThat(queuedProcessor.getCurrentVersion(), is(0));
+  }
+
   @Test
   public void generateLogSavesTheLogAndCallsTheStores() throws Exception {
     String defaultGraph = "http://example.com/defaultGraph";
@@ -159,6 +206,61 @@ public class ImportManagerTest {
     assertThat(fileStorage.getLog(logEntry.getLogToken().get()).getReader().read(), is(60));
   }
 
+  @Test
+  public void generateLogStoresAnUncompressedLogWhenTheTemporaryFileIsCompressed() throws Exception {
+    ImportManager compressingManager = new ImportManager(
+      logListLocation,
+      fileStorage,
+      fileStorage,
+      fileStorage,
+      Executors.newSingleThreadExecutor(),
+      new Rdf4jIoFactory(),
+      resourceList,
+      () -> { },
+      true
+    );
+    CountingProcessor processor = new CountingProcessor();
+    compressingManager.subscribeToRdf(processor);
+
+    ImportStatus status = compressingManager.generateLog(
+      "http://example.com/baseUri",
+      "http://example.com/defaultGraph",
+      new DummyRdfCreator()
+    ).get();
+
+    assertThat(status.hasErrors(), is(false));
+    assertThat(processor.getCounter(), is(3));
+    LogEntry logEntry = compressingManager.getLogEntries().get(0);
+    assertThat(fileStorage.getLog(logEntry.getLogToken().get()).getReader().read(), is(60));
+  }
+
+  @Test
+  public void generateLogWritesTheTemporaryFileToTheDataSetDirectory() throws Exception {
+    final File tempLogs = new File(dataSetDir, "generated_logs");
+    final File leftOver = new File(tempLogs, "generated_log_1.tmp");
+    assertThat(leftOver.createNewFile(), is(true));
+    ImportManager manager = new ImportManager(
+      logListLocation,
+      fileStorage,
+      fileStorage,
+      fileStorage,
+      Executors.newSingleThreadExecutor(),
+      new Rdf4jIoFactory(),
+      resourceList,
+      () -> { }
+    );
+
+    ImportStatus status = manager.generateLog(
+      "http://example.com/baseUri",
+      "http://example.com/defaultGraph",
+      new DummyRdfCreator()
+    ).get();
+
+    assertThat(status.hasErrors(), is(false));
+    assertThat(leftOver.exists(), is(false));
+    assertThat(tempLogs.list().length, is(0));
+  }
+
   @Test
   public void addFileCallsTheResourceSyncResourceList() throws Exception {
     String name = "http://example.com/clusius.ttl";
@@ -0,0 +1,35 @@
+package nl.knaw.huygens.timbuctoo.v5.dataset;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class QueuedRdfProcessorTest {
+
+  @Test(timeout = 10_000)
+  public void anErrorOfTheDelegateFailsTheProducerInsteadOfBlockingIt() throws Exception {
+    RdfProcessor delegate = mock(RdfProcessor.class);
+    doThrow(new OutOfMemoryError("The store is full")).when(delegate)
+      .onQuad(anyBoolean(), any(), any(), any(), any(), any(), any());
+    QueuedRdfProcessor instance = new QueuedRdfProcessor(delegate, 1);
+    instance.start(0);
+
+    Throwable failure = null;
+    try {
+      for (int i = 0; i < 1_000; i++) {
+        instance.onQuad(true, "http://example.org/" + i, "http://example.org/pred", "value", null, null, null);
+      }
+      instance.commit();
+    } catch (RdfProcessingFailedException e) {
+      failure = e.getCause();
+    }
+
+    assertThat(failure, instanceOf(OutOfMemoryError.class));
+  }
+}
@@ -0,0 +1,217 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
+
+import com.google.common.collect.Lists;
+import com.sleepycat.bind.tuple.TupleBinding;
+import nl.knaw.huygens.timbuctoo.v5.dataset.ChangeFetcher;
+import nl.knaw.huygens.timbuctoo.v5.dataset.ImportStatus;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.LogList;
+import nl.knaw.huygens.timbuctoo.v5.datastores.countstore.dto.ValueHistogram;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.BdbNonPersistentEnvironmentCreator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType.ASSERTED;
+import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType.RETRACTED;
+import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType.UNCHANGED;
+import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction.IN;
+import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction.OUT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class BdbCountStoreTest {
+  private static final String STRING = "http://www.w3.org/2001/XMLSchema#string";
+  private BdbNonPersistentEnvironmentCreator databaseCreator;
+  private BdbTripleStore quadStore;
+
+  @Before
+  public void setUp() throws Exception {
+    databaseCreator = new BdbNonPersistentEnvironmentCreator();
+    final TupleBinding<String> stringBinding = TupleBinding.getPrimitiveBinding(String.class);
+    quadStore = new BdbTripleStore(
+      databaseCreator.getDatabase("userId", "dataSetId", "rdfData", true, stringBinding, stringBinding)
+    );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    databaseCreator.close();
+  }
+
+  @Test
+  public void countsTheQuadsOfEachSubjectPredicateAndDirection() throws Exception {
+    BdbCountStore instance = createStore(true);
+
+    process(instance,
+      relation("person", "wrote", OUT, ASSERTED, "letter1"),
+      relation("person", "wrote", OUT, ASSERTED, "letter2"),
+      relation("letter1", "wrote", IN, ASSERTED, "person"),
+      relation("letter2", "wrote", IN, ASSERTED, "person")
+    );
+    process(instance,
+      relation("person", "wrote", OUT, UNCHANGED, "letter1"),
+      relation("person", "wrote", OUT, RETRACTED, "letter2"),
+      relation("person", "wrote", OUT, ASSERTED, "letter3"),
+      relation("person", "wrote", OUT, ASSERTED, "letter4"),
+      relation("letter2", "wrote", IN, RETRACTED, "person")
+    );
+
+    assertThat(instance.getCount("person", "wrote", OUT), is(Optional.of(3)));
+    assertThat(instance.getCount("letter1", "wrote", IN), is(Optional.of(1)));
+    assertThat(instance.getCount("letter2", "wrote", IN), is(Optional.of(0)));
+    assertThat(instance.getCount("person", "wrote", IN), is(Optional.of(0)));
+  }
+
+  @Test
+  public void keepsAHistogramOfTheValuesOfAPredicate() throws Exception {
+    BdbCountStore instance = createStore(true);
+
+    process(instance,
+      value("letter1", "language", ASSERTED, "nl"),
+      value("letter2", "language", ASSERTED, "nl"),
+      value("letter3", "language", ASSERTED, "fr")
+    );
+    process(instance,
+      value("letter3", "language", RETRACTED, "fr"),
+      value("letter3", "language", ASSERTED, "nl")
+    );
+
+    final ValueHistogram histogram = instance.getValueHistogram("language").get();
+    assertThat(histogram.isTooManyValues(), is(false));
+    assertThat(histogram.getValueCounts(), hasEntry("nl", 3));
+    assertThat(histogram.getValueCounts(), not(hasEntry("fr", 0)));
+  }
+
+  @Test
+  public void stopsCountingThePredicatesWithTooManyValues() throws Exception {
+    BdbCountStore instance = createStore(true);
+    List<CursorQuad> quads = Lists.newArrayList();
+    for (int i = 0; i <= BdbCountStore.MAX_HISTOGRAM_VALUES; i++) {
+      quads.add(value("person" + i, "name", ASSERTED, "name" + i));
+    }
+
+    process(instance, quads.toArray(new CursorQuad[quads.size()]));
+
+    assertThat(instance.getValueHistogram("name").get().isTooManyValues(), is(true));
+  }
+
+  @Test
+  public void countsTheValuesAgainWhenFewEnoughQuadsAreLeft() throws Exception {
+    BdbCountStore instance = createStore(true);
+    List<CursorQuad> asserted = Lists.newArrayList();
+    List<CursorQuad> retracted = Lists.newArrayList();
+    for (int i = 0; i <= BdbCountStore.MAX_HISTOGRAM_VALUES; i++) {
+      quadStore.putQuad("person" + i, "name", OUT, "name" + i, STRING, null);
+      asserted.add(value("person" + i, "name", ASSERTED, "name" + i));
+    }
+    process(instance, asserted.toArray(new CursorQuad[asserted.size()]));
+    assertThat(instance.getValueHistogram("name").get().isTooManyValues(), is(true));
+
+    for (int i = 1; i <= BdbCountStore.MAX_HISTOGRAM_VALUES; i++) {
+      quadStore.deleteQuad("person" + i, "name", OUT, "name" + i, STRING, null);
+      retracted.add(value("person" + i, "name", RETRACTED, "name" + i));
+    }
+    process(instance, retracted.toArray(new CursorQuad[retracted.size()]));
+
+    final ValueHistogram histogram = instance.getValueHistogram("name").get();
+    assertThat(histogram.isTooManyValues(), is(false));
+    assertThat(histogram.getValueCounts(), hasEntry("name0", 1));
+  }
+
+  @Test
+  public void returnsNothingForDataSetsThatHadDataBeforeTheStoreExisted() throws Exception {
+    quadStore.putQuad("person", "wrote", OUT, "letter1", null, null);
+    BdbCountStore instance = createStore(false);
+
+    assertThat(instance.getCount("person", "wrote", OUT), is(Optional.empty()));
+    assertThat(instance.getValueHistogram("language"), is(Optional.empty()));
+  }
+
+  @Test
+  public void countsAllQuadsOfAnIncompleteStoreAtTheEndOfTheNextImport() throws Exception {
+    quadStore.putQuad("person", "wrote", OUT, "letter1", null, null);
+    quadStore.putQuad("letter1", "language", OUT, "nl", STRING, null);
+    BdbCountStore instance = createStore(false);
+
+    quadStore.putQuad("person", "wrote", OUT, "letter2", null, null);
+    quadStore.putQuad("letter2", "language", OUT, "nl", STRING, null);
+    process(instance,
+      relation("person", "wrote", OUT, ASSERTED, "letter2"),
+      value("letter2", "language", ASSERTED, "nl")
+    );
+
+    assertThat(instance.getCount("person", "wrote", OUT), is(Optional.of(2)));
+    assertThat(instance.getValueHistogram("language").get().getValueCounts(), hasEntry("nl", 2));
+    //the store is complete from now on and only adds the changes of the next imports
+    quadStore.deleteQuad("person", "wrote", OUT, "letter1", null, null);
+    process(instance, relation("person", "wrote", OUT, RETRACTED, "letter1"));
+    assertThat(instance.getCount("person", "wrote", OUT), is(Optional.of(1)));
+  }
+
+  private BdbCountStore createStore(boolean dataSetIsEmpty) throws Exception {
+    final TupleBinding<String> stringBinding = TupleBinding.getPrimitiveBinding(String.class);
+    return new BdbCountStore(
+      databaseCreator.getDatabase("userId", "dataSetId", "quadCounts", false, stringBinding,
+        TupleBinding.getPrimitiveBinding(Integer.class)),
+      databaseCreator.getDatabase("userId", "dataSetId", "valueHistograms", false, stringBinding, stringBinding),
+      new BdbBackedData(
+        databaseCreator.getDatabase("userId", "dataSetId", "countState", false, stringBinding, stringBinding)
+      ),
+      quadStore,
+      dataSetIsEmpty,
+      new ImportStatus(new LogList())
+    );
+  }
+
+  private static void process(BdbCountStore instance, CursorQuad... quads) throws Exception {
+    final ChangeFetcher changeFetcher = new QuadsChangeFetcher(quads);
+    instance.start();
+    for (String subject : Stream.of(quads).map(CursorQuad::getSubject).distinct().toArray(String[]::new)) {
+      instance.onChangedSubject(subject, changeFetcher);
+    }
+    instance.finish();
+  }
+
+  private static CursorQuad relation(String subject, String predicate, Direction direction, ChangeType changeType,
+                                     String object) {
+    return CursorQuad.create(subject, predicate, direction, changeType, object, null, null, "");
+  }
+
+  private static CursorQuad value(String subject, String predicate, ChangeType changeType, String value) {
+    return CursorQuad.create(subject, predicate, OUT, changeType, value, STRING, null, "");
+  }
+
+  private static class QuadsChangeFetcher implements ChangeFetcher {
+    private final List<CursorQuad> quads;
+
+    QuadsChangeFetcher(CursorQuad... quads) {
+      this.quads = Lists.newArrayList(quads);
+    }
+
+    @Override
+    public Stream<CursorQuad> getPredicates(String subject, boolean getRetracted, boolean getUnchanged,
+                                            boolean getAsserted) {
+      return quads.stream()
+        .filter(quad -> quad.getSubject().equals(subject))
+        .filter(quad -> quad.getChangeType() == RETRACTED && getRetracted ||
+          quad.getChangeType() == UNCHANGED && getUnchanged ||
+          quad.getChangeType() == ASSERTED && getAsserted);
+    }
+
+    @Override
+    public Stream<CursorQuad> getPredicates(String subject, String predicate, Direction direction,
+                                            boolean getRetracted, boolean getUnchanged, boolean getAsserted) {
+      return getPredicates(subject, getRetracted, getUnchanged, getAsserted)
+        .filter(quad -> quad.getPredicate().equals(predicate) && quad.getDirection() == direction);
+    }
+  }
+}
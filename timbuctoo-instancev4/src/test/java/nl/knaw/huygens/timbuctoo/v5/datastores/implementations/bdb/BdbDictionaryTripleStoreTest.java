@@ -0,0 +1,225 @@
+package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
+
+import com.sleepycat.bind.tuple.TupleBinding;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.BdbNonPersistentEnvironmentCreator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.stream.Collectors.toList;
+import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad.create;
+import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.LANGSTRING;
+import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.RDF_TYPE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class BdbDictionaryTripleStoreTest {
+
+  private static final String EX = "http://example.org/";
+  private BdbNonPersistentEnvironmentCreator databaseCreator;
+  private BdbDictionaryTripleStore tripleStore;
+
+  @Before
+  public void makeCollection() throws Exception {
+    databaseCreator = new BdbNonPersistentEnvironmentCreator();
+    final TupleBinding<String> stringBinding = TupleBinding.getPrimitiveBinding(String.class);
+    final TupleBinding<Integer> integerBinding = TupleBinding.getPrimitiveBinding(Integer.class);
+    tripleStore = new BdbDictionaryTripleStore(
+      databaseCreator.getDatabase(
+        "userId",
+        "dataSetId",
+        "rdfDataEncoded",
+        true,
+        BdbDictionaryTripleStore.keyBinding(),
+        BdbDictionaryTripleStore.valueBinding(),
+        BdbDictionaryTripleStore.KeyComparator.class
+      ),
+      new BdbTermDictionary(
+        databaseCreator.getDatabase("userId", "dataSetId", "termIds", false, stringBinding, integerBinding),
+        databaseCreator.getDatabase("userId", "dataSetId", "terms", false, integerBinding, stringBinding)
+      )
+    );
+  }
+
+  @After
+  public void cleanUp() throws Exception {
+    databaseCreator.close();
+  }
+
+  @Test
+  public void returnsTheData() throws Exception {
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, EX + "subject1", null, null);
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, "12", "http://number", null);
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, "Walter", LANGSTRING, "EN-en");
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, "Gauthier", LANGSTRING, "FR-fr");
+
+    try (Stream<CursorQuad> quads = tripleStore.getQuads(EX + "subject1", "http://pred", Direction.OUT, "")) {
+      assertThat(quads.collect(toList()), containsInAnyOrder(
+        create(EX + "subject1", "http://pred", Direction.OUT, EX + "subject1", null, null, ""),
+        create(EX + "subject1", "http://pred", Direction.OUT, "12", "http://number", null, ""),
+        create(EX + "subject1", "http://pred", Direction.OUT, "Walter", LANGSTRING, "EN-en", ""),
+        create(EX + "subject1", "http://pred", Direction.OUT, "Gauthier", LANGSTRING, "FR-fr", "")
+      ));
+    }
+  }
+
+  @Test
+  public void getObjectsReturnsTheObjectsOfAllSubjects() throws Exception {
+    tripleStore.putQuad(EX + "subject2", RDF_TYPE, Direction.OUT, EX + "Person", null, null);
+    tripleStore.putQuad(EX + "subject1", RDF_TYPE, Direction.OUT, EX + "Person", null, null);
+    tripleStore.putQuad(EX + "subject1", RDF_TYPE, Direction.OUT, EX + "Author", null, null);
+    tripleStore.putQuad(EX + "subject3", "http://pred", Direction.OUT, EX + "subject1", null, null);
+
+    Map<String, Set<String>> types = tripleStore.getObjects(
+      newHashSet(EX + "subject1", EX + "subject2", EX + "subject3", EX + "unknown"),
+      RDF_TYPE,
+      Direction.OUT
+    );
+
+    assertThat(types.get(EX + "subject1"), containsInAnyOrder(EX + "Person", EX + "Author"));
+    assertThat(types.get(EX + "subject2"), contains(EX + "Person"));
+    assertThat(types.keySet(), containsInAnyOrder(EX + "subject1", EX + "subject2"));
+  }
+
+  @Test
+  public void returnsNothingForUnknownTerms() throws Exception {
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, EX + "subject2", null, null);
+
+    try (Stream<CursorQuad> quads = tripleStore.getQuads(EX + "unknown", "http://pred", Direction.OUT, "")) {
+      assertThat(quads.collect(toList()), is(empty()));
+    }
+    try (Stream<CursorQuad> quads = tripleStore.getQuads(EX + "unknown")) {
+      assertThat(quads.collect(toList()), is(empty()));
+    }
+  }
+
+  @Test
+  public void canIterateFromCursorInBothDirections() throws Exception {
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, EX + "subject1", null, null);
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, EX + "subject2", null, null);
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, EX + "subject3", null, null);
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, EX + "subject4", null, null);
+
+    String cursor;
+    try (Stream<CursorQuad> quads = tripleStore.getQuads(EX + "subject1", "http://pred", Direction.OUT, "")) {
+      cursor = quads.limit(2).reduce((first, second) -> second).orElse(null).getCursor();
+    }
+    try (Stream<CursorQuad> quads =
+           tripleStore.getQuads(EX + "subject1", "http://pred", Direction.OUT, "A\n" + cursor)) {
+      assertThat(quads.collect(toList()), contains(
+        create(EX + "subject1", "http://pred", Direction.OUT, EX + "subject3", null, null, ""),
+        create(EX + "subject1", "http://pred", Direction.OUT, EX + "subject4", null, null, "")
+      ));
+    }
+    try (Stream<CursorQuad> quads =
+           tripleStore.getQuads(EX + "subject1", "http://pred", Direction.OUT, "D\n" + cursor)) {
+      assertThat(quads.collect(toList()), contains(
+        create(EX + "subject1", "http://pred", Direction.OUT, EX + "subject1", null, null, "")
+      ));
+    }
+    try (Stream<CursorQuad> quads = tripleStore.getQuads(EX + "subject1", "http://pred", Direction.OUT, "LAST")) {
+      assertThat(quads.findFirst().get(),
+        is(create(EX + "subject1", "http://pred", Direction.OUT, EX + "subject4", null, null, "")));
+    }
+  }
+
+  @Test
+  public void getQuadsOfSubjectReturnsAllPredicatesInStoreOrder() throws Exception {
+    tripleStore.putQuad(EX + "subject1", "http://pred2", Direction.OUT, "b", "http://string", null);
+    tripleStore.putQuad(EX + "subject1", "http://pred1", Direction.IN, EX + "subject2", null, null);
+    tripleStore.putQuad(EX + "subject1", "http://pred1", Direction.OUT, "a", "http://string", null);
+    tripleStore.putQuad(EX + "subject2", "http://pred1", Direction.OUT, "c", "http://string", null);
+
+    try (Stream<CursorQuad> quads = tripleStore.getQuads(EX + "subject1")) {
+      List<CursorQuad> result = quads.collect(toList());
+      assertThat(result.size(), is(3));
+      for (int i = 1; i < result.size(); i++) {
+        assertThat(tripleStore.compare(result.get(i - 1), result.get(i)), lessThan(0));
+      }
+    }
+  }
+
+  @Test
+  public void deleteRemovesTheQuad() throws Exception {
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, "12", "http://number", null);
+    tripleStore.putQuad(EX + "subject1", "http://pred", Direction.OUT, "14", "http://number", null);
+
+    assertThat(tripleStore.deleteQuad(EX + "subject1", "http://pred", Direction.OUT, "12", "http://number", null),
+      is(true));
+    assertThat(tripleStore.deleteQuad(EX + "subject1", "http://pred", Direction.OUT, "12", "http://unknown", null),
+      is(false));
+
+    try (Stream<CursorQuad> quads = tripleStore.getQuads(EX + "subject1", "http://pred", Direction.OUT, "")) {
+      assertThat(quads.collect(toList()), contains(
+        create(EX + "subject1", "http://pred", Direction.OUT, "14", "http://number", null, "")
+      ));
+    }
+  }
+
+  @Test
+  public void inStoreOrderSortsThePatchLikeCompare() throws Exception {
+    tripleStore.putQuad(EX + "subject1", "http://pred1", Direction.OUT, "a", "http://string", null);
+    tripleStore.putQuad(EX + "subject2", "http://pred1", Direction.OUT, "b", "http://string", null);
+    final CursorQuad first = create(EX + "subject1", "http://pred1", Direction.OUT, "a", "http://string", null, "");
+    final CursorQuad second = create(EX + "subject2", "http://pred1", Direction.OUT, "b", "http://string", null, "");
+    final CursorQuad unknown = create(EX + "unknown", "http://pred1", Direction.OUT, "c", "http://string", null, "");
+
+    List<CursorQuad> sorted = tripleStore.inStoreOrder(Stream.of(second, unknown, first)).collect(toList());
+
+    assertThat(sorted.size(), is(3));
+    for (int i = 1; i < sorted.size(); i++) {
+      assertThat(tripleStore.compare(sorted.get(i - 1), sorted.get(i)), lessThan(1));
+    }
+  }
+
+  @Test
+  public void termsThatAreCreatedConcurrentlyGetOneIdEach() throws Exception {
+    final TupleBinding<String> stringBinding = TupleBinding.getPrimitiveBinding(String.class);
+    final TupleBinding<Integer> integerBinding = TupleBinding.getPrimitiveBinding(Integer.class);
+    BdbTermDictionary dictionary = new BdbTermDictionary(
+      databaseCreator.getDatabase("userId", "dataSetId", "concurrentTermIds", false, stringBinding, integerBinding),
+      databaseCreator.getDatabase("userId", "dataSetId", "concurrentTerms", false, integerBinding, stringBinding)
+    );
+    ExecutorService threads = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<Integer>>> results = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        results.add(threads.submit(() -> {
+          List<Integer> ids = new ArrayList<>();
+          for (int i = 0; i < 100; i++) {
+            ids.add(dictionary.getOrCreateId(EX + "term" + i));
+          }
+          return ids;
+        }));
+      }
+
+      final List<Integer> expected = results.get(0).get(10, TimeUnit.SECONDS);
+      for (Future<List<Integer>> result : results) {
+        assertThat(result.get(10, TimeUnit.SECONDS), is(expected));
+      }
+      assertThat(newHashSet(expected).size(), is(100));
+      for (int i = 0; i < 100; i++) {
+        assertThat(dictionary.getTerm(expected.get(i)), is(EX + "term" + i));
+      }
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+}
@@ -9,6 +9,7 @@ import nl.knaw.huygens.timbuctoo.rml.Row;
 import nl.knaw.huygens.timbuctoo.rml.ThrowingErrorHandler;
 import nl.knaw.huygens.timbuctoo.rml.datasource.jexl.JexlRowFactory;
 import nl.knaw.huygens.timbuctoo.rml.datasource.joinhandlers.HashMapBasedJoinHandler;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
 import nl.knaw.huygens.timbuctoo.v5.bulkupload.RawUploadRdfSaver;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ChangeFetcher;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ImportStatus;
@@ -17,6 +18,7 @@ import nl.knaw.huygens.timbuctoo.v5.dataset.dto.LogList;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.BasicDataSetMetaData;
 import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
 import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
 import nl.knaw.huygens.timbuctoo.v5.datastores.rmldatasource.RmlDataSourceStore;
@@ -28,6 +30,7 @@ import org.junit.Test;
 
 import javax.ws.rs.core.MediaType;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,14 +39,26 @@ import java.util.stream.Stream;
 import static java.util.stream.Collectors.toList;
 import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM_TYPE;
 import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType.ASSERTED;
+import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType.RETRACTED;
+import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType.UNCHANGED;
 import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad.create;
 import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction.IN;
 import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction.OUT;
 import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.LANGSTRING;
+import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.RDFS_LABEL;
+import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.TIM_HAS_PROPERTY;
+import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.TIM_HAS_ROW;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
 
 public class BdbRmlDataSourceStoreTest {
+  private static final String COLLECTION = "http://example.org/collection";
+  private static final String ROW1 = "http://example.org/row1";
+  private static final String ROW2 = "http://example.org/row2";
+  private static final String NAME_PROPERTY = "http://example.org/props/name";
+  private static final String AGE_PROPERTY = "http://example.org/props/age";
 
   @Test
   public void itWorks() throws Exception {
@@ -55,17 +70,7 @@ public class BdbRmlDataSourceStoreTest {
       "http://example.org/prefix/", false, false
     );
 
-    final RmlDataSourceStore rmlDataSourceStore = new BdbRmlDataSourceStore(
-      dbCreator.getDatabase(
-        "userid",
-        "datasetid",
-        "rmlSource",
-        true,
-        TupleBinding.getPrimitiveBinding(String.class),
-        TupleBinding.getPrimitiveBinding(String.class)
-      ),
-      new ImportStatus(new LogList())
-    );
+    final RmlDataSourceStore rmlDataSourceStore = createStore(dbCreator, sourceDatabase(dbCreator));
 
     RdfSerializer rdfSerializer = new RmlDataSourceRdfSerializer(rmlDataSourceStore);
     RawUploadRdfSaver rawUploadRdfSaver = new RawUploadRdfSaver(
@@ -119,6 +124,202 @@ public class BdbRmlDataSourceStoreTest {
     dbCreator.close();
   }
 
+  @Test
+  public void movesTheRowsThatWereStoredAsSeparateValues() throws Exception {
+    BdbNonPersistentEnvironmentCreator dbCreator = new BdbNonPersistentEnvironmentCreator();
+    BdbWrapper<String, String> source = sourceDatabase(dbCreator);
+    source.put("http://example.org/collection", "http://example.org/row1");
+    source.put("http://example.org/collection", "http://example.org/row2");
+    source.put("http://example.org/row1", "name\nrow one");
+    source.put("http://example.org/row1", "line\\nbreak\nvalue with a\nnewline");
+    source.put("http://example.org/row2", "name\nrow two");
+
+    final RmlDataSourceStore instance = createStore(dbCreator, source);
+
+    final List<Map<String, String>> rows;
+    try (Stream<Map<String, String>> stream = instance.getRows("http://example.org/collection")) {
+      rows = stream.collect(toList());
+    }
+    assertThat(rows, contains(
+      ImmutableMap.of("name", "row one", "line\nbreak", "value with a\nnewline"),
+      ImmutableMap.of("name", "row two")
+    ));
+    try (Stream<String> oldValues = source.databaseGetter().key("http://example.org/row1").dontSkip().forwards()
+      .getValues()) {
+      assertThat(oldValues.count(), is(0L));
+    }
+    dbCreator.close();
+  }
+
+  @Test
+  public void resumesAMoveThatWasInterrupted() throws Exception {
+    BdbNonPersistentEnvironmentCreator dbCreator = new BdbNonPersistentEnvironmentCreator();
+    BdbWrapper<String, String> source = sourceDatabase(dbCreator);
+    source.put("http://example.org/collection", "http://example.org/row1");
+    source.put("http://example.org/collection", "http://example.org/row2");
+    source.put("columns\nhttp://example.org/collection", "0\nname");
+    source.put("columns\nhttp://example.org/collection", "1\nage");
+    //row1 was moved, but only one of its old entries was deleted
+    BdbWrapper<String, Map<Integer, String>> rows = rowsDatabase(dbCreator);
+    rows.put("http://example.org/collection\nhttp://example.org/row1", ImmutableMap.of(0, "row one", 1, "42"));
+    source.put("http://example.org/row1", "name\nrow one");
+    source.put("http://example.org/row2", "name\nrow two");
+
+    final RmlDataSourceStore instance = new BdbRmlDataSourceStore(source, rows, new ImportStatus(new LogList()));
+
+    assertThat(getRows(instance, "http://example.org/collection"), contains(
+      ImmutableMap.of("name", "row one", "age", "42"),
+      ImmutableMap.of("name", "row two")
+    ));
+    try (Stream<String> oldValues = source.databaseGetter().key("http://example.org/row1").dontSkip().forwards()
+      .getValues()) {
+      assertThat(oldValues.count(), is(0L));
+    }
+    dbCreator.close();
+  }
+
+  @Test
+  public void movesTheRowsOnlyOnce() throws Exception {
+    BdbNonPersistentEnvironmentCreator dbCreator = new BdbNonPersistentEnvironmentCreator();
+    BdbWrapper<String, String> source = sourceDatabase(dbCreator);
+    BdbWrapper<String, Map<Integer, String>> rows = rowsDatabase(dbCreator);
+    new BdbRmlDataSourceStore(source, rows, new ImportStatus(new LogList()));
+    source.put("http://example.org/collection", "http://example.org/row1");
+    source.put("http://example.org/row1", "name\nrow one");
+
+    final RmlDataSourceStore instance = new BdbRmlDataSourceStore(source, rows, new ImportStatus(new LogList()));
+
+    assertThat(getRows(instance, "http://example.org/collection"), is(empty()));
+    dbCreator.close();
+  }
+
+  @Test
+  public void rewritesTheRecordOfAChangedRow() throws Exception {
+    BdbNonPersistentEnvironmentCreator dbCreator = new BdbNonPersistentEnvironmentCreator();
+    final RmlDataSourceStore instance = createStore(dbCreator, sourceDatabase(dbCreator));
+    importCollection(instance, ASSERTED);
+
+    instance.start();
+    instance.onChangedSubject(ROW1, new QuadChangeFetcher(
+      create(ROW1, TIM_HAS_ROW, IN, UNCHANGED, COLLECTION, null, null, ""),
+      create(ROW1, NAME_PROPERTY, OUT, RETRACTED, "Alice", null, null, ""),
+      create(ROW1, NAME_PROPERTY, OUT, ASSERTED, "Alicia", null, null, ""),
+      create(ROW1, AGE_PROPERTY, OUT, UNCHANGED, "42", null, null, "")
+    ));
+    instance.finish();
+
+    assertThat(getRows(instance, COLLECTION), contains(
+      ImmutableMap.of("name", "Alicia", "age", "42"),
+      ImmutableMap.of("name", "Bob")
+    ));
+    dbCreator.close();
+  }
+
+  @Test
+  public void removesTheRecordOfARetractedRow() throws Exception {
+    BdbNonPersistentEnvironmentCreator dbCreator = new BdbNonPersistentEnvironmentCreator();
+    final RmlDataSourceStore instance = createStore(dbCreator, sourceDatabase(dbCreator));
+    importCollection(instance, ASSERTED);
+
+    instance.start();
+    instance.onChangedSubject(ROW1, new QuadChangeFetcher(
+      create(ROW1, TIM_HAS_ROW, IN, RETRACTED, COLLECTION, null, null, ""),
+      create(ROW1, NAME_PROPERTY, OUT, RETRACTED, "Alice", null, null, ""),
+      create(ROW1, AGE_PROPERTY, OUT, RETRACTED, "42", null, null, "")
+    ));
+    instance.finish();
+
+    assertThat(getRows(instance, COLLECTION), contains(ImmutableMap.of("name", "Bob")));
+    dbCreator.close();
+  }
+
+  private static void importCollection(RmlDataSourceStore instance, ChangeType changeType) throws Exception {
+    final QuadChangeFetcher changes = new QuadChangeFetcher(
+      create(COLLECTION, TIM_HAS_PROPERTY, OUT, changeType, NAME_PROPERTY, null, null, ""),
+      create(COLLECTION, TIM_HAS_PROPERTY, OUT, changeType, AGE_PROPERTY, null, null, ""),
+      create(NAME_PROPERTY, RDFS_LABEL, OUT, changeType, "name", null, null, ""),
+      create(AGE_PROPERTY, RDFS_LABEL, OUT, changeType, "age", null, null, ""),
+      create(COLLECTION, TIM_HAS_ROW, OUT, changeType, ROW1, null, null, ""),
+      create(COLLECTION, TIM_HAS_ROW, OUT, changeType, ROW2, null, null, ""),
+      create(ROW1, TIM_HAS_ROW, IN, changeType, COLLECTION, null, null, ""),
+      create(ROW1, NAME_PROPERTY, OUT, changeType, "Alice", null, null, ""),
+      create(ROW1, AGE_PROPERTY, OUT, changeType, "42", null, null, ""),
+      create(ROW2, TIM_HAS_ROW, IN, changeType, COLLECTION, null, null, ""),
+      create(ROW2, NAME_PROPERTY, OUT, changeType, "Bob", null, null, "")
+    );
+    instance.start();
+    instance.onChangedSubject(COLLECTION, changes);
+    instance.onChangedSubject(ROW1, changes);
+    instance.onChangedSubject(ROW2, changes);
+    instance.finish();
+  }
+
+  private static List<Map<String, String>> getRows(RmlDataSourceStore instance, String collectionUri) {
+    try (Stream<Map<String, String>> stream = instance.getRows(collectionUri)) {
+      return stream.collect(toList());
+    }
+  }
+
+  private static BdbWrapper<String, String> sourceDatabase(BdbNonPersistentEnvironmentCreator dbCreator)
+    throws Exception {
+    return dbCreator.getDatabase(
+      "userid",
+      "datasetid",
+      "rmlSource",
+      true,
+      TupleBinding.getPrimitiveBinding(String.class),
+      TupleBinding.getPrimitiveBinding(String.class)
+    );
+  }
+
+  private static BdbWrapper<String, Map<Integer, String>> rowsDatabase(BdbNonPersistentEnvironmentCreator dbCreator)
+    throws Exception {
+    return dbCreator.getDatabase(
+      "userid",
+      "datasetid",
+      "rmlRows",
+      false,
+      TupleBinding.getPrimitiveBinding(String.class),
+      BdbRmlDataSourceStore.rowBinding()
+    );
+  }
+
+  private static RmlDataSourceStore createStore(BdbNonPersistentEnvironmentCreator dbCreator,
+                                                BdbWrapper<String, String> source) throws Exception {
+    return new BdbRmlDataSourceStore(source, rowsDatabase(dbCreator), new ImportStatus(new LogList()));
+  }
+
+  /**
+   * Returns the quads of a patch, filtered like the ChangeFetcher of an import does.
+   */
+  private static class QuadChangeFetcher implements ChangeFetcher {
+    private final List<CursorQuad> quads;
+
+    QuadChangeFetcher(CursorQuad... quads) {
+      this.quads = Arrays.asList(quads);
+    }
+
+    @Override
+    public Stream<CursorQuad> getPredicates(String subject, boolean getRetracted, boolean getUnchanged,
+                                            boolean getAsserted) {
+      return quads.stream()
+        .filter(quad -> quad.getSubject().equals(subject))
+        .filter(quad -> matches(quad.getChangeType(), getRetracted, getUnchanged, getAsserted));
+    }
+
+    @Override
+    public Stream<CursorQuad> getPredicates(String subject, String predicate, Direction direction,
+                                            boolean getRetracted, boolean getUnchanged, boolean getAsserted) {
+      return getPredicates(subject, getRetracted, getUnchanged, getAsserted)
+        .filter(quad -> quad.getPredicate().equals(predicate) && quad.getDirection() == direction);
+    }
+
+    private static boolean matches(ChangeType changeType, boolean getRetracted, boolean getUnchanged,
+                                   boolean getAsserted) {
+      return changeType == RETRACTED ? getRetracted : changeType == UNCHANGED ? getUnchanged : getAsserted;
+    }
+  }
+
   private static class RmlDataSourceRdfSerializer implements RdfSerializer {
     private final OptimizedPatchListener processor;
     Map<String, Multimap<String, CursorQuad>> triples = new HashMap<>();
@@ -1,6 +1,12 @@
 package nl.knaw.huygens.timbuctoo.v5.datastores.implementations.bdb;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.google.common.collect.Lists;
+import com.sleepycat.bind.tuple.TupleBinding;
+import nl.knaw.huygens.timbuctoo.v5.berkeleydb.BdbWrapper;
 import nl.knaw.huygens.timbuctoo.v5.berkeleydb.exceptions.DatabaseWriteException;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ChangeFetcher;
 import nl.knaw.huygens.timbuctoo.v5.dataset.ImportStatus;
@@ -8,34 +14,68 @@ import nl.knaw.huygens.timbuctoo.v5.dataset.dto.LogList;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.ChangeType;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad;
 import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.datastores.schemastore.dto.Type;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.BdbNonPersistentEnvironmentCreator;
+import nl.knaw.huygens.timbuctoo.v5.jacksonserializers.TimbuctooCustomSerializers;
 import nl.knaw.huygens.timbuctoo.v5.util.RdfConstants;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 
 public class BdbSchemaStoreTest {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+    .registerModule(new Jdk8Module())
+    .registerModule(new GuavaModule())
+    .registerModule(new TimbuctooCustomSerializers())
+    .enable(SerializationFeature.INDENT_OUTPUT);
+  private BdbNonPersistentEnvironmentCreator databaseCreator;
+  private BdbWrapper<String, String> typeStore;
+
+  @Before
+  public void setUp() throws Exception {
+    databaseCreator = new BdbNonPersistentEnvironmentCreator();
+    final TupleBinding<String> stringBinding = TupleBinding.getPrimitiveBinding(String.class);
+    typeStore = databaseCreator.getDatabase("userId", "dataSetId", "schemaTypes", false, stringBinding,
+      stringBinding);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    databaseCreator.close();
+  }
+
   @Test
   public void generatesASchemaForAllAdded() throws Exception {
-    final DummyDataStorage dataStore = new DummyDataStorage();
-
     ChangeFetcher changeFetcher = new DummyChangeFetcher(
       CursorQuad.create("subj", "pred", Direction.OUT, ChangeType.ASSERTED, "obj", null, null, ""),
       CursorQuad.create("subj", RdfConstants.RDF_TYPE, Direction.OUT, ChangeType.ASSERTED, "type", null, null, ""),
       CursorQuad.create("obj", "pred", Direction.IN, ChangeType.ASSERTED, "subj", null, null, "")
     );
 
-    BdbSchemaStore schemaStore = new BdbSchemaStore(dataStore, new ImportStatus(new LogList()));
+    BdbSchemaStore schemaStore = new BdbSchemaStore(typeStore, new DummyDataStorage(),
+      new ImportStatus(new LogList()));
 
     schemaStore.start();
     schemaStore.onChangedSubject("subj", changeFetcher);
     schemaStore.onChangedSubject("obj", changeFetcher);
     schemaStore.finish();
 
-    assertThat(dataStore.getResult(), is("{\n" +
+    //a new store has to load the types from the database
+    BdbSchemaStore reloaded = new BdbSchemaStore(typeStore, new DummyDataStorage(), new ImportStatus(new LogList()));
+    assertThat(serialize(reloaded.getTypes()), is("{\n" +
       "  \"http://timbuctoo.huygens.knaw.nl/static/v5/vocabulary#unknown\" : {\n" +
       "    \"name\" : \"http://timbuctoo.huygens.knaw.nl/static/v5/vocabulary#unknown\",\n" +
       "    \"predicates\" : [ {\n" +
@@ -85,6 +125,104 @@ public class BdbSchemaStoreTest {
       "}"));
   }
 
+  @Test
+  public void storesEachTypeAsASeparateCompactRecord() throws Exception {
+    ChangeFetcher changeFetcher = new DummyChangeFetcher(
+      CursorQuad.create("subj", RdfConstants.RDF_TYPE, Direction.OUT, ChangeType.ASSERTED, "type", null, null, "")
+    );
+    BdbSchemaStore schemaStore = new BdbSchemaStore(typeStore, new DummyDataStorage(),
+      new ImportStatus(new LogList()));
+
+    schemaStore.start();
+    schemaStore.onChangedSubject("subj", changeFetcher);
+    schemaStore.finish();
+
+    try (Stream<String> keys = typeStore.databaseGetter().getAll().getKeys()) {
+      assertThat(keys.collect(toList()), contains("type"));
+    }
+    try (Stream<String> values = typeStore.databaseGetter().getAll().getValues()) {
+      assertThat(values.findFirst().get(), not(containsString("\n")));
+    }
+  }
+
+  @Test
+  public void copiesTheSchemaOfPreviousVersions() throws Exception {
+    final DummyDataStorage legacyStore = new DummyDataStorage();
+    legacyStore.setValue("{\"type\":{\"name\":\"type\",\"predicates\":[],\"subjectsWithThisType\":3}}");
+
+    new BdbSchemaStore(typeStore, legacyStore, new ImportStatus(new LogList()));
+    BdbSchemaStore schemaStore = new BdbSchemaStore(typeStore, new DummyDataStorage(),
+      new ImportStatus(new LogList()));
+
+    assertThat(schemaStore.getType("type").getSubjectsWithThisType(), is(3L));
+    assertThat(schemaStore.getType("unknownType"), is(nullValue()));
+  }
+
+  @Test
+  public void keepsTheInversePredicatesOfTypesThatDidNotChange() throws Exception {
+    BdbSchemaStore firstImport = new BdbSchemaStore(typeStore, new DummyDataStorage(),
+      new ImportStatus(new LogList()));
+    ChangeFetcher firstChanges = new DummyChangeFetcher(
+      CursorQuad.create("subj", "pred", Direction.OUT, ChangeType.ASSERTED, "obj", null, null, ""),
+      CursorQuad.create("subj", RdfConstants.RDF_TYPE, Direction.OUT, ChangeType.ASSERTED, "type", null, null, ""),
+      CursorQuad.create("obj", "pred", Direction.IN, ChangeType.ASSERTED, "subj", null, null, "")
+    );
+    firstImport.start();
+    firstImport.onChangedSubject("subj", firstChanges);
+    firstImport.onChangedSubject("obj", firstChanges);
+    firstImport.finish();
+
+    //only the type of obj changes, the type of subj (that has the outward predicate) is left as it is
+    BdbSchemaStore secondImport = new BdbSchemaStore(typeStore, new DummyDataStorage(),
+      new ImportStatus(new LogList()));
+    ChangeFetcher secondChanges = new DummyChangeFetcher(
+      CursorQuad.create("obj", "pred", Direction.IN, ChangeType.UNCHANGED, "subj", null, null, ""),
+      CursorQuad.create("obj", "label", Direction.OUT, ChangeType.ASSERTED, "label", RdfConstants.STRING, null, "")
+    );
+    secondImport.start();
+    secondImport.onChangedSubject("obj", secondChanges);
+    secondImport.finish();
+
+    BdbSchemaStore reloaded = new BdbSchemaStore(typeStore, new DummyDataStorage(), new ImportStatus(new LogList()));
+    final Type unknown = reloaded.getType(RdfConstants.UNKNOWN);
+    assertThat(unknown.getPredicate("label", Direction.OUT), is(not(nullValue())));
+    assertThat(unknown.getPredicate("pred", Direction.IN).getReferenceTypes().get("type"), is(1L));
+  }
+
+  @Test
+  public void combinesTheResultsOfSubjectsProcessedOnDifferentThreads() throws Exception {
+    ChangeFetcher changeFetcher = new DummyChangeFetcher(
+      CursorQuad.create("subj", "pred", Direction.OUT, ChangeType.ASSERTED, "obj", null, null, ""),
+      CursorQuad.create("subj", RdfConstants.RDF_TYPE, Direction.OUT, ChangeType.ASSERTED, "type", null, null, ""),
+      CursorQuad.create("obj", "pred", Direction.IN, ChangeType.ASSERTED, "subj", null, null, "")
+    );
+    BdbSchemaStore serialSchemaStore = new BdbSchemaStore(typeStore, new DummyDataStorage(),
+      new ImportStatus(new LogList()));
+    serialSchemaStore.start();
+    serialSchemaStore.onChangedSubject("subj", changeFetcher);
+    serialSchemaStore.onChangedSubject("obj", changeFetcher);
+    serialSchemaStore.finish();
+
+    final TupleBinding<String> stringBinding = TupleBinding.getPrimitiveBinding(String.class);
+    BdbSchemaStore concurrentSchemaStore = new BdbSchemaStore(
+      databaseCreator.getDatabase("userId", "dataSetId", "otherSchemaTypes", false, stringBinding, stringBinding),
+      new DummyDataStorage(),
+      new ImportStatus(new LogList())
+    );
+    concurrentSchemaStore.start();
+    Thread otherThread = new Thread(() -> concurrentSchemaStore.onChangedSubject("subj", changeFetcher));
+    otherThread.start();
+    concurrentSchemaStore.onChangedSubject("obj", changeFetcher);
+    otherThread.join();
+    concurrentSchemaStore.finish();
+
+    assertThat(serialize(concurrentSchemaStore.getTypes()), is(serialize(serialSchemaStore.getTypes())));
+  }
+
+  private static String serialize(Map<String, Type> types) throws Exception {
+    return OBJECT_MAPPER.writeValueAsString(new TreeMap<>(types));
+  }
+
   private static class DummyDataStorage implements DataStorage {
     private String result;
 
@@ -102,10 +240,6 @@ public class BdbSchemaStoreTest {
     public void close() throws Exception {
 
     }
-
-    public String getResult() {
-      return result;
-    }
   }
 
   private static class DummyChangeFetcher implements ChangeFetcher {
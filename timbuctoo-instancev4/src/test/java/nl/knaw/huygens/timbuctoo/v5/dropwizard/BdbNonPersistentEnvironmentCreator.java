@@ -16,6 +16,7 @@ import org.slf4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -46,11 +47,23 @@ public class BdbNonPersistentEnvironmentCreator implements BdbEnvironmentCreator
                                                              boolean allowDuplicates, EntryBinding<KeyT> keyBinder,
                                                              EntryBinding<ValueT> valueBinder)
     throws BdbDbCreationException {
+    return getDatabase(userId, dataSetId, databaseName, allowDuplicates, keyBinder, valueBinder, null);
+  }
+
+  @Override
+  public <KeyT, ValueT> BdbWrapper<KeyT, ValueT> getDatabase(String userId, String dataSetId, String databaseName,
+                                                             boolean allowDuplicates, EntryBinding<KeyT> keyBinder,
+                                                             EntryBinding<ValueT> valueBinder,
+                                                             Class<? extends Comparator<byte[]>> keyComparator)
+    throws BdbDbCreationException {
     try {
       DatabaseConfig config = new DatabaseConfig();
       config.setAllowCreate(true);
       config.setDeferredWrite(true);
       config.setSortedDuplicates(allowDuplicates);
+      if (keyComparator != null) {
+        config.setBtreeComparator(keyComparator);
+      }
 
       String environmentKey = environmentKey(userId, dataSetId);
       File envHome = new File(dbHome, environmentKey);
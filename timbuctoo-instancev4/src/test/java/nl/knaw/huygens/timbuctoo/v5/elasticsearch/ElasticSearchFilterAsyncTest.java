@@ -0,0 +1,134 @@
+package nl.knaw.huygens.timbuctoo.v5.elasticsearch;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.knaw.huygens.timbuctoo.v5.graphql.collectionfilter.FilterResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Runs the filter against a local http server that answers like the elasticsearch search api.
+ */
+public class ElasticSearchFilterAsyncTest {
+
+  private static final String RESPONSE = "{\"took\":3,\"hits\":{\"total\":2,\"hits\":[" +
+    "{\"_source\":{\"uri\":\"http://example.org/1\"},\"sort\":[\"type#1\"]}," +
+    "{\"_source\":{\"uri\":\"http://example.org/2\"},\"sort\":[\"type#2\"]}" +
+    "]}}";
+
+  private HttpServer server;
+  private ExecutorService serverThreads;
+  private List<String> requestLines;
+  private List<String> requestBodies;
+  private CountDownLatch requestsToWaitFor;
+  private int responseCode;
+  private ElasticSearchFilter instance;
+
+  @Before
+  public void setUp() throws Exception {
+    requestLines = new CopyOnWriteArrayList<>();
+    requestBodies = new CopyOnWriteArrayList<>();
+    requestsToWaitFor = new CountDownLatch(0);
+    responseCode = 200;
+    serverThreads = Executors.newFixedThreadPool(4);
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(serverThreads);
+    server.start();
+    instance = new ElasticSearchFilter("localhost", server.getAddress().getPort(), Optional.empty(),
+      Optional.empty());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop(0);
+    serverThreads.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestLines.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+    requestBodies.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), Charsets.UTF_8));
+    requestsToWaitFor.countDown();
+    try {
+      requestsToWaitFor.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    final byte[] response = RESPONSE.getBytes(Charsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(responseCode, response.length);
+    try (OutputStream body = exchange.getResponseBody()) {
+      body.write(response);
+    }
+  }
+
+  @Test
+  public void queryAsyncReturnsTheUrisOfTheHits() throws Exception {
+    FilterResult result = instance.queryAsync("dataSet", "field", "{}", null, 2, Runnable::run)
+      .get(5, TimeUnit.SECONDS);
+
+    assertThat(result.getUriList(), contains("http://example.org/1", "http://example.org/2"));
+    assertThat(result.getTotal(), is(2));
+    assertThat(result.getNextToken(), is("[\"type#2\"]"));
+  }
+
+  @Test
+  public void queryAsyncOnlyRequestsTheIdsWithoutPrettyPrinting() throws Exception {
+    instance.queryAsync("dataSet", "field", "{}", null, 2, Runnable::run).get(5, TimeUnit.SECONDS);
+
+    assertThat(requestLines.get(0), containsString("GET /dataSet/field/_search"));
+    assertThat(requestLines.get(0), containsString("filter_path="));
+    assertThat(requestLines.get(0), not(containsString("pretty")));
+    assertThat(requestBodies.get(0), containsString("\"_source\":[\"uri\"]"));
+  }
+
+  @Test
+  public void queryAsyncSendsTheRequestsConcurrently() throws Exception {
+    //the server only answers when both requests have arrived
+    requestsToWaitFor = new CountDownLatch(2);
+
+    CompletableFuture<FilterResult> first = instance.queryAsync("dataSet", "field", "{}", null, 2, Runnable::run);
+    CompletableFuture<FilterResult> second = instance.queryAsync("dataSet", "field", "{}", null, 2, Runnable::run);
+
+    assertThat(first.get(5, TimeUnit.SECONDS).getUriList().size(), is(2));
+    assertThat(second.get(5, TimeUnit.SECONDS).getUriList().size(), is(2));
+    assertThat(requestsToWaitFor.getCount(), is(0L));
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void queryAsyncFailsWhenElasticSearchReturnsAnError() throws Exception {
+    responseCode = 500;
+
+    instance.queryAsync("dataSet", "field", "{}", null, 2, Runnable::run).get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void queryAsyncFailsWhenTheQueryIsNotJson() throws Exception {
+    CompletableFuture<FilterResult> result = instance.queryAsync("dataSet", "field", "{", null, 2, Runnable::run);
+
+    assertThat(result.isCompletedExceptionally(), is(true));
+    assertThat(requestLines.isEmpty(), is(true));
+  }
+}
@@ -37,13 +37,13 @@ public class ElasticSearchFilterTest {
     assertThat(node.has("search_after"), equalTo(false));
     JsonNode sortNode = node.findValue("sort");
     assertThat(sortNode.elements().next().toString(), equalTo(expectedSort));
-    String expected = "{\"size\":5,\"sort\":[" + expectedSort + "]}";
+    String expected = "{\"size\":5,\"sort\":[" + expectedSort + "],\"_source\":[\"uri\"]}";
     assertThat(node.toString(), equalTo(expected));
     //System.out.println(node.toString()); // {"size":5,"sort":[{"_uid":"desc"}]}
 
     ArrayNode token = JsonNodeFactory.instance.arrayNode();
     token.add(123);
-    expected = "{\"size\":6,\"search_after\":[123],\"sort\":[" + expectedSort + "]}";
+    expected = "{\"size\":6,\"search_after\":[123],\"sort\":[" + expectedSort + "],\"_source\":[\"uri\"]}";
     node = eSearch.elaborateQuery(query, token.toString(), 6);
 
     sizeNode = node.findValue("size");
@@ -107,7 +107,8 @@ public class ElasticSearchFilterTest {
     assertThat(sortIter.next().toString(), equalTo(expectedSort1));
     assertThat(sortIter.next().toString(), equalTo(expectedSort2));
     String expectedSort = expectedSort1 + "," + expectedSort2;
-    String expected = "{\"size\":5,\"query\":{\"match\":{\"gender\":\"F\"}},\"sort\":[" + expectedSort + "]}";
+    String expected = "{\"size\":5,\"query\":{\"match\":{\"gender\":\"F\"}},\"sort\":[" + expectedSort + "]," +
+      "\"_source\":[\"uri\"]}";
     assertThat(node.toString(), equalTo(expected));
     // System.out.println(node.toString());
     // {"size":5,"query":{"match":{"gender":"F"}},"sort":[{"balance":"asc"},{"_uid":"desc"}]}
@@ -116,7 +117,7 @@ public class ElasticSearchFilterTest {
     token.add(49223);
     token.add(123);
     expected = "{\"size\":6,\"query\":{\"match\":{\"gender\":\"F\"}},\"search_after\":[49223,123]," +
-      "\"sort\":[" + expectedSort + "]}";
+      "\"sort\":[" + expectedSort + "],\"_source\":[\"uri\"]}";
     node = eSearch.elaborateQuery(query, token.toString(), 6);
 
     sizeNode = node.findValue("size");
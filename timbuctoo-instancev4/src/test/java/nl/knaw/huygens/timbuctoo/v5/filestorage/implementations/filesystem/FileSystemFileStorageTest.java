@@ -0,0 +1,112 @@
+package nl.knaw.huygens.timbuctoo.v5.filestorage.implementations.filesystem;
+
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class FileSystemFileStorageTest {
+  private File dir;
+  private FileSystemFileStorage storage;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDir();
+    storage = new FileSystemFileStorage(dir);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(dir);
+  }
+
+  @Test
+  public void getLogReadsTheBytesThatWereUsedForDetectingTheCharset() throws Exception {
+    StringBuilder content = new StringBuilder();
+    int lineNumber = 0;
+    //make sure the log is larger than the part that is used for the detection
+    while (content.length() < 3 * 1024 * 1024) {
+      content.append("<http://example.org/").append(lineNumber++).append("> <http://example.org/name> \"caf\u00e9\" .\n");
+    }
+    String token = storage.saveLog(
+      new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)),
+      "log.nq",
+      MediaType.valueOf("application/n-quads"),
+      Optional.empty()
+    );
+
+    try (Reader reader = storage.getLog(token).getReader()) {
+      assertThat(CharStreams.toString(reader), is(content.toString()));
+    }
+  }
+
+  @Test
+  public void getLogStoresTheDetectedCharset() throws Exception {
+    String token = storage.saveLog(
+      new ByteArrayInputStream("<http://example.org/1> <http://example.org/name> \"caf\u00e9\" .\n"
+        .getBytes(StandardCharsets.UTF_8)),
+      "log.nq",
+      MediaType.valueOf("application/n-quads"),
+      Optional.empty()
+    );
+    File fileList = new File(dir, "fileList.json");
+    assertThat(FileUtils.readFileToString(fileList, StandardCharsets.UTF_8), not(containsString("UTF-8")));
+
+    storage.getLog(token).getReader().close();
+
+    assertThat(FileUtils.readFileToString(fileList, StandardCharsets.UTF_8), containsString("UTF-8"));
+  }
+
+  @Test
+  public void getLogStoresTheUtf8FallbackAsAFallback() throws Exception {
+    String token = storage.saveLog(
+      new ByteArrayInputStream("<http://example.org/1> <http://example.org/name> \"plain\" .\n"
+        .getBytes(StandardCharsets.US_ASCII)),
+      "log.nq",
+      MediaType.valueOf("application/n-quads"),
+      Optional.empty()
+    );
+
+    storage.getLog(token).getReader().close();
+
+    final String fileList = FileUtils.readFileToString(new File(dir, "fileList.json"), StandardCharsets.UTF_8);
+    assertThat(fileList, containsString("UTF-8"));
+    assertThat(fileList, containsString("\"charsetIsFallback\":true"));
+  }
+
+  @Test
+  public void getLogUsesTheStoredFallbackInsteadOfDetectingAgain() throws Exception {
+    String token = storage.saveLog(
+      new ByteArrayInputStream("<http://example.org/1> <http://example.org/name> \"plain\" .\n"
+        .getBytes(StandardCharsets.US_ASCII)),
+      "log.nq",
+      MediaType.valueOf("application/n-quads"),
+      Optional.empty()
+    );
+    storage.getLog(token).getReader().close();
+    FileUtils.writeStringToFile(
+      new File(dir, token),
+      "<http://example.org/1> <http://example.org/name> \"caf\u00e9\" .\n",
+      StandardCharsets.UTF_8
+    );
+
+    storage.getLog(token).getReader().close();
+
+    final String fileList = FileUtils.readFileToString(new File(dir, "fileList.json"), StandardCharsets.UTF_8);
+    assertThat(fileList, containsString("\"charsetIsFallback\":true"));
+  }
+}
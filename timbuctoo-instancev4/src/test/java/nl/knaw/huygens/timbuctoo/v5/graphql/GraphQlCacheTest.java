@@ -0,0 +1,88 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql;
+
+import graphql.ExecutionResult;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import nl.knaw.huygens.timbuctoo.v5.graphql.GraphQlCache.CachedGraphQl;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static graphql.ExecutionInput.newExecutionInput;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class GraphQlCacheTest {
+
+  @Test
+  public void returnsTheSameInstanceForUsersThatCanReadTheSameDataSets() {
+    GraphQLSchema schema = schema("hello");
+    GraphQlCache instance = new GraphQlCache(() -> schema);
+
+    CachedGraphQl first = instance.get(newHashSet("u1__ds"), false);
+    CachedGraphQl second = instance.get(newHashSet("u1__ds"), false);
+    CachedGraphQl otherPermissions = instance.get(Collections.emptySet(), false);
+
+    assertThat(second, is(sameInstance(first)));
+    assertThat(otherPermissions, is(not(sameInstance(first))));
+  }
+
+  @Test
+  public void dropsTheInstancesWhenTheSchemaIsRebuilt() {
+    AtomicReference<GraphQLSchema> schema = new AtomicReference<>(schema("hello"));
+    GraphQlCache instance = new GraphQlCache(schema::get);
+
+    CachedGraphQl beforeRebuild = instance.get(Collections.emptySet(), false);
+    schema.set(schema("goodbye"));
+    CachedGraphQl afterRebuild = instance.get(Collections.emptySet(), false);
+
+    assertThat(afterRebuild, is(not(sameInstance(beforeRebuild))));
+    assertThat(data(afterRebuild.execute(newExecutionInput().query("{ greeting }").build())).get("greeting"),
+      is("goodbye"));
+  }
+
+  @Test
+  public void executesAQueryThatIsSentAgainWithTheCachedDocument() {
+    GraphQLSchema schema = schema("hello");
+    CachedGraphQl instance = new GraphQlCache(() -> schema).get(Collections.emptySet(), false);
+
+    ExecutionResult first = instance.execute(newExecutionInput().query("{ greeting }").build());
+    ExecutionResult second = instance.execute(newExecutionInput().query("{ greeting }").build());
+
+    assertThat(first.getErrors(), is(empty()));
+    assertThat(data(second).get("greeting"), is("hello"));
+  }
+
+  @Test
+  public void reportsTheErrorsOfInvalidQueriesEveryTime() {
+    GraphQLSchema schema = schema("hello");
+    CachedGraphQl instance = new GraphQlCache(() -> schema).get(Collections.emptySet(), false);
+
+    ExecutionResult first = instance.execute(newExecutionInput().query("{ unknownField }").build());
+    ExecutionResult second = instance.execute(newExecutionInput().query("{ unknownField }").build());
+
+    assertThat(first.getErrors(), is(not(empty())));
+    assertThat(second.getErrors(), is(not(empty())));
+  }
+
+  private static Map<String, Object> data(ExecutionResult result) {
+    return result.getData();
+  }
+
+  private static GraphQLSchema schema(String greeting) {
+    return new SchemaGenerator().makeExecutableSchema(
+      new SchemaParser().parse("type Query {\n  greeting: String\n}\n"),
+      RuntimeWiring.newRuntimeWiring()
+        .type("Query", builder -> builder.dataFetcher("greeting", env -> greeting))
+        .build()
+    );
+  }
+}
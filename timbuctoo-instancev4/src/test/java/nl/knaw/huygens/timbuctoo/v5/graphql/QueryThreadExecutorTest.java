@@ -0,0 +1,46 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class QueryThreadExecutorTest {
+
+  @Test(timeout = 10_000)
+  public void runsTheContinuationsOnTheThreadThatWaitsForTheResult() throws Exception {
+    final QueryThreadExecutor instance = new QueryThreadExecutor();
+    final ExecutorService filterThread = Executors.newSingleThreadExecutor();
+    final AtomicReference<Thread> continuationThread = new AtomicReference<>();
+    try {
+      final CompletableFuture<String> result = CompletableFuture
+        .supplyAsync(() -> "filtered", filterThread)
+        .thenApplyAsync(value -> {
+          continuationThread.set(Thread.currentThread());
+          return value + " and resolved";
+        }, instance);
+
+      assertThat(instance.runUntilDone(result), is("filtered and resolved"));
+      assertThat(continuationThread.get(), is(sameInstance(Thread.currentThread())));
+    } finally {
+      filterThread.shutdown();
+    }
+  }
+
+  @Test
+  public void runsTheTasksThatAreHandedOverAfterTheResultRightAway() throws Exception {
+    final QueryThreadExecutor instance = new QueryThreadExecutor();
+    instance.runUntilDone(CompletableFuture.completedFuture("done"));
+    final AtomicReference<Thread> taskThread = new AtomicReference<>();
+
+    instance.execute(() -> taskThread.set(Thread.currentThread()));
+
+    assertThat(taskThread.get(), is(sameInstance(Thread.currentThread())));
+  }
+}
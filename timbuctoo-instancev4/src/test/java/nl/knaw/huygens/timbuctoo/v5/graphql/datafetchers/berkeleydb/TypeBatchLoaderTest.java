@@ -0,0 +1,98 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb;
+
+import com.google.common.collect.ImmutableMap;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.QuadStore;
+import nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.Direction;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.berkeleydb.dto.LazyTypeSubjectReference;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.RDF_TYPE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TypeBatchLoaderTest {
+  private QuadStore quadStore;
+  private DataSet dataSet;
+
+  @Before
+  public void setUp() throws Exception {
+    quadStore = mock(QuadStore.class);
+    when(quadStore.getObjects(anyCollection(), anyString(), any(Direction.class))).thenReturn(ImmutableMap.of(
+      "http://example.org/1", newHashSet("http://example.org/Person"),
+      "http://example.org/2", newHashSet("http://example.org/Place")
+    ));
+    DataSetMetaData metaData = mock(DataSetMetaData.class);
+    when(metaData.getCombinedId()).thenReturn("u1__ds");
+    dataSet = mock(DataSet.class);
+    when(dataSet.getMetadata()).thenReturn(metaData);
+    when(dataSet.getQuadStore()).thenReturn(quadStore);
+  }
+
+  @Test
+  public void loadsTheTypesOfAllRegisteredSubjectsAtOnce() {
+    TypeBatchLoader instance = new TypeBatchLoader();
+    LazyTypeSubjectReference first = new LazyTypeSubjectReference("http://example.org/1", dataSet, instance);
+    LazyTypeSubjectReference second = new LazyTypeSubjectReference("http://example.org/2", dataSet, instance);
+    LazyTypeSubjectReference third = new LazyTypeSubjectReference("http://example.org/3", dataSet, instance);
+
+    assertThat(first.getTypes(), contains("http://example.org/Person"));
+    assertThat(second.getTypes(), contains("http://example.org/Place"));
+    assertThat(third.getTypes(), empty());
+
+    verify(quadStore, times(1)).getObjects(
+      newHashSet("http://example.org/1", "http://example.org/2", "http://example.org/3"),
+      RDF_TYPE,
+      Direction.OUT
+    );
+  }
+
+  @Test
+  public void keepsTheTypesForTheRestOfTheRequest() {
+    TypeBatchLoader instance = new TypeBatchLoader();
+    new LazyTypeSubjectReference("http://example.org/1", dataSet, instance).getTypes();
+
+    LazyTypeSubjectReference again = new LazyTypeSubjectReference("http://example.org/1", dataSet, instance);
+
+    assertThat(again.getTypes(), contains("http://example.org/Person"));
+    verify(quadStore, times(1)).getObjects(anyCollection(), anyString(), any(Direction.class));
+  }
+
+  @Test
+  public void loadsABatchAsSoonAsItIsFull() {
+    TypeBatchLoader instance = new TypeBatchLoader(2, 10);
+
+    instance.register(dataSet, "http://example.org/1");
+    instance.register(dataSet, "http://example.org/2");
+    instance.register(dataSet, "http://example.org/3");
+
+    verify(quadStore, times(1)).getObjects(
+      newHashSet("http://example.org/1", "http://example.org/2"),
+      RDF_TYPE,
+      Direction.OUT
+    );
+    assertThat(instance.getTypes(dataSet, "http://example.org/1"), contains("http://example.org/Person"));
+    verify(quadStore, times(1)).getObjects(anyCollection(), anyString(), any(Direction.class));
+  }
+
+  @Test
+  public void onlyKeepsTheTypesOfTheMostRecentlyLoadedSubjects() {
+    TypeBatchLoader instance = new TypeBatchLoader(10, 1);
+    instance.getTypes(dataSet, "http://example.org/1");
+    instance.getTypes(dataSet, "http://example.org/2");
+
+    assertThat(instance.getTypes(dataSet, "http://example.org/1"), contains("http://example.org/Person"));
+    verify(quadStore, times(3)).getObjects(anyCollection(), anyString(), any(Direction.class));
+  }
+}
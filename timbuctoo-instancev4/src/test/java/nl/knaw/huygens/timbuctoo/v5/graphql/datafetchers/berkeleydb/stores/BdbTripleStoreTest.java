@@ -10,13 +10,18 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
+import static com.google.common.collect.Sets.newHashSet;
 import static java.util.stream.Collectors.toList;
 import static nl.knaw.huygens.timbuctoo.v5.datastores.quadstore.dto.CursorQuad.create;
 import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.LANGSTRING;
+import static nl.knaw.huygens.timbuctoo.v5.util.RdfConstants.RDF_TYPE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.not;
 
@@ -203,4 +208,23 @@ public class BdbTripleStoreTest {
     quads.close();
   }
 
+  @Test
+  public void getObjectsReturnsTheObjectsOfAllSubjects() throws Exception {
+    tripleStore.putQuad(EX + "subject2", RDF_TYPE, Direction.OUT, EX + "Person", null, null);
+    tripleStore.putQuad(EX + "subject1", RDF_TYPE, Direction.OUT, EX + "Person", null, null);
+    tripleStore.putQuad(EX + "subject1", RDF_TYPE, Direction.OUT, EX + "Author", null, null);
+    tripleStore.putQuad(EX + "subject3", "http://pred", Direction.OUT, EX + "subject1", null, null);
+    tripleStore.putQuad(EX + "subject1", RDF_TYPE, Direction.IN, EX + "subject4", null, null);
+
+    Map<String, Set<String>> types = tripleStore.getObjects(
+      newHashSet(EX + "subject1", EX + "subject2", EX + "subject3", EX + "unknown"),
+      RDF_TYPE,
+      Direction.OUT
+    );
+
+    assertThat(types.get(EX + "subject1"), containsInAnyOrder(EX + "Person", EX + "Author"));
+    assertThat(types.get(EX + "subject2"), contains(EX + "Person"));
+    assertThat(types.keySet(), containsInAnyOrder(EX + "subject1", EX + "subject2"));
+  }
+
 }
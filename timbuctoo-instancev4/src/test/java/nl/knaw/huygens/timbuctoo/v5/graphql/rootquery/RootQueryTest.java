@@ -0,0 +1,214 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.rootquery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.schema.GraphQLSchema;
+import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetRepository;
+import nl.knaw.huygens.timbuctoo.v5.dataset.DataSetUsage;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSetMetaData;
+import nl.knaw.huygens.timbuctoo.v5.datastores.schemastore.SchemaStore;
+import nl.knaw.huygens.timbuctoo.v5.dropwizard.SupportedExportFormats;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.PaginationArgumentsHelper;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.RdfWiringFactory;
+import nl.knaw.huygens.timbuctoo.v5.graphql.derivedschema.DerivedSchemaTypeGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RootQueryTest {
+  private static final String OWNER = "u1";
+
+  private DataSetRepository dataSetRepository;
+  private List<DataSetMetaData> dataSets;
+  private BlockingQueue<Runnable> rebuilds;
+  private RootQuery instance;
+
+  @Before
+  public void setUp() throws Exception {
+    dataSetRepository = mock(DataSetRepository.class);
+    dataSets = new ArrayList<>();
+    when(dataSetRepository.getDataSetMetadata()).thenAnswer(invocation -> new ArrayList<>(dataSets));
+    when(dataSetRepository.startUsage()).thenReturn(mock(DataSetUsage.class));
+    DerivedSchemaTypeGenerator typeGenerator = mock(DerivedSchemaTypeGenerator.class);
+    when(typeGenerator.makeGraphQlTypes(anyString(), any(), any()))
+      .thenAnswer(invocation -> "type " + invocation.getArgument(0) + " {\n  title: String\n}\n");
+    //the rebuilds only run when the test runs them
+    rebuilds = new LinkedBlockingQueue<>();
+    instance = new RootQuery(
+      dataSetRepository,
+      mock(SupportedExportFormats.class),
+      null,
+      new RdfWiringFactory(dataSetRepository, mock(PaginationArgumentsHelper.class)),
+      typeGenerator,
+      new ObjectMapper(),
+      rebuilds::add
+    );
+  }
+
+  @Test
+  public void aRebuildOnlyOpensTheDataSetThatWasInvalidated() {
+    addDataSet("first");
+    addDataSet("second");
+    instance.rebuildSchema();
+
+    instance.invalidateSchema(OWNER + "__second");
+    instance.rebuildSchema();
+
+    verify(dataSetRepository, times(1)).unsafeGetDataSetWithoutCheckingPermissions(OWNER, "first");
+    verify(dataSetRepository, times(2)).unsafeGetDataSetWithoutCheckingPermissions(OWNER, "second");
+  }
+
+  @Test
+  public void invalidatingTheWholeSchemaOpensAllDataSets() {
+    addDataSet("first");
+    addDataSet("second");
+    instance.rebuildSchema();
+
+    instance.invalidateSchema();
+    instance.rebuildSchema();
+
+    verify(dataSetRepository, times(2)).unsafeGetDataSetWithoutCheckingPermissions(OWNER, "first");
+    verify(dataSetRepository, times(2)).unsafeGetDataSetWithoutCheckingPermissions(OWNER, "second");
+  }
+
+  @Test
+  public void getKeepsReturningTheSameSchemaWhileNothingChanged() {
+    addDataSet("first");
+    GraphQLSchema built = instance.rebuildSchema();
+
+    assertThat(instance.get(), is(sameInstance(built)));
+    assertThat(instance.get(), is(sameInstance(built)));
+    assertThat(rebuilds.isEmpty(), is(true));
+  }
+
+  @Test
+  public void getReturnsThePreviousSchemaUntilTheRebuildHasFinished() {
+    addDataSet("first");
+    GraphQLSchema previous = instance.rebuildSchema();
+    addDataSet("second");
+    instance.invalidateSchema(OWNER + "__second");
+
+    GraphQLSchema duringRebuild = instance.get();
+    GraphQLSchema stillDuringRebuild = instance.get();
+
+    assertThat(duringRebuild, is(sameInstance(previous)));
+    assertThat(stillDuringRebuild, is(sameInstance(previous)));
+    assertThat(previous.getType(OWNER + "__second"), is(nullValue()));
+    //the second call does not start another rebuild while the first one is waiting
+    assertThat(rebuilds.size(), is(1));
+
+    rebuilds.poll().run();
+
+    GraphQLSchema rebuilt = instance.get();
+    assertThat(rebuilt, is(not(sameInstance(previous))));
+    assertThat(rebuilt.getType(OWNER + "__second"), is(notNullValue()));
+  }
+
+  @Test
+  public void aChangeDuringARebuildCausesAnotherRebuild() {
+    addDataSet("first");
+    DataSet second = addDataSet("second");
+    instance.rebuildSchema();
+    instance.invalidateSchema(OWNER + "__second");
+    //the data set changes again while the rebuild reads its schema
+    when(dataSetRepository.unsafeGetDataSetWithoutCheckingPermissions(OWNER, "second")).thenAnswer(invocation -> {
+      instance.invalidateSchema(OWNER + "__second");
+      return Optional.of(second);
+    });
+    instance.get();
+    rebuilds.poll().run();
+
+    instance.get();
+
+    assertThat(rebuilds.size(), is(1));
+    rebuilds.poll().run();
+    verify(dataSetRepository, times(3)).unsafeGetDataSetWithoutCheckingPermissions(OWNER, "second");
+  }
+
+  @Test
+  public void aDataSetThatCouldNotBeOpenedIsRetriedByTheNextRebuild() {
+    DataSet dataSet = addDataSet("first");
+    when(dataSetRepository.unsafeGetDataSetWithoutCheckingPermissions(OWNER, "first"))
+      .thenReturn(Optional.empty())
+      .thenReturn(Optional.of(dataSet));
+    GraphQLSchema withoutDataSet = instance.rebuildSchema();
+    assertThat(withoutDataSet.getType(OWNER + "__first"), is(nullValue()));
+
+    instance.get();
+    assertThat(rebuilds.size(), is(1));
+    rebuilds.poll().run();
+
+    assertThat(instance.get().getType(OWNER + "__first"), is(notNullValue()));
+    assertThat(rebuilds.isEmpty(), is(true));
+    verify(dataSetRepository, times(2)).unsafeGetDataSetWithoutCheckingPermissions(OWNER, "first");
+  }
+
+  @Test
+  public void theTypesOfARemovedDataSetAreForgotten() {
+    addDataSet("first");
+    addDataSet("second");
+    instance.rebuildSchema();
+
+    DataSetMetaData secondMetadata = dataSets.remove(1);
+    assertThat(instance.rebuildSchema().getType(OWNER + "__second"), is(nullValue()));
+
+    //a data set with the same name is a new data set, so its types are generated again
+    dataSets.add(secondMetadata);
+    assertThat(instance.rebuildSchema().getType(OWNER + "__second"), is(notNullValue()));
+    verify(dataSetRepository, times(2)).unsafeGetDataSetWithoutCheckingPermissions(OWNER, "second");
+  }
+
+  @Test(timeout = 10_000)
+  public void onlyTheCallsBeforeTheFirstBuildWaitForTheSchema() throws Exception {
+    addDataSet("first");
+    CompletableFuture<GraphQLSchema> firstGet = CompletableFuture.supplyAsync(instance::get);
+
+    Runnable firstBuild = rebuilds.poll(5, TimeUnit.SECONDS);
+    //there is no schema yet, so the first call can't return before the build has run
+    assertThat(firstGet.isDone(), is(false));
+    firstBuild.run();
+    GraphQLSchema first = firstGet.get(5, TimeUnit.SECONDS);
+
+    instance.invalidateSchema(OWNER + "__first");
+    //the rebuild is queued but not run, so this call would never return if it waited for it
+    assertThat(instance.get(), is(sameInstance(first)));
+    assertThat(rebuilds.size(), is(1));
+  }
+
+  private DataSet addDataSet(String dataSetId) {
+    DataSetMetaData metadata = mock(DataSetMetaData.class);
+    when(metadata.getOwnerId()).thenReturn(OWNER);
+    when(metadata.getDataSetId()).thenReturn(dataSetId);
+    when(metadata.getCombinedId()).thenReturn(OWNER + "__" + dataSetId);
+    dataSets.add(metadata);
+
+    SchemaStore schemaStore = mock(SchemaStore.class);
+    when(schemaStore.getTypes()).thenReturn(Collections.emptyMap());
+    DataSet dataSet = mock(DataSet.class);
+    when(dataSet.getSchemaStore()).thenReturn(schemaStore);
+    when(dataSetRepository.unsafeGetDataSetWithoutCheckingPermissions(OWNER, dataSetId))
+      .thenReturn(Optional.of(dataSet));
+    return dataSet;
+  }
+}
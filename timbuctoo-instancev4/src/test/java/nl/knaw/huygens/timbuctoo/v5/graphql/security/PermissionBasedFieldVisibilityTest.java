@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
@@ -45,7 +46,7 @@ public class PermissionBasedFieldVisibilityTest {
       Sets.newHashSet()
     );
     Collection<DataSet> dataSetCollection = Sets.newHashSet(dataSet, dataSet2);
-    given(dataSetRepository.getDataSets()).willReturn(dataSetCollection);
+    given(dataSetRepository.getDataSetMetadata()).willReturn(metadataOf(dataSetCollection));
     final PermissionBasedFieldVisibility permissionBasedFieldVisibility =
       new PermissionBasedFieldVisibility(userPermissionCheck, dataSetRepository);
     final GraphQLFieldsContainer graphQlFieldsContainer = createGraphQlFieldsContainer(
@@ -71,7 +72,7 @@ public class PermissionBasedFieldVisibilityTest {
       Sets.newHashSet()
     );
     Collection<DataSet> dataSetCollection = Sets.newHashSet(dataSet, dataSet2);
-    given(dataSetRepository.getDataSets()).willReturn(dataSetCollection);
+    given(dataSetRepository.getDataSetMetadata()).willReturn(metadataOf(dataSetCollection));
     final PermissionBasedFieldVisibility permissionBasedFieldVisibility =
       new PermissionBasedFieldVisibility(userPermissionCheck, dataSetRepository);
     final GraphQLFieldsContainer graphQlFieldsContainer = createGraphQlFieldsContainer(
@@ -116,6 +117,10 @@ public class PermissionBasedFieldVisibilityTest {
     return createDataSet(dataSetMetaData);
   }
 
+  private Collection<DataSetMetaData> metadataOf(Collection<DataSet> dataSets) {
+    return dataSets.stream().map(DataSet::getMetadata).collect(Collectors.toList());
+  }
+
   private DataSet createDataSet(DataSetMetaData dataSetMetaData) {
     DataSet dataSet = mock(DataSet.class);
     given(dataSet.getMetadata()).willReturn(dataSetMetaData);
@@ -141,7 +146,7 @@ public class PermissionBasedFieldVisibilityTest {
       Sets.newHashSet()
     );
     Collection<DataSet> dataSetCollection = Sets.newHashSet(dataSet, dataSet2);
-    given(dataSetRepository.getDataSets()).willReturn(dataSetCollection);
+    given(dataSetRepository.getDataSetMetadata()).willReturn(metadataOf(dataSetCollection));
     final PermissionBasedFieldVisibility permissionBasedFieldVisibility =
       new PermissionBasedFieldVisibility(userPermissionCheck, dataSetRepository);
 
@@ -168,7 +173,7 @@ public class PermissionBasedFieldVisibilityTest {
       Sets.newHashSet()
     );
     Collection<DataSet> dataSetCollection = Sets.newHashSet(dataSet, dataSet2);
-    given(dataSetRepository.getDataSets()).willReturn(dataSetCollection);
+    given(dataSetRepository.getDataSetMetadata()).willReturn(metadataOf(dataSetCollection));
     final PermissionBasedFieldVisibility permissionBasedFieldVisibility =
       new PermissionBasedFieldVisibility(userPermissionCheck, dataSetRepository);
 
@@ -195,7 +200,7 @@ public class PermissionBasedFieldVisibilityTest {
       Sets.newHashSet()
     );
     Collection<DataSet> dataSetCollection = Sets.newHashSet(dataSet, dataSet2);
-    given(dataSetRepository.getDataSets()).willReturn(dataSetCollection);
+    given(dataSetRepository.getDataSetMetadata()).willReturn(metadataOf(dataSetCollection));
     final PermissionBasedFieldVisibility permissionBasedFieldVisibility =
       new PermissionBasedFieldVisibility(userPermissionCheck, dataSetRepository);
 
@@ -0,0 +1,65 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.serializable;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResult;
+import nl.knaw.huygens.timbuctoo.v5.serializable.serializations.JsonLdSerialization;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static nl.knaw.huygens.timbuctoo.v5.graphql.serializable.StreamingTestData.execute;
+import static nl.knaw.huygens.timbuctoo.v5.graphql.serializable.StreamingTestData.serialize;
+import static nl.knaw.huygens.timbuctoo.v5.serializable.dto.Entity.entity;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class JsonLdStreamerTest {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Test
+  public void streamsNestedListsLikeTheBufferedSerialization() throws Exception {
+    String query = "{ persons { items { uri name { value } knows { uri } " +
+      "friends { items { uri name { value } } } } } }";
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    JsonLdStreamer jsonLdStreamer = new JsonLdStreamer(new JsonLdSerialization(streamed));
+
+    ExecutionResult result = execute(query, jsonLdStreamer);
+    jsonLdStreamer.finish();
+
+    assertThat(result.getErrors(), is(empty()));
+    assertThat(jsonLdStreamer.isStreaming(), is(true));
+    ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+    serialize(query, new JsonLdSerialization(buffered));
+    assertThat(OBJECT_MAPPER.readTree(streamed.toString()), is(OBJECT_MAPPER.readTree(buffered.toString())));
+  }
+
+  @Test
+  public void writesRowsThatAreCompletedOnSeveralThreadsOneAtATime() throws Exception {
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    JsonLdStreamer jsonLdStreamer = new JsonLdStreamer(new JsonLdSerialization(streamed));
+    execute("{ persons { items { uri } } }", jsonLdStreamer);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int thread = 0; thread < 4; thread++) {
+      final String prefix = "http://example.org/thread" + thread + "/";
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 250; i++) {
+          jsonLdStreamer.onRow(entity(prefix + i, "http://example.org/Person", Collections.emptyMap()));
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    jsonLdStreamer.finish();
+
+    JsonNode items = OBJECT_MAPPER.readTree(streamed.toString()).get("data").get("persons").get("items");
+    assertThat(items.size(), is(1003));
+  }
+}
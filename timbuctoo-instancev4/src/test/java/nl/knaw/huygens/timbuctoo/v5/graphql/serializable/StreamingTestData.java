@@ -0,0 +1,189 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.serializable;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import nl.knaw.huygens.timbuctoo.v5.dataset.dto.DataSet;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.ContextData;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.PaginatedList;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.SubjectReference;
+import nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.TypedValue;
+import nl.knaw.huygens.timbuctoo.v5.graphql.security.UserPermissionCheck;
+import nl.knaw.huygens.timbuctoo.v5.serializable.SerializableResult;
+import nl.knaw.huygens.timbuctoo.v5.serializable.Serialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static com.google.common.collect.ImmutableMap.of;
+import static com.google.common.collect.Lists.newArrayList;
+import static graphql.ExecutionInput.newExecutionInput;
+import static nl.knaw.huygens.timbuctoo.v5.graphql.datafetchers.dto.ContextData.contextData;
+import static org.mockito.Mockito.mock;
+
+/**
+ * A small schema that looks like the derived schema of a data set, with persons that have a name, know another
+ * person and have a paginated list of friends.
+ */
+public class StreamingTestData {
+  private static final String PERSON = "http://example.org/Person";
+  private static final String STRING = "http://www.w3.org/2001/XMLSchema#string";
+  private static final DataSet DATA_SET = mock(DataSet.class);
+  private static final List<String> PERSONS = newArrayList(
+    "http://example.org/1",
+    "http://example.org/2",
+    "http://example.org/3"
+  );
+  private static final Map<String, String> NAMES = of(
+    "http://example.org/1", "Alice",
+    "http://example.org/2", "Bob"
+  );
+  private static final Map<String, String> KNOWS = of(
+    "http://example.org/1", "http://example.org/2"
+  );
+  private static final Map<String, List<String>> FRIENDS = of(
+    "http://example.org/1", newArrayList("http://example.org/2", "http://example.org/3"),
+    "http://example.org/2", newArrayList("http://example.org/1")
+  );
+  private static final GraphQLSchema SCHEMA = schema(env -> name(env.getSource()));
+
+  private static GraphQLSchema schema(DataFetcher<?> nameFetcher) {
+    return new SchemaGenerator().makeExecutableSchema(
+      new SchemaParser().parse(
+        "schema {\n" +
+        "  query: Query\n" +
+        "}\n" +
+        "interface Entity {\n" +
+        "  uri: String!\n" +
+        "}\n" +
+        "interface Value {\n" +
+        "  value: String!\n" +
+        "  type: String!\n" +
+        "}\n" +
+        "type Query {\n" +
+        "  persons: PersonList\n" +
+        "}\n" +
+        "type PersonList {\n" +
+        "  prevCursor: ID\n" +
+        "  nextCursor: ID\n" +
+        "  items: [Person!]!\n" +
+        "}\n" +
+        "type Person implements Entity @rdfType(uri: \"" + PERSON + "\") {\n" +
+        "  uri: String!\n" +
+        "  name: Xsd_string @rdf(predicate: \"http://example.org/name\", direction: \"OUT\")\n" +
+        "  knows: Person @rdf(predicate: \"http://example.org/knows\", direction: \"OUT\")\n" +
+        "  friends: PersonList @rdf(predicate: \"http://example.org/friend\", direction: \"OUT\")\n" +
+        "}\n" +
+        "type Xsd_string implements Value {\n" +
+        "  value: String!\n" +
+        "  type: String!\n" +
+        "}\n"
+      ),
+      RuntimeWiring.newRuntimeWiring()
+        .type("Query", builder -> builder
+          .dataFetcher("persons", env -> persons(PERSONS)))
+        .type("Person", builder -> builder
+          .dataFetcher("uri", env -> uri(env.getSource()))
+          .dataFetcher("name", nameFetcher)
+          .dataFetcher("knows", env -> KNOWS.containsKey(uri(env.getSource())) ?
+            new Person(KNOWS.get(uri(env.getSource()))) : null)
+          .dataFetcher("friends", env -> persons(FRIENDS.getOrDefault(uri(env.getSource()), newArrayList()))))
+        .type("Entity", builder -> builder.typeResolver(env -> env.getSchema().getObjectType("Person")))
+        .type("Value", builder -> builder.typeResolver(env -> env.getSchema().getObjectType("Xsd_string")))
+        .build()
+    );
+  }
+
+  /**
+   * Executes the query with the SerializerExecutionStrategy. The rows are handed to the streamer if it is not null.
+   */
+  public static ExecutionResult execute(String query, RowStreamer rowStreamer) {
+    final UserPermissionCheck userPermissionCheck = mock(UserPermissionCheck.class);
+    final ContextData context = rowStreamer == null ? contextData(userPermissionCheck, Optional.empty()) :
+      contextData(userPermissionCheck, Optional.empty(), rowStreamer);
+    return GraphQL.newGraphQL(SCHEMA)
+      .queryExecutionStrategy(new SerializerExecutionStrategy())
+      .build()
+      .execute(newExecutionInput().query(query).context(context).build());
+  }
+
+  /**
+   * Executes the query like execute, but the names of the persons are resolved asynchronously, in the reverse order
+   * of the list.
+   */
+  public static ExecutionResult executeWithNamesResolvedInReverse(String query, RowStreamer rowStreamer) {
+    final List<Object> persons = new ArrayList<>();
+    final List<CompletableFuture<TypedValue>> names = new ArrayList<>();
+    final GraphQLSchema schema = schema(env -> {
+      final CompletableFuture<TypedValue> name = new CompletableFuture<>();
+      persons.add(env.getSource());
+      names.add(name);
+      if (names.size() == PERSONS.size()) {
+        for (int i = names.size() - 1; i >= 0; i--) {
+          names.get(i).complete(name(persons.get(i)));
+        }
+      }
+      return name;
+    });
+    return GraphQL.newGraphQL(schema)
+      .queryExecutionStrategy(new SerializerExecutionStrategy())
+      .build()
+      .execute(newExecutionInput()
+        .query(query)
+        .context(contextData(mock(UserPermissionCheck.class), Optional.empty(), rowStreamer))
+        .build());
+  }
+
+  /**
+   * Executes the query without streaming and serializes the complete result.
+   */
+  public static void serialize(String query, Serialization serialization) throws IOException {
+    serialization.serialize(new SerializableResult(execute(query, null).getData()));
+  }
+
+  private static PaginatedList<SubjectReference> persons(List<String> uris) {
+    return PaginatedList.create(null, null, uris.stream().map(Person::new).collect(Collectors.toList()));
+  }
+
+  private static TypedValue name(Object source) {
+    return NAMES.containsKey(uri(source)) ? TypedValue.create(NAMES.get(uri(source)), STRING, DATA_SET) : null;
+  }
+
+  private static String uri(Object source) {
+    return ((SubjectReference) source).getSubjectUri();
+  }
+
+  private static class Person implements SubjectReference {
+    private final String uri;
+
+    Person(String uri) {
+      this.uri = uri;
+    }
+
+    @Override
+    public String getSubjectUri() {
+      return uri;
+    }
+
+    @Override
+    public Set<String> getTypes() {
+      return Collections.singleton(PERSON);
+    }
+
+    @Override
+    public DataSet getDataSet() {
+      return DATA_SET;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package nl.knaw.huygens.timbuctoo.v5.graphql.serializable;
+
+import graphql.ExecutionResult;
+import nl.knaw.huygens.timbuctoo.v5.graphql.exceptions.RowStreamingAbortedException;
+import nl.knaw.huygens.timbuctoo.v5.serializable.dto.Serializable;
+import nl.knaw.huygens.timbuctoo.v5.serializable.serializations.CsvSerialization;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static nl.knaw.huygens.timbuctoo.v5.graphql.serializable.StreamingTestData.execute;
+import static nl.knaw.huygens.timbuctoo.v5.graphql.serializable.StreamingTestData.executeWithNamesResolvedInReverse;
+import static nl.knaw.huygens.timbuctoo.v5.graphql.serializable.StreamingTestData.serialize;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class TableStreamerTest {
+
+  @Test
+  public void streamsTheSameTableAsTheBufferedSerialization() throws Exception {
+    String query = "{ persons { items { uri name { value } } } }";
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    TableStreamer tableStreamer = new TableStreamer(new CsvSerialization(streamed));
+
+    ExecutionResult result = execute(query, tableStreamer);
+    tableStreamer.finish();
+
+    assertThat(result.getErrors(), is(empty()));
+    assertThat(tableStreamer.isStreaming(), is(true));
+    assertThat(streamed.toString(), is(buffered(query)));
+    assertThat(streamed.toString(), is(
+      "uri,name\r\n" +
+      "http://example.org/1,Alice\r\n" +
+      "http://example.org/2,Bob\r\n" +
+      "http://example.org/3,\r\n"
+    ));
+  }
+
+  @Test
+  public void writesTheRowsInTheOrderOfTheListWhenTheyAreResolvedOutOfOrder() throws Exception {
+    String query = "{ persons { items { uri name { value } } } }";
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    TableStreamer tableStreamer = new TableStreamer(new CsvSerialization(streamed));
+
+    ExecutionResult result = executeWithNamesResolvedInReverse(query, tableStreamer);
+    tableStreamer.finish();
+
+    assertThat(result.getErrors(), is(empty()));
+    assertThat(tableStreamer.isStreaming(), is(true));
+    assertThat(streamed.toString(), is(buffered(query)));
+  }
+
+  @Test
+  public void reportsThatTheRowsStartedWhenARowIsWrittenWithoutErrors() throws Exception {
+    TableStreamer tableStreamer = new TableStreamer(new CsvSerialization(new ByteArrayOutputStream()));
+
+    execute("{ persons { items { uri name { value } } } }", tableStreamer);
+
+    assertThat(tableStreamer.rowsStarted().isDone(), is(true));
+  }
+
+  @Test
+  public void abortsTheExecutionWhenARowCanNotBeWrittenAfterTheRowsStarted() throws Exception {
+    final AtomicInteger writes = new AtomicInteger();
+    TableStreamer tableStreamer = new TableStreamer(new CsvSerialization(new ByteArrayOutputStream())) {
+      @Override
+      protected void writeRow(Serializable row) throws IOException {
+        if (writes.incrementAndGet() > 1) {
+          throw new IOException("The client went away");
+        }
+        super.writeRow(row);
+      }
+    };
+
+    Throwable failure = null;
+    try {
+      execute("{ persons { items { uri name { value } } } }", tableStreamer);
+    } catch (RuntimeException e) {
+      failure = e;
+      while (failure != null && !(failure instanceof RowStreamingAbortedException)) {
+        failure = failure.getCause();
+      }
+    }
+
+    assertThat(failure, instanceOf(RowStreamingAbortedException.class));
+    //the third person is not resolved anymore
+    assertThat(writes.get(), is(2));
+  }
+
+  @Test
+  public void doesNotStreamRowsWithNestedEntities() throws Exception {
+    TableStreamer tableStreamer = new TableStreamer(new CsvSerialization(new ByteArrayOutputStream()));
+
+    execute("{ persons { items { uri knows { uri } } } }", tableStreamer);
+
+    assertThat(tableStreamer.isStreaming(), is(false));
+    assertThat(tableStreamer.rowsStarted().isDone(), is(false));
+  }
+
+  @Test
+  public void doesNotStreamRowsWithPaginatedLists() throws Exception {
+    String query = "{ persons { items { uri friends { items { uri } } } } }";
+    TableStreamer tableStreamer = new TableStreamer(new CsvSerialization(new ByteArrayOutputStream()));
+
+    execute(query, tableStreamer);
+
+    assertThat(tableStreamer.isStreaming(), is(false));
+    //the buffered serialization gives the list as many columns as the longest list has items
+    assertThat(buffered(query).split("\r\n")[0], is("uri,friends.0.uri,friends.1.uri"));
+  }
+
+  private static String buffered(String query) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    serialize(query, new CsvSerialization(out));
+    return out.toString();
+  }
+}
@@ -0,0 +1,169 @@
+package nl.knaw.huygens.timbuctoo.v5.rdfio.implementations.rdf4j;
+
+import nl.knaw.huygens.timbuctoo.v5.dataset.RdfProcessor;
+import nl.knaw.huygens.timbuctoo.v5.dataset.exceptions.RdfProcessingFailedException;
+import nl.knaw.huygens.timbuctoo.v5.filestorage.dto.CachedLog;
+import nl.knaw.huygens.timbuctoo.v5.rdfio.implementations.rdf4j.parsers.NquadsUdParser;
+import nl.knaw.huygens.timbuctoo.v5.rdfio.implementations.rdf4j.parsers.NquadsUdParser.NquadsUdParserFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParserRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import javax.ws.rs.core.MediaType;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ParallelLineRdfParserTest {
+  private static final int LINES = 500;
+  private ExecutorService executor;
+  private File tempFile;
+
+  @Before
+  public void setUp() throws Exception {
+    RDFParserRegistry.getInstance().add(new NquadsUdParserFactory());
+    executor = Executors.newFixedThreadPool(4);
+    tempFile = File.createTempFile("test", "rdf");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    tempFile.delete();
+  }
+
+  @Test
+  public void deliversTheQuadsInTheOrderOfTheInput() throws Exception {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < LINES; i++) {
+      input.append("<http://example.org/s").append(i).append("> <http://pred> \"").append(i)
+        .append("\"^^<http://number> <http://some_graph> .\n");
+    }
+    RdfProcessor rdfProcessor = mock(RdfProcessor.class);
+    when(rdfProcessor.requiresOrderedQuads()).thenReturn(true);
+    //a tiny chunk size, so that the lines are spread over many chunks
+    ParallelLineRdfParser instance = new ParallelLineRdfParser(executor, RDFFormat.NQUADS, 4, 200);
+
+    instance.importRdf(log(input.toString(), "application/n-quads"), "", "", rdfProcessor);
+
+    InOrder inOrder = inOrder(rdfProcessor);
+    for (int i = 0; i < LINES; i++) {
+      inOrder.verify(rdfProcessor).onQuad(true, "http://example.org/s" + i, "http://pred", "" + i,
+        "http://number", null, "http://some_graph");
+    }
+  }
+
+  @Test
+  public void deliversAllQuadsToProcessorsThatDoNotNeedTheOrder() throws Exception {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < LINES; i++) {
+      input.append("<http://example.org/s").append(i).append("> <http://pred> <http://example.org/o> .\n");
+    }
+    RdfProcessor rdfProcessor = mock(RdfProcessor.class);
+    when(rdfProcessor.requiresOrderedQuads()).thenReturn(false);
+    ParallelLineRdfParser instance = new ParallelLineRdfParser(executor, RDFFormat.NQUADS, 4, 200);
+
+    instance.importRdf(log(input.toString(), "application/n-quads"), "", "http://default_graph", rdfProcessor);
+
+    for (int i = 0; i < LINES; i++) {
+      verify(rdfProcessor).onQuad(true, "http://example.org/s" + i, "http://pred", "http://example.org/o", null,
+        null, "http://default_graph");
+    }
+  }
+
+  @Test
+  public void namesBlankNodesAndHandlesActionsLikeTheSingleThreadedParser() throws Exception {
+    String input = "+_:alice <http://pred> _:bob <http://some_graph> .\n" +
+      "-_:bob <http://pred> \"12\"^^<http://number> <http://some_graph> .\n";
+    RdfProcessor rdfProcessor = mock(RdfProcessor.class);
+    when(rdfProcessor.requiresOrderedQuads()).thenReturn(true);
+    ParallelLineRdfParser instance =
+      new ParallelLineRdfParser(executor, NquadsUdParser.NQUAD_UD_FORMAT, 4, 10);
+
+    instance.importRdf(log(input, "application/vnd.timbuctoo-rdf.nquads_unified_diff"), "", "", rdfProcessor);
+
+    verify(rdfProcessor).onQuad(
+      true,
+      "BlankNode:" + tempFile.getName() + "/alice",
+      "http://pred",
+      "BlankNode:" + tempFile.getName() + "/bob",
+      null,
+      null,
+      "http://some_graph"
+    );
+    verify(rdfProcessor).onQuad(
+      false,
+      "BlankNode:" + tempFile.getName() + "/bob",
+      "http://pred",
+      "12",
+      "http://number",
+      null,
+      "http://some_graph"
+    );
+  }
+
+  @Test
+  public void reportsTheLineNumberInTheFile() throws Exception {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      input.append("<http://example.org/s").append(i).append("> <http://pred> <http://example.org/o> .\n");
+    }
+    input.append("<http://example.org/broken> <http://pred>\n");
+    RdfProcessor rdfProcessor = mock(RdfProcessor.class);
+    when(rdfProcessor.requiresOrderedQuads()).thenReturn(true);
+    ParallelLineRdfParser instance = new ParallelLineRdfParser(executor, RDFFormat.NQUADS, 4, 200);
+
+    try {
+      instance.importRdf(log(input.toString(), "application/n-quads"), "", "", rdfProcessor);
+      fail("Expected the parse to fail");
+    } catch (RdfProcessingFailedException e) {
+      assertThat(e.getCause(), instanceOf(RDFParseException.class));
+      assertThat(e.getCause().getMessage(), containsString("line 21"));
+    }
+  }
+
+  private CachedLog log(String content, String mediaType) {
+    return new CachedLog() {
+      @Override
+      public void close() throws Exception {
+
+      }
+
+      @Override
+      public String getName() {
+        return "http://example.com";
+      }
+
+      @Override
+      public File getFile() {
+        return tempFile;
+      }
+
+      @Override
+      public Reader getReader() throws IOException {
+        return new StringReader(content);
+      }
+
+      @Override
+      public MediaType getMimeType() {
+        return MediaType.valueOf(mediaType);
+      }
+    };
+  }
+}
@@ -0,0 +1,70 @@
+package nl.knaw.huygens.timbuctoo.v5.rml;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class BdbJoinHandlerTest {
+  private BdbJoinHandler instance;
+
+  @After
+  public void tearDown() {
+    instance.close();
+  }
+
+  @Test
+  public void resolvesTheReferencesThatAreKeptInMemory() {
+    instance = new BdbJoinHandler(100, 10);
+
+    addJoinValues();
+
+    assertJoinValues();
+  }
+
+  @Test
+  public void resolvesTheReferencesThatAreMovedToTheTemporaryDatabase() {
+    instance = new BdbJoinHandler(1, 10);
+
+    addJoinValues();
+
+    assertJoinValues();
+  }
+
+  @Test
+  public void seesTheValuesThatAreAddedAfterALookup() {
+    instance = new BdbJoinHandler(1, 10);
+    addJoinValues();
+    assertJoinValues();
+
+    instance.willBeJoinedOn("dependsOnA", "a1", "http://example.org/a1-bis", "output");
+
+    Map<String, List<String>> joined = instance.resolveReferences(ImmutableMap.of("dependsOnA", "a1"));
+    assertThat(joined.get("output"),
+      containsInAnyOrder("http://example.org/a1", "http://example.org/a1-again", "http://example.org/a1-bis"));
+  }
+
+  private void addJoinValues() {
+    instance.willBeJoinedOn("dependsOnA", "a1", "http://example.org/a1", "output");
+    instance.willBeJoinedOn("dependsOnA", "a1", "http://example.org/a1-again", "output");
+    instance.willBeJoinedOn("dependsOnA", "a2", "http://example.org/a2", "output");
+    instance.willBeJoinedOn("dependsOnB", "b1", "http://example.org/b1", "otherOutput");
+  }
+
+  private void assertJoinValues() {
+    Map<String, List<String>> joined = instance.resolveReferences(ImmutableMap.of("dependsOnA", "a1"));
+    assertThat(joined.get("output"), containsInAnyOrder("http://example.org/a1", "http://example.org/a1-again"));
+    assertThat(joined.get("otherOutput"), is(nullValue()));
+
+    joined = instance.resolveReferences(ImmutableMap.of("dependsOnA", "a3", "dependsOnB", "b1"));
+    assertThat(joined.get("output"), is(nullValue()));
+    assertThat(joined.get("otherOutput"), containsInAnyOrder("http://example.org/b1"));
+  }
+}
@@ -1,9 +1,15 @@
 package nl.knaw.huygens.timbuctoo.v5.serializable.serializations;
 
+import nl.knaw.huygens.timbuctoo.v5.serializable.serializations.base.FlatTableSerialization.TocItem;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 
+import static com.google.common.collect.ImmutableMap.of;
+import static nl.knaw.huygens.timbuctoo.v5.serializable.dto.Entity.entity;
+import static nl.knaw.huygens.timbuctoo.v5.serializable.dto.PredicateInfo.predicateInfo;
+import static nl.knaw.huygens.timbuctoo.v5.serializable.dto.SerializableList.serializableList;
+import static nl.knaw.huygens.timbuctoo.v5.serializable.dto.Value.fromRawJavaType;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 
@@ -25,4 +31,38 @@ public class CsvSerializationTest {
       "8,9,10,11,,12,13.0,14,15,16,17,18\r\n" +
       "19,,,,,,,,,,,,20,21\r\n"));
   }
+
+  @Test
+  public void writesTheRowsOfATableWithKnownColumnsOneByOne() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CsvSerialization cs = new CsvSerialization(out);
+    TocItem columns = new TocItem();
+    columns.set("a", new TocItem());
+    TocItem list = new TocItem();
+    for (int i = 0; i < 2; i++) {
+      TocItem item = new TocItem();
+      item.set("c", new TocItem());
+      list.set(i, item);
+    }
+    columns.set("b", list);
+
+    cs.startTable(columns);
+    cs.writeTableRow(entity("http://example.com/1", "http://example.com/Person", of(
+      predicateInfo("a", "http://example.org/a"), fromRawJavaType("1"),
+      predicateInfo("b", "http://example.org/b"), serializableList(null, null,
+        entity("http://example.com/11", "http://example.com/SubItem", of(
+          predicateInfo("c", "http://example.org/c"), fromRawJavaType("2")
+        ))
+      )
+    )));
+    cs.writeTableRow(entity("http://example.com/2", "http://example.com/Person", of(
+      predicateInfo("a", "http://example.org/a"), fromRawJavaType("3")
+    )));
+    cs.finishTable();
+
+    assertThat(out.toString(), is(
+      "a,b.0.c,b.1.c\r\n" +
+      "1,2,\r\n" +
+      "3,,\r\n"));
+  }
 }
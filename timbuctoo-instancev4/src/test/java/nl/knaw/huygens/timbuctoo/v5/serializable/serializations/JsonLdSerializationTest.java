@@ -3,8 +3,15 @@ package nl.knaw.huygens.timbuctoo.v5.serializable.serializations;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.util.Optional;
 
+import static com.google.common.collect.ImmutableMap.of;
+import static com.google.common.collect.Lists.newArrayList;
+import static nl.knaw.huygens.timbuctoo.v5.serializable.dto.Entity.entity;
+import static nl.knaw.huygens.timbuctoo.v5.serializable.dto.PredicateInfo.predicateInfo;
+import static nl.knaw.huygens.timbuctoo.v5.serializable.dto.Value.fromRawJavaType;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.core.Is.is;
 
 public class JsonLdSerializationTest {
@@ -166,4 +173,54 @@ public class JsonLdSerializationTest {
       "}"));
   }
 
+  @Test
+  public void writesTheContextBeforeTheItemsThatAreStreamed() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonLdSerialization cs = new JsonLdSerialization(out);
+
+    cs.startStreaming(newArrayList(predicateInfo("a", "http://example.org/a")), newArrayList("dataSet", "Persons"));
+    cs.startStreamedList(Optional.empty(), Optional.of("next"), true);
+    cs.writeStreamedItem(entity("http://example.com/1", "http://example.com/Person", of(
+      predicateInfo("a", "http://example.org/a"), fromRawJavaType(1)
+    )));
+    cs.finishStreaming();
+
+    assertThat(out.toString(), is("{\n" +
+      "  \"@context\" : {\n" +
+      "    \"data\" : {\n" +
+      "      \"@id\" : \"@graph\",\n" +
+      "      \"@container\" : \"@index\"\n" +
+      "    },\n" +
+      "    \"value\" : \"@value\",\n" +
+      "    \"type\" : \"@type\",\n" +
+      "    \"a\" : \"http://example.org/a\"\n" +
+      "  },\n" +
+      "  \"data\" : {\n" +
+      "    \"dataSet\" : {\n" +
+      "      \"Persons\" : {\n" +
+      "        \"nextCursor\" : \"next\",\n" +
+      "        \"items\" : [ {\n" +
+      "          \"@id\" : \"http://example.com/1\",\n" +
+      "          \"@type\" : \"http://example.com/Person\",\n" +
+      "          \"a\" : {\n" +
+      "            \"type\" : \"http://www.w3.org/2001/XMLSchema#int\",\n" +
+      "            \"value\" : \"1\"\n" +
+      "          }\n" +
+      "        } ]\n" +
+      "      }\n" +
+      "    }\n" +
+      "  }\n" +
+      "}"));
+  }
+
+  @Test
+  public void writesNullWhenTheStreamedListWasNeverStarted() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonLdSerialization cs = new JsonLdSerialization(out);
+
+    cs.startStreaming(newArrayList(), newArrayList("Persons"));
+    cs.finishStreaming();
+
+    assertThat(out.toString(), containsString("\"Persons\" : null"));
+  }
 }